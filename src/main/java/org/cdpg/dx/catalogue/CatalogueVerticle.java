@@ -12,6 +12,7 @@ import org.cdpg.dx.catalogue.client.CatalogueClient;
 import org.cdpg.dx.catalogue.client.CatalogueClientImpl;
 import org.cdpg.dx.catalogue.service.CatalogueService;
 import org.cdpg.dx.catalogue.service.CatalogueServiceImpl;
+import org.cdpg.dx.common.util.LocalServiceBinding;
 
 import static org.cdpg.dx.common.config.ServiceProxyAddressConstants.CATALOGUE_SERVICE_ADDRESS;
 
@@ -45,6 +46,7 @@ public class CatalogueVerticle extends AbstractVerticle {
           binder
               .setAddress(CATALOGUE_SERVICE_ADDRESS)
               .register(CatalogueService.class, catalogueService);
+      LocalServiceBinding.register(vertx, CATALOGUE_SERVICE_ADDRESS, catalogueService);
 
       LOGGER.info("Catalogue Verticle deployed.");
     } catch (Exception e) {
@@ -57,6 +59,7 @@ public class CatalogueVerticle extends AbstractVerticle {
   public void stop() throws Exception {
     LOGGER.info("Shutting down CatalogueVerticle and unregistering service proxy.");
     if (binder != null && consumer != null) {
+      LocalServiceBinding.unregister(vertx, CATALOGUE_SERVICE_ADDRESS, catalogueService);
       binder.unregister(consumer);
     }
   }
@@ -14,6 +14,7 @@ public enum HttpStatusCode {
   NO_CONTENT(204, "No Content", URNConstants.SERVER + "noContent"),
   SUCCESS(200, "Success", URNConstants.SERVER + "Success"),
   CREATED(201, "Created", URNConstants.SERVER + "Success"),
+  ACCEPTED(202, "Accepted", URNConstants.SERVER + "accepted"),
 
   // 4xx: Client Error
   BAD_REQUEST(400, "Bad Request", URNConstants.SERVER + "badRequest"),
@@ -48,7 +48,7 @@ public class PostSearchRequestBuilder {
   public QueryDecoderRequestDTO build() {
     JsonObject requestBody = routingContext.getBodyAsJson();
     MultiMap params = routingContext.queryParams();
-    return new QueryDecoderRequestDTO(
+    QueryDecoderRequestDTO request = new QueryDecoderRequestDTO(
         buildSearchType(requestBody),
         getSize(params),
         getPage(params),
@@ -60,6 +60,15 @@ public class PostSearchRequestBuilder {
         getInstanceFilterRequest(requestBody),
         getResponseFilterRequest(requestBody),
         extractSortOrders());
+    request.setCursor(params.get(CURSOR_KEY));
+    request.setAsync(Boolean.parseBoolean(params.get(ASYNC_KEY)));
+    request.setQueryVector(getQueryVector(requestBody));
+    if (!isCountApi) {
+      request.setFacets(getFacets(requestBody));
+    }
+    request.setPrefix(requestBody.getString(VALUE_PREFIX));
+    request.setGeoSearchRequest(getGeoSearchRequest(requestBody));
+    return request;
   }
 
   public int getSize(MultiMap params) {
@@ -109,6 +118,14 @@ public class PostSearchRequestBuilder {
       typeBuilder.append(SEARCH_TYPE_TEXT);
       hasFilter = true;
     }
+    if (body.getJsonArray(QUERY_VECTOR) != null && !body.getJsonArray(QUERY_VECTOR).isEmpty()) {
+      typeBuilder.append(SEARCH_TYPE_VECTOR);
+      hasFilter = true;
+    }
+    if (body.getValue(GEOMETRY) != null) {
+      typeBuilder.append(SEARCH_TYPE_GEO);
+      hasFilter = true;
+    }
     if (body.containsKey(FILTER)
         && body.getJsonArray(FILTER) != null
         && !body.getJsonArray(FILTER).isEmpty()) {
@@ -128,6 +145,64 @@ public class PostSearchRequestBuilder {
     return new TextSearchRequestDTO(qValue, fuzzy, autoComplete);
   }
 
+  private GeoSearchRequestDTO getGeoSearchRequest(JsonObject requestBody) {
+    if (requestBody.getValue(GEOMETRY) == null) {
+      return null;
+    }
+    if (!(requestBody.getValue(GEOMETRY) instanceof String geometry)
+        || !(requestBody.getValue(COORDINATES) instanceof JsonArray coordinates)
+        || !(requestBody.getValue(GEOREL) == null || requestBody.getValue(GEOREL) instanceof String)
+        || !(requestBody.getValue(GEO_PROPERTY) == null
+            || requestBody.getValue(GEO_PROPERTY) instanceof String)
+        || !(requestBody.getValue(MAX_DISTANCE) == null
+            || requestBody.getValue(MAX_DISTANCE) instanceof Number)) {
+      throw new DxBadRequestException(DETAIL_INVALID_GEO_PARAMETER);
+    }
+    Number maxDistance = (Number) requestBody.getValue(MAX_DISTANCE);
+    return new GeoSearchRequestDTO(
+        requestBody.getString(GEO_PROPERTY),
+        requestBody.getString(GEOREL),
+        geometry,
+        coordinates,
+        maxDistance == null ? null : maxDistance.doubleValue());
+  }
+
+  private List<String> getFacets(JsonObject requestBody) {
+    JsonArray facets = requestBody.getJsonArray(FACETS);
+    if (facets == null || facets.isEmpty()) {
+      return null;
+    }
+    List<String> fields = new ArrayList<>(facets.size());
+    for (Object facet : facets) {
+      if (!(facet instanceof String field) || field.isBlank()) {
+        throw new DxBadRequestException("Facets must be field names");
+      }
+      if (!fields.contains(field)) {
+        fields.add(field);
+      }
+    }
+    return fields;
+  }
+
+  private List<Double> getQueryVector(JsonObject requestBody) {
+    JsonArray vector = requestBody.getJsonArray(QUERY_VECTOR);
+    if (vector == null || vector.isEmpty()) {
+      return null;
+    }
+    if (vector.size() != WORD_VECTOR_DIMS) {
+      throw new DxBadRequestException(
+          "Query vector must have " + WORD_VECTOR_DIMS + " dimensions");
+    }
+    List<Double> queryVector = new ArrayList<>(vector.size());
+    for (Object value : vector) {
+      if (!(value instanceof Number number)) {
+        throw new DxBadRequestException("Query vector must contain only numbers");
+      }
+      queryVector.add(number.doubleValue());
+    }
+    return queryVector;
+  }
+
   private SearchCriteriaRequestDTO getSearchCriteriaRequest(JsonObject requestBody) {
     if (requestBody.containsKey(SEARCH_CRITERIA_KEY)) {
       JsonArray searchCriteriaArray = requestBody.getJsonArray(SEARCH_CRITERIA_KEY);
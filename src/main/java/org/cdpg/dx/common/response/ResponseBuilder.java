@@ -1,7 +1,10 @@
 package org.cdpg.dx.common.response;
 
 
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.ext.web.RoutingContext;
 import org.cdpg.dx.common.HttpStatusCode;
 import org.cdpg.dx.common.response.DxResponse;
@@ -9,6 +12,15 @@ import org.cdpg.dx.common.util.PaginationInfo;
 
 public class ResponseBuilder {
 
+    /** Pre-encoded start of a success envelope, shared by every raw response. */
+    private static final Buffer SUCCESS_ENVELOPE_PREFIX =
+            Buffer.buffer("{\"type\":" + Json.encode(HttpStatusCode.SUCCESS.getUrn())
+                    + ",\"title\":" + Json.encode(HttpStatusCode.SUCCESS.getDescription()));
+    private static final Buffer RESULTS_FIELD = Buffer.buffer(",\"results\":");
+    private static final Buffer PAGINATION_FIELD = Buffer.buffer(",\"paginationInfo\":");
+    private static final Buffer TOTAL_HITS_FIELD = Buffer.buffer(",\"totalHits\":");
+    private static final Buffer FACETS_FIELD = Buffer.buffer(",\"facets\":");
+
     public static <T> DxResponse<T> success(String detail, T results, PaginationInfo pageInfo) {
         HttpStatusCode code = HttpStatusCode.SUCCESS;
         return new DxResponse<>(code.getUrn(), code.getDescription(), detail, results, pageInfo);
@@ -34,13 +46,56 @@ public class ResponseBuilder {
         DxResponse<T> response = (totalHits == null)
                 ? new DxResponse<>(status.getUrn(), status.getDescription(), detail, results, pageInfo)
                 : new DxResponse<>(status.getUrn(), status.getDescription(), detail, results, pageInfo, totalHits);
-        ctx.response()
+        putDefaultHeaders(ctx)
                 .setStatusCode(status.getValue())
+                .end(JsonObject.mapFrom(response).encode());
+    }
+
+    /**
+     * Sends a success envelope around results that are already encoded as a JSON array. The
+     * results are appended to the response buffer as they are, without being parsed or mapped.
+     */
+    public static void sendRawSuccess(
+            RoutingContext ctx, String rawResults, PaginationInfo pageInfo, int totalHits) {
+        sendRawSuccess(ctx, rawResults, pageInfo, totalHits, null);
+    }
+
+    /** As above, with the value counts of the facets asked for next to the results. */
+    public static void sendRawSuccess(
+            RoutingContext ctx, String rawResults, PaginationInfo pageInfo, int totalHits,
+            JsonObject facets) {
+        putDefaultHeaders(ctx)
+                .setStatusCode(HttpStatusCode.SUCCESS.getValue())
+                .end(rawSuccessBody(rawResults, pageInfo, totalHits, facets));
+    }
+
+    /** The body {@link #sendRawSuccess} sends. */
+    static Buffer rawSuccessBody(
+            String rawResults, PaginationInfo pageInfo, int totalHits, JsonObject facets) {
+        String results = rawResults == null ? "[]" : rawResults;
+        String pagination = pageInfo == null ? null : pageInfo.toJson().encode();
+        String facetCounts = facets == null ? null : facets.encode();
+        Buffer body = Buffer.buffer(SUCCESS_ENVELOPE_PREFIX.length() + results.length()
+                + (pagination == null ? 0 : pagination.length())
+                + (facetCounts == null ? 0 : facetCounts.length()) + 64);
+        body.appendBuffer(SUCCESS_ENVELOPE_PREFIX)
+                .appendBuffer(TOTAL_HITS_FIELD).appendString(String.valueOf(totalHits))
+                .appendBuffer(RESULTS_FIELD).appendString(results);
+        if (facetCounts != null) {
+            body.appendBuffer(FACETS_FIELD).appendString(facetCounts);
+        }
+        if (pagination != null) {
+            body.appendBuffer(PAGINATION_FIELD).appendString(pagination);
+        }
+        return body.appendByte((byte) '}');
+    }
+
+    private static HttpServerResponse putDefaultHeaders(RoutingContext ctx) {
+        return ctx.response()
                 .putHeader("Content-Type", "application/json")
                 .putHeader("Access-Control-Allow-Origin", "*")
                 .putHeader("Access-Control-Allow-Headers", "Content-Type, Authorization")
-                .putHeader("Access-Control-Allow-Methods", "GET, POST,PUT, DELETE, OPTIONS")
-                .end(JsonObject.mapFrom(response).encode());
+                .putHeader("Access-Control-Allow-Methods", "GET, POST,PUT, DELETE, OPTIONS");
     }
 
         public static void sendSuccess(RoutingContext ctx, String detail) {
@@ -66,6 +121,10 @@ public class ResponseBuilder {
         send(ctx, HttpStatusCode.CREATED, detail, null, null,null);
     }
 
+    public static <T> void sendAccepted(RoutingContext ctx, String detail, T results) {
+        send(ctx, HttpStatusCode.ACCEPTED, detail, results, null,null);
+    }
+
     public static void sendNoContent(RoutingContext ctx) {
         send(ctx, HttpStatusCode.NO_CONTENT, null, null, null,null);
     }
@@ -0,0 +1,285 @@
+package org.cdpg.dx.common.util;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Event bus codec that carries {@link JsonObject} and {@link JsonArray} bodies in a compact binary
+ * framing instead of JSON text.
+ *
+ * <p>Values are tagged, integers are zig-zag varints and doubles are written as their 8 raw bytes.
+ * Object keys and short string values are written once per message and referred to by index after
+ * that, which is where most of the saving on large result pages comes from: every document repeats
+ * the same field names and many of the same values. Decoded bodies hold the same types as bodies
+ * decoded from JSON text.
+ */
+public class BinaryJsonCodec implements MessageCodec<Object, Object> {
+  public static final String NAME = "dx-binary-json";
+
+  private static final byte NULL = 0;
+  private static final byte FALSE = 1;
+  private static final byte TRUE = 2;
+  private static final byte INTEGER = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte STRING = 5;
+  private static final byte STRING_REF = 6;
+  private static final byte OBJECT = 7;
+  private static final byte ARRAY = 8;
+  private static final byte JSON_TEXT = 9;
+
+  /** Longer strings are unlikely to repeat and are not worth a table entry. */
+  private static final int MAX_INTERNED_LENGTH = 64;
+
+  @Override
+  public void encodeToWire(Buffer buffer, Object body) {
+    Writer writer = new Writer();
+    writer.value(body);
+    buffer.appendInt(writer.length).appendBytes(writer.bytes, 0, writer.length);
+  }
+
+  @Override
+  public Object decodeFromWire(int pos, Buffer buffer) {
+    int length = buffer.getInt(pos);
+    return new Reader(buffer.getBytes(pos + 4, pos + 4 + length)).value();
+  }
+
+  @Override
+  public Object transform(Object body) {
+    if (body instanceof JsonObject object) {
+      return object.copy();
+    }
+    if (body instanceof JsonArray array) {
+      return array.copy();
+    }
+    return body;
+  }
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public byte systemCodecID() {
+    return -1;
+  }
+
+  /** Encodes a body on its own, as it would be framed on the wire. */
+  public static Buffer encode(Object body) {
+    Buffer buffer = Buffer.buffer();
+    new BinaryJsonCodec().encodeToWire(buffer, body);
+    return buffer;
+  }
+
+  public static Object decode(Buffer buffer) {
+    return new BinaryJsonCodec().decodeFromWire(0, buffer);
+  }
+
+  private static boolean interned(String value) {
+    return value.length() <= MAX_INTERNED_LENGTH;
+  }
+
+  private static final class Writer {
+    private final Map<String, Integer> strings = new HashMap<>();
+    private byte[] bytes = new byte[256];
+    private int length;
+
+    private void value(Object value) {
+      if (value == null) {
+        write(NULL);
+      } else if (value instanceof JsonObject object) {
+        write(OBJECT);
+        varint(object.size());
+        for (Map.Entry<String, Object> entry : object.getMap().entrySet()) {
+          key(entry.getKey());
+          value(entry.getValue());
+        }
+      } else if (value instanceof JsonArray array) {
+        write(ARRAY);
+        varint(array.size());
+        for (Object element : array.getList()) {
+          value(element);
+        }
+      } else if (value instanceof String string) {
+        string(string);
+      } else if (value instanceof Map<?, ?> map) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> fields = (Map<String, Object>) map;
+        value(new JsonObject(fields));
+      } else if (value instanceof List<?> list) {
+        value(new JsonArray(list));
+      } else if (value instanceof Boolean bool) {
+        write(bool ? TRUE : FALSE);
+      } else if (value instanceof Integer || value instanceof Long
+          || value instanceof Short || value instanceof Byte) {
+        write(INTEGER);
+        long number = ((Number) value).longValue();
+        varint((number << 1) ^ (number >> 63));
+      } else if (value instanceof Double || value instanceof Float) {
+        write(DOUBLE);
+        long bits = Double.doubleToRawLongBits(((Number) value).doubleValue());
+        for (int shift = 56; shift >= 0; shift -= 8) {
+          write((byte) (bits >>> shift));
+        }
+      } else {
+        // Instants, binary, big numbers and the like keep their JSON text form
+        write(JSON_TEXT);
+        utf8(Json.encode(value));
+      }
+    }
+
+    /** Keys are always interned: 0 introduces a new one, n refers to entry n - 1. */
+    private void key(String key) {
+      Integer index = strings.get(key);
+      if (index != null) {
+        varint(index + 1L);
+        return;
+      }
+      varint(0);
+      utf8(key);
+      strings.put(key, strings.size());
+    }
+
+    private void string(String value) {
+      Integer index = interned(value) ? strings.get(value) : null;
+      if (index != null) {
+        write(STRING_REF);
+        varint(index);
+        return;
+      }
+      write(STRING);
+      utf8(value);
+      if (interned(value)) {
+        strings.put(value, strings.size());
+      }
+    }
+
+    private void utf8(String value) {
+      byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+      varint(encoded.length);
+      ensureCapacity(encoded.length);
+      System.arraycopy(encoded, 0, bytes, length, encoded.length);
+      length += encoded.length;
+    }
+
+    private void varint(long value) {
+      while ((value & ~0x7FL) != 0) {
+        write((byte) ((value & 0x7F) | 0x80));
+        value >>>= 7;
+      }
+      write((byte) value);
+    }
+
+    private void write(byte b) {
+      ensureCapacity(1);
+      bytes[length++] = b;
+    }
+
+    private void ensureCapacity(int extra) {
+      if (length + extra > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+      }
+    }
+  }
+
+  private static final class Reader {
+    private final byte[] in;
+    private final List<String> strings = new ArrayList<>();
+    private int pos;
+
+    private Reader(byte[] in) {
+      this.in = in;
+    }
+
+    private Object value() {
+      if (pos >= in.length) {
+        throw new IllegalStateException("Truncated " + NAME + " message");
+      }
+      byte tag = in[pos++];
+      switch (tag) {
+        case NULL:
+          return null;
+        case FALSE:
+          return false;
+        case TRUE:
+          return true;
+        case INTEGER:
+          long zigzag = varint();
+          long number = (zigzag >>> 1) ^ -(zigzag & 1);
+          return number == (int) number ? (Object) (int) number : (Object) number;
+        case DOUBLE:
+          long bits = 0;
+          for (int i = 0; i < 8; i++) {
+            bits = (bits << 8) | (in[pos++] & 0xFF);
+          }
+          return Double.longBitsToDouble(bits);
+        case STRING:
+          String string = utf8();
+          if (interned(string)) {
+            strings.add(string);
+          }
+          return string;
+        case STRING_REF:
+          return strings.get((int) varint());
+        case OBJECT:
+          int fields = (int) varint();
+          Map<String, Object> map = new LinkedHashMap<>();
+          for (int i = 0; i < fields; i++) {
+            String key = key();
+            map.put(key, value());
+          }
+          return new JsonObject(map);
+        case ARRAY:
+          int elements = (int) varint();
+          List<Object> list = new ArrayList<>(elements);
+          for (int i = 0; i < elements; i++) {
+            list.add(value());
+          }
+          return new JsonArray(list);
+        case JSON_TEXT:
+          return Json.decodeValue(utf8());
+        default:
+          throw new IllegalStateException("Unknown " + NAME + " tag " + tag);
+      }
+    }
+
+    private String key() {
+      long index = varint();
+      if (index > 0) {
+        return strings.get((int) index - 1);
+      }
+      String key = utf8();
+      strings.add(key);
+      return key;
+    }
+
+    private String utf8() {
+      int length = (int) varint();
+      String value = new String(in, pos, length, StandardCharsets.UTF_8);
+      pos += length;
+      return value;
+    }
+
+    private long varint() {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = in[pos++];
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+  }
+}
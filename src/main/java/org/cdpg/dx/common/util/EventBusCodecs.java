@@ -0,0 +1,104 @@
+package org.cdpg.dx.common.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceInterceptor;
+
+/**
+ * Negotiation of the {@link BinaryJsonCodec} between service proxies and the services behind
+ * them, address by address.
+ *
+ * <p>Proxies built with {@link #deliveryOptions} announce in a header that they can decode binary
+ * replies, and services bound with {@link #replyInAcceptedCodec} answer those callers in binary and
+ * everyone else in JSON. Replies are therefore negotiated per request and mixed versions keep
+ * working. Requests are only sent in binary on addresses configured for it, because the receiving
+ * node must have the codec registered to read them.
+ */
+public final class EventBusCodecs {
+  public static final String ACCEPT_CODEC_HEADER = "x-accept-codec";
+
+  private EventBusCodecs() {}
+
+  /** Registers the binary codec on this node's event bus, if it is not registered yet. */
+  public static void register(Vertx vertx) {
+    try {
+      vertx.eventBus().registerCodec(new BinaryJsonCodec());
+    } catch (IllegalStateException e) {
+      // Already registered by another verticle
+    }
+  }
+
+  /**
+   * Options for a service proxy that accepts binary replies and, if {@code binaryRequests} is set,
+   * sends its requests in binary too.
+   */
+  public static DeliveryOptions deliveryOptions(Vertx vertx, boolean binaryRequests) {
+    register(vertx);
+    DeliveryOptions options =
+        new DeliveryOptions().addHeader(ACCEPT_CODEC_HEADER, BinaryJsonCodec.NAME);
+    return binaryRequests ? options.setCodecName(BinaryJsonCodec.NAME) : options;
+  }
+
+  /** Service binder interceptor that replies in binary to callers that accept it. */
+  public static ServiceInterceptor replyInAcceptedCodec(Vertx vertx) {
+    register(vertx);
+    return (v, context, message) ->
+        Future.succeededFuture(
+            BinaryJsonCodec.NAME.equals(message.headers().get(ACCEPT_CODEC_HEADER))
+                ? new BinaryReplyMessage(message)
+                : message);
+  }
+
+  /** A received message whose JSON replies are sent with the binary codec. */
+  private static final class BinaryReplyMessage implements Message<JsonObject> {
+    private final Message<JsonObject> message;
+
+    private BinaryReplyMessage(Message<JsonObject> message) {
+      this.message = message;
+    }
+
+    @Override
+    public String address() {
+      return message.address();
+    }
+
+    @Override
+    public MultiMap headers() {
+      return message.headers();
+    }
+
+    @Override
+    public JsonObject body() {
+      return message.body();
+    }
+
+    @Override
+    public String replyAddress() {
+      return message.replyAddress();
+    }
+
+    @Override
+    public boolean isSend() {
+      return message.isSend();
+    }
+
+    @Override
+    public void reply(Object reply, DeliveryOptions options) {
+      if ((reply instanceof JsonObject || reply instanceof JsonArray)
+          && options.getCodecName() == null) {
+        options = new DeliveryOptions(options).setCodecName(BinaryJsonCodec.NAME);
+      }
+      message.reply(reply, options);
+    }
+
+    @Override
+    public <R> Future<Message<R>> replyAndRequest(Object reply, DeliveryOptions options) {
+      return message.replyAndRequest(reply, options);
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package org.cdpg.dx.common.util;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Direct binding of service implementations deployed in the same Vert.x instance as their callers.
+ *
+ * <p>Service verticles {@link #register} their implementation next to the event bus binding.
+ * {@link #lookup} hands callers a reference that, on every call, uses a co-located implementation
+ * if one is registered and the event bus proxy otherwise, so split deployments keep working and
+ * deployment order does not matter. Direct calls skip the codec round trip: arguments and results
+ * are passed by reference, so callers must not rely on getting their own copies.
+ *
+ * <p>Calls stay context-safe: the implementation runs on the context of the verticle that
+ * registered it, as it would behind the event bus, and results are delivered back on the caller's
+ * context.
+ */
+public final class LocalServiceBinding {
+  private static final Logger LOGGER = LogManager.getLogger(LocalServiceBinding.class);
+  private static final String LOCAL_MAP = "dx.local.service.bindings";
+
+  private LocalServiceBinding() {}
+
+  /** Registers an implementation for the address, run on the current verticle's context. */
+  public static <T> void register(Vertx vertx, String address, T service) {
+    Context context = vertx.getOrCreateContext();
+    implementations(vertx, address).instances.add(new Implementation(service, context));
+    LOGGER.debug("Registered local implementation for {}", address);
+  }
+
+  public static <T> void unregister(Vertx vertx, String address, T service) {
+    implementations(vertx, address).instances.removeIf(impl -> impl.service == service);
+  }
+
+  /**
+   * A reference to the service at the address, called directly while an implementation is
+   * registered in this Vert.x instance and through {@code proxy} otherwise.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T lookup(Vertx vertx, String address, Class<T> type, T proxy) {
+    Implementations implementations = implementations(vertx, address);
+    InvocationHandler handler =
+        (self, method, args) -> {
+          if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(proxy, args);
+          }
+          if (method.isDefault()) {
+            // Route the calls a default method makes back through this reference
+            return InvocationHandler.invokeDefault(self, method, args);
+          }
+          Implementation implementation = implementations.next();
+          if (implementation == null) {
+            return invoke(method, proxy, args);
+          }
+          if (!Future.class.isAssignableFrom(method.getReturnType())) {
+            return invoke(method, implementation.service, args);
+          }
+          return callOnContext(vertx, implementation, method, args);
+        };
+    return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler);
+  }
+
+  private static Future<Object> callOnContext(
+      Vertx vertx, Implementation implementation, Method method, Object[] args) {
+    Context caller = Vertx.currentContext();
+    if (caller == implementation.context) {
+      return invokeForFuture(method, implementation.service, args);
+    }
+    Promise<Object> promise = Promise.promise();
+    implementation.context.runOnContext(
+        v ->
+            invokeForFuture(method, implementation.service, args)
+                .onComplete(
+                    ar -> {
+                      if (caller == null) {
+                        promise.handle(ar);
+                      } else {
+                        caller.runOnContext(c -> promise.handle(ar));
+                      }
+                    }));
+    return promise.future();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Future<Object> invokeForFuture(Method method, Object target, Object[] args) {
+    try {
+      return (Future<Object>) invoke(method, target, args);
+    } catch (Throwable e) {
+      return Future.failedFuture(e);
+    }
+  }
+
+  private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static Implementations implementations(Vertx vertx, String address) {
+    LocalMap<String, Implementations> bindings = vertx.sharedData().getLocalMap(LOCAL_MAP);
+    return bindings.computeIfAbsent(address, a -> new Implementations());
+  }
+
+  /** Implementations registered for one address, used in turn like event bus consumers. */
+  private static final class Implementations implements Shareable {
+    private final List<Implementation> instances = new CopyOnWriteArrayList<>();
+    private final AtomicInteger counter = new AtomicInteger();
+
+    private Implementation next() {
+      List<Implementation> snapshot = List.copyOf(instances);
+      if (snapshot.isEmpty()) {
+        return null;
+      }
+      return snapshot.get(Math.floorMod(counter.getAndIncrement(), snapshot.size()));
+    }
+  }
+
+  private record Implementation(Object service, Context context) {}
+}
@@ -1,7 +1,9 @@
 package org.cdpg.dx.common.util;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.vertx.core.json.JsonObject;
 
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class PaginationInfo {
   private int page;
   private int size;
@@ -9,6 +11,7 @@ public class PaginationInfo {
   private int totalPages;
   private boolean hasNext;
   private boolean hasPrevious;
+  private String next;
 
   public PaginationInfo(
       int page, int size, long totalCount, int totalPages, boolean hasNext, boolean hasPrevious) {
@@ -68,13 +71,26 @@ public class PaginationInfo {
     this.hasPrevious = hasPrevious;
   }
 
+  /** Opaque cursor for the next page, only set for cursor searches. */
+  public String getNext() {
+    return next;
+  }
+
+  public void setNext(String next) {
+    this.next = next;
+  }
+
   public JsonObject toJson() {
-    return new JsonObject()
+    JsonObject json = new JsonObject()
             .put("page", page)
             .put("size", size)
             .put("totalCount", totalCount)
             .put("totalPages", totalPages)
             .put("hasNext", hasNext)
             .put("hasPrevious", hasPrevious);
+    if (next != null) {
+      json.put("next", next);
+    }
+    return json;
   }
 }
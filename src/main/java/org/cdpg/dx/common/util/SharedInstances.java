@@ -0,0 +1,29 @@
+package org.cdpg.dx.common.util;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import java.util.function.Supplier;
+
+/**
+ * Objects created once per Vert.x instance and shared by every verticle instance that asks for
+ * them, such as the in-memory stores of the API server, which would otherwise be read, refreshed
+ * and updated once per verticle instance and drift apart on the writes each of them sees.
+ *
+ * <p>The first caller creates the object, on its own context, so timers it starts are started once
+ * and run there. Shared objects are used from every event loop and must be thread-safe.
+ */
+public final class SharedInstances {
+  private static final String LOCAL_MAP = "dx.shared.instances";
+
+  private SharedInstances() {}
+
+  /** The object shared under the key, created with {@code create} if there is none yet. */
+  @SuppressWarnings("unchecked")
+  public static <T> T computeIfAbsent(Vertx vertx, String key, Supplier<T> create) {
+    LocalMap<String, Instance> instances = vertx.sharedData().getLocalMap(LOCAL_MAP);
+    return (T) instances.computeIfAbsent(key, k -> new Instance(create.get())).value();
+  }
+
+  private record Instance(Object value) implements Shareable {}
+}
@@ -3,9 +3,19 @@ package org.cdpg.dx.database.elastic;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
 import io.vertx.serviceproxy.ServiceBinder;
+import org.cdpg.dx.common.util.EventBusCodecs;
+import org.cdpg.dx.common.util.LocalServiceBinding;
+import org.cdpg.dx.common.util.SharedInstances;
+import org.cdpg.dx.database.elastic.model.QueryDecoder;
+import org.cdpg.dx.database.elastic.model.TextSearchSettings;
 import org.cdpg.dx.database.elastic.service.ElasticsearchService;
 import org.cdpg.dx.database.elastic.service.ElasticsearchServiceImpl;
+import org.cdpg.dx.database.elastic.service.MsearchDispatcher;
+import org.cdpg.dx.database.elastic.service.SearchCoalescer;
+import org.cdpg.dx.database.elastic.service.SearchResultCache;
+import org.cdpg.dx.database.elastic.service.SearchTemplates;
 
 import static org.cdpg.dx.common.config.ServiceProxyAddressConstants.ELASTIC_SERVICE_ADDRESS;
 import static org.cdpg.dx.database.elastic.util.Constants.*;
@@ -32,6 +42,7 @@ public class ElasticsearchVerticle extends AbstractVerticle {
   private ElasticClient client;
   private ServiceBinder binder;
   private MessageConsumer<JsonObject> consumer;
+  private MsearchDispatcher msearchDispatcher;
 
   /**
    * This method is used to start the Verticle. It deploys a verticle in a cluster, registers the
@@ -42,7 +53,8 @@ public class ElasticsearchVerticle extends AbstractVerticle {
    */
   @Override
   public void start() throws Exception {
-    binder = new ServiceBinder(vertx);
+    // Callers that accept it get their results in the binary codec instead of JSON text
+    binder = new ServiceBinder(vertx).addInterceptor(EventBusCodecs.replyInAcceptedCodec(vertx));
     databaseIp = config().getString(DATABASE_IP);
     databasePort = config().getInteger(DATABASE_PORT);
     databaseUser = config().getString(DATABASE_UNAME);
@@ -50,14 +62,45 @@ public class ElasticsearchVerticle extends AbstractVerticle {
 
     client = new ElasticClient(databaseIp, databasePort, databaseUser, databasePassword);
 
-    database = new ElasticsearchServiceImpl(client);
+    // Shared by the verticle instances, so a write through any of them invalidates every result
+    long cacheSize = config().getLong(SEARCH_CACHE_SIZE, 1000L);
+    SearchResultCache searchResultCache = cacheSize <= 0 ? null
+        : SharedInstances.computeIfAbsent(vertx, "searchResultCache",
+            () -> new SearchResultCache(cacheSize,
+                config().getLong(SEARCH_CACHE_MAX_STALENESS, 30L),
+                BackendRegistries.getDefaultNow()));
+
+    SearchCoalescer searchCoalescer = config().getBoolean(SEARCH_COALESCING, true)
+        ? new SearchCoalescer(BackendRegistries.getDefaultNow()) : null;
+
+    long msearchWindow = config().getLong(MSEARCH_WINDOW_MICROS, 0L);
+    msearchDispatcher = msearchWindow <= 0 ? null
+        : new MsearchDispatcher(client.getClient(), msearchWindow,
+            config().getInteger(MSEARCH_MAX_BATCH_SIZE, 64),
+            BackendRegistries.getDefaultNow());
+
+    SearchTemplates searchTemplates = null;
+    if (config().getBoolean(SEARCH_TEMPLATES, true)) {
+      searchTemplates = new SearchTemplates(client.getClient(), BackendRegistries.getDefaultNow());
+      TextSearchSettings textSearchSettings =
+          TextSearchSettings.fromConfig(config().getJsonObject(TEXT_SEARCH));
+      searchTemplates.register(new QueryDecoder(textSearchSettings).searchTemplateShapes());
+    }
+
+    database = new ElasticsearchServiceImpl(
+        client, searchResultCache, searchCoalescer, msearchDispatcher, searchTemplates);
 
     consumer =
         binder.setAddress(ELASTIC_SERVICE_ADDRESS).register(ElasticsearchService.class, database);
+    LocalServiceBinding.register(vertx, ELASTIC_SERVICE_ADDRESS, database);
   }
 
   @Override
   public void stop() {
+    LocalServiceBinding.unregister(vertx, ELASTIC_SERVICE_ADDRESS, database);
     binder.unregister(consumer);
+    if (msearchDispatcher != null) {
+      msearchDispatcher.close();
+    }
   }
 }
@@ -1,14 +1,12 @@
 package org.cdpg.dx.database.elastic.model;
 
-import static org.cdpg.dx.database.elastic.util.Constants.*;
-import static org.cdpg.dx.tgdex.util.Constants.FIELD;
-import static org.cdpg.dx.tgdex.util.Constants.PROVIDER_USER_ID;
+import static org.cdpg.dx.database.elastic.util.Constants.KEYWORD_KEY;
+import static org.cdpg.dx.database.elastic.util.Constants.PROVIDER_USER_ID;
 
 import java.util.List;
 import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.cdpg.dx.database.elastic.util.*;
 
 public class AccessPolicyQueryDecorator implements ElasticsearchQueryDecorator {
   private static final Logger LOGGER = LogManager.getLogger(AccessPolicyQueryDecorator.class);
@@ -28,38 +26,25 @@ public class AccessPolicyQueryDecorator implements ElasticsearchQueryDecorator {
     boolean isMyAssetsRequest = Boolean.TRUE.equals(request.getMyAssetsReq());
 
     if (sub != null && !sub.isEmpty()) {
+      QueryNode ownerMatch = new QueryNode.Term(PROVIDER_USER_ID + KEYWORD_KEY, sub);
       if (isMyAssetsRequest) {
         // Strictly match owned items only
-        QueryModel ownerMatch =
-            new QueryModel(QueryType.MATCH)
-                .setQueryParameters(Map.of(FIELD, PROVIDER_USER_ID, VALUE, sub));
-        queryMap.get(FilterType.MUST).add(ownerMatch);
+        queryMap.get(FilterType.FILTER).add(ownerMatch.toModel());
       } else {
         // User is authenticated → allow: PUBLIC, RESTRICTED, PRIVATE owned
-        QueryModel publicAccess =
-            new QueryModel(QueryType.MATCH)
-                .setQueryParameters(Map.of(FIELD, ACCESS_POLICY, VALUE, OPEN));
-        QueryModel restrictedAccess =
-            new QueryModel(QueryType.MATCH)
-                .setQueryParameters(Map.of(FIELD, ACCESS_POLICY, VALUE, RESTRICTED));
-        QueryModel privateAccess =
-            new QueryModel(QueryType.MATCH)
-                .setQueryParameters(Map.of(FIELD, ACCESS_POLICY, VALUE, PRIVATE));
-        QueryModel ownerMatch =
-            new QueryModel(QueryType.MATCH)
-                .setQueryParameters(Map.of(FIELD, PROVIDER_USER_ID, VALUE, sub));
-        QueryModel privateOwned =
-            new QueryModel(QueryType.BOOL).setMustQueries(List.of(privateAccess, ownerMatch));
-        QueryModel accessFilter = new QueryModel(QueryType.BOOL);
-        accessFilter.setShouldQueries(List.of(publicAccess, restrictedAccess, privateOwned));
-        accessFilter.setMinimumShouldMatch("1");
-        queryMap.get(FilterType.MUST).add(accessFilter);
+        QueryNode accessFilter =
+            new QueryNode.Bool(
+                null,
+                List.of(
+                    QueryFragments.OPEN_OR_RESTRICTED_ACCESS,
+                    QueryNode.Bool.filter(QueryFragments.PRIVATE_ACCESS, ownerMatch)),
+                null,
+                null,
+                "1");
+        queryMap.get(FilterType.FILTER).add(accessFilter.toModel());
       }
     } else {
-      QueryModel excludePrivate =
-          new QueryModel(QueryType.MATCH)
-              .setQueryParameters(Map.of(FIELD, ACCESS_POLICY, VALUE, PRIVATE));
-      queryMap.get(FilterType.MUST_NOT).add(excludePrivate);
+      queryMap.get(FilterType.MUST_NOT).add(QueryFragments.PRIVATE_ACCESS.toModel());
     }
     return queryMap;
   }
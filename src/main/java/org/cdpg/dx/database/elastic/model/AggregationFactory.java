@@ -2,13 +2,20 @@ package org.cdpg.dx.database.elastic.model;
 
 import co.elastic.clients.elasticsearch._types.FieldValue;
 import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregationSource;
+import io.vertx.core.json.JsonArray;
 import org.cdpg.dx.common.exception.DxBadRequestException;
 import org.cdpg.dx.database.elastic.util.AggregationType;
 
+import java.util.List;
 import java.util.Map;
 
+import static org.cdpg.dx.database.elastic.util.Constants.AFTER;
 import static org.cdpg.dx.database.elastic.util.Constants.FIELD;
+import static org.cdpg.dx.database.elastic.util.Constants.INCLUDES;
+import static org.cdpg.dx.database.elastic.util.Constants.PRECISION;
 import static org.cdpg.dx.database.elastic.util.Constants.SIZE_KEY;
+import static org.cdpg.dx.database.elastic.util.Constants.VALUE;
 
 
 public class AggregationFactory {
@@ -61,6 +68,10 @@ public class AggregationFactory {
         builder.valueCount(vc -> vc.field((String) aggregationParameters.get(FIELD)));
         break;
       case FILTER:
+        if (queryModel.getQueries() != null) {
+          builder.filter(queryModel.getQueries().toElasticsearchQuery());
+          break;
+        }
         builder.filter(
                 f ->
                         f.term(
@@ -71,6 +82,60 @@ public class AggregationFactory {
       case GLOBAL:
         builder.global(g -> g);
         break;
+      case COMPOSITE:
+        // A single terms source named "value", paged in value order after the "after" value
+        CompositeAggregationSource source =
+                CompositeAggregationSource.of(
+                        s -> s.terms(t -> t.field((String) aggregationParameters.get(FIELD))));
+        builder.composite(
+                c -> {
+                  c.sources(List.of(Map.of(VALUE, source))).size((Integer) aggregationParameters.get(SIZE_KEY));
+                  if (aggregationParameters.get(AFTER) != null) {
+                    c.after(VALUE, FieldValue.of((String) aggregationParameters.get(AFTER)));
+                  }
+                  return c;
+                });
+        break;
+      case GEOTILE_GRID:
+        // Map tiles of the given zoom; with bounds, only the tiles touching them are returned
+        builder.geotileGrid(
+                g -> {
+                  g.field((String) aggregationParameters.get(FIELD))
+                          .precision(((Number) aggregationParameters.get(PRECISION)).intValue())
+                          .size(((Number) aggregationParameters.get(SIZE_KEY)).intValue());
+                  if (aggregationParameters.get("top_left_lat") != null) {
+                    g.bounds(
+                            b -> b.tlbr(tlbr -> tlbr
+                                    .topLeft(tl -> tl.latlon(ll -> ll
+                                            .lat(number(aggregationParameters, "top_left_lat"))
+                                            .lon(number(aggregationParameters, "top_left_lon"))))
+                                    .bottomRight(br -> br.latlon(ll -> ll
+                                            .lat(number(aggregationParameters, "bottom_right_lat"))
+                                            .lon(number(aggregationParameters, "bottom_right_lon"))))));
+                  }
+                  return g;
+                });
+        break;
+      case GEO_CENTROID:
+        builder.geoCentroid(c -> c.field((String) aggregationParameters.get(FIELD)));
+        break;
+      case TOP_HITS:
+        builder.topHits(
+                t -> {
+                  t.size(((Number) aggregationParameters.get(SIZE_KEY)).intValue());
+                  // Parameters come back from the event bus with lists as JSON arrays
+                  Object includes = aggregationParameters.get(INCLUDES);
+                  if (includes != null) {
+                    List<?> values =
+                            includes instanceof JsonArray array
+                                    ? array.getList()
+                                    : (List<?>) includes;
+                    List<String> fields = values.stream().map(String::valueOf).toList();
+                    t.source(s -> s.filter(f -> f.includes(fields)));
+                  }
+                  return t;
+                });
+        break;
 
       default:
         throw new DxBadRequestException(
@@ -88,4 +153,8 @@ public class AggregationFactory {
 
     return builder;
   }
+
+  private static double number(Map<String, Object> aggregationParameters, String key) {
+    return ((Number) aggregationParameters.get(key)).doubleValue();
+  }
 }
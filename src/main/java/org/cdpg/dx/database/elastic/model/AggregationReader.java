@@ -0,0 +1,192 @@
+package org.cdpg.dx.database.elastic.model;
+
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Buckets;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.aggregations.CardinalityAggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.DoubleTermsBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.GeoCentroidAggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.GeoTileGridBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.HistogramBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.LongTermsBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.MultiBucketAggregateBase;
+import co.elastic.clients.elasticsearch._types.aggregations.MultiBucketBase;
+import co.elastic.clients.elasticsearch._types.aggregations.SingleBucketAggregateBase;
+import co.elastic.clients.elasticsearch._types.aggregations.SingleMetricAggregateBase;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.TermsAggregateBase;
+import co.elastic.clients.elasticsearch._types.aggregations.TopHitsAggregate;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.JsonpMapperFeatures;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import jakarta.json.stream.JsonGenerator;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cdpg.dx.common.exception.DxInternalServerErrorException;
+
+import static org.cdpg.dx.database.elastic.util.Constants.AFTER_KEY;
+import static org.cdpg.dx.database.elastic.util.Constants.BUCKETS;
+import static org.cdpg.dx.database.elastic.util.Constants.DOC_COUNT;
+import static org.cdpg.dx.database.elastic.util.Constants.KEY;
+
+/**
+ * Reads aggregation results straight from the typed {@link Aggregate} variants returned by the
+ * Elasticsearch client, without serializing the search response to text first.
+ */
+public class AggregationReader {
+  private static final Logger LOGGER = LogManager.getLogger(AggregationReader.class);
+  private static final String VALUE = "value";
+  private static final String DOC_COUNT_ERROR_UPPER_BOUND = "doc_count_error_upper_bound";
+  private static final String SUM_OTHER_DOC_COUNT = "sum_other_doc_count";
+  private static final String LOCATION = "location";
+  private static final String COUNT = "count";
+  private static final String HITS = "hits";
+
+  private final JsonpMapper fallbackMapper;
+
+  public AggregationReader(JsonpMapper mapper) {
+    this.fallbackMapper = mapper.withAttribute(JsonpMapperFeatures.SERIALIZE_TYPED_KEYS, false);
+  }
+
+  /** Bucket keys of every aggregation, as used by the list API. */
+  public JsonObject bucketKeys(Map<String, Aggregate> aggregations) {
+    JsonObject result = new JsonObject();
+    aggregations.forEach(
+        (name, aggregate) -> {
+          JsonArray keys = new JsonArray();
+          forEachBucket(aggregate, (key, bucket) -> keys.add(String.valueOf(key)));
+          result.put(name, keys);
+        });
+    return result;
+  }
+
+  /** Bucket key to document count of a single aggregation, as used by the count API. */
+  public JsonObject bucketCounts(Aggregate aggregate) {
+    JsonObject result = new JsonObject();
+    if (aggregate != null) {
+      forEachBucket(
+          aggregate, (key, bucket) -> result.put(String.valueOf(key), (int) bucket.docCount()));
+    }
+    return result;
+  }
+
+  /** All aggregations in the same shape Elasticsearch returns them without typed keys. */
+  public JsonObject toJson(Map<String, Aggregate> aggregations) {
+    JsonObject result = new JsonObject();
+    aggregations.forEach((name, aggregate) -> result.put(name, toJson(aggregate)));
+    return result;
+  }
+
+  private JsonObject toJson(Aggregate aggregate) {
+    Object variant = aggregate._get();
+    JsonObject json = new JsonObject();
+    if (variant instanceof CardinalityAggregate cardinality) {
+      json.put(VALUE, cardinality.value());
+    } else if (variant instanceof SingleMetricAggregateBase metric) {
+      json.put(VALUE, Double.isNaN(metric.value()) ? null : metric.value());
+    } else if (variant instanceof SingleBucketAggregateBase single) {
+      json.put(DOC_COUNT, single.docCount());
+      putSubAggregations(json, single.aggregations());
+    } else if (variant instanceof MultiBucketAggregateBase<?>) {
+      if (variant instanceof TermsAggregateBase<?> terms) {
+        json.put(DOC_COUNT_ERROR_UPPER_BOUND, terms.docCountErrorUpperBound());
+        json.put(SUM_OTHER_DOC_COUNT, terms.sumOtherDocCount());
+      } else if (variant instanceof CompositeAggregate composite && composite.afterKey() != null
+          && !composite.afterKey().isEmpty()) {
+        json.put(AFTER_KEY, compositeKey(composite.afterKey()));
+      }
+      JsonArray buckets = new JsonArray();
+      forEachBucket(
+          aggregate,
+          (key, bucket) -> {
+            JsonObject bucketJson = new JsonObject().put(KEY, key).put(DOC_COUNT, bucket.docCount());
+            putSubAggregations(bucketJson, bucket.aggregations());
+            buckets.add(bucketJson);
+          });
+      json.put(BUCKETS, buckets);
+    } else if (variant instanceof GeoCentroidAggregate centroid) {
+      json.put(COUNT, centroid.count());
+      if (centroid.location() != null && centroid.location().isLatlon()) {
+        json.put(
+            LOCATION,
+            new JsonObject()
+                .put("lat", centroid.location().latlon().lat())
+                .put("lon", centroid.location().latlon().lon()));
+      }
+    } else if (variant instanceof TopHitsAggregate topHits) {
+      JsonArray hits = new JsonArray();
+      for (Hit<JsonData> hit : topHits.hits().hits()) {
+        JsonObject source =
+            hit.source() == null ? null : new JsonObject(hit.source().toJson().toString());
+        hits.add(new JsonObject().put("_id", hit.id()).put("_source", source));
+      }
+      json.put(HITS, new JsonObject().put(HITS, hits));
+    } else {
+      json = serialize(aggregate);
+    }
+    return json;
+  }
+
+  private void putSubAggregations(JsonObject json, Map<String, Aggregate> aggregations) {
+    aggregations.forEach((name, aggregate) -> json.put(name, toJson(aggregate)));
+  }
+
+  private void forEachBucket(Aggregate aggregate, BucketConsumer consumer) {
+    if (!(aggregate._get() instanceof MultiBucketAggregateBase<?> multiBucket)) {
+      return;
+    }
+    Buckets<?> buckets = multiBucket.buckets();
+    if (buckets.isKeyed()) {
+      buckets.keyed().forEach((key, bucket) -> consumer.accept(key, (MultiBucketBase) bucket));
+    } else {
+      List<?> array = buckets.array();
+      for (Object bucket : array) {
+        consumer.accept(bucketKey(bucket), (MultiBucketBase) bucket);
+      }
+    }
+  }
+
+  private static Object bucketKey(Object bucket) {
+    return switch (bucket) {
+      case StringTermsBucket b -> b.key()._get();
+      case LongTermsBucket b -> b.key();
+      case DoubleTermsBucket b -> b.key();
+      case HistogramBucket b -> b.key();
+      case CompositeBucket b -> compositeKey(b.key());
+      case GeoTileGridBucket b -> b.key();
+      default -> null;
+    };
+  }
+
+  /** Composite keys by source name, as Elasticsearch returns them. */
+  private static JsonObject compositeKey(Map<String, FieldValue> key) {
+    JsonObject json = new JsonObject();
+    key.forEach((source, value) -> json.put(source, value._get()));
+    return json;
+  }
+
+  /** Aggregate kinds without a typed reader are serialized on their own, never the full response. */
+  private JsonObject serialize(Aggregate aggregate) {
+    StringWriter writer = new StringWriter();
+    try (JsonGenerator generator = fallbackMapper.jsonProvider().createGenerator(writer)) {
+      fallbackMapper.serialize(aggregate._get(), generator);
+    } catch (Exception e) {
+      LOGGER.error("Error serializing aggregation: ", e);
+      throw new DxInternalServerErrorException("Failed to process aggregations", e);
+    }
+    return new JsonObject(writer.toString());
+  }
+
+  @FunctionalInterface
+  private interface BucketConsumer {
+    void accept(Object key, MultiBucketBase bucket);
+  }
+}
@@ -5,10 +5,8 @@ import io.vertx.core.json.JsonObject;
 
 @DataObject(generateConverter = true)
 public class ElasticsearchResponse {
-  private static JsonObject aggregations;
   private String docId;
   private JsonObject source;
-  private static int totalHits;
 
   public ElasticsearchResponse() {
     // Default constructor
@@ -23,22 +21,6 @@ public class ElasticsearchResponse {
     this.source = source;
   }
 
-  public static JsonObject getAggregations() {
-    return aggregations;
-  }
-
-  public static void setAggregations(JsonObject aggregations) {
-    ElasticsearchResponse.aggregations = aggregations;
-  }
-
-  public static int getTotalHits() {
-    return totalHits;
-  }
-
-  public static void setTotalHits(int totalHits) {
-    ElasticsearchResponse.totalHits = totalHits;
-  }
-
   public JsonObject toJson() {
     JsonObject json = new JsonObject();
     ElasticsearchResponseConverter.toJson(this, json);
@@ -63,8 +45,6 @@ public class ElasticsearchResponse {
 
   @Override
   public String toString() {
-    return "ElasticsearchResponse{" + "docId='" + docId + '\'' + "totalHits='" + totalHits + '\'' +
-        ", " +
-        "source=" + source + '}';
+    return "ElasticsearchResponse{" + "docId='" + docId + '\'' + ", " + "source=" + source + '}';
   }
 }
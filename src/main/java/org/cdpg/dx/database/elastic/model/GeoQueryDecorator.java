@@ -0,0 +1,245 @@
+package org.cdpg.dx.database.elastic.model;
+
+import static org.cdpg.dx.database.elastic.util.Constants.*;
+
+import co.elastic.clients.elasticsearch._types.GeoShapeRelation;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.vertx.core.json.JsonArray;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cdpg.dx.common.exception.DxBadRequestException;
+
+/**
+ * Adds the geo query of a search as a filter, so it narrows the hits without taking part in their
+ * scores. A bounding box searched for intersecting items is a {@code geo_bounding_box} query, and
+ * every other shape a {@code geo_shape} query; a point with a {@code maxDistance} is the circle
+ * around it.
+ *
+ * <p>Shapes are checked before any query is built: a polygon or line with more than {@link
+ * #MAX_VERTICES} positions is rejected on its size alone, before its positions are read. The query
+ * for each checked shape is kept, so the shapes searched again and again, such as a city's
+ * boundary, are checked once.
+ */
+public class GeoQueryDecorator implements ElasticsearchQueryDecorator {
+  /** The most positions in the shape of a single search. */
+  public static final int MAX_VERTICES = 1000;
+
+  private static final Logger LOGGER = LogManager.getLogger(GeoQueryDecorator.class);
+  private static final List<String> GEO_PROPERTIES = List.of(LOCATION);
+  private static final Cache<Shape, QueryNode> SHAPES =
+      CacheBuilder.newBuilder().maximumSize(1024).build();
+
+  private final Map<FilterType, List<QueryModel>> queryMap;
+  private final GeoSearchRequestDTO request;
+
+  public GeoQueryDecorator(
+      Map<FilterType, List<QueryModel>> queryMap, GeoSearchRequestDTO request) {
+    this.queryMap = queryMap;
+    this.request = request;
+  }
+
+  @Override
+  public Map<FilterType, List<QueryModel>> add() {
+    if (request == null || request.geometry() == null || request.coordinates() == null) {
+      throw new DxBadRequestException(DETAIL_INVALID_GEO_PARAMETER);
+    }
+    String geoproperty = request.geoproperty() != null ? request.geoproperty() : LOCATION;
+    if (!GEO_PROPERTIES.contains(geoproperty)) {
+      throw new DxBadRequestException("Invalid geoproperty: " + geoproperty);
+    }
+    String geometry = request.geometry().toLowerCase(Locale.ROOT);
+    GeoShapeRelation relation = relation(request.georel());
+    checkSize(geometry, request.coordinates());
+
+    Shape shape =
+        Shape.of(geoproperty, relation, geometry, request.coordinates(), request.maxDistance());
+    QueryNode geoQuery = SHAPES.getIfPresent(shape);
+    if (geoQuery == null) {
+      geoQuery = geoQuery(geoproperty + GEO_KEY, geometry, relation);
+      SHAPES.put(shape, geoQuery);
+    }
+    LOGGER.debug("Adding geo query decorator {} {}", geometry, relation.jsonValue());
+    queryMap.get(FilterType.FILTER).add(geoQuery.toModel());
+    return queryMap;
+  }
+
+  private QueryNode geoQuery(String field, String geometry, GeoShapeRelation relation) {
+    JsonArray coordinates = request.coordinates().copy();
+    Double maxDistance = request.maxDistance();
+    switch (geometry) {
+      case BBOX:
+        if (coordinates.size() != 2) {
+          throw new DxBadRequestException(DETAIL_INVALID_BBOX);
+        }
+        double[] topLeft = position(coordinates.getValue(0));
+        double[] bottomRight = position(coordinates.getValue(1));
+        if (topLeft[1] < bottomRight[1]) {
+          throw new DxBadRequestException(DETAIL_INVALID_BBOX);
+        }
+        if (relation == GeoShapeRelation.Intersects) {
+          return new QueryNode.GeoBoundingBox(
+              field, topLeft[1], topLeft[0], bottomRight[1], bottomRight[0]);
+        }
+        return new QueryNode.GeoShape(field, GEO_BBOX, coordinates, null, relation);
+      case "point":
+        position(coordinates);
+        if (maxDistance == null) {
+          return new QueryNode.GeoShape(field, POINT, coordinates, null, relation);
+        }
+        if (!(maxDistance > 0) || maxDistance.isInfinite()) {
+          throw new DxBadRequestException("Invalid maxDistance: " + maxDistance);
+        }
+        String radius = BigDecimal.valueOf(maxDistance).stripTrailingZeros().toPlainString() + "m";
+        return new QueryNode.GeoShape(field, GEO_CIRCLE, coordinates, radius, relation);
+      case LINESTRING:
+        if (coordinates.size() < 2) {
+          throw new DxBadRequestException("A LineString needs at least 2 positions");
+        }
+        coordinates.forEach(GeoQueryDecorator::position);
+        return new QueryNode.GeoShape(field, LINESTRING, coordinates, null, relation);
+      case POLYGON:
+        if (coordinates.isEmpty()) {
+          throw new DxBadRequestException(DETAIL_INVALID_COORDINATE_POLYGON);
+        }
+        for (Object ring : coordinates) {
+          checkRing(ring);
+        }
+        return new QueryNode.GeoShape(field, POLYGON, coordinates, null, relation);
+      default:
+        throw new DxBadRequestException("Invalid geometry: " + request.geometry());
+    }
+  }
+
+  /** The shape relation for a georel; {@code near} and no georel are intersections. */
+  private static GeoShapeRelation relation(String georel) {
+    if (georel == null) {
+      return GeoShapeRelation.Intersects;
+    }
+    switch (georel) {
+      case GEOREL_WITHIN:
+      case GEOREL_COVERED_BY:
+        return GeoShapeRelation.Within;
+      case GEOREL_INTERSECTS:
+      case GEOREL_NEAR:
+        return GeoShapeRelation.Intersects;
+      case GEOREL_DISJOINT:
+        return GeoShapeRelation.Disjoint;
+      default:
+        throw new DxBadRequestException("Invalid georel: " + georel);
+    }
+  }
+
+  /** Rejects lines and polygons with too many positions, counting them without reading them. */
+  private static void checkSize(String geometry, JsonArray coordinates) {
+    long positions;
+    if (POLYGON.equals(geometry)) {
+      positions = 0;
+      for (Object ring : coordinates) {
+        positions += ring instanceof JsonArray array ? array.size() : 1;
+      }
+    } else {
+      positions = coordinates.size();
+    }
+    if (positions > MAX_VERTICES) {
+      throw new DxBadRequestException(
+          "Geometry has " + positions + " positions, more than the " + MAX_VERTICES + " allowed");
+    }
+  }
+
+  /** A polygon ring is closed and has at least 4 positions. */
+  private static void checkRing(Object ring) {
+    if (!(ring instanceof JsonArray positions) || positions.size() < 4) {
+      throw new DxBadRequestException(DETAIL_INVALID_COORDINATE_POLYGON);
+    }
+    double[] first = position(positions.getValue(0));
+    double[] last = position(positions.getValue(positions.size() - 1));
+    if (first[0] != last[0] || first[1] != last[1]) {
+      throw new DxBadRequestException(DETAIL_INVALID_COORDINATE_POLYGON);
+    }
+    for (int i = 1; i < positions.size() - 1; i++) {
+      position(positions.getValue(i));
+    }
+  }
+
+  /**
+   * A searched shape, keyed by its coordinates read into arrays of numbers and of array sizes. JSON
+   * arrays are slow to hash and compare, and their text is slow to write out, at the sizes of
+   * polygons.
+   */
+  private record Shape(
+      String geoproperty,
+      GeoShapeRelation relation,
+      String geometry,
+      Double maxDistance,
+      double[] numbers,
+      int[] sizes) {
+
+    static Shape of(
+        String geoproperty,
+        GeoShapeRelation relation,
+        String geometry,
+        JsonArray coordinates,
+        Double maxDistance) {
+      DoubleStream.Builder numbers = DoubleStream.builder();
+      IntStream.Builder sizes = IntStream.builder();
+      read(coordinates, numbers, sizes);
+      return new Shape(
+          geoproperty, relation, geometry, maxDistance, numbers.build().toArray(),
+          sizes.build().toArray());
+    }
+
+    private static void read(
+        JsonArray array, DoubleStream.Builder numbers, IntStream.Builder sizes) {
+      sizes.add(array.size());
+      for (Object value : array) {
+        if (value instanceof Number number) {
+          numbers.add(number.doubleValue());
+        } else if (value instanceof JsonArray nested) {
+          read(nested, numbers, sizes);
+        } else {
+          throw new DxBadRequestException("Invalid coordinates: " + array);
+        }
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Shape other
+          && geoproperty.equals(other.geoproperty)
+          && relation == other.relation
+          && geometry.equals(other.geometry)
+          && Objects.equals(maxDistance, other.maxDistance)
+          && Arrays.equals(numbers, other.numbers)
+          && Arrays.equals(sizes, other.sizes);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(
+          geoproperty, relation, geometry, maxDistance, Arrays.hashCode(numbers),
+          Arrays.hashCode(sizes));
+    }
+  }
+
+  /** The longitude and latitude of a GeoJSON position. */
+  private static double[] position(Object value) {
+    if (value instanceof JsonArray position
+        && position.size() == 2
+        && position.getValue(0) instanceof Number lon
+        && position.getValue(1) instanceof Number lat
+        && Math.abs(lon.doubleValue()) <= 180
+        && Math.abs(lat.doubleValue()) <= 90) {
+      return new double[] {lon.doubleValue(), lat.doubleValue()};
+    }
+    throw new DxBadRequestException("Invalid coordinates: " + value);
+  }
+}
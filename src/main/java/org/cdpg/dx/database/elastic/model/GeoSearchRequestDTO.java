@@ -0,0 +1,14 @@
+package org.cdpg.dx.database.elastic.model;
+
+import io.vertx.core.json.JsonArray;
+
+/**
+ * A geo search: the items whose {@code geoproperty} stands in the {@code georel} relation to the
+ * shape. {@code maxDistance}, in metres, makes a {@code Point} the centre of a circle.
+ */
+public record GeoSearchRequestDTO(
+    String geoproperty,
+    String georel,
+    String geometry,
+    JsonArray coordinates,
+    Double maxDistance) {}
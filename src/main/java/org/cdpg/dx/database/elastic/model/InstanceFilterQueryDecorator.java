@@ -6,7 +6,6 @@ import java.util.List;
 import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.cdpg.dx.database.elastic.util.QueryType;
 
 public class InstanceFilterQueryDecorator implements ElasticsearchQueryDecorator {
   private static final Logger LOGGER = LogManager.getLogger(InstanceFilterQueryDecorator.class);
@@ -24,10 +23,8 @@ public class InstanceFilterQueryDecorator implements ElasticsearchQueryDecorator
     if (request.getInstance() != null && !request.getInstance().isEmpty()) {
       String instanceId = request.getInstance();
       LOGGER.info("Adding instance filter query decorator {}", instanceId);
-      QueryModel instanceFilter =
-          new QueryModel(QueryType.TERM)
-              .setQueryParameters(Map.of(FIELD, INSTANCE + KEYWORD_KEY, VALUE, instanceId));
-      queryMap.get(FilterType.FILTER).add(instanceFilter);
+      QueryNode instanceFilter = new QueryNode.Term(INSTANCE + KEYWORD_KEY, instanceId);
+      queryMap.get(FilterType.FILTER).add(instanceFilter.toModel());
     }
     return queryMap;
   }
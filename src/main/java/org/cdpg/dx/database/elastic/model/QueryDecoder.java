@@ -1,18 +1,33 @@
 package org.cdpg.dx.database.elastic.model;
 
 import static org.cdpg.dx.database.elastic.util.Constants.*;
-import static org.cdpg.dx.tgdex.util.Constants.ITEM_TYPE_AI_MODEL;
-import static org.cdpg.dx.tgdex.util.Constants.ITEM_TYPE_DATA_BANK;
 
+import io.vertx.core.json.JsonArray;
 import java.util.*;
+import java.util.regex.Pattern;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.cdpg.dx.common.exception.DxEsException;
 import org.cdpg.dx.database.elastic.util.AggregationType;
-import org.cdpg.dx.database.elastic.util.QueryType;
 
 public class QueryDecoder {
   private static final Logger LOGGER = LogManager.getLogger(QueryDecoder.class);
+  private static final Pattern SEARCH_CRITERIA = Pattern.compile(SEARCH_CRITERIA_REGEX);
+  private static final Pattern TEXT_SEARCH = Pattern.compile(TEXTSEARCH_REGEX);
+  private static final Pattern VECTOR_SEARCH = Pattern.compile(VECTOR_SEARCH_REGEX);
+  private static final Pattern GEO_SEARCH = Pattern.compile(GEOSEARCH_REGEX);
+  static final Pattern RESPONSE_FILTER = Pattern.compile(RESPONSE_FILTER_REGEX);
+  private static final List<String> MAP_ITEM_FIELDS = List.of(ID, NAME, LABEL, TYPE, LOCATION);
+
+  private final TextSearchSettings textSearchSettings;
+
+  public QueryDecoder() {
+    this(TextSearchSettings.DEFAULT);
+  }
+
+  public QueryDecoder(TextSearchSettings textSearchSettings) {
+    this.textSearchSettings = textSearchSettings;
+  }
 
   public QueryModel getQueryModel(QueryDecoderRequestDTO request) {
     String searchType = request.getSearchType();
@@ -28,25 +43,47 @@ public class QueryDecoder {
       queryMap.put(filterType, new ArrayList<>());
     }
 
-    if (searchType != null && searchType.matches(SEARCH_CRITERIA_REGEX)) {
+    List<String> facets = request.getFacets();
+    boolean faceted = facets != null && !facets.isEmpty();
+    Map<String, List<QueryNode>> selectedFacets = new LinkedHashMap<>();
+    if (searchType != null && SEARCH_CRITERIA.matcher(searchType).matches()) {
       LOGGER.debug("Info: searchCriteria block");
-      new SearchCriteriaQueryDecorator(queryMap, request.getSearchCriteriaRequest()).add();
+      SearchCriteriaRequestDTO criteria = request.getSearchCriteriaRequest();
+      if (faceted) {
+        criteria = withoutFacetCriteria(criteria, facets, selectedFacets);
+      }
+      new SearchCriteriaQueryDecorator(queryMap, criteria).add();
       isValidQuery = true;
     }
 
-    if (searchType != null && searchType.matches(TEXTSEARCH_REGEX)) {
+    if (searchType != null && GEO_SEARCH.matcher(searchType).matches()) {
+      LOGGER.debug("Info: Geo search block");
+      new GeoQueryDecorator(queryMap, request.getGeoSearchRequest()).add();
+      isValidQuery = true;
+    }
+
+    QueryModel textQuery = null;
+    if (searchType != null && TEXT_SEARCH.matcher(searchType).matches()) {
       LOGGER.debug("Info: Text search block");
-      new TextSearchQueryDecorator(queryMap, request.getTextSearchRequest()).add();
+      new TextSearchQueryDecorator(queryMap, request.getTextSearchRequest(), textSearchSettings)
+          .add();
+      textQuery = queryMap.get(FilterType.MUST).getLast();
+      isValidQuery = true;
+    }
+
+    boolean vectorSearch =
+        searchType != null
+            && VECTOR_SEARCH.matcher(searchType).matches()
+            && request.getQueryVector() != null;
+    if (vectorSearch) {
+      LOGGER.debug("Info: Vector search block");
       isValidQuery = true;
     }
 
     new AccessPolicyQueryDecorator(queryMap, request.getAccessPolicyRequest()).add();
-    QueryModel excludeDatabankFalse = buildUploadStatusExclusion(ITEM_TYPE_DATA_BANK);
-    QueryModel excludeAiModelFalse = buildUploadStatusExclusion(ITEM_TYPE_AI_MODEL);
-    queryMap.get(FilterType.MUST_NOT).add(excludeDatabankFalse);
-    queryMap.get(FilterType.MUST_NOT).add(excludeAiModelFalse);
+    addUploadStatusExclusions(queryMap);
 
-    if (searchType != null && searchType.matches(RESPONSE_FILTER_REGEX)) {
+    if (searchType != null && RESPONSE_FILTER.matcher(searchType).matches()) {
       new ResponseFilterDecorator(queryMap, request.getResponseFilterRequest()).add();
       isValidQuery = true;
     }
@@ -57,6 +94,16 @@ public class QueryDecoder {
 
     QueryModel q = new QueryModel();
     q.setQueries(getBoolQuery(queryMap));
+    if (vectorSearch) {
+      // With text as well the search is hybrid, and the text query must not filter the kNN hits
+      q.setKnnVector(request.getQueryVector());
+      if (textQuery != null) {
+        q.setKnnFilter(withoutQuery(queryMap, textQuery));
+      }
+    }
+    if (faceted) {
+      addFacets(q, facets, selectedFacets);
+    }
     // Optional pagination support
     if (request.getSize() != null) {
       int size = request.getSize();
@@ -79,60 +126,283 @@ public class QueryDecoder {
 
   public QueryModel listMultipleItemTypesQuery(QueryDecoderRequestDTO request) {
     LOGGER.debug("listMultipleItemTypesQuery - {}", request);
+    QueryModel finalQuery = listItemsQuery(request);
+
+    List<String> filters = request.getFilter();
+    int size = listFilterSize(request);
+    List<QueryModel> aggs = new ArrayList<>();
+
+    if (filters != null) {
+      for (String filter : filters) {
+        aggs.add(termsAggregation(filter, size));
+      }
+      finalQuery.setAggregations(aggs);
+    }
+
+    if (request.getPage() != null) {
+      finalQuery.setLimit(String.valueOf(size));
+    }
+
+    return finalQuery;
+  }
+
+  /**
+   * One page of the values of each filter field, in value order, read with a composite aggregation
+   * per field instead of a terms aggregation sized for every value. Each field's values start
+   * after the value given for it, or at the first value when none is given. With a prefix, only
+   * the items having a value of the field starting with it, in any case, are aggregated; their
+   * other values of the field are still among the buckets.
+   *
+   * @param after the fields to page through, each with the last value already listed or null
+   * @param size the most values read per field
+   */
+  public QueryModel listFilterValuesPageQuery(
+      QueryDecoderRequestDTO request, Map<String, String> after, int size) {
+    LOGGER.debug("listFilterValuesPageQuery - {} after {}", request, after);
+    QueryModel finalQuery = listItemsQuery(request);
+    String prefix = request.getPrefix();
+    List<QueryModel> aggs = new ArrayList<>();
+    after.forEach(
+        (filter, value) -> {
+          Map<String, Object> aggParams = new HashMap<>();
+          aggParams.put(FIELD, filter + KEYWORD_KEY);
+          aggParams.put(SIZE_KEY, size);
+          aggParams.put(AFTER, value);
+          QueryModel values = new QueryModel();
+          values.setAggregationType(AggregationType.COMPOSITE);
+          values.setAggregationName(filter);
+          values.setAggregationParameters(aggParams);
+          if (prefix == null || prefix.isEmpty()) {
+            aggs.add(values);
+            return;
+          }
+          QueryModel filtered = new QueryModel();
+          filtered.setAggregationType(AggregationType.FILTER);
+          filtered.setAggregationName(filter);
+          filtered.setAggregationParameters(Map.of());
+          filtered.setQueries(
+              new QueryNode.Wildcard(filter + KEYWORD_KEY, wildcardPrefix(prefix), true).toModel());
+          filtered.setAggregationsMap(Map.of(filter, values));
+          aggs.add(filtered);
+        });
+    finalQuery.setAggregations(aggs);
+    return finalQuery;
+  }
+
+  /**
+   * The items of a search clustered into the cells of a {@code geotile_grid} of the given
+   * precision, over the bounding box the request is searched by. Each cell has the centroid of its
+   * items and up to {@code items} of them, so the response grows with the number of cells rather
+   * than the number of items.
+   *
+   * @param size the most cells returned
+   * @param items the most items returned in each cell
+   */
+  public QueryModel mapClustersQuery(
+      QueryDecoderRequestDTO request, int precision, int size, int items) {
+    QueryModel query = getQueryModel(request);
+    GeoSearchRequestDTO geo = request.getGeoSearchRequest();
+    JsonArray bbox = geo.coordinates();
+    String field = (geo.geoproperty() != null ? geo.geoproperty() : LOCATION) + GEO_KEY;
+
+    Map<String, Object> gridParams = new HashMap<>();
+    gridParams.put(FIELD, field);
+    gridParams.put(PRECISION, precision);
+    gridParams.put(SIZE_KEY, size);
+    gridParams.put("top_left_lon", bbox.getJsonArray(0).getDouble(0));
+    gridParams.put("top_left_lat", bbox.getJsonArray(0).getDouble(1));
+    gridParams.put("bottom_right_lon", bbox.getJsonArray(1).getDouble(0));
+    gridParams.put("bottom_right_lat", bbox.getJsonArray(1).getDouble(1));
+    QueryModel grid = new QueryModel(AggregationType.GEOTILE_GRID, gridParams);
+    grid.setAggregationName(MAP_CLUSTERS);
+
+    QueryModel centroid = new QueryModel(AggregationType.GEO_CENTROID, Map.of(FIELD, field));
+    QueryModel hits =
+        new QueryModel(
+            AggregationType.TOP_HITS, Map.of(SIZE_KEY, items, INCLUDES, MAP_ITEM_FIELDS));
+    grid.setAggregationsMap(Map.of(MAP_CENTROID, centroid, MAP_ITEMS, hits));
+
+    query.setAggregations(List.of(grid));
+    query.setPostFilter(null);
+    query.setLimit(null);
+    query.setOffset(null);
+    return query;
+  }
+
+  /** The items a list request covers: access policy, search criteria, geo shape and instance. */
+  private QueryModel listItemsQuery(QueryDecoderRequestDTO request) {
     Map<FilterType, List<QueryModel>> queryMap = new HashMap<>();
     for (FilterType filterType : FilterType.values()) {
       queryMap.put(filterType, new ArrayList<>());
     }
 
     new AccessPolicyQueryDecorator(queryMap, request.getAccessPolicyRequest()).add();
-    new SearchCriteriaQueryDecorator(queryMap, request.getSearchCriteriaRequest()).add();
+    if (request.getSearchCriteriaRequest() != null) {
+      new SearchCriteriaQueryDecorator(queryMap, request.getSearchCriteriaRequest()).add();
+    }
+    if (request.getGeoSearchRequest() != null) {
+      new GeoQueryDecorator(queryMap, request.getGeoSearchRequest()).add();
+    }
     new InstanceFilterQueryDecorator(queryMap, request.getInstanceFilterRequest()).add();
 
-    QueryModel excludeDatabankFalse = buildUploadStatusExclusion(ITEM_TYPE_DATA_BANK);
-    QueryModel excludeAiModelFalse = buildUploadStatusExclusion(ITEM_TYPE_AI_MODEL);
-    queryMap.get(FilterType.MUST_NOT).add(excludeDatabankFalse);
-    queryMap.get(FilterType.MUST_NOT).add(excludeAiModelFalse);
+    addUploadStatusExclusions(queryMap);
 
-    QueryModel finalQuery = new QueryModel();
-    finalQuery.setQueries(getBoolQuery(queryMap));
+    QueryModel query = new QueryModel();
+    query.setQueries(getBoolQuery(queryMap));
+    return query;
+  }
 
-    List<String> filters = request.getFilter();
-    int size =
-        request.getSize() != null
-            ? request.getSize()
-            : FILTER_PAGINATION_SIZE - (request.getPage() != null ? request.getPage() : 1);
-    List<QueryModel> aggs = new ArrayList<>();
+  /** A wildcard pattern matching values that start with the text as it is written. */
+  private static String wildcardPrefix(String prefix) {
+    StringBuilder pattern = new StringBuilder(prefix.length() + 2);
+    for (char c : prefix.toCharArray()) {
+      if (c == '*' || c == '?' || c == '\\') {
+        pattern.append('\\');
+      }
+      pattern.append(c);
+    }
+    return pattern.append('*').toString();
+  }
 
-    if (filters != null) {
-      for (String filter : filters) {
-        Map<String, Object> aggParams = Map.of(FIELD, filter + KEYWORD_KEY, SIZE_KEY, size);
-        QueryModel agg = new QueryModel();
-        agg.setAggregationType(AggregationType.TERMS);
-        agg.setAggregationName(filter);
-        agg.setAggregationParameters(aggParams);
-        aggs.add(agg);
+  /** The most values {@link #listMultipleItemTypesQuery} lists for each filter field. */
+  public static int listFilterSize(QueryDecoderRequestDTO request) {
+    return request.getSize() != null
+        ? request.getSize()
+        : FILTER_PAGINATION_SIZE - (request.getPage() != null ? request.getPage() : 1);
+  }
+
+  /**
+   * The query shapes {@link #getQueryModel} builds for common searches: text, one or two
+   * single-valued criteria, and text with a criterion, each for anonymous, authenticated and
+   * own-asset requests. Values taken from the request are {@link #TEMPLATE_PARAMETER}
+   * placeholders.
+   */
+  public List<QueryModel> searchTemplateShapes() {
+    List<AccessPolicyRequestDTO> accessPolicies =
+        List.of(
+            new AccessPolicyRequestDTO(null, false),
+            new AccessPolicyRequestDTO(TEMPLATE_PARAMETER, false),
+            new AccessPolicyRequestDTO(TEMPLATE_PARAMETER, true));
+    SearchCriteriaDTO criterion =
+        new SearchCriteriaDTO(TEMPLATE_PARAMETER, TERM, List.of(TEMPLATE_PARAMETER));
+    List<SearchCriteriaDTO> criteria = List.of(criterion, criterion);
+
+    List<QueryModel> shapes = new ArrayList<>();
+    for (AccessPolicyRequestDTO accessPolicy : accessPolicies) {
+      for (boolean fuzzy : List.of(false, true)) {
+        TextSearchRequestDTO text = new TextSearchRequestDTO(TEMPLATE_PARAMETER, fuzzy, false);
+        shapes.add(shape(SEARCH_TYPE_TEXT, text, null, accessPolicy));
+        shapes.add(shape(SEARCH_TYPE_CRITERIA + SEARCH_TYPE_TEXT, text, criteria.subList(0, 1),
+            accessPolicy));
       }
-      finalQuery.setAggregations(aggs);
+      shapes.add(shape(SEARCH_TYPE_CRITERIA, null, criteria.subList(0, 1), accessPolicy));
+      shapes.add(shape(SEARCH_TYPE_CRITERIA, null, criteria, accessPolicy));
     }
+    return shapes;
+  }
 
-    if (request.getPage() != null) {
-      finalQuery.setLimit(String.valueOf(size));
+  private QueryModel shape(
+      String searchType,
+      TextSearchRequestDTO text,
+      List<SearchCriteriaDTO> criteria,
+      AccessPolicyRequestDTO accessPolicy) {
+    QueryDecoderRequestDTO request =
+        new QueryDecoderRequestDTO(
+            searchType,
+            null,
+            null,
+            null,
+            null,
+            text,
+            new SearchCriteriaRequestDTO(criteria, null),
+            accessPolicy,
+            null,
+            null,
+            null);
+    return getQueryModel(request).getQueries();
+  }
+
+  /** Terms aggregation over the keyword field of a filter, named after the filter. */
+  private static QueryModel termsAggregation(String filter, int size) {
+    Map<String, Object> aggParams = Map.of(FIELD, filter + KEYWORD_KEY, SIZE_KEY, size);
+    QueryModel agg = new QueryModel();
+    agg.setAggregationType(AggregationType.TERMS);
+    agg.setAggregationName(filter);
+    agg.setAggregationParameters(aggParams);
+    return agg;
+  }
+
+  /**
+   * The criteria with the term criteria on facet fields taken out. Their queries are collected by
+   * facet in {@code selected}, to be applied as a post filter instead.
+   */
+  private static SearchCriteriaRequestDTO withoutFacetCriteria(
+      SearchCriteriaRequestDTO request,
+      List<String> facets,
+      Map<String, List<QueryNode>> selected) {
+    if (request == null || request.getSearchCriteria() == null) {
+      return request;
     }
+    List<SearchCriteriaDTO> remaining = new ArrayList<>();
+    for (SearchCriteriaDTO criterion : request.getSearchCriteria()) {
+      String field = criterion.getField();
+      String facet =
+          field != null && field.endsWith(KEYWORD_KEY)
+              ? field.substring(0, field.length() - KEYWORD_KEY.length())
+              : field;
+      boolean term = criterion.getSearchType() == null || TERM.equals(criterion.getSearchType());
+      if (term && facets.contains(facet)) {
+        selected
+            .computeIfAbsent(facet, f -> new ArrayList<>())
+            .add(SearchCriteriaQueryDecorator.criterionQuery(criterion));
+      } else {
+        remaining.add(criterion);
+      }
+    }
+    return new SearchCriteriaRequestDTO(
+        remaining.isEmpty() ? null : remaining, request.getFilter());
+  }
 
-    return finalQuery;
+  /**
+   * Counts the values of each facet field in the same search. The selected facet values filter the
+   * hits through a post filter, and every facet is counted under the selections on the other
+   * facets only, so picking a value does not hide the alternatives to it.
+   */
+  private static void addFacets(
+      QueryModel query, List<String> facets, Map<String, List<QueryNode>> selected) {
+    List<QueryModel> aggregations = new ArrayList<>(facets.size());
+    for (String facet : facets) {
+      QueryModel terms = termsAggregation(facet, FILTER_PAGINATION_SIZE - 1);
+      List<QueryNode> others = new ArrayList<>();
+      selected.forEach(
+          (field, queries) -> {
+            if (!field.equals(facet)) {
+              others.addAll(queries);
+            }
+          });
+      if (others.isEmpty()) {
+        aggregations.add(terms);
+      } else {
+        QueryModel filtered = new QueryModel();
+        filtered.setAggregationType(AggregationType.FILTER);
+        filtered.setAggregationName(facet);
+        filtered.setAggregationParameters(Map.of());
+        filtered.setQueries(new QueryNode.Bool(null, null, null, others, null).toModel());
+        filtered.setAggregationsMap(Map.of(facet, terms));
+        aggregations.add(filtered);
+      }
+    }
+    query.setAggregations(aggregations);
+    if (!selected.isEmpty()) {
+      List<QueryNode> all = new ArrayList<>();
+      selected.values().forEach(all::addAll);
+      query.setPostFilter(new QueryNode.Bool(null, null, null, all, null).toModel());
+    }
   }
 
-  private QueryModel buildUploadStatusExclusion(String itemType) {
-    return new QueryModel(QueryType.BOOL)
-        .setMustQueries(
-            List.of(
-                new QueryModel(QueryType.TERM)
-                    .setQueryParameters(
-                        Map.of(
-                            FIELD, TYPE_KEYWORD,
-                            VALUE, itemType)),
-                new QueryModel(QueryType.TERM)
-                    .setQueryParameters(Map.of(FIELD, DATA_UPLOAD_STATUS, VALUE, false))));
+  private void addUploadStatusExclusions(Map<FilterType, List<QueryModel>> queryMap) {
+    queryMap.get(FilterType.MUST_NOT).add(QueryFragments.DATA_BANK_UPLOAD_PENDING.toModel());
+    queryMap.get(FilterType.MUST_NOT).add(QueryFragments.AI_MODEL_UPLOAD_PENDING.toModel());
   }
 
   private QueryModel buildGetParentObjectInfoQuery(QueryDecoderRequestDTO request) {
@@ -150,51 +420,69 @@ public class QueryDecoder {
       "cos",
       "cos_admin"
     };
-    List<QueryModel> mustQueries =
-        List.of(
-            new QueryModel(QueryType.TERM)
-                .setQueryParameters(Map.of(FIELD, ID_KEYWORD, VALUE, id)));
-    QueryModel boolQuery = new QueryModel(QueryType.BOOL);
-    boolQuery.setMustQueries(mustQueries);
+    QueryModel boolQuery = QueryNode.Bool.filter(new QueryNode.Term(ID_KEYWORD, id)).toModel();
     boolQuery.setIncludeFields(Arrays.asList(fields));
     return boolQuery;
   }
 
   public QueryModel buildGetItemWithNameExistsQuery(String type, String name) {
-    QueryModel typeMatchQuery = new QueryModel(QueryType.MATCH);
-    typeMatchQuery.setQueryParameters(Map.of(FIELD, TYPE_KEY, VALUE, type));
-    QueryModel nameMatchQuery = new QueryModel(QueryType.MATCH);
-    nameMatchQuery.setQueryParameters(Map.of(FIELD, NAME + KEYWORD_KEY, VALUE, name));
+    return QueryNode.Bool.filter(
+            new QueryNode.Term(TYPE_KEYWORD, type), new QueryNode.Term(NAME + KEYWORD_KEY, name))
+        .toModel();
+  }
 
-    QueryModel boolQuery = new QueryModel(QueryType.BOOL);
-    boolQuery.setMustQueries(List.of(typeMatchQuery, nameMatchQuery));
-    return boolQuery;
+  /** Looks up which of the given names are already taken by items of the type, in one query. */
+  public QueryModel buildExistingItemNamesQuery(String type, List<String> names) {
+    QueryNode boolQuery =
+        new QueryNode.Bool(
+            null,
+            null,
+            null,
+            List.of(
+                new QueryNode.Term(TYPE_KEYWORD, type),
+                new QueryNode.Terms(NAME + KEYWORD_KEY, names)),
+            null);
+
+    QueryModel queryModel = new QueryModel();
+    queryModel.setQueries(boolQuery.toModel());
+    queryModel.setIncludeFields(List.of(NAME));
+    queryModel.setLimit(String.valueOf(names.size()));
+    return queryModel;
   }
   public QueryModel getItemQueryModel(String id){
 
     QueryModel q = new QueryModel();
-
-    QueryModel boolQuery=new QueryModel(QueryType.BOOL);
-    QueryModel idTermQuery = new QueryModel(QueryType.TERM);
-    idTermQuery.setQueryParameters(Map.of(FIELD,ID_KEYWORD,VALUE,id));
-
-
-    boolQuery.setMustQueries(List.of(idTermQuery));
-    q.setQueries(boolQuery);
+    q.setQueries(QueryNode.Bool.filter(new QueryNode.Term(ID_KEYWORD, id)).toModel());
     return q;
   }
 
+  private QueryModel withoutQuery(Map<FilterType, List<QueryModel>> queryMap, QueryModel query) {
+    Map<FilterType, List<QueryModel>> remaining = new HashMap<>();
+    queryMap.forEach((filterType, queries) -> remaining.put(filterType, new ArrayList<>(queries)));
+    remaining.get(FilterType.MUST).removeIf(must -> must == query);
+    return getBoolQuery(remaining);
+  }
+
   private QueryModel getBoolQuery(Map<FilterType, List<QueryModel>> filterQueries) {
-    QueryModel boolQuery = new QueryModel(QueryType.BOOL);
-    for (Map.Entry<FilterType, List<QueryModel>> entry : filterQueries.entrySet()) {
-      switch (entry.getKey()) {
-        case MUST -> boolQuery.setMustQueries(entry.getValue());
-        case FILTER -> boolQuery.setFilterQueries(entry.getValue());
-        case MUST_NOT -> boolQuery.setMustNotQueries(entry.getValue());
-        case SHOULD -> boolQuery.setShouldQueries(entry.getValue());
-      }
+    return new QueryNode.Bool(
+            nodes(filterQueries.get(FilterType.MUST)),
+            nodes(filterQueries.get(FilterType.SHOULD)),
+            nodes(filterQueries.get(FilterType.MUST_NOT)),
+            nodes(filterQueries.get(FilterType.FILTER)),
+            null)
+        .toModel();
+  }
+
+  /** The query trees of the decorated queries, which were built as nodes, or null for none. */
+  private static List<QueryNode> nodes(List<QueryModel> queries) {
+    if (queries == null || queries.isEmpty()) {
+      return null;
     }
-    return boolQuery;
+    List<QueryNode> nodes = new ArrayList<>(queries.size());
+    for (QueryModel query : queries) {
+      nodes.add(QueryNode.of(query));
+    }
+    return nodes;
   }
 
   public QueryModel setCountAggregations() {
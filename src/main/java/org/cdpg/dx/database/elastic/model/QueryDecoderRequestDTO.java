@@ -14,6 +14,12 @@ public class QueryDecoderRequestDTO {
   private InstanceFilterRequestDTO instanceFilterRequest;
   private ResponseFilterRequestDTO responseFilterRequest;
   private List<OrderBy> sort;
+  private String cursor;
+  private boolean async;
+  private List<Double> queryVector;
+  private List<String> facets;
+  private String prefix;
+  private GeoSearchRequestDTO geoSearchRequest;
 
   public QueryDecoderRequestDTO(
       String searchType,
@@ -48,6 +54,59 @@ public class QueryDecoderRequestDTO {
     this.sort = sort;
   }
 
+  public String getCursor() {
+    return cursor;
+  }
+
+  public void setCursor(String cursor) {
+    this.cursor = cursor;
+  }
+
+  /** Whether the search is to be run in the background if it does not complete quickly. */
+  public boolean isAsync() {
+    return async;
+  }
+
+  public void setAsync(boolean async) {
+    this.async = async;
+  }
+
+  /** Embedding of the search, for semantic and hybrid searches; null for other searches. */
+  public List<Double> getQueryVector() {
+    return queryVector;
+  }
+
+  public void setQueryVector(List<Double> queryVector) {
+    this.queryVector = queryVector;
+  }
+
+  /** Fields whose values are counted alongside the hits; null when no facets are asked for. */
+  public List<String> getFacets() {
+    return facets;
+  }
+
+  public void setFacets(List<String> facets) {
+    this.facets = facets;
+  }
+
+  /** Start of the filter values listed; null to list every value. */
+  public String getPrefix() {
+    return prefix;
+  }
+
+  public void setPrefix(String prefix) {
+    this.prefix = prefix;
+  }
+
+  /** The shape the items are searched by; null for searches that are not geo searches. */
+  public GeoSearchRequestDTO getGeoSearchRequest() {
+    return geoSearchRequest;
+  }
+
+  public void setGeoSearchRequest(GeoSearchRequestDTO geoSearchRequest) {
+    this.geoSearchRequest = geoSearchRequest;
+  }
+
   public Integer getSize() {
     return size;
   }
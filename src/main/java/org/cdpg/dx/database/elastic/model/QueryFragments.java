@@ -0,0 +1,62 @@
+package org.cdpg.dx.database.elastic.model;
+
+import static org.cdpg.dx.database.elastic.util.Constants.*;
+import static org.cdpg.dx.tgdex.util.Constants.ITEM_TYPE_AI_MODEL;
+import static org.cdpg.dx.tgdex.util.Constants.ITEM_TYPE_DATA_BANK;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The fixed parts of the search queries: access policy matches and the upload status exclusions
+ * added to every search, built in the form {@link QueryRewriter} leaves them in.
+ *
+ * <p>Each fragment, and its rewritten form, is converted to its Elasticsearch query once. Any
+ * equal sub-tree met while a {@link QueryNode.Bool} is converted uses that query instead of
+ * building its own, so fragments that crossed the event bus as JSON are shared as well.
+ * Elasticsearch queries are immutable once built, so one instance serves every search.
+ */
+public final class QueryFragments {
+  private static final Map<QueryNode, Query> QUERIES = new HashMap<>();
+
+  public static final QueryNode OPEN_ACCESS =
+      intern(new QueryNode.Term(ACCESS_POLICY + KEYWORD_KEY, OPEN));
+  public static final QueryNode RESTRICTED_ACCESS =
+      intern(new QueryNode.Term(ACCESS_POLICY + KEYWORD_KEY, RESTRICTED));
+  public static final QueryNode PRIVATE_ACCESS =
+      intern(new QueryNode.Term(ACCESS_POLICY + KEYWORD_KEY, PRIVATE));
+
+  /** Open or restricted items, the alternatives to owning a private one. */
+  public static final QueryNode OPEN_OR_RESTRICTED_ACCESS =
+      intern(new QueryNode.Terms(ACCESS_POLICY + KEYWORD_KEY, List.of(OPEN, RESTRICTED)));
+
+  /** Data banks whose files are still being uploaded, which searches leave out. */
+  public static final QueryNode DATA_BANK_UPLOAD_PENDING =
+      intern(uploadPending(ITEM_TYPE_DATA_BANK));
+
+  /** AI models whose files are still being uploaded, which searches leave out. */
+  public static final QueryNode AI_MODEL_UPLOAD_PENDING = intern(uploadPending(ITEM_TYPE_AI_MODEL));
+
+  private QueryFragments() {}
+
+  /** The shared query of a node equal to one of the fragments, or null. */
+  static Query query(QueryNode node) {
+    return QUERIES.get(node);
+  }
+
+  private static QueryNode uploadPending(String itemType) {
+    return QueryNode.Bool.filter(
+        new QueryNode.Term(TYPE_KEYWORD, itemType),
+        new QueryNode.Term(DATA_UPLOAD_STATUS, "false"));
+  }
+
+  /** Shares the query of the fragment, both as built and as {@link QueryRewriter} leaves it. */
+  private static QueryNode intern(QueryNode node) {
+    QUERIES.put(node, node.toQuery());
+    QueryNode rewritten = QueryRewriter.rewrite(node);
+    QUERIES.put(rewritten, rewritten.toQuery());
+    return node;
+  }
+}
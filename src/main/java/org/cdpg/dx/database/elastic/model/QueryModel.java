@@ -15,7 +15,6 @@ import org.cdpg.dx.database.elastic.util.BoolOperator;
 import org.cdpg.dx.database.elastic.util.QueryType;
 
 import java.util.*;
-import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static org.cdpg.dx.database.elastic.util.Constants.*;
@@ -40,6 +39,10 @@ public class QueryModel {
   private List<QueryModel> filterQueries;
   private BoolOperator boolOperator;
 
+  // The query tree this model was built from, if any; the query fields above are only filled in
+  // from it when they are read, and setting any of them drops it
+  private QueryNode queryNode;
+
   // For aggregations
   private List<QueryModel> aggregations;
   private String aggregationName;
@@ -52,6 +55,18 @@ public class QueryModel {
   private List<String> excludeFields;
   private Map<String, String> sortFields; // Key: Field name, Value: Sort order ("asc" or "desc")
 
+  // For point-in-time cursor pagination
+  private String pitId;
+  private String pitKeepAlive;
+  private JsonArray searchAfter;
+  private Integer sliceId;
+  private Integer sliceMax;
+
+  // For approximate kNN search on the word vectors
+  private List<Double> knnVector;
+  private QueryModel knnFilter;
+  private QueryModel postFilter;
+
   // Field for storing the script source (the actual script)
   private String scriptSource;
 
@@ -144,6 +159,36 @@ public class QueryModel {
     this.queryType = queryType;
   }
 
+  /** A model of the query tree, converted from the tree rather than from its parameters. */
+  QueryModel(QueryNode queryNode) {
+    this.queryNode = queryNode;
+  }
+
+  /** The query tree this model was built from, or null if it was built from its parameters. */
+  QueryNode queryNode() {
+    return queryNode;
+  }
+
+  /** Fills in the query fields from the query tree, the first time they are read. */
+  private void readQueryNode() {
+    if (queryNode != null && queryType == null) {
+      QueryModel parameters = queryNode.toParameters();
+      queryType = parameters.queryType;
+      queryParameters = parameters.queryParameters;
+      mustQueries = parameters.mustQueries;
+      shouldQueries = parameters.shouldQueries;
+      mustNotQueries = parameters.mustNotQueries;
+      filterQueries = parameters.filterQueries;
+      minimumShouldMatch = parameters.minimumShouldMatch;
+    }
+  }
+
+  /** Drops the query tree before a query field is changed, which the tree would not reflect. */
+  private void dropQueryNode() {
+    readQueryNode();
+    queryNode = null;
+  }
+
   /**
    * Converts this model into a JsonObject.
    *
@@ -172,10 +217,12 @@ public class QueryModel {
   }
 
   public String getMinimumShouldMatch() {
+    readQueryNode();
     return minimumShouldMatch;
   }
 
   public void setMinimumShouldMatch(String minimumShouldMatch) {
+    dropQueryNode();
     this.minimumShouldMatch = minimumShouldMatch;
   }
 
@@ -188,18 +235,22 @@ public class QueryModel {
   }
 
   public QueryType getQueryType() {
+    readQueryNode();
     return queryType;
   }
 
   public void setQueryType(QueryType queryType) {
+    dropQueryNode();
     this.queryType = queryType;
   }
 
   public Map<String, Object> getQueryParameters() {
+    readQueryNode();
     return queryParameters;
   }
 
   public QueryModel setQueryParameters(Map<String, Object> queryParameters) {
+    dropQueryNode();
     this.queryParameters = queryParameters;
     return this;
   }
@@ -248,15 +299,18 @@ public class QueryModel {
   }
 
   public List<QueryModel> getMustQueries() {
+    readQueryNode();
     return mustQueries;
   }
 
   public QueryModel setMustQueries(List<QueryModel> mustQueries) {
+    dropQueryNode();
     this.mustQueries = mustQueries;
     return this;
   }
 
   public void addMustQuery(QueryModel mustQuery) {
+    dropQueryNode();
     if (this.mustQueries == null) {
       this.mustQueries = new ArrayList<>(); // Initialize the list if null
     }
@@ -264,18 +318,22 @@ public class QueryModel {
   }
 
   public void addAllMustQuery(List<QueryModel> mustQueries) {
+    dropQueryNode();
     this.mustQueries.addAll(mustQueries);
   }
 
   public List<QueryModel> getShouldQueries() {
+    readQueryNode();
     return shouldQueries;
   }
 
   public void setShouldQueries(List<QueryModel> shouldQueries) {
+    dropQueryNode();
     this.shouldQueries = shouldQueries;
   }
 
   public void addShouldQuery(QueryModel shouldQuery) {
+    dropQueryNode();
     if (this.shouldQueries == null) {
       this.shouldQueries = new ArrayList<>(); // Initialize the list if null
     }
@@ -283,14 +341,17 @@ public class QueryModel {
   }
 
   public List<QueryModel> getMustNotQueries() {
+    readQueryNode();
     return mustNotQueries;
   }
 
   public void setMustNotQueries(List<QueryModel> mustNotQueries) {
+    dropQueryNode();
     this.mustNotQueries = mustNotQueries;
   }
 
   public void addMustNotQuery(QueryModel mustNotQuery) {
+    dropQueryNode();
     if (this.mustNotQueries == null) {
       this.mustNotQueries = new ArrayList<>(); // Initialize the list if null
     }
@@ -298,14 +359,17 @@ public class QueryModel {
   }
 
   public List<QueryModel> getFilterQueries() {
+    readQueryNode();
     return filterQueries;
   }
 
   public void setFilterQueries(List<QueryModel> filterQueries) {
+    dropQueryNode();
     this.filterQueries = filterQueries;
   }
 
   public void addFilterQuery(QueryModel filterQuery) {
+    dropQueryNode();
     if (this.filterQueries == null) {
       this.filterQueries = new ArrayList<>(); // Initialize the list if null
     }
@@ -359,6 +423,79 @@ public class QueryModel {
   public void setSortFields(Map<String, String> sortFields) {
     this.sortFields = sortFields;
   }
+
+  public String getPitId() {
+    return pitId;
+  }
+
+  public void setPitId(String pitId) {
+    this.pitId = pitId;
+  }
+
+  public String getPitKeepAlive() {
+    return pitKeepAlive;
+  }
+
+  public void setPitKeepAlive(String pitKeepAlive) {
+    this.pitKeepAlive = pitKeepAlive;
+  }
+
+  public JsonArray getSearchAfter() {
+    return searchAfter;
+  }
+
+  public void setSearchAfter(JsonArray searchAfter) {
+    this.searchAfter = searchAfter;
+  }
+
+  public Integer getSliceId() {
+    return sliceId;
+  }
+
+  public void setSliceId(Integer sliceId) {
+    this.sliceId = sliceId;
+  }
+
+  public Integer getSliceMax() {
+    return sliceMax;
+  }
+
+  public void setSliceMax(Integer sliceMax) {
+    this.sliceMax = sliceMax;
+  }
+
+  /** Query vector of a kNN search over {@code _word_vector}, or null for other searches. */
+  public List<Double> getKnnVector() {
+    return knnVector;
+  }
+
+  public void setKnnVector(List<Double> knnVector) {
+    this.knnVector = knnVector;
+  }
+
+  /**
+   * Pre-filter of the kNN half of a hybrid search, whose {@link #getQueries} hold the text half.
+   * Null for a plain kNN search, which is filtered by its queries.
+   */
+  public QueryModel getKnnFilter() {
+    return knnFilter;
+  }
+
+  public void setKnnFilter(QueryModel knnFilter) {
+    this.knnFilter = knnFilter;
+  }
+
+  /**
+   * Filter applied to the hits after the aggregations are computed, so the selected facet values
+   * narrow the hits without narrowing the facet counts.
+   */
+  public QueryModel getPostFilter() {
+    return postFilter;
+  }
+
+  public void setPostFilter(QueryModel postFilter) {
+    this.postFilter = postFilter;
+  }
   public String getScriptSource() {
     return scriptSource;
   }
@@ -384,249 +521,25 @@ public class QueryModel {
   }
 
   /**
-   * Converts this QueryModel into an Elasticsearch Query object.
+   * Converts this QueryModel into an Elasticsearch Query object, rewritten by {@link
+   * QueryRewriter}.
    *
    * @return Elasticsearch Query object.
    * @throws UnsupportedOperationException if the query type is not supported.
    */
   public Query toElasticsearchQuery() {
-    LOGGER.debug("Converting QueryModel to Elasticsearch Query "+queryType);
-
-    if (this.queryType == null) {
+    if (this.queryNode == null && this.queryType == null) {
       LOGGER.error("Query type is null for QueryModel: {}", this.toJson());
       throw new IllegalArgumentException("Query type cannot be null");
     }
-    //  {
-//    "query": {
-//    "bool": {
-//      "must": [
-//      { "match": { "type": "dataset" }},
-//      { "match": { "name.keyword": "water-quality" }}
-//      ]
-//    }
-//  }
-//  }
-
     try {
-      switch (this.queryType) {
-        case MATCH_ALL:
-          return MatchAllQuery.of(m -> m)._toQuery();
-        case MATCH:
-          return MatchQuery.of(
-                  m -> {
-                    m.field((String) queryParameters.get(FIELD))
-                            .query(queryParameters.get(VALUE).toString());
-
-                    if (queryParameters.containsKey(FUZZY)) {
-                      m.fuzziness(queryParameters.get(FUZZY).toString());
-                    }
-
-                    if (queryParameters.containsKey(OPERATOR)) {
-                      m.operator(Operator.valueOf(queryParameters.get(OPERATOR).toString()));
-                    }
-                    return m;
-                  }
-          )._toQuery();
-        case MATCH_PHRASE:
-          return MatchPhraseQuery.of(
-                  mp -> mp.field((String) queryParameters.get(FIELD))
-                          .query(queryParameters.get(VALUE).toString())
-          )._toQuery();
-        case TERM:
-          return TermQuery.of(
-                          t ->
-                                  t.field((String) queryParameters.get(FIELD))
-                                          .value(queryParameters.get(VALUE).toString()))
-                  ._toQuery();
-        case TERMS:
-          // Ensure the value is a List<String>
-          List<String> termsValues;
-          if (queryParameters.get(VALUE) instanceof JsonArray) {
-            termsValues = ((JsonArray) queryParameters.get(VALUE)).getList();
-          } else {
-            termsValues = List.of((String) queryParameters.get(VALUE));
-          }
-          // Convert the list to FieldValue and wrap in TermsQueryField
-          TermsQueryField termsQueryField =
-                  new TermsQueryField.Builder()
-                          .value(termsValues.stream().map(FieldValue::of).collect(Collectors.toList()))
-                          .build();
-
-          return TermsQuery.of(
-                          t -> t.field((String) queryParameters.get(FIELD)).terms(termsQueryField))
-                  ._toQuery();
-        case BOOL:
-          return BoolQuery.of(
-                          b -> {
-                            if (this.mustQueries != null) {
-                              b.must(
-                                      this.mustQueries.stream()
-                                              .map(QueryModel::toElasticsearchQuery)
-                                              .collect(Collectors.toList()));
-                            }
-                            if (this.shouldQueries != null) {
-                              b.should(
-                                      this.shouldQueries.stream()
-                                              .map(QueryModel::toElasticsearchQuery)
-                                              .collect(Collectors.toList()));
-                            }
-                            if (this.minimumShouldMatch != null) {
-                              b.minimumShouldMatch(this.minimumShouldMatch);
-                            }
-                            if (this.mustNotQueries != null) {
-                              b.mustNot(
-                                      this.mustNotQueries.stream()
-                                              .map(QueryModel::toElasticsearchQuery)
-                                              .collect(Collectors.toList()));
-                            }
-                            if (this.filterQueries != null) {
-                              b.filter(
-                                      this.filterQueries.stream()
-                                              .map(QueryModel::toElasticsearchQuery)
-                                              .collect(Collectors.toList()));
-                            }
-                            return b;
-                          })
-                  ._toQuery();
-        case WILDCARD:
-          return WildcardQuery.of(
-                  w -> {
-                    w.field((String) queryParameters.get(FIELD))
-                            .value((String) queryParameters.get(VALUE));
-                    if (Boolean.TRUE.equals(queryParameters.get(CASE_INSENSITIVE))) {
-                      w.caseInsensitive(true);
-                    }
-                    return w;
-                  }
-          )._toQuery();
-        case GEO_BOUNDING_BOX:
-          return GeoBoundingBoxQuery.of(g -> g
-                  .field((String) queryParameters.get(FIELD))
-                  .boundingBox(bb -> bb
-                          .tlbr(tlbr -> tlbr
-                                  .topLeft(GeoLocation.of(gl -> gl.latlon(LatLonGeoLocation.of(latLon -> latLon
-                                          .lat((Double) queryParameters.get("top_left_lat"))
-                                          .lon((Double) queryParameters.get("top_left_lon"))))))
-                                  .bottomRight(
-                                          GeoLocation.of(gl -> gl.latlon(LatLonGeoLocation.of(latLon -> latLon
-                                                  .lat((Double) queryParameters.get("bottom_right_lat"))
-                                                  .lon((Double) queryParameters.get("bottom_right_lon"))))))))
-          )._toQuery();
-        case GEO_SHAPE:
-          JsonObject geoJson = new JsonObject();
-          geoJson.put(TYPE, queryParameters.get(TYPE).toString());
-          geoJson.put(COORDINATES, queryParameters.get(COORDINATES));
-          if (Objects.equals(queryParameters.get(TYPE).toString(), GEO_CIRCLE)) {
-            geoJson.put("radius", queryParameters.get("radius"));
-          }
-          String relation = queryParameters.get("relation").toString();
-          String formattedRelation =
-                  relation.substring(0, 1).toUpperCase() + relation.substring(1).toLowerCase();
-
-          GeoShapeFieldQuery geoShapeFieldQuery =
-                  new GeoShapeFieldQuery.Builder()
-                          .shape(JsonData.fromJson(geoJson.toString()))
-                          .relation(GeoShapeRelation.valueOf(formattedRelation))
-                          .build();
-          return QueryBuilders.geoShape(
-                  g -> g.field((String) queryParameters.get(GEO_PROPERTY)).shape(geoShapeFieldQuery));
-        case TEXT:
-          return QueryStringQuery.of(qs -> qs.query(queryParameters.get(Q_VALUE).toString()))
-                  ._toQuery();
-        case MULTI_MATCH:
-          return MultiMatchQuery.of(m -> {
-            m.query((String) queryParameters.get("query"))
-                    .fields(((JsonArray) queryParameters.get("fields")).getList())
-                    .fuzziness((String) queryParameters.getOrDefault("fuzziness", null))
-//                    .type(TextQueryType.valueOf((String)queryParameters.getOrDefault("type",null) ))
-                    .boost(Float.parseFloat((String) queryParameters.getOrDefault("boost", "1.0")));
-            if(queryParameters.get("type")!=null){
-                                 m.type(TextQueryType.valueOf((String)queryParameters.get("type")));
-            }
-            return m;
-          })._toQuery();
-
-        case SCRIPT_SCORE:
-          // Add the script_score query here
-          JsonArray queryVector = (JsonArray) queryParameters.get("query_vector");
-          List<Double> vectorList = queryVector.getList();
-          String vectorString = new JsonArray(vectorList).encode();
-          // Create a map for script parameters
-          Map<String, JsonData> params = new HashMap<>();
-          params.put("query_vector", JsonData.fromJson(vectorString));
-          // Use MatchAllQuery if custom query is not provided
-          QueryModel customQueryModel = null;
-          if (queryParameters.get("custom_query") != null) {
-            customQueryModel =
-                    new QueryModel(JsonObject.mapFrom(queryParameters.get("custom_query")));
-          }
-          Query baseQuery = (customQueryModel != null)
-                  ? customQueryModel.toElasticsearchQuery()
-                  : MatchAllQuery.of(m -> m)._toQuery();
-          return ScriptScoreQuery.of(ssq -> ssq
-                  .query(baseQuery)
-                  .script(s -> s.source(
-                                  "doc['_word_vector'].size() == 0 "
-                                          + "? 0 : "
-                                          + "cosineSimilarity(params.query_vector, '_word_vector') + 1.0")
-                          .lang("painless")
-                          .params(params))
-          )._toQuery();
-        case QUERY_STRING:
-          return QueryStringQuery.of(
-                          qs -> {
-                            qs.query(queryParameters.get("query").toString());
-                            if (queryParameters.containsKey("default_field")) {
-                              qs.defaultField(queryParameters.get("default_field").toString());
-                            }
-                            if (queryParameters.containsKey("fields")) {
-                              List<String> fields = (List<String>) queryParameters.get("fields");
-                              qs.fields(fields);
-                            }
-                            if (queryParameters.containsKey("analyzer")) {
-                              qs.analyzer(queryParameters.get("analyzer").toString());
-                            }
-                            if (queryParameters.containsKey("default_operator")) {
-                              String operator =
-                                      queryParameters.get("default_operator").toString().toUpperCase();
-                              qs.defaultOperator(Operator.valueOf(operator));
-                            }
-                            return qs;
-                          })
-                  ._toQuery();
-        case RANGE:
-          return RangeQuery.of(
-                  r -> r.date(DateRangeQuery.of(
-                          dr -> {
-                            DateRangeQuery.Builder builder = new DateRangeQuery.Builder()
-                                    .field(queryParameters.get(FIELD).toString());
-
-                              Map<String, Consumer<String>> rangeConditions = Map.of(
-                                    GREATER_THAN_EQUALS, builder::gte,
-                                    LESS_THAN_EQUALS, builder::lte,
-                                    GREATER_THAN, builder::gt,
-                                      LESS_THAN, builder::lt
-                            );
-
-                            rangeConditions.forEach((key, setter) -> {
-
-                              if (queryParameters.containsKey(key)) {
-                                setter.accept(queryParameters.get(key).toString());
-                              }
-                            });
-
-                            return builder;
-                          })
-                  ))._toQuery();
-
-        default:
-          throw new UnsupportedOperationException("Query type not supported: " + this.queryType);
-      }
+      return QueryRewriter.rewrite(QueryNode.of(this)).toQuery();
     } catch (Exception e) {
       LOGGER.error("Error while creating Elasticsearch Query for QueryModel: {}", this.toJson(), e);
       throw new RuntimeException("Failed to convert QueryModel to Elasticsearch Query", e);
     }
   }
+
   /**
    * Converts this QueryModel into an Elasticsearch Aggregation object.
    *
@@ -680,6 +593,32 @@ public class QueryModel {
             .collect(Collectors.toList());
   }
 
+  /**
+   * Converts the search_after values of this QueryModel into Elasticsearch field values.
+   *
+   * @return List of FieldValue objects, or null if no search_after values are set.
+   */
+  public List<FieldValue> toSearchAfter() {
+    if (searchAfter == null || searchAfter.isEmpty()) {
+      return null;
+    }
+    List<FieldValue> values = new ArrayList<>();
+    for (Object value : searchAfter) {
+      if (value == null) {
+        values.add(FieldValue.NULL);
+      } else if (value instanceof Double || value instanceof Float) {
+        values.add(FieldValue.of(((Number) value).doubleValue()));
+      } else if (value instanceof Number number) {
+        values.add(FieldValue.of(number.longValue()));
+      } else if (value instanceof Boolean bool) {
+        values.add(FieldValue.of(bool));
+      } else {
+        values.add(FieldValue.of(value.toString()));
+      }
+    }
+    return values;
+  }
+
   /**
    * Converts this QueryModel's script configuration into an Elasticsearch Script object.
    *
@@ -0,0 +1,668 @@
+package org.cdpg.dx.database.elastic.model;
+
+import static org.cdpg.dx.database.elastic.util.Constants.*;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.GeoShapeRelation;
+import co.elastic.clients.elasticsearch._types.query_dsl.*;
+import co.elastic.clients.json.JsonData;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.cdpg.dx.database.elastic.util.QueryType;
+
+/**
+ * Typed, immutable form of the query tree in a {@link QueryModel}, one record per query type.
+ *
+ * <p>The decoders build queries as nodes and hand them on in the {@link QueryModel} of {@link
+ * #toModel}, which keeps the node: converting that model converts the node, and its parameter maps
+ * are only filled in if they are read, as when the model is written to JSON for the event bus. A
+ * model read back from JSON has no node, and {@link #of} builds one from its parameters. Either
+ * way the parameters are read and checked once, when a node is built, rather than cast out of the
+ * parameter map while the Elasticsearch query is built.
+ *
+ * <p>Nodes are values: equal trees are equal nodes. This is what lets the fixed parts of every
+ * search, kept in {@link QueryFragments}, be converted once and shared.
+ */
+public sealed interface QueryNode {
+
+  /** The Elasticsearch query for this node. */
+  Query toQuery();
+
+  /** The node as a query model, which keeps the node for conversion. */
+  default QueryModel toModel() {
+    return new QueryModel(this);
+  }
+
+  /** The node as a query model with the parameters the decorators have always used. */
+  QueryModel toParameters();
+
+  default JsonObject toJson() {
+    return toModel().toJson();
+  }
+
+  static QueryNode fromJson(JsonObject json) {
+    return of(new QueryModel(json));
+  }
+
+  /**
+   * The query tree of a model.
+   *
+   * @throws IllegalArgumentException if a query in the tree has no type
+   * @throws UnsupportedOperationException if a query in the tree has a type without a node
+   */
+  static QueryNode of(QueryModel model) {
+    QueryNode node = model.queryNode();
+    if (node != null) {
+      return node;
+    }
+    QueryType type = model.getQueryType();
+    if (type == null) {
+      throw new IllegalArgumentException("Query type cannot be null");
+    }
+    Map<String, Object> params = model.getQueryParameters();
+    switch (type) {
+      case MATCH_ALL:
+        return MatchAll.INSTANCE;
+      case MATCH:
+        return new Match(
+            (String) params.get(FIELD),
+            params.get(VALUE).toString(),
+            params.containsKey(FUZZY) ? params.get(FUZZY).toString() : null,
+            params.containsKey(OPERATOR)
+                ? Operator.valueOf(params.get(OPERATOR).toString())
+                : null);
+      case MATCH_PHRASE:
+        return new MatchPhrase((String) params.get(FIELD), params.get(VALUE).toString());
+      case TERM:
+        return new Term((String) params.get(FIELD), params.get(VALUE).toString());
+      case TERMS:
+        return new Terms((String) params.get(FIELD), stringList(params.get(VALUE)));
+      case BOOL:
+        return new Bool(
+            of(model.getMustQueries()),
+            of(model.getShouldQueries()),
+            of(model.getMustNotQueries()),
+            of(model.getFilterQueries()),
+            model.getMinimumShouldMatch());
+      case WILDCARD:
+        return new Wildcard(
+            (String) params.get(FIELD),
+            (String) params.get(VALUE),
+            Boolean.TRUE.equals(params.get(CASE_INSENSITIVE)));
+      case GEO_BOUNDING_BOX:
+        return new GeoBoundingBox(
+            (String) params.get(FIELD),
+            ((Number) params.get("top_left_lat")).doubleValue(),
+            ((Number) params.get("top_left_lon")).doubleValue(),
+            ((Number) params.get("bottom_right_lat")).doubleValue(),
+            ((Number) params.get("bottom_right_lon")).doubleValue());
+      case GEO_SHAPE:
+        String relation = params.get("relation").toString();
+        return new GeoShape(
+            (String) params.get(GEO_PROPERTY),
+            params.get(TYPE).toString(),
+            params.get(COORDINATES),
+            params.get("radius"),
+            GeoShapeRelation.valueOf(
+                relation.substring(0, 1).toUpperCase() + relation.substring(1).toLowerCase()));
+      case TEXT:
+        return new Text(params.get(Q_VALUE).toString());
+      case MULTI_MATCH:
+        return new MultiMatch(
+            (String) params.get("query"),
+            stringList(params.get("fields")),
+            (String) params.get("fuzziness"),
+            params.get("type") == null ? null : TextQueryType.valueOf((String) params.get("type")),
+            Float.parseFloat(params.getOrDefault("boost", "1.0").toString()),
+            intOrNull(params.get(PREFIX_LENGTH)),
+            intOrNull(params.get(MAX_EXPANSIONS)));
+      case SCRIPT_SCORE:
+        Object customQuery = params.get("custom_query");
+        return new ScriptScore(
+            doubleList(params.get("query_vector")),
+            customQuery == null
+                ? null
+                : of(new QueryModel(
+                    customQuery instanceof JsonObject json ? json : JsonObject.mapFrom(customQuery))));
+      case QUERY_STRING:
+        return new QueryString(
+            params.get("query").toString(),
+            params.containsKey("default_field") ? params.get("default_field").toString() : null,
+            params.containsKey("fields") ? stringList(params.get("fields")) : null,
+            params.containsKey("analyzer") ? params.get("analyzer").toString() : null,
+            params.containsKey("default_operator")
+                ? Operator.valueOf(params.get("default_operator").toString().toUpperCase())
+                : null);
+      case SIMPLE_QUERY_STRING:
+        List<String> flags = stringList(params.get("flags"));
+        List<SimpleQueryStringFlag> operators = new ArrayList<>(flags.size());
+        for (String flag : flags) {
+          operators.add(SimpleQueryStringFlag.valueOf(flag));
+        }
+        return new SimpleQueryString(
+            params.get("query").toString(),
+            stringList(params.get("fields")),
+            Operator.valueOf(params.get("default_operator").toString()),
+            operators,
+            ((Number) params.get(PREFIX_LENGTH)).intValue(),
+            ((Number) params.get(MAX_EXPANSIONS)).intValue());
+      case RANGE:
+        return new Range(
+            params.get(FIELD).toString(),
+            stringOrNull(params.get(GREATER_THAN_EQUALS)),
+            stringOrNull(params.get(LESS_THAN_EQUALS)),
+            stringOrNull(params.get(GREATER_THAN)),
+            stringOrNull(params.get(LESS_THAN)));
+      default:
+        throw new UnsupportedOperationException("Query type not supported: " + type);
+    }
+  }
+
+  private static List<QueryNode> of(List<QueryModel> models) {
+    if (models == null) {
+      return null;
+    }
+    List<QueryNode> nodes = new ArrayList<>(models.size());
+    for (QueryModel model : models) {
+      nodes.add(of(model));
+    }
+    return nodes;
+  }
+
+  /**
+   * A list parameter as strings. Parameters are lists when the model is built in this process and
+   * JSON arrays once it has crossed the event bus; a single value is read as a one-element list.
+   */
+  @SuppressWarnings("unchecked")
+  private static List<String> stringList(Object value) {
+    if (value instanceof JsonArray array) {
+      return array.getList();
+    }
+    if (value instanceof List<?> list) {
+      return (List<String>) list;
+    }
+    return List.of((String) value);
+  }
+
+  private static List<Double> doubleList(Object value) {
+    List<?> list = value instanceof JsonArray array ? array.getList() : (List<?>) value;
+    List<Double> doubles = new ArrayList<>(list.size());
+    for (Object element : list) {
+      doubles.add(((Number) element).doubleValue());
+    }
+    return doubles;
+  }
+
+  private static String stringOrNull(Object value) {
+    return value == null ? null : value.toString();
+  }
+
+  private static Integer intOrNull(Object value) {
+    return value == null ? null : ((Number) value).intValue();
+  }
+
+  private static QueryModel model(QueryType type, Object... keysAndValues) {
+    Map<String, Object> params = new HashMap<>();
+    for (int i = 0; i < keysAndValues.length; i += 2) {
+      if (keysAndValues[i + 1] != null) {
+        params.put((String) keysAndValues[i], keysAndValues[i + 1]);
+      }
+    }
+    return new QueryModel(type).setQueryParameters(params);
+  }
+
+  record MatchAll() implements QueryNode {
+    static final MatchAll INSTANCE = new MatchAll();
+    private static final Query QUERY = MatchAllQuery.of(m -> m)._toQuery();
+
+    @Override
+    public Query toQuery() {
+      return QUERY;
+    }
+
+    @Override
+    public QueryModel toParameters() {
+      return new QueryModel(QueryType.MATCH_ALL);
+    }
+  }
+
+  /** A match query; {@code fuzziness} and {@code operator} are optional. */
+  record Match(String field, String value, String fuzziness, Operator operator)
+      implements QueryNode {
+    public Match(String field, String value) {
+      this(field, value, null, null);
+    }
+
+    @Override
+    public Query toQuery() {
+      return MatchQuery.of(
+              m -> {
+                m.field(field).query(value);
+                if (fuzziness != null) {
+                  m.fuzziness(fuzziness);
+                }
+                if (operator != null) {
+                  m.operator(operator);
+                }
+                return m;
+              })
+          ._toQuery();
+    }
+
+    @Override
+    public QueryModel toParameters() {
+      return model(QueryType.MATCH, FIELD, field, VALUE, value, FUZZY, fuzziness,
+          OPERATOR, operator == null ? null : operator.name());
+    }
+  }
+
+  record MatchPhrase(String field, String value) implements QueryNode {
+    @Override
+    public Query toQuery() {
+      return MatchPhraseQuery.of(mp -> mp.field(field).query(value))._toQuery();
+    }
+
+    @Override
+    public QueryModel toParameters() {
+      return model(QueryType.MATCH_PHRASE, FIELD, field, VALUE, value);
+    }
+  }
+
+  record Term(String field, String value) implements QueryNode {
+    @Override
+    public Query toQuery() {
+      return TermQuery.of(t -> t.field(field).value(value))._toQuery();
+    }
+
+    @Override
+    public QueryModel toParameters() {
+      return model(QueryType.TERM, FIELD, field, VALUE, value);
+    }
+  }
+
+  record Terms(String field, List<String> values) implements QueryNode {
+    public Terms {
+      values = List.copyOf(values);
+    }
+
+    @Override
+    public Query toQuery() {
+      List<FieldValue> fieldValues = new ArrayList<>(values.size());
+      for (String value : values) {
+        fieldValues.add(FieldValue.of(value));
+      }
+      return TermsQuery.of(t -> t.field(field).terms(tf -> tf.value(fieldValues)))._toQuery();
+    }
+
+    @Override
+    public QueryModel toParameters() {
+      return model(QueryType.TERMS, FIELD, field, VALUE, new JsonArray(new ArrayList<>(values)));
+    }
+  }
+
+  /** A bool query. Clauses left out are null, which is not the same query as an empty clause. */
+  record Bool(
+      List<QueryNode> must,
+      List<QueryNode> should,
+      List<QueryNode> mustNot,
+      List<QueryNode> filter,
+      String minimumShouldMatch)
+      implements QueryNode {
+    public Bool {
+      must = must == null ? null : List.copyOf(must);
+      should = should == null ? null : List.copyOf(should);
+      mustNot = mustNot == null ? null : List.copyOf(mustNot);
+      filter = filter == null ? null : List.copyOf(filter);
+    }
+
+    public static Bool must(QueryNode... queries) {
+      return new Bool(List.of(queries), null, null, null, null);
+    }
+
+    public static Bool should(QueryNode... queries) {
+      return new Bool(null, List.of(queries), null, null, null);
+    }
+
+    public static Bool filter(QueryNode... queries) {
+      return new Bool(null, null, null, List.of(queries), null);
+    }
+
+    @Override
+    public Query toQuery() {
+      return BoolQuery.of(
+              b -> {
+                if (must != null) {
+                  b.must(toQueries(must));
+                }
+                if (should != null) {
+                  b.should(toQueries(should));
+                }
+                if (minimumShouldMatch != null) {
+                  b.minimumShouldMatch(minimumShouldMatch);
+                }
+                if (mustNot != null) {
+                  b.mustNot(toQueries(mustNot));
+                }
+                if (filter != null) {
+                  b.filter(toQueries(filter));
+                }
+                return b;
+              })
+          ._toQuery();
+    }
+
+    private static List<Query> toQueries(List<QueryNode> nodes) {
+      List<Query> queries = new ArrayList<>(nodes.size());
+      for (QueryNode node : nodes) {
+        Query shared = QueryFragments.query(node);
+        queries.add(shared != null ? shared : node.toQuery());
+      }
+      return queries;
+    }
+
+    @Override
+    public QueryModel toParameters() {
+      QueryModel model = new QueryModel(QueryType.BOOL);
+      model.setMustQueries(toModels(must));
+      model.setShouldQueries(toModels(should));
+      model.setMustNotQueries(toModels(mustNot));
+      model.setFilterQueries(toModels(filter));
+      model.setMinimumShouldMatch(minimumShouldMatch);
+      return model;
+    }
+
+    private static List<QueryModel> toModels(List<QueryNode> nodes) {
+      if (nodes == null) {
+        return null;
+      }
+      List<QueryModel> models = new ArrayList<>(nodes.size());
+      for (QueryNode node : nodes) {
+        models.add(node.toModel());
+      }
+      return models;
+    }
+  }
+
+  record Wildcard(String field, String value, boolean caseInsensitive) implements QueryNode {
+    @Override
+    public Query toQuery() {
+      return WildcardQuery.of(
+              w -> {
+                w.field(field).value(value);
+                if (caseInsensitive) {
+                  w.caseInsensitive(true);
+                }
+                return w;
+              })
+          ._toQuery();
+    }
+
+    @Override
+    public QueryModel toParameters() {
+      return model(QueryType.WILDCARD, FIELD, field, VALUE, value,
+          CASE_INSENSITIVE, caseInsensitive ? Boolean.TRUE : null);
+    }
+  }
+
+  record GeoBoundingBox(
+      String field,
+      double topLeftLat,
+      double topLeftLon,
+      double bottomRightLat,
+      double bottomRightLon)
+      implements QueryNode {
+    @Override
+    public Query toQuery() {
+      return GeoBoundingBoxQuery.of(
+              g -> g.field(field)
+                  .boundingBox(bb -> bb.tlbr(tlbr -> tlbr
+                      .topLeft(tl -> tl.latlon(ll -> ll.lat(topLeftLat).lon(topLeftLon)))
+                      .bottomRight(
+                          br -> br.latlon(ll -> ll.lat(bottomRightLat).lon(bottomRightLon))))))
+          ._toQuery();
+    }
+
+    @Override
+    public QueryModel toParameters() {
+      return model(QueryType.GEO_BOUNDING_BOX, FIELD, field,
+          "top_left_lat", topLeftLat, "top_left_lon", topLeftLon,
+          "bottom_right_lat", bottomRightLat, "bottom_right_lon", bottomRightLon);
+    }
+  }
+
+  /** A GeoJSON shape query; {@code radius} only applies to circles. */
+  record GeoShape(
+      String field, String type, Object coordinates, Object radius, GeoShapeRelation relation)
+      implements QueryNode {
+    @Override
+    public Query toQuery() {
+      JsonObject geoJson = new JsonObject().put(TYPE, type).put(COORDINATES, coordinates);
+      if (GEO_CIRCLE.equals(type)) {
+        geoJson.put("radius", radius);
+      }
+      return QueryBuilders.geoShape(
+          g -> g.field(field)
+              .shape(s -> s.shape(JsonData.fromJson(geoJson.encode())).relation(relation)));
+    }
+
+    @Override
+    public QueryModel toParameters() {
+      return model(QueryType.GEO_SHAPE, GEO_PROPERTY, field, TYPE, type,
+          COORDINATES, coordinates, "radius", radius,
+          "relation", relation.jsonValue());
+    }
+  }
+
+  /** Free text in query string syntax. */
+  record Text(String q) implements QueryNode {
+    @Override
+    public Query toQuery() {
+      return QueryStringQuery.of(qs -> qs.query(q))._toQuery();
+    }
+
+    @Override
+    public QueryModel toParameters() {
+      return model(QueryType.TEXT, Q_VALUE, q);
+    }
+  }
+
+  /**
+   * A multi_match query; {@code fuzziness}, {@code type} and the limits on how far fuzzy and prefix
+   * terms expand are optional.
+   */
+  record MultiMatch(
+      String query,
+      List<String> fields,
+      String fuzziness,
+      TextQueryType type,
+      float boost,
+      Integer prefixLength,
+      Integer maxExpansions)
+      implements QueryNode {
+    public MultiMatch {
+      fields = List.copyOf(fields);
+    }
+
+    public MultiMatch(
+        String query, List<String> fields, String fuzziness, TextQueryType type, float boost) {
+      this(query, fields, fuzziness, type, boost, null, null);
+    }
+
+    @Override
+    public Query toQuery() {
+      return MultiMatchQuery.of(
+              m -> {
+                m.query(query).fields(fields).fuzziness(fuzziness).boost(boost);
+                if (type != null) {
+                  m.type(type);
+                }
+                if (prefixLength != null) {
+                  m.prefixLength(prefixLength);
+                }
+                if (maxExpansions != null) {
+                  m.maxExpansions(maxExpansions);
+                }
+                return m;
+              })
+          ._toQuery();
+    }
+
+    @Override
+    public QueryModel toParameters() {
+      return model(QueryType.MULTI_MATCH, "query", query, "fields", new ArrayList<>(fields),
+          "fuzziness", fuzziness, "type", type == null ? null : type.name(),
+          "boost", String.valueOf(boost), PREFIX_LENGTH, prefixLength,
+          MAX_EXPANSIONS, maxExpansions);
+    }
+  }
+
+  /**
+   * A simple_query_string query, which never fails on bad syntax. Only the {@code operators} are
+   * read as syntax; other operator characters are searched as text.
+   */
+  record SimpleQueryString(
+      String query,
+      List<String> fields,
+      Operator defaultOperator,
+      List<SimpleQueryStringFlag> operators,
+      int prefixLength,
+      int maxExpansions)
+      implements QueryNode {
+    public SimpleQueryString {
+      fields = List.copyOf(fields);
+      operators = List.copyOf(operators);
+    }
+
+    @Override
+    public Query toQuery() {
+      return SimpleQueryStringQuery.of(
+              sqs -> sqs
+                  .query(query)
+                  .fields(fields)
+                  .defaultOperator(defaultOperator)
+                  .flags(operators.isEmpty() ? List.of(SimpleQueryStringFlag.None) : operators)
+                  .fuzzyPrefixLength(prefixLength)
+                  .fuzzyMaxExpansions(maxExpansions))
+          ._toQuery();
+    }
+
+    @Override
+    public QueryModel toParameters() {
+      List<String> flags = new ArrayList<>(operators.size());
+      for (SimpleQueryStringFlag operator : operators) {
+        flags.add(operator.name());
+      }
+      return model(QueryType.SIMPLE_QUERY_STRING, "query", query,
+          "fields", new ArrayList<>(fields), "default_operator", defaultOperator.name(),
+          "flags", flags, PREFIX_LENGTH, prefixLength, MAX_EXPANSIONS, maxExpansions);
+    }
+  }
+
+  /** Cosine similarity to the item vectors, over {@code query} or over all items if it is null. */
+  record ScriptScore(List<Double> queryVector, QueryNode query) implements QueryNode {
+    public ScriptScore {
+      queryVector = List.copyOf(queryVector);
+    }
+
+    @Override
+    public Query toQuery() {
+      Map<String, JsonData> params =
+          Map.of("query_vector", JsonData.fromJson(new JsonArray(queryVector).encode()));
+      return ScriptScoreQuery.of(
+              ssq -> ssq
+                  .query(query == null ? MatchAll.INSTANCE.toQuery() : query.toQuery())
+                  .script(s -> s.source(
+                          "doc['_word_vector'].size() == 0 "
+                              + "? 0 : "
+                              + "cosineSimilarity(params.query_vector, '_word_vector') + 1.0")
+                      .lang("painless")
+                      .params(params)))
+          ._toQuery();
+    }
+
+    @Override
+    public QueryModel toParameters() {
+      return model(QueryType.SCRIPT_SCORE,
+          "query_vector", new JsonArray(new ArrayList<>(queryVector)),
+          "custom_query", query == null ? null : query.toJson());
+    }
+  }
+
+  /** A query_string query; everything but the query is optional. */
+  record QueryString(
+      String query,
+      String defaultField,
+      List<String> fields,
+      String analyzer,
+      Operator defaultOperator)
+      implements QueryNode {
+    public QueryString {
+      fields = fields == null ? null : List.copyOf(fields);
+    }
+
+    @Override
+    public Query toQuery() {
+      return QueryStringQuery.of(
+              qs -> {
+                qs.query(query);
+                if (defaultField != null) {
+                  qs.defaultField(defaultField);
+                }
+                if (fields != null) {
+                  qs.fields(fields);
+                }
+                if (analyzer != null) {
+                  qs.analyzer(analyzer);
+                }
+                if (defaultOperator != null) {
+                  qs.defaultOperator(defaultOperator);
+                }
+                return qs;
+              })
+          ._toQuery();
+    }
+
+    @Override
+    public QueryModel toParameters() {
+      return model(QueryType.QUERY_STRING, "query", query, "default_field", defaultField,
+          "fields", fields == null ? null : new ArrayList<>(fields), "analyzer", analyzer,
+          "default_operator", defaultOperator == null ? null : defaultOperator.name());
+    }
+  }
+
+  /** A date range; bounds left out are null. */
+  record Range(String field, String gte, String lte, String gt, String lt) implements QueryNode {
+    @Override
+    public Query toQuery() {
+      return RangeQuery.of(
+              r -> r.date(
+                  d -> {
+                    d.field(field);
+                    if (gte != null) {
+                      d.gte(gte);
+                    }
+                    if (lte != null) {
+                      d.lte(lte);
+                    }
+                    if (gt != null) {
+                      d.gt(gt);
+                    }
+                    if (lt != null) {
+                      d.lt(lt);
+                    }
+                    return d;
+                  }))
+          ._toQuery();
+    }
+
+    @Override
+    public QueryModel toParameters() {
+      return model(QueryType.RANGE, FIELD, field, GREATER_THAN_EQUALS, gte,
+          LESS_THAN_EQUALS, lte, GREATER_THAN, gt, LESS_THAN, lt);
+    }
+  }
+}
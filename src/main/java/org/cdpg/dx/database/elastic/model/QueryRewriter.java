@@ -0,0 +1,403 @@
+package org.cdpg.dx.database.elastic.model;
+
+import static org.cdpg.dx.database.elastic.util.Constants.ACCESS_POLICY;
+import static org.cdpg.dx.database.elastic.util.Constants.KEYWORD_KEY;
+import static org.cdpg.dx.database.elastic.util.Constants.PROVIDER_USER_ID;
+import static org.cdpg.dx.database.elastic.util.Constants.TYPE_KEY;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.JsonpUtils;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites a query tree into a cheaper query that matches the same items. Applied to every query
+ * as it is converted for Elasticsearch, so the decorators can keep building queries the way that
+ * reads best.
+ *
+ * <ul>
+ *   <li>Clauses that do not score are moved from {@code must} to {@code filter}, where they are not
+ *       scored and Elasticsearch can cache them. Under {@code filter} and {@code must_not} nothing
+ *       scores, so every {@code must} clause moves.
+ *   <li>A match on a keyword field, or on a field holding identifiers or enum values, becomes a
+ *       term query on its keyword field.
+ *   <li>A nested bool that only adds a level is merged into its parent: a bool with a single
+ *       clause, a bool of required clauses inside required clauses, and a bool of alternatives
+ *       inside alternatives.
+ *   <li>Repeated clauses are dropped.
+ *   <li>Alternative term queries on the same field are folded into one terms query.
+ * </ul>
+ *
+ * Clauses of a {@code should} with a {@code minimum_should_match} above one are left as they are,
+ * since they are counted.
+ *
+ * <p>A tree none of these apply to is returned as it is, after a check that builds nothing. The
+ * decoders build their queries in rewritten form, so searches only pay for the check.
+ */
+public final class QueryRewriter {
+  /** Text fields whose values are identifiers or enums, matched exactly on their keyword field. */
+  private static final Set<String> EXACT_VALUE_FIELDS =
+      Set.of(ACCESS_POLICY, PROVIDER_USER_ID, TYPE_KEY);
+  private static final JsonpMapper MAPPER = new JacksonJsonpMapper();
+
+  private QueryRewriter() {}
+
+  public static QueryNode rewrite(QueryNode query) {
+    if (isRewritten(query, true) && !isSingleMust(query)) {
+      return query;
+    }
+    QueryNode rewritten = rewrite(query, true);
+    if (isSingleMust(rewritten)) {
+      return ((QueryNode.Bool) rewritten).must().get(0);
+    }
+    return rewritten;
+  }
+
+  /** Whether the query is a bool of a single required clause, which stands for the clause. */
+  private static boolean isSingleMust(QueryNode query) {
+    return query instanceof QueryNode.Bool bool
+        && bool.minimumShouldMatch() == null
+        && bool.must() != null
+        && bool.must().size() == 1
+        && bool.should() == null
+        && bool.filter() == null
+        && bool.mustNot() == null;
+  }
+
+  /** Whether {@link #rewrite(QueryNode, boolean)} would return a tree equal to the query. */
+  private static boolean isRewritten(QueryNode query, boolean scoring) {
+    if (query instanceof QueryNode.Match match) {
+      return exactMatch(match) == match;
+    }
+    if (query instanceof QueryNode.Bool bool) {
+      boolean anyOf = isAnyOf(bool);
+      return isRewritten(Clause.MUST, bool.must(), scoring, anyOf)
+          && isRewritten(Clause.FILTER, bool.filter(), false, anyOf)
+          && isRewritten(Clause.SHOULD, bool.should(), scoring, anyOf)
+          && isRewritten(Clause.MUST_NOT, bool.mustNot(), false, anyOf)
+          && (bool.should() == null || !anyOf || isFolded(bool.should()))
+          && (bool.mustNot() == null || isFolded(bool.mustNot()));
+    }
+    if (query instanceof QueryNode.ScriptScore scriptScore && scriptScore.query() != null) {
+      return isRewritten(scriptScore.query(), true);
+    }
+    return true;
+  }
+
+  /**
+   * Whether the clauses of a bool would be kept as they are: each one rewritten, none repeated or
+   * merged, and, for {@code must}, each one scoring.
+   */
+  private static boolean isRewritten(
+      Clause clause, List<QueryNode> queries, boolean scoring, boolean anyOf) {
+    if (queries == null) {
+      return true;
+    }
+    if (queries.isEmpty()) {
+      return false;
+    }
+    for (int i = 0; i < queries.size(); i++) {
+      QueryNode query = queries.get(i);
+      if (!isRewritten(query, scoring)
+          || (clause == Clause.MUST && !(scoring && scores(query)))
+          || (query instanceof QueryNode.Bool bool && Clauses.mergeable(clause, anyOf, bool))
+          || ((clause != Clause.SHOULD || anyOf) && queries.subList(0, i).contains(query))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Whether {@link #foldTerms} would leave the queries as they are. */
+  private static boolean isFolded(List<QueryNode> queries) {
+    for (int i = 0; i < queries.size(); i++) {
+      String field = termField(queries.get(i));
+      if (field == null) {
+        continue;
+      }
+      if (queries.get(i) instanceof QueryNode.Terms terms && hasRepeats(terms.values())) {
+        return false;
+      }
+      for (int j = 0; j < i; j++) {
+        if (field.equals(termField(queries.get(j)))) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static boolean hasRepeats(List<String> values) {
+    for (int i = 1; i < values.size(); i++) {
+      if (values.subList(0, i).contains(values.get(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String termField(QueryNode query) {
+    return query instanceof QueryNode.Term term ? term.field()
+        : query instanceof QueryNode.Terms terms ? terms.field() : null;
+  }
+
+  /**
+   * The Elasticsearch query DSL of the tree as built and as rewritten, under {@code query} and
+   * {@code rewritten}, for checking what a search sends.
+   */
+  public static JsonObject explain(QueryNode query) {
+    return new JsonObject()
+        .put("query", new JsonObject(JsonpUtils.toJsonString(query.toQuery(), MAPPER)))
+        .put("rewritten",
+            new JsonObject(JsonpUtils.toJsonString(rewrite(query).toQuery(), MAPPER)));
+  }
+
+  private static QueryNode rewrite(QueryNode query, boolean scoring) {
+    if (query instanceof QueryNode.Match match) {
+      return exactMatch(match);
+    }
+    if (query instanceof QueryNode.Bool bool) {
+      return rewriteBool(bool, scoring);
+    }
+    if (query instanceof QueryNode.ScriptScore scriptScore && scriptScore.query() != null) {
+      return new QueryNode.ScriptScore(
+          scriptScore.queryVector(), rewrite(scriptScore.query(), true));
+    }
+    return query;
+  }
+
+  private static QueryNode exactMatch(QueryNode.Match match) {
+    if (match.fuzziness() != null) {
+      return match;
+    }
+    if (match.field().endsWith(KEYWORD_KEY)) {
+      return new QueryNode.Term(match.field(), match.value());
+    }
+    if (EXACT_VALUE_FIELDS.contains(match.field())) {
+      return new QueryNode.Term(match.field() + KEYWORD_KEY, match.value());
+    }
+    return match;
+  }
+
+  private static QueryNode rewriteBool(QueryNode.Bool bool, boolean scoring) {
+    Clauses clauses = new Clauses(isAnyOf(bool));
+    if (bool.must() != null) {
+      for (QueryNode query : bool.must()) {
+        clauses.add(Clause.MUST, rewrite(query, scoring));
+      }
+    }
+    if (bool.filter() != null) {
+      for (QueryNode query : bool.filter()) {
+        clauses.add(Clause.FILTER, rewrite(query, false));
+      }
+    }
+    if (bool.should() != null) {
+      for (QueryNode query : bool.should()) {
+        clauses.add(Clause.SHOULD, rewrite(query, scoring));
+      }
+    }
+    if (bool.mustNot() != null) {
+      for (QueryNode query : bool.mustNot()) {
+        clauses.add(Clause.MUST_NOT, rewrite(query, false));
+      }
+    }
+
+    List<QueryNode> must = new ArrayList<>();
+    for (QueryNode query : clauses.must) {
+      if (scoring && scores(query)) {
+        must.add(query);
+      } else {
+        Clauses.addOnce(clauses.filter, query);
+      }
+    }
+    List<QueryNode> should = clauses.anyOf ? foldTerms(clauses.should) : clauses.should;
+    return new QueryNode.Bool(
+        orNull(must),
+        orNull(should),
+        orNull(foldTerms(clauses.mustNot)),
+        orNull(clauses.filter),
+        bool.minimumShouldMatch());
+  }
+
+  /** Whether at least one should clause has to match, or the should clauses only add score. */
+  private static boolean isAnyOf(QueryNode.Bool bool) {
+    return bool.minimumShouldMatch() == null || "1".equals(bool.minimumShouldMatch());
+  }
+
+  private static boolean scores(QueryNode query) {
+    if (query instanceof QueryNode.Bool bool) {
+      return anyScores(bool.must()) || anyScores(bool.should());
+    }
+    return !(query instanceof QueryNode.Term
+        || query instanceof QueryNode.Terms
+        || query instanceof QueryNode.Range
+        || query instanceof QueryNode.Wildcard
+        || query instanceof QueryNode.GeoBoundingBox
+        || query instanceof QueryNode.GeoShape
+        || query instanceof QueryNode.MatchAll);
+  }
+
+  private static boolean anyScores(List<QueryNode> queries) {
+    if (queries != null) {
+      for (QueryNode query : queries) {
+        if (scores(query)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /** Term queries on the same field, any of which may match, as one terms query. */
+  private static List<QueryNode> foldTerms(Collection<QueryNode> queries) {
+    Map<String, List<String>> valuesByField = new LinkedHashMap<>();
+    for (QueryNode query : queries) {
+      if (query instanceof QueryNode.Term term) {
+        valuesByField.computeIfAbsent(term.field(), f -> new ArrayList<>()).add(term.value());
+      } else if (query instanceof QueryNode.Terms terms) {
+        valuesByField.computeIfAbsent(terms.field(), f -> new ArrayList<>())
+            .addAll(terms.values());
+      }
+    }
+    List<QueryNode> folded = new ArrayList<>(queries.size());
+    for (QueryNode query : queries) {
+      String field = termField(query);
+      List<String> values = field == null ? null : valuesByField.remove(field);
+      if (field == null) {
+        folded.add(query);
+      } else if (values != null) {
+        // In place of the first term query on the field; the others are left out
+        folded.add(values.size() == 1 && query instanceof QueryNode.Term
+            ? query
+            : new QueryNode.Terms(field, List.copyOf(new LinkedHashSet<>(values))));
+      }
+    }
+    return folded;
+  }
+
+  private static List<QueryNode> orNull(List<QueryNode> queries) {
+    return queries.isEmpty() ? null : queries;
+  }
+
+  private enum Clause {
+    MUST,
+    FILTER,
+    SHOULD,
+    MUST_NOT
+  }
+
+  /** The clauses of a bool being rewritten; each clause keeps its first copy of a query. */
+  private static final class Clauses {
+    private final boolean anyOf;
+    private final List<QueryNode> must = new ArrayList<>();
+    private final List<QueryNode> filter = new ArrayList<>();
+    private final List<QueryNode> should = new ArrayList<>();
+    private final List<QueryNode> mustNot = new ArrayList<>();
+
+    private Clauses(boolean anyOf) {
+      this.anyOf = anyOf;
+    }
+
+    /** Adds a rewritten query to the clause, merging a nested bool into it where it can. */
+    private void add(Clause clause, QueryNode query) {
+      if (query instanceof QueryNode.Bool bool && merge(clause, bool)) {
+        return;
+      }
+      switch (clause) {
+        case MUST -> addOnce(must, query);
+        case FILTER -> addOnce(filter, query);
+        case MUST_NOT -> addOnce(mustNot, query);
+        case SHOULD -> {
+          // Repeats count towards a minimum_should_match above one
+          if (anyOf) {
+            addOnce(should, query);
+          } else {
+            should.add(query);
+          }
+        }
+      }
+    }
+
+    /** Clause lists are short, so a scan is cheaper than hashing whole sub-trees. */
+    private static void addOnce(List<QueryNode> queries, QueryNode query) {
+      if (!queries.contains(query)) {
+        queries.add(query);
+      }
+    }
+
+    private boolean merge(Clause clause, QueryNode.Bool bool) {
+      if (!mergeable(clause, anyOf, bool)) {
+        return false;
+      }
+      List<QueryNode> must = nonNull(bool.must());
+      List<QueryNode> filter = nonNull(bool.filter());
+      List<QueryNode> should = nonNull(bool.should());
+      List<QueryNode> mustNot = nonNull(bool.mustNot());
+      if (size(bool) == 1) {
+        QueryNode only = !should.isEmpty() ? should.get(0)
+            : !must.isEmpty() ? must.get(0)
+            : !filter.isEmpty() ? filter.get(0) : mustNot.get(0);
+        add(mergedClause(clause, innerClause(bool)), only);
+      } else if (clause == Clause.SHOULD) {
+        should.forEach(query -> add(Clause.SHOULD, query));
+      } else {
+        must.forEach(query -> add(clause, query));
+        filter.forEach(query -> add(Clause.FILTER, query));
+        mustNot.forEach(query -> add(Clause.MUST_NOT, query));
+      }
+      return true;
+    }
+
+    /**
+     * Whether a nested bool in the clause of a parent merges into the parent.
+     *
+     * @param anyOf whether at least one should clause of the parent has to match
+     */
+    private static boolean mergeable(Clause clause, boolean anyOf, QueryNode.Bool bool) {
+      int size = size(bool);
+      if (size == 0) {
+        return false;
+      }
+      int should = nonNull(bool.should()).size();
+      boolean plain = should == 0 && bool.minimumShouldMatch() == null;
+      boolean required = should > 0 && isAnyOf(bool) && size == should;
+      if (size == 1) {
+        return (plain || required) && mergedClause(clause, innerClause(bool)) != null;
+      }
+      return (plain && (clause == Clause.MUST || clause == Clause.FILTER))
+          || (clause == Clause.SHOULD && anyOf && required);
+    }
+
+    private static int size(QueryNode.Bool bool) {
+      return nonNull(bool.must()).size() + nonNull(bool.filter()).size()
+          + nonNull(bool.should()).size() + nonNull(bool.mustNot()).size();
+    }
+
+    /** The clause holding the only query of a single-clause bool, a should counting as must. */
+    private static Clause innerClause(QueryNode.Bool bool) {
+      return bool.filter() != null && !bool.filter().isEmpty() ? Clause.FILTER
+          : bool.mustNot() != null && !bool.mustNot().isEmpty() ? Clause.MUST_NOT : Clause.MUST;
+    }
+
+    /** Clause of the parent a single clause of a nested bool goes to, or null if none does. */
+    private static Clause mergedClause(Clause outer, Clause inner) {
+      return switch (outer) {
+        case MUST -> inner;
+        case FILTER -> inner == Clause.MUST_NOT ? Clause.MUST_NOT : Clause.FILTER;
+        case MUST_NOT -> inner == Clause.MUST_NOT ? null : Clause.MUST_NOT;
+        case SHOULD -> inner == Clause.MUST ? Clause.SHOULD : null;
+      };
+    }
+
+    private static List<QueryNode> nonNull(List<QueryNode> queries) {
+      return queries == null ? List.of() : queries;
+    }
+  }
+}
@@ -24,7 +24,7 @@ public class ResponseFilterDecorator implements ElasticsearchQueryDecorator {
   public Map<FilterType, List<QueryModel>> add() {
     LOGGER.info("Adding response filter query decorator DTO {}", request);
     String searchType = request.getSearchType();
-    if (searchType == null || !searchType.matches(RESPONSE_FILTER_REGEX)) {
+    if (searchType == null || !QueryDecoder.RESPONSE_FILTER.matcher(searchType).matches()) {
       return queryMap;
     }
     if (!Boolean.FALSE.equals(request.getSearch())) {
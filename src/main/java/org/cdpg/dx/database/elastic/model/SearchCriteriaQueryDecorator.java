@@ -1,16 +1,14 @@
 package org.cdpg.dx.database.elastic.model;
 
 import static org.cdpg.dx.database.elastic.util.Constants.*;
-import static org.cdpg.dx.tgdex.util.Constants.LESS_THAN;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.cdpg.dx.common.exception.DxEsException;
-import org.cdpg.dx.database.elastic.util.QueryType;
 
 public class SearchCriteriaQueryDecorator implements ElasticsearchQueryDecorator {
   private static final Logger LOGGER = LogManager.getLogger(SearchCriteriaQueryDecorator.class);
@@ -34,101 +32,78 @@ public class SearchCriteriaQueryDecorator implements ElasticsearchQueryDecorator
       throw new DxEsException("Invalid Property Value: Empty searchCriteria");
     }
 
-    List<QueryModel> mustList = new ArrayList<>();
-
+    List<QueryModel> filterList =
+        queryMap.computeIfAbsent(FilterType.FILTER, k -> new ArrayList<>());
     for (SearchCriteriaDTO criterion : criteria) {
-      String field = criterion.getField();
-      List<Object> values = criterion.getValues();
-      String type = criterion.getSearchType() != null ? criterion.getSearchType() : TERM;
-      LOGGER.info("Searchtype, field, values, cST {},{},{}", field, values, type);
-
-      switch (type) {
-        case TERM:
-          mustList.add(buildTermQuery(field, values));
-          break;
-        case BETWEEN_RANGE:
-        case BETWEEN_TEMPORAL:
-          if (values.size() != 2) {
-            throw new DxEsException("Expected 2 values for between-type search");
-          }
-          mustList.add(
-              buildRangeQuery(
-                  field,
-                  Map.of(
-                      GREATER_THAN_EQUALS, values.get(0).toString(),
-                      LESS_THAN_EQUALS, values.get(1).toString())));
-          break;
-        case BEFORE_RANGE:
-        case BEFORE_TEMPORAL:
-          mustList.add(buildRangeQuery(field, Map.of(LESS_THAN, values.get(0).toString())));
-          break;
-        case AFTER_RANGE:
-        case AFTER_TEMPORAL:
-          mustList.add(buildRangeQuery(field, Map.of(GREATER_THAN, values.get(0).toString())));
-          break;
-        default:
-          throw new DxEsException("Unsupported searchType: " + type);
-      }
+      filterList.add(criterionQuery(criterion).toModel());
     }
-
-    queryMap
-        .computeIfAbsent(FilterType.FILTER, k -> new ArrayList<>())
-        .add(new QueryModel(QueryType.BOOL).setMustQueries(mustList));
-    LOGGER.info("queryMap {}", queryMap);
-    if (queryMap.get(FilterType.FILTER) != null) {
-      LOGGER.info("Size {}", queryMap.get(FilterType.FILTER).size());
+    if (LOGGER.isDebugEnabled()) {
       for (QueryModel queryModel : queryMap.get(FilterType.FILTER)) {
-        LOGGER.info("query {}", queryModel.toJson());
+        LOGGER.debug("query {}", queryModel.toJson());
       }
     }
-    LOGGER.info("Done with query");
     return queryMap;
   }
 
-  private QueryModel buildTermQuery(String field, List<Object> values) {
-    List<QueryModel> shouldQueries = new ArrayList<>();
+  /** The query matching a single search criterion. */
+  static QueryNode criterionQuery(SearchCriteriaDTO criterion) {
+    String field = criterion.getField();
+    List<Object> values = criterion.getValues();
+    String type = criterion.getSearchType() != null ? criterion.getSearchType() : TERM;
+    LOGGER.info("Searchtype, field, values, cST {},{},{}", field, values, type);
+
+    switch (type) {
+      case TERM:
+        return buildTermQuery(field, values);
+      case BETWEEN_RANGE:
+      case BETWEEN_TEMPORAL:
+        if (values.size() != 2) {
+          throw new DxEsException("Expected 2 values for between-type search");
+        }
+        return new QueryNode.Range(
+            field, values.get(0).toString(), values.get(1).toString(), null, null);
+      case BEFORE_RANGE:
+      case BEFORE_TEMPORAL:
+        return new QueryNode.Range(field, null, null, null, values.get(0).toString());
+      case AFTER_RANGE:
+      case AFTER_TEMPORAL:
+        return new QueryNode.Range(field, null, null, values.get(0).toString(), null);
+      default:
+        throw new DxEsException("Unsupported searchType: " + type);
+    }
+  }
+
+  /** Any of the values; a single query stands alone, and terms on a keyword field are one query. */
+  private static QueryNode buildTermQuery(String field, List<Object> values) {
+    List<QueryNode> shouldQueries = new ArrayList<>();
+    List<String> keywords = new ArrayList<>();
+    String keywordField = field.endsWith(KEYWORD_KEY) ? field : field + KEYWORD_KEY;
     for (Object valueObj : values) {
       String value = valueObj.toString();
       // Case: description or location (match/fuzzy match)
       if (DESCRIPTION_ATTR.equals(field) || field.startsWith(LOCATION)) {
-        shouldQueries.add(
-            new QueryModel(QueryType.MATCH).setQueryParameters(Map.of(FIELD, field, VALUE, value)));
+        shouldQueries.add(new QueryNode.Match(field, value));
         // Fuzzy for description
         // No request.getString(FUZZY), so skip fuzzy for DTO unless needed
       } else if (TAGS.equals(field)) {
         // Case: tags → match_phrase
-        shouldQueries.add(
-            new QueryModel(QueryType.MATCH_PHRASE)
-                .setQueryParameters(Map.of(FIELD, field, VALUE, value)));
+        shouldQueries.add(new QueryNode.MatchPhrase(field, value));
       } else if (FILE_FORMAT.equals(field)) {
         // Case: fileFormat → wildcard (case-insensitive)
-        shouldQueries.add(
-            new QueryModel(QueryType.WILDCARD)
-                .setQueryParameters(
-                    Map.of(
-                        FIELD,
-                        field + KEYWORD_KEY,
-                        VALUE,
-                        value.toLowerCase(),
-                        CASE_INSENSITIVE,
-                        true)));
-      } else {
+        shouldQueries.add(new QueryNode.Wildcard(field + KEYWORD_KEY, value.toLowerCase(), true));
+      } else if (!keywords.contains(value)) {
         // Fallback: .keyword match or raw match
-        String searchField = field.endsWith(KEYWORD_KEY) ? field : field + KEYWORD_KEY;
-        shouldQueries.add(
-            new QueryModel(QueryType.TERM)
-                .setQueryParameters(Map.of(FIELD, searchField, VALUE, value)));
+        keywords.add(value);
       }
     }
-    QueryModel queryModel = new QueryModel(QueryType.BOOL);
-    queryModel.setShouldQueries(shouldQueries);
-    return queryModel;
-  }
-
-  private QueryModel buildRangeQuery(String field, Map<String, String> operators) {
-    Map<String, Object> rangeParams = new HashMap<>();
-    rangeParams.put(FIELD, field);
-    rangeParams.putAll(operators);
-    return new QueryModel(QueryType.RANGE).setQueryParameters(rangeParams);
+    if (!keywords.isEmpty()) {
+      return keywords.size() == 1
+          ? new QueryNode.Term(keywordField, keywords.get(0))
+          : new QueryNode.Terms(keywordField, keywords);
+    }
+    List<QueryNode> distinct = new ArrayList<>(new LinkedHashSet<>(shouldQueries));
+    return distinct.size() == 1
+        ? distinct.get(0)
+        : new QueryNode.Bool(null, distinct, null, null, null);
   }
 }
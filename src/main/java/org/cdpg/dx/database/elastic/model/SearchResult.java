@@ -0,0 +1,122 @@
+package org.cdpg.dx.database.elastic.model;
+
+import io.vertx.codegen.annotations.DataObject;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of a single Elasticsearch call. Hits, total hit count, aggregations and the time taken by
+ * Elasticsearch travel together so that concurrent requests never observe each other's totals.
+ */
+@DataObject(generateConverter = true)
+public class SearchResult {
+  private List<ElasticsearchResponse> hits = new ArrayList<>();
+  private int totalHits;
+  private JsonObject aggregations;
+  private long took;
+  private String rawHits;
+  private String pitId;
+  private JsonArray lastSortValues;
+
+  public SearchResult() {
+    // Default constructor
+  }
+
+  public SearchResult(JsonObject json) {
+    SearchResultConverter.fromJson(json, this);
+  }
+
+  public SearchResult(List<ElasticsearchResponse> hits, int totalHits, JsonObject aggregations,
+                      long took) {
+    this.hits = hits;
+    this.totalHits = totalHits;
+    this.aggregations = aggregations;
+    this.took = took;
+  }
+
+  public JsonObject toJson() {
+    JsonObject json = new JsonObject();
+    SearchResultConverter.toJson(this, json);
+    return json;
+  }
+
+  public List<ElasticsearchResponse> getHits() {
+    return hits;
+  }
+
+  public void setHits(List<ElasticsearchResponse> hits) {
+    this.hits = hits;
+  }
+
+  public int getTotalHits() {
+    return totalHits;
+  }
+
+  public void setTotalHits(int totalHits) {
+    this.totalHits = totalHits;
+  }
+
+  public JsonObject getAggregations() {
+    return aggregations;
+  }
+
+  public void setAggregations(JsonObject aggregations) {
+    this.aggregations = aggregations;
+  }
+
+  public long getTook() {
+    return took;
+  }
+
+  public void setTook(long took) {
+    this.took = took;
+  }
+
+  /**
+   * Sources of the hits as an already encoded JSON array. Only populated for raw searches, where
+   * {@link #getHits()} stays empty and the bytes are written to the HTTP response untouched.
+   */
+  public String getRawHits() {
+    return rawHits;
+  }
+
+  public void setRawHits(String rawHits) {
+    this.rawHits = rawHits;
+  }
+
+  /** Point-in-time id returned by a point-in-time search, to be used for the next page. */
+  public String getPitId() {
+    return pitId;
+  }
+
+  public void setPitId(String pitId) {
+    this.pitId = pitId;
+  }
+
+  /**
+   * Sort values of the last hit of a full point-in-time page, to be passed as search_after for the
+   * next page. Null when the page was not full, i.e. there is nothing left to fetch.
+   */
+  public JsonArray getLastSortValues() {
+    return lastSortValues;
+  }
+
+  public void setLastSortValues(JsonArray lastSortValues) {
+    this.lastSortValues = lastSortValues;
+  }
+
+  /**
+   * Returns the first hit of this result, or an empty response when nothing matched.
+   */
+  public ElasticsearchResponse firstHit() {
+    return hits == null || hits.isEmpty() ? new ElasticsearchResponse() : hits.getFirst();
+  }
+
+  @Override
+  public String toString() {
+    return "SearchResult{" + "totalHits=" + totalHits + ", took=" + took + ", hits=" + hits
+        + ", aggregations=" + aggregations + '}';
+  }
+}
@@ -1,21 +1,38 @@
 package org.cdpg.dx.database.elastic.model;
 
-import static org.cdpg.dx.database.elastic.util.Constants.*;
-
+import co.elastic.clients.elasticsearch._types.query_dsl.Operator;
+import co.elastic.clients.elasticsearch._types.query_dsl.TextQueryType;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cdpg.dx.common.exception.DxBadRequestException;
 import org.cdpg.dx.common.exception.DxEsException;
-import org.cdpg.dx.database.elastic.util.QueryType;
 
+/**
+ * Adds the text query for {@code q}. A search longer than the {@link TextSearchSettings} allow is
+ * rejected, and a fuzzy search with more terms than may be expanded is matched exactly, so the
+ * clauses a single search expands to stay bounded.
+ */
 public class TextSearchQueryDecorator implements ElasticsearchQueryDecorator {
+  private static final Logger LOGGER = LogManager.getLogger(TextSearchQueryDecorator.class);
   private final Map<FilterType, List<QueryModel>> queryMap;
   private final TextSearchRequestDTO request;
+  private final TextSearchSettings settings;
 
   public TextSearchQueryDecorator(
       Map<FilterType, List<QueryModel>> queryMap, TextSearchRequestDTO request) {
+    this(queryMap, request, TextSearchSettings.DEFAULT);
+  }
+
+  public TextSearchQueryDecorator(
+      Map<FilterType, List<QueryModel>> queryMap,
+      TextSearchRequestDTO request,
+      TextSearchSettings settings) {
     this.queryMap = queryMap;
     this.request = request;
+    this.settings = settings;
   }
 
   @Override
@@ -24,51 +41,66 @@ public class TextSearchQueryDecorator implements ElasticsearchQueryDecorator {
       throw new DxEsException("bad text query values");
     }
     String textAttr = request.q();
+    if (textAttr.length() > settings.maxQueryLength()) {
+      throw new DxBadRequestException(
+          "Text search is longer than " + settings.maxQueryLength() + " characters");
+    }
+    int terms = countTerms(textAttr);
+    if (terms > settings.maxTerms()) {
+      throw new DxBadRequestException(
+          "Text search has more than " + settings.maxTerms() + " terms");
+    }
     boolean isFuzzy = Boolean.TRUE.equals(request.fuzzy());
     boolean isAutoComplete = Boolean.TRUE.equals(request.fuzzy());
+    if (isFuzzy && terms > settings.maxFuzzyTerms()) {
+      LOGGER.debug("Text search of {} terms matched exactly instead of fuzzily", terms);
+      isFuzzy = false;
+    }
 
-    List<QueryModel> shouldQueries = new ArrayList<>();
+    List<String> fields = settings.boostedFields();
+    List<QueryNode> shouldQueries = new ArrayList<>();
 
     if (isFuzzy) {
-      shouldQueries.add(
-          new QueryModel(QueryType.MULTI_MATCH)
-              .setQueryParameters(
-                  Map.of(
-                      "fields",
-                      List.of("label", "tags", "description"),
-                      "query",
-                      textAttr,
-                      "fuzziness",
-                      "AUTO",
-                      "boost",
-                      "1.0")));
+      shouldQueries.add(new QueryNode.MultiMatch(textAttr, fields, "AUTO", null, 1.0f,
+          settings.prefixLength(), settings.maxExpansions()));
     }
 
     if (isAutoComplete) {
-      shouldQueries.add(
-          new QueryModel(QueryType.MULTI_MATCH)
-              .setQueryParameters(
-                  Map.of(
-                      "fields",
-                      List.of("label", "tags", "description"),
-                      "query",
-                      textAttr,
-                      "type",
-                      "BoolPrefix",
-                      "boost",
-                      "5.0")));
+      shouldQueries.add(new QueryNode.MultiMatch(textAttr, fields, null, TextQueryType.BoolPrefix,
+          5.0f, null, settings.maxExpansions()));
     }
 
     if (!isFuzzy && !isAutoComplete) {
-      shouldQueries.add(
-          new QueryModel(QueryType.TEXT).setQueryParameters(Map.of(Q_VALUE, textAttr)));
+      shouldQueries.add(textQuery(textAttr, fields));
     }
 
-    QueryModel boolModel = new QueryModel(QueryType.BOOL);
-    boolModel.setShouldQueries(shouldQueries);
-    boolModel.setMinimumShouldMatch("1");
+    QueryNode textQuery =
+        shouldQueries.size() == 1
+            ? shouldQueries.get(0)
+            : new QueryNode.Bool(null, shouldQueries, null, null, "1");
 
-    queryMap.computeIfAbsent(FilterType.MUST, k -> new ArrayList<>()).add(boolModel);
+    queryMap.computeIfAbsent(FilterType.MUST, k -> new ArrayList<>()).add(textQuery.toModel());
     return queryMap;
   }
+
+  private QueryNode textQuery(String textAttr, List<String> fields) {
+    if (settings.mode() == TextSearchSettings.Mode.QUERY_STRING) {
+      return new QueryNode.Text(textAttr);
+    }
+    return new QueryNode.SimpleQueryString(textAttr, fields, Operator.Or, settings.operators(),
+        settings.prefixLength(), settings.maxExpansions());
+  }
+
+  private static int countTerms(String text) {
+    int terms = 0;
+    boolean inTerm = false;
+    for (int i = 0; i < text.length(); i++) {
+      boolean whitespace = Character.isWhitespace(text.charAt(i));
+      if (!whitespace && !inTerm) {
+        terms++;
+      }
+      inTerm = !whitespace;
+    }
+    return terms;
+  }
 }
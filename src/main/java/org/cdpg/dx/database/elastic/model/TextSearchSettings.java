@@ -0,0 +1,135 @@
+package org.cdpg.dx.database.elastic.model;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.SimpleQueryStringFlag;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How {@code q} searches are turned into text queries, and the limits that bound what a single
+ * search may cost.
+ *
+ * <p>Read from the {@code textSearch} object of the common config, so the API server decoding
+ * searches and the database verticle storing search templates build the same queries.
+ *
+ * @param mode {@link Mode#SIMPLE} for a simple_query_string over the boosted fields, or
+ *     {@link Mode#QUERY_STRING} for the raw query_string searches used before
+ * @param fieldBoosts the fields searched, with their boosts, in order
+ * @param operators the simple_query_string syntax users may use; anything else is read as text
+ * @param prefixLength leading characters of a term that fuzzy matching leaves unchanged
+ * @param maxExpansions terms a fuzzy or prefix term may expand to
+ * @param maxQueryLength longest {@code q} accepted, in characters
+ * @param maxTerms most whitespace separated terms accepted in {@code q}
+ * @param maxFuzzyTerms most terms searched fuzzily; longer searches are matched exactly
+ */
+public record TextSearchSettings(
+    Mode mode,
+    Map<String, Float> fieldBoosts,
+    List<SimpleQueryStringFlag> operators,
+    int prefixLength,
+    int maxExpansions,
+    int maxQueryLength,
+    int maxTerms,
+    int maxFuzzyTerms) {
+  private static final String MODE = "mode";
+  private static final String FIELD_BOOSTS = "fieldBoosts";
+  private static final String OPERATORS = "operators";
+  private static final String PREFIX_LENGTH = "prefixLength";
+  private static final String MAX_EXPANSIONS = "maxExpansions";
+  private static final String MAX_QUERY_LENGTH = "maxQueryLength";
+  private static final String MAX_TERMS = "maxTerms";
+  private static final String MAX_FUZZY_TERMS = "maxFuzzyTerms";
+
+  public static final TextSearchSettings DEFAULT =
+      new TextSearchSettings(
+          Mode.SIMPLE,
+          defaultFieldBoosts(),
+          List.of(
+              SimpleQueryStringFlag.And,
+              SimpleQueryStringFlag.Or,
+              SimpleQueryStringFlag.Not,
+              SimpleQueryStringFlag.Phrase,
+              SimpleQueryStringFlag.Precedence,
+              SimpleQueryStringFlag.Whitespace,
+              SimpleQueryStringFlag.Escape),
+          1,
+          20,
+          256,
+          32,
+          8);
+
+  public TextSearchSettings {
+    fieldBoosts = Collections.unmodifiableMap(new LinkedHashMap<>(fieldBoosts));
+    operators = List.copyOf(operators);
+  }
+
+  /** Settings from the {@code textSearch} config object; keys left out keep their defaults. */
+  public static TextSearchSettings fromConfig(JsonObject config) {
+    if (config == null) {
+      return DEFAULT;
+    }
+    Map<String, Float> fieldBoosts = DEFAULT.fieldBoosts;
+    JsonObject boosts = config.getJsonObject(FIELD_BOOSTS);
+    if (boosts != null && !boosts.isEmpty()) {
+      fieldBoosts = new LinkedHashMap<>();
+      for (String field : boosts.fieldNames()) {
+        fieldBoosts.put(field, boosts.getFloat(field));
+      }
+    }
+    List<SimpleQueryStringFlag> operators = DEFAULT.operators;
+    JsonArray operatorNames = config.getJsonArray(OPERATORS);
+    if (operatorNames != null) {
+      operators = new ArrayList<>();
+      for (Object name : operatorNames) {
+        operators.add(flag(name.toString()));
+      }
+    }
+    return new TextSearchSettings(
+        Mode.valueOf(config.getString(MODE, DEFAULT.mode.name()).toUpperCase()),
+        fieldBoosts,
+        operators,
+        config.getInteger(PREFIX_LENGTH, DEFAULT.prefixLength),
+        config.getInteger(MAX_EXPANSIONS, DEFAULT.maxExpansions),
+        config.getInteger(MAX_QUERY_LENGTH, DEFAULT.maxQueryLength),
+        config.getInteger(MAX_TERMS, DEFAULT.maxTerms),
+        config.getInteger(MAX_FUZZY_TERMS, DEFAULT.maxFuzzyTerms));
+  }
+
+  /** The searched fields in Elasticsearch's {@code field^boost} form. */
+  public List<String> boostedFields() {
+    List<String> fields = new ArrayList<>(fieldBoosts.size());
+    fieldBoosts.forEach(
+        (field, boost) -> fields.add(boost == 1.0f ? field : field + "^" + boost));
+    return fields;
+  }
+
+  private static SimpleQueryStringFlag flag(String name) {
+    for (SimpleQueryStringFlag flag : SimpleQueryStringFlag.values()) {
+      if (flag.jsonValue().equalsIgnoreCase(name)) {
+        return flag;
+      }
+    }
+    throw new IllegalArgumentException("Unknown text search operator: " + name);
+  }
+
+  private static Map<String, Float> defaultFieldBoosts() {
+    Map<String, Float> boosts = new LinkedHashMap<>();
+    boosts.put("label", 3.0f);
+    boosts.put("name", 2.0f);
+    boosts.put("tags", 2.0f);
+    boosts.put("shortDescription", 1.5f);
+    boosts.put("description", 1.0f);
+    boosts.put("department", 1.0f);
+    boosts.put("industry", 1.0f);
+    return boosts;
+  }
+
+  public enum Mode {
+    SIMPLE,
+    QUERY_STRING
+  }
+}
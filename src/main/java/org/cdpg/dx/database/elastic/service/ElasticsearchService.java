@@ -5,11 +5,15 @@ import io.vertx.codegen.annotations.ProxyGen;
 import io.vertx.codegen.annotations.VertxGen;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
-import org.cdpg.dx.database.elastic.model.ElasticsearchResponse;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
 import org.cdpg.dx.database.elastic.model.QueryModel;
+import org.cdpg.dx.database.elastic.model.SearchResult;
 
 import java.util.List;
-import java.util.Map;
 
 @VertxGen
 @ProxyGen
@@ -20,12 +24,27 @@ public interface ElasticsearchService {
         return new ElasticsearchServiceVertxEBProxy(vertx, address);
     }
 
-    Future<List<ElasticsearchResponse>> search(String index, QueryModel queryModel, String options);
+    @GenIgnore
+    static ElasticsearchService createProxy(Vertx vertx, String address, DeliveryOptions options) {
+        return new ElasticsearchServiceVertxEBProxy(vertx, address, options);
+    }
+
+    Future<SearchResult> search(String index, QueryModel queryModel, String options);
 
     Future<Integer> count(String index, QueryModel queryModel);
 
     Future<List<String>> createDocuments(String index, List<QueryModel> documentModels);
-    Future<ElasticsearchResponse>  getSingleDocument(String docIndex,QueryModel queryModel);
+
+    /**
+     * Indexes documents with create operations in a single bulk request and reports the outcome of
+     * each one, in request order, as {@code {id, status, error}}. A rejected document does not fail
+     * the others.
+     */
+    Future<JsonArray> bulkCreateDocuments(String index, List<QueryModel> documentModels);
+
+    /** Sets the refresh interval of an index and returns the interval it replaced. */
+    Future<String> updateRefreshInterval(String index, String refreshInterval);
+    Future<SearchResult> getSingleDocument(String docIndex,QueryModel queryModel);
 
     Future<Void> deleteDocument(String index, String id);
 
@@ -34,4 +53,44 @@ public interface ElasticsearchService {
 
     Future<Void> updateDocumentsByQuery(QueryModel queryModel, String docIndex);
     Future<Void> deleteByQuery(String index,QueryModel queryModel);
+
+    /**
+     * Runs the documents against the percolator queries stored in the index under the field and
+     * returns each stored query matching any of them as {@code {id, source, slots}}: its source
+     * without the query, and the positions of the documents it matches.
+     */
+    Future<JsonArray> percolate(String index, String field, JsonArray documents);
+
+    /**
+     * Submits the search to run in the background with {@code _async_search}, waiting for it to
+     * complete at most the given time. Returns {@code {id, running, partial, startTime,
+     * expirationTime, completionTime, result}}, where the result is the {@link SearchResult} as
+     * JSON once the search has completed; a search still running is kept for the keep-alive, to be
+     * fetched later with its id.
+     */
+    Future<JsonObject> submitAsyncSearch(String index, QueryModel queryModel, String options,
+        String waitForCompletion, String keepAlive);
+
+    /** The state of a submitted search, with its result read as the options say once completed. */
+    Future<JsonObject> getAsyncSearch(String id, String options);
+
+    /** The state of a submitted search, without its result. */
+    Future<JsonObject> getAsyncSearchStatus(String id);
+
+    /** Cancels a submitted search if it is still running and deletes its result. */
+    Future<Void> deleteAsyncSearch(String id);
+
+    Future<String> openPointInTime(String index, String keepAlive);
+
+    Future<Void> closePointInTime(String pitId);
+
+    /**
+     * Streams every document matching the query as NDJSON chunks, read with a sliced point-in-time
+     * scan. Built on top of the proxied operations, so it is not sent over the event bus itself.
+     */
+    @GenIgnore
+    default ReadStream<Buffer> scan(
+        String index, QueryModel queryModel, int slices, int pageSize, String keepAlive) {
+        return new SlicedScanReadStream(this, index, queryModel, slices, pageSize, keepAlive);
+    }
 }
@@ -3,144 +3,381 @@ package org.cdpg.dx.database.elastic.service;
 import static org.cdpg.dx.database.elastic.util.Constants.*;
 
 import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.KnnSearch;
 import co.elastic.clients.elasticsearch._types.Result;
 import co.elastic.clients.elasticsearch._types.Script;
+import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
 import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.async_search.AsyncSearch;
+import co.elastic.clients.elasticsearch.async_search.AsyncSearchDocumentResponseBase;
+import co.elastic.clients.elasticsearch.async_search.AsyncSearchResponseBase;
+import co.elastic.clients.elasticsearch.async_search.SubmitRequest;
 import co.elastic.clients.elasticsearch.core.*;
 import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import co.elastic.clients.elasticsearch.core.search.SourceConfig;
+import co.elastic.clients.elasticsearch.core.search.TotalHits;
+import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation;
+import co.elastic.clients.elasticsearch.indices.IndexState;
 import co.elastic.clients.json.JsonData;
-import co.elastic.clients.json.JsonpMapper;
-import co.elastic.clients.json.JsonpMapperFeatures;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import jakarta.json.stream.JsonGenerator;
+import io.vertx.core.json.jackson.DatabindCodec;
+import java.io.IOException;
 import java.io.StringWriter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.cdpg.dx.common.exception.DxBadRequestException;
 import org.cdpg.dx.common.exception.DxInternalServerErrorException;
+import org.cdpg.dx.common.exception.DxNotFoundException;
 import org.cdpg.dx.database.elastic.ElasticClient;
+import org.cdpg.dx.database.elastic.model.AggregationReader;
 import org.cdpg.dx.database.elastic.model.ElasticsearchResponse;
 import org.cdpg.dx.database.elastic.model.QueryModel;
+import org.cdpg.dx.database.elastic.model.SearchResult;
 
 public class ElasticsearchServiceImpl implements ElasticsearchService {
   private static final Logger LOGGER = LogManager.getLogger(ElasticsearchServiceImpl.class);
+  private static final List<String> INTERNAL_SOURCE_FIELDS = List.of(SUMMARY_KEY, WORD_VECTOR_KEY);
+  private static final int KNN_MIN_CANDIDATES = 100;
+  private static final int KNN_MAX_CANDIDATES = 10000;
+  // Every stored query matching a percolated batch is returned, up to the result window
+  private static final int MAX_PERCOLATOR_MATCHES = 10000;
+  private static final String PERCOLATOR_SLOTS = "_percolator_document_slot";
 
-  static ElasticClient client;
-  private static ElasticsearchAsyncClient asyncClient;
+  private final ElasticClient client;
+  private final ElasticsearchAsyncClient asyncClient;
+  private final AggregationReader aggregationReader;
+  private final SearchResultCache searchResultCache;
+  private final SearchCoalescer searchCoalescer;
+  private final MsearchDispatcher msearchDispatcher;
+  private final SearchTemplates searchTemplates;
 
   public ElasticsearchServiceImpl(ElasticClient client) {
-    ElasticsearchServiceImpl.client = client;
-    asyncClient = client.getClient();
+    this(client, null, null, null, null);
+  }
+
+  /**
+   * @param searchResultCache cache for search and count results, or null to always query
+   * @param searchCoalescer coalescing of identical concurrent requests, or null to send them all
+   * @param msearchDispatcher batching of small searches into _msearch calls, or null to send each
+   *     search on its own
+   * @param searchTemplates stored templates for known query shapes, or null to always send the
+   *     full query. Not used while searches are batched, as _msearch takes inline queries.
+   */
+  public ElasticsearchServiceImpl(
+      ElasticClient client,
+      SearchResultCache searchResultCache,
+      SearchCoalescer searchCoalescer,
+      MsearchDispatcher msearchDispatcher,
+      SearchTemplates searchTemplates) {
+    this.client = client;
+    this.asyncClient = client.getClient();
+    this.aggregationReader = new AggregationReader(asyncClient._jsonpMapper());
+    this.searchResultCache = searchResultCache;
+    this.searchCoalescer = searchCoalescer;
+    this.msearchDispatcher = msearchDispatcher;
+    this.searchTemplates = msearchDispatcher == null ? searchTemplates : null;
   }
 
   @Override
-  public Future<List<ElasticsearchResponse>> search(String index, QueryModel queryModel, String options) {
-    Promise<List<ElasticsearchResponse>> promise = Promise.promise();
+  public Future<SearchResult> search(String index, QueryModel queryModel, String options) {
+    if (!SearchResultCache.isCacheable(queryModel, options)) {
+      return executeSearch(index, queryModel, uncachedRead(options));
+    }
+    UnaryOperator<SearchResult> copy = result -> new SearchResult(result.toJson());
+    Supplier<Future<SearchResult>> loader = () -> coalesced(SEARCH, index, queryModel, options,
+        () -> executeSearch(index, queryModel, options), copy);
+    if (searchResultCache == null) {
+      return loader.get();
+    }
+    return searchResultCache.getOrLoad(SEARCH, index, queryModel, options, loader, copy);
+  }
+
+  /** Uncached source reads are read like their cached counterparts. */
+  private static String uncachedRead(String options) {
+    if (SOURCE_UNCACHED.equals(options)) {
+      return SOURCE_ONLY;
+    }
+    return RAW_SOURCE_UNCACHED.equals(options) ? RAW_SOURCE_ONLY : options;
+  }
+
+  private <T> Future<T> coalesced(String kind, String index, QueryModel queryModel,
+      String options, Supplier<Future<T>> loader, UnaryOperator<T> copy) {
+    if (searchCoalescer == null) {
+      return loader.get();
+    }
+    return searchCoalescer.join(kind, index, queryModel, options, loader, copy);
+  }
+
+  private Future<SearchResult> executeSearch(String index, QueryModel queryModel, String options) {
+    Promise<SearchResult> promise = Promise.promise();
+    boolean pointInTime = queryModel.getPitId() != null;
+    int limit = parseSize(options, queryModel);
+
+    send(index, queryModel, options, limit).whenComplete((response, error) -> {
+      if (error != null) {
+        promise.fail(searchFailure(error, pointInTime));
+        return;
+      }
 
+      try {
+        promise.complete(toSearchResult(response, options, limit, pointInTime));
+      } catch (Exception e) {
+        LOGGER.error("Failed to parse search response", e);
+        promise.fail(new DxInternalServerErrorException("Failed to parse search result", e));
+      }
+    });
+
+    return promise.future();
+  }
+
+  private SearchResult toSearchResult(
+      ResponseBody<ObjectNode> response, String options, int limit, boolean pointInTime)
+      throws IOException {
+    List<ElasticsearchResponse> esResponses = new ArrayList<>();
+    JsonObject aggregationsJson = null;
+    int totalHits = 0;
+
+    String rawHits = null;
+
+    // 1. Handle hits if needed
+    if (RAW_SOURCE_ONLY.equals(options)) {
+      rawHits = writeRawSources(response.hits().hits(), false);
+    } else if (RAW_NDJSON_ONLY.equals(options)) {
+      rawHits = writeRawSources(response.hits().hits(), true);
+    } else if (!options.startsWith(AGGREGATION_ONLY)) {
+      for (var hit : response.hits().hits()) {
+        String id = hit.id();
+        JsonObject source = hit.source() != null ? new JsonObject(hit.source().toString()) : new JsonObject();
+        JsonObject result = new JsonObject();
+        switch (options) {
+          case DOC_IDS_ONLY:
+            result.put(ID, id);
+            break;
+          case SOURCE_AND_ID:
+            result.put(ID, id).put(SOURCE, source);
+            break;
+          case SOURCE_AND_ID_GEOQUERY:
+            source.put("doc_id", id);
+            result.mergeIn(source);
+            break;
+          default:
+            result = source;
+            break;
+        }
+
+        esResponses.add(new ElasticsearchResponse(id, result));
+      }
+    }
+
+    if (!options.startsWith(AGGREGATION_ONLY)) {
+      totalHits =
+          response.hits().total() != null ? (int) response.hits().total().value() : 0;
+    }
+
+    // 2. Handle aggregations if needed
+    // Hits searches carry aggregations only when they ask for facets
+    if (options.startsWith(AGGREGATION_ONLY) || options.equals(COUNT_AGGREGATION_ONLY)
+        || (response.aggregations() != null && !response.aggregations().isEmpty())) {
+      aggregationsJson = parseAggregations(response, options);
+    }
+
+    SearchResult searchResult =
+        new SearchResult(esResponses, totalHits, aggregationsJson, response.took());
+    searchResult.setRawHits(rawHits);
+    if (pointInTime) {
+      searchResult.setPitId(response.pitId());
+      if (response.hits().hits().size() >= limit) {
+        searchResult.setLastSortValues(lastSortValues(response.hits().hits()));
+      }
+    }
+    return searchResult;
+  }
+
+  private SearchRequest buildSearchRequest(
+      String index, QueryModel queryModel, String options, int limit) {
     Map<String, Aggregation> aggregations = new HashMap<>();
 
     if (queryModel.getAggregations() != null) {
       queryModel.getAggregations().forEach(agg -> aggregations.put(agg.getAggregationName(), agg.toElasticsearchAggregations()));
     }
 
-    SearchRequest.Builder requestBuilder = new SearchRequest.Builder().index(index);
-    QueryModel queries = queryModel.getQueries();
-    if (queries != null && queries.toElasticsearchQuery() != null) {
-      requestBuilder.query(queries.toElasticsearchQuery());
+    SearchRequest.Builder requestBuilder = new SearchRequest.Builder();
+    boolean pointInTime = queryModel.getPitId() != null;
+    if (pointInTime) {
+      // A point-in-time search carries its index in the PIT and must not name one itself
+      requestBuilder.pit(p -> p.id(queryModel.getPitId())
+          .keepAlive(k -> k.time(queryModel.getPitKeepAlive())));
+    } else {
+      requestBuilder.index(index);
+    }
+    if (queryModel.getKnnVector() != null) {
+      // The kNN search alone, pre-filtered by the queries so every candidate may be returned
+      requestBuilder.knn(knnSearch(queryModel.getKnnVector(), queryModel.getQueries(),
+          parseOffset(queryModel) + limit));
+    } else if (queryModel.getQueries() != null) {
+      requestBuilder.query(queryModel.getQueries().toElasticsearchQuery());
     }
 
     if (!aggregations.isEmpty()) {
       requestBuilder.aggregations(aggregations);
     }
+    if (queryModel.getPostFilter() != null) {
+      requestBuilder.postFilter(queryModel.getPostFilter().toElasticsearchQuery());
+    }
 
-    int limit = parseSize(options, queryModel);
     requestBuilder.size(limit);
 
     if (queryModel.getOffset() != null) {
       requestBuilder.from(Integer.parseInt(queryModel.getOffset()));
     }
 
-    if (queryModel.toSourceConfig() != null) {
-      requestBuilder.source(queryModel.toSourceConfig());
+    SourceConfig sourceConfig = toSourceConfig(queryModel, options);
+    if (sourceConfig != null) {
+      requestBuilder.source(sourceConfig);
+    }
+
+    List<SortOptions> sortOptions = toSortOptions(queryModel, pointInTime);
+    if (sortOptions != null) {
+      requestBuilder.sort(sortOptions);
+    }
+
+    if (queryModel.toSearchAfter() != null) {
+      requestBuilder.searchAfter(queryModel.toSearchAfter());
     }
 
-    if (queryModel.toSortOptions() != null) {
-      requestBuilder.sort(queryModel.toSortOptions());
+    if (queryModel.getSliceMax() != null && queryModel.getSliceMax() > 1) {
+      requestBuilder.slice(sl -> sl.id(String.valueOf(queryModel.getSliceId()))
+          .max(queryModel.getSliceMax()));
     }
 
     SearchRequest request = requestBuilder.build();
     LOGGER.debug("Request: " + request.toString());
+    return request;
+  }
 
-    asyncClient.search(request, ObjectNode.class).whenComplete((response, error) -> {
-      if (error != null) {
-        LOGGER.error("Search failed: {}", error.getMessage(), error);
-        promise.fail(new DxInternalServerErrorException(error.getMessage(), error));
-        return;
+  /**
+   * Approximate kNN search over the HNSW index of the word vectors for the {@code k} nearest items
+   * that match the filter. Filtering while the graph is searched, instead of after, keeps items the
+   * caller may not see from taking up the {@code k} places.
+   */
+  private static KnnSearch knnSearch(List<Double> vector, QueryModel filter, int k) {
+    List<Float> queryVector = new ArrayList<>(vector.size());
+    for (Double value : vector) {
+      queryVector.add(value.floatValue());
+    }
+    int nearest = Math.min(k, KNN_MAX_CANDIDATES);
+    int candidates = Math.min(KNN_MAX_CANDIDATES, Math.max(KNN_MIN_CANDIDATES, 2 * nearest));
+    return KnnSearch.of(knn -> {
+      knn.field(WORD_VECTOR_KEY).queryVector(queryVector).k(nearest).numCandidates(candidates);
+      if (filter != null) {
+        knn.filter(filter.toElasticsearchQuery());
       }
+      return knn;
+    });
+  }
 
-      try {
-        List<ElasticsearchResponse> esResponses = new ArrayList<>();
-        JsonObject aggregationsJson = new JsonObject();
+  private static int parseOffset(QueryModel model) {
+    return model.getOffset() == null ? 0 : Integer.parseInt(model.getOffset());
+  }
 
-        // 1. Handle hits if needed
-        if (!options.startsWith(AGGREGATION_ONLY)) {
-          for (var hit : response.hits().hits()) {
-            String id = hit.id();
-            JsonObject source = hit.source() != null ? new JsonObject(hit.source().toString()) : new JsonObject();
-            JsonObject result = new JsonObject();
-            switch (options) {
-              case DOC_IDS_ONLY:
-                result.put(ID, id);
-                break;
-              case SOURCE_AND_ID:
-                result.put(ID, id).put(SOURCE, source);
-                break;
-              case SOURCE_AND_ID_GEOQUERY:
-                source.put("doc_id", id);
-                result.mergeIn(source);
-                break;
-              case SOURCE_ONLY:
-                source.remove(SUMMARY_KEY);
-                source.remove(WORD_VECTOR_KEY);
-                result = source;
-                break;
-              default:
-                result = source;
-                break;
-            }
-
-            esResponses.add(new ElasticsearchResponse(id, result));
-          }
+  /**
+   * Sort for the request. Point-in-time searches always end with a {@code _shard_doc} tiebreaker
+   * so that search_after resumes exactly after the last hit of the previous page. Scans that
+   * already sort on {@code _shard_doc} alone are left untouched.
+   */
+  private static List<SortOptions> toSortOptions(QueryModel model, boolean pointInTime) {
+    List<SortOptions> sortOptions = model.toSortOptions();
+    if (!pointInTime) {
+      return sortOptions;
+    }
+    if (model.getSortFields() != null && model.getSortFields().containsKey(SHARD_DOC)) {
+      return sortOptions;
+    }
+    List<SortOptions> cursorSort = new ArrayList<>();
+    if (sortOptions == null) {
+      cursorSort.add(SortOptions.of(s -> s.score(sc -> sc.order(SortOrder.Desc))));
+    } else {
+      cursorSort.addAll(sortOptions);
+    }
+    cursorSort.add(SortOptions.of(s -> s.field(f -> f.field(SHARD_DOC).order(SortOrder.Asc))));
+    return cursorSort;
+  }
 
-          long totalHits = response.hits().total() != null ? response.hits().total().value() : 0;
-          ElasticsearchResponse.setTotalHits((int) totalHits);
-        }
+  private static JsonArray lastSortValues(List<Hit<ObjectNode>> hits) {
+    if (hits.isEmpty()) {
+      return null;
+    }
+    JsonArray values = new JsonArray();
+    hits.getLast().sort().forEach(value -> values.add(value._get()));
+    return values;
+  }
 
-        // 2. Handle aggregations if needed
-        if (options.startsWith(AGGREGATION_ONLY) || options.equals(COUNT_AGGREGATION_ONLY)) {
-          aggregationsJson = parseAggregations(response, options);
-        }
+  /**
+   * Source filtering for the request. Internal fields ({@code _summary}, {@code _word_vector}) are
+   * excluded on the Elasticsearch side for source-only searches so they are never transferred.
+   */
+  private SourceConfig toSourceConfig(QueryModel model, String options) {
+    if (!SOURCE_ONLY.equals(options) && !RAW_SOURCE_ONLY.equals(options)
+        && !RAW_NDJSON_ONLY.equals(options)) {
+      return model.toSourceConfig();
+    }
+    List<String> excludes = new ArrayList<>(INTERNAL_SOURCE_FIELDS);
+    if (model.getExcludeFields() != null) {
+      excludes.addAll(model.getExcludeFields());
+    }
+    List<String> includes = model.getIncludeFields();
+    return SourceConfig.of(s -> s.filter(f -> {
+      if (includes != null) {
+        f.includes(includes);
+      }
+      return f.excludes(excludes);
+    }));
+  }
 
-        if (!aggregationsJson.isEmpty()) {
-          ElasticsearchResponse.setAggregations(aggregationsJson);
+  /**
+   * Writes the hit sources straight from the Jackson tree, either as a single JSON array or as
+   * newline delimited JSON with one source per line.
+   */
+  private static String writeRawSources(List<Hit<ObjectNode>> hits, boolean ndjson)
+      throws IOException {
+    StringWriter writer = new StringWriter();
+    try (com.fasterxml.jackson.core.JsonGenerator generator =
+        DatabindCodec.mapper().createGenerator(writer)) {
+      if (ndjson) {
+        generator.setRootValueSeparator(null);
+      } else {
+        generator.writeStartArray();
+      }
+      for (Hit<ObjectNode> hit : hits) {
+        if (hit.source() != null) {
+          generator.writeTree(hit.source());
+          if (ndjson) {
+            generator.writeRaw('\n');
+          }
         }
-
-        promise.complete(esResponses);
-      } catch (Exception e) {
-        LOGGER.error("Failed to parse search response", e);
-        promise.fail(new DxInternalServerErrorException("Failed to parse search result", e));
       }
-    });
-
-    return promise.future();
+      if (!ndjson) {
+        generator.writeEndArray();
+      }
+    }
+    return writer.toString();
   }
 
   private int parseSize(String options, QueryModel model) {
@@ -154,59 +391,39 @@ public class ElasticsearchServiceImpl implements ElasticsearchService {
     }
   }
 
-  private JsonObject parseAggregations(SearchResponse<ObjectNode> response, String options) {
-    JsonObject aggResult = new JsonObject();
-    JsonpMapper mapper = asyncClient._jsonpMapper().withAttribute(JsonpMapperFeatures.SERIALIZE_TYPED_KEYS, false);
-    StringWriter writer = new StringWriter();
-    try (JsonGenerator generator = mapper.jsonProvider().createGenerator(writer)) {
-      mapper.serialize(response, generator);
-    } catch (Exception e) {
-      LOGGER.error("Error serializing aggregations: ", e);
-      throw new DxInternalServerErrorException("Failed to process aggregations", e);
-    }
-    String result = writer.toString();
-
-    // Parse the aggregations object from the serialized result
-    JsonObject rawAggs = new JsonObject(result).getJsonObject(AGGREGATIONS);
-    if (rawAggs == null) {
-      return aggResult;
+  private JsonObject parseAggregations(ResponseBody<ObjectNode> response, String options) {
+    Map<String, Aggregate> aggregations = response.aggregations();
+    if (aggregations == null || aggregations.isEmpty()) {
+      return new JsonObject();
     }
 
     if (AGGREGATION_LIST.equals(options)) {
-      for (String aggKey : rawAggs.fieldNames()) {
-        JsonArray keys = new JsonArray();
-        JsonObject agg = rawAggs.getJsonObject(aggKey);
-        if (agg.containsKey(BUCKETS)) {
-          JsonArray buckets = agg.getJsonArray(BUCKETS);
-          for (int i = 0; i < buckets.size(); i++) {
-            keys.add(buckets.getJsonObject(i).getString(KEY));
-          }
-        }
-        aggResult.put(aggKey, keys);
-      }
+      return aggregationReader.bucketKeys(aggregations);
     } else if (COUNT_AGGREGATION_ONLY.equals(options)) {
-      JsonObject resultsAgg = rawAggs.getJsonObject(RESULTS);
-
-      if (resultsAgg != null && resultsAgg.containsKey(BUCKETS)) {
-        JsonArray buckets = resultsAgg.getJsonArray(BUCKETS);
-        for (int i = 0; i < buckets.size(); i++) {
-          JsonObject bucket = buckets.getJsonObject(i);
-          aggResult.put(bucket.getString(KEY), bucket.getInteger(DOC_COUNT));
-        }
-      }
-    } else {
-      aggResult.mergeIn(rawAggs);
+      return aggregationReader.bucketCounts(aggregations.get(RESULTS));
     }
-
-    return aggResult;
+    return aggregationReader.toJson(aggregations);
   }
 
 
   @Override
   public Future<Integer> count(String index, QueryModel queryModel) {
+    Supplier<Future<Integer>> loader = () -> coalesced(COUNT, index, queryModel, COUNT,
+        () -> executeCount(index, queryModel), UnaryOperator.identity());
+    if (searchResultCache == null) {
+      return loader.get();
+    }
+    return searchResultCache.getOrLoad(COUNT, index, queryModel, COUNT, loader,
+        UnaryOperator.identity());
+  }
+
+  private Future<Integer> executeCount(String index, QueryModel queryModel) {
     // Convert QueryModel into Elasticsearch Query
     Query query = queryModel.getQueries() == null ? null : queryModel.getQueries().toElasticsearchQuery();
     LOGGER.debug("Count query {}", query);
+    if (msearchDispatcher != null) {
+      return executeBatchedCount(index, query);
+    }
     // Create a CountRequest.Builder for the count query
     CountRequest.Builder requestBuilder = new CountRequest.Builder().index(index);
     // Add query if present
@@ -249,17 +466,122 @@ public class ElasticsearchServiceImpl implements ElasticsearchService {
 
     return promise.future();
   }
+
+  /** Counts with a size 0 search, which unlike _count can be batched into an _msearch call. */
+  private Future<Integer> executeBatchedCount(String index, Query query) {
+    Promise<Integer> promise = Promise.promise();
+    SearchRequest.Builder requestBuilder = new SearchRequest.Builder()
+        .index(index)
+        .size(0)
+        .trackTotalHits(t -> t.enabled(true));
+    if (query != null) {
+      requestBuilder.query(query);
+    }
+    msearchDispatcher.search(requestBuilder.build()).whenComplete((response, error) -> {
+      if (error != null) {
+        LOGGER.error("Count operation failed: {}", error.getMessage());
+        promise.fail(new DxInternalServerErrorException("Elasticsearch cluster is unreachable"));
+      } else {
+        long count = response.hits().total() != null ? response.hits().total().value() : 0L;
+        try {
+          promise.complete(Math.toIntExact(count));
+        } catch (ArithmeticException e) {
+          LOGGER.error("Count value too large for Integer conversion");
+          promise.fail(new DxBadRequestException("Count value too large for Integer conversion"));
+        }
+      }
+    });
+    return promise.future();
+  }
+
+  /**
+   * Sends the search as a stored template when its query shape has one, and inline otherwise. A
+   * template that has gone missing from the cluster is retried inline.
+   */
+  private CompletableFuture<? extends ResponseBody<ObjectNode>> send(
+      String index, QueryModel queryModel, String options, int limit) {
+    if (queryModel.getKnnFilter() != null) {
+      return sendHybrid(index, queryModel, options, limit);
+    }
+    SearchTemplateRequest templateRequest = searchTemplates == null ? null
+        : searchTemplates.toTemplateRequest(
+            index, queryModel, limit, toSourceConfig(queryModel, options));
+    if (templateRequest == null) {
+      return sendSearch(buildSearchRequest(index, queryModel, options, limit));
+    }
+    return searchTemplates.search(templateRequest).exceptionallyCompose(
+        error -> SearchTemplates.isMissingTemplate(error)
+            ? asyncClient.search(buildSearchRequest(index, queryModel, options, limit),
+                ObjectNode.class)
+            : CompletableFuture.failedFuture(error));
+  }
+
+  /**
+   * Runs the text and the kNN half of a hybrid search side by side, each for its best hits up to
+   * the end of the page, and fuses their rankings with {@link RankFusion}. The page is cut from the
+   * fused ranking.
+   *
+   * <p>The total is the text half's total, or the fused ranking's size if that is larger. It is
+   * exact only when the text half returned all its matches, since nothing tells how many of the
+   * nearest items beyond the page also match the text; otherwise it is a lower bound.
+   */
+  private CompletableFuture<SearchResponse<ObjectNode>> sendHybrid(
+      String index, QueryModel queryModel, String options, int limit) {
+    int from = parseOffset(queryModel);
+    int window = from + limit;
+    SourceConfig sourceConfig = toSourceConfig(queryModel, options);
+    SearchRequest textRequest = SearchRequest.of(s -> {
+      s.index(index).query(queryModel.getQueries().toElasticsearchQuery()).size(window);
+      return sourceConfig == null ? s : s.source(sourceConfig);
+    });
+    SearchRequest knnRequest = SearchRequest.of(s -> {
+      s.index(index)
+          .knn(knnSearch(queryModel.getKnnVector(), queryModel.getKnnFilter(), window))
+          .size(window);
+      return sourceConfig == null ? s : s.source(sourceConfig);
+    });
+    return sendSearch(textRequest).thenCombine(sendSearch(knnRequest), (text, knn) -> {
+      List<Hit<ObjectNode>> fused = RankFusion.fuse(
+          List.of(text.hits().hits(), knn.hits().hits()), RankFusion.RANK_CONSTANT);
+      List<Hit<ObjectNode>> page =
+          fused.subList(Math.min(from, fused.size()), Math.min(window, fused.size()));
+      TotalHits textTotal = text.hits().total();
+      boolean textComplete = textTotal != null
+          && textTotal.relation() == TotalHitsRelation.Eq
+          && textTotal.value() <= text.hits().hits().size();
+      long total = Math.max(textTotal == null ? 0 : textTotal.value(), fused.size());
+      return SearchResponse.of(r -> r
+          .took(Math.max(text.took(), knn.took()))
+          .timedOut(text.timedOut() || knn.timedOut())
+          .shards(text.shards())
+          .hits(h -> h
+              .total(t -> t.value(total)
+                  .relation(textComplete ? TotalHitsRelation.Eq : TotalHitsRelation.Gte))
+              .hits(page)));
+    });
+  }
+
+  /** Sends the search on its own, or with others in one _msearch call when batching is on. */
+  private CompletableFuture<? extends ResponseBody<ObjectNode>> sendSearch(
+      SearchRequest request) {
+    if (msearchDispatcher == null || request.pit() != null || request.slice() != null) {
+      return asyncClient.search(request, ObjectNode.class);
+    }
+    return msearchDispatcher.search(request);
+  }
+
   // Public API methods
 
   @Override
   public Future<Void> deleteByQuery(String index, QueryModel queryModel) {
     return validateIndex(index)
             .compose(v -> validateQueryModel(queryModel))
-            .compose(v -> executeDeleteByQuery(index, queryModel));
+            .compose(v -> executeDeleteByQuery(index, queryModel))
+            .onComplete(ar -> invalidateCachedResults(index));
   }
 
   @Override
-  public Future<ElasticsearchResponse> getSingleDocument(String index, QueryModel queryModel) {
+  public Future<SearchResult> getSingleDocument(String index, QueryModel queryModel) {
     return validateIndex(index)
             .compose(v -> performSingleSearch(index, queryModel));
   }
@@ -268,14 +590,29 @@ public class ElasticsearchServiceImpl implements ElasticsearchService {
   public Future<List<String>> createDocuments(String index, List<QueryModel> documentModels) {
     return validateIndex(index)
             .compose(v -> validateDocumentModels(documentModels))
-            .compose(v -> executeBulkIndex(index, documentModels));
+            .compose(v -> executeBulkIndex(index, documentModels))
+            .onComplete(ar -> invalidateCachedResults(index));
+  }
+
+  @Override
+  public Future<JsonArray> bulkCreateDocuments(String index, List<QueryModel> documentModels) {
+    return validateIndex(index)
+            .compose(v -> validateDocumentModels(documentModels))
+            .compose(v -> executeBulkCreate(index, documentModels))
+            .onComplete(ar -> invalidateCachedResults(index));
+  }
+
+  @Override
+  public Future<String> updateRefreshInterval(String index, String refreshInterval) {
+    return validateIndex(index).compose(v -> executeUpdateRefreshInterval(index, refreshInterval));
   }
 
   @Override
   public Future<Void> deleteDocument(String index, String id) {
     return validateIndex(index)
             .compose(v -> validateId(id))
-            .compose(v -> executeDeleteDocument(index, id));
+            .compose(v -> executeDeleteDocument(index, id))
+            .onComplete(ar -> invalidateCachedResults(index));
   }
 
   @Override
@@ -285,14 +622,119 @@ public class ElasticsearchServiceImpl implements ElasticsearchService {
             .compose(v -> validateId(id))
             .compose(v -> validateQueryModel(queryModel))
             .compose(v -> executeExistenceCheck(index, id))
-            .compose(v -> executeUpdate(index, id, queryModel));
+            .compose(v -> executeUpdate(index, id, queryModel))
+            .onComplete(ar -> invalidateCachedResults(index));
   }
 
   @Override
   public Future<Void> updateDocumentsByQuery(QueryModel queryModel, String index) {
     return validateIndex(index)
             .compose(v -> validateQueryModel(queryModel))
-            .compose(v -> executeUpdateByQuery(index, queryModel));
+            .compose(v -> executeUpdateByQuery(index, queryModel))
+            .onComplete(ar -> invalidateCachedResults(index));
+  }
+
+  @Override
+  public Future<JsonArray> percolate(String index, String field, JsonArray documents) {
+    if (documents == null || documents.isEmpty()) {
+      return Future.succeededFuture(new JsonArray());
+    }
+    return validateIndex(index).compose(v -> executePercolate(index, field, documents));
+  }
+
+  @Override
+  public Future<JsonObject> submitAsyncSearch(String index, QueryModel queryModel, String options,
+      String waitForCompletion, String keepAlive) {
+    return validateIndex(index)
+        .compose(v -> validateQueryModel(queryModel))
+        .compose(v -> executeSubmitAsyncSearch(
+            index, queryModel, options, waitForCompletion, keepAlive));
+  }
+
+  @Override
+  public Future<JsonObject> getAsyncSearch(String id, String options) {
+    Promise<JsonObject> promise = Promise.promise();
+    asyncClient.asyncSearch().get(g -> g.id(id), ObjectNode.class)
+        .whenComplete((resp, err) -> {
+          if (err != null) {
+            promise.fail(asyncSearchFailure("Get async search", err));
+            return;
+          }
+          try {
+            promise.complete(toAsyncSearchJson(resp, options));
+          } catch (Exception e) {
+            LOGGER.error("Failed to parse async search response", e);
+            promise.fail(new DxInternalServerErrorException("Failed to parse search result", e));
+          }
+        });
+    return promise.future();
+  }
+
+  @Override
+  public Future<JsonObject> getAsyncSearchStatus(String id) {
+    Promise<JsonObject> promise = Promise.promise();
+    asyncClient.asyncSearch().status(s -> s.id(id))
+        .whenComplete((resp, err) -> {
+          if (err != null) {
+            promise.fail(asyncSearchFailure("Async search status", err));
+          } else {
+            promise.complete(toAsyncSearchState(resp));
+          }
+        });
+    return promise.future();
+  }
+
+  @Override
+  public Future<Void> deleteAsyncSearch(String id) {
+    Promise<Void> promise = Promise.promise();
+    asyncClient.asyncSearch().delete(d -> d.id(id))
+        .whenComplete((resp, err) -> {
+          if (err != null) {
+            promise.fail(asyncSearchFailure("Delete async search", err));
+          } else {
+            promise.complete();
+          }
+        });
+    return promise.future();
+  }
+
+  @Override
+  public Future<String> openPointInTime(String index, String keepAlive) {
+    Promise<String> promise = Promise.promise();
+    asyncClient.openPointInTime(r -> r.index(index).keepAlive(k -> k.time(keepAlive)))
+        .whenComplete((resp, err) -> {
+          if (err != null) {
+            LOGGER.error("Open point in time failed: {}", err.getMessage());
+            promise.fail(new DxInternalServerErrorException("Failed to open point in time", err));
+          } else {
+            promise.complete(resp.id());
+          }
+        });
+    return promise.future();
+  }
+
+  @Override
+  public Future<Void> closePointInTime(String pitId) {
+    Promise<Void> promise = Promise.promise();
+    asyncClient.closePointInTime(r -> r.id(pitId))
+        .whenComplete((resp, err) -> {
+          if (err != null) {
+            LOGGER.warn("Close point in time failed: {}", err.getMessage());
+            promise.fail(new DxInternalServerErrorException("Failed to close point in time", err));
+          } else {
+            promise.complete();
+          }
+        });
+    return promise.future();
+  }
+
+  private void invalidateCachedResults(String index) {
+    if (searchResultCache != null) {
+      searchResultCache.invalidate(index);
+    }
+    if (searchCoalescer != null) {
+      searchCoalescer.invalidate(index);
+    }
   }
 
   // Validation helpers
@@ -354,29 +796,30 @@ public class ElasticsearchServiceImpl implements ElasticsearchService {
     return promise.future();
   }
 
-  private Future<ElasticsearchResponse> performSingleSearch(String index, QueryModel model) {
-    Promise<ElasticsearchResponse> promise = Promise.promise();
+  private Future<SearchResult> performSingleSearch(String index, QueryModel model) {
+    Promise<SearchResult> promise = Promise.promise();
     SearchRequest.Builder builder = new SearchRequest.Builder()
             .index(index)
             .query(model.toElasticsearchQuery())
             .size(1)
-            .from(0);
-    asyncClient.search(builder.build(), ObjectNode.class)
+            .from(0)
+            .source(src -> src.filter(f -> f.excludes(SUMMARY_KEY)));
+    sendSearch(builder.build())
         .whenComplete((resp, err) -> {
           if (err != null) {
             promise.fail(new RuntimeException("Search error", err));
           } else if (resp.hits().total().value()==0) {
-            ElasticsearchResponse.setTotalHits(0);
             LOGGER.debug("No documents found ");
-            promise.complete(new ElasticsearchResponse());
+            promise.complete(new SearchResult(new ArrayList<>(), 0, null, resp.took()));
           } else {
             Hit <ObjectNode> hit = resp.hits().hits().getFirst();
             LOGGER.debug("Single document found with ID: {}", hit.id());
-            JsonObject source = JsonObject.mapFrom(hit.source());
-            source.remove(SUMMARY_KEY);
-            ElasticsearchResponse response = new ElasticsearchResponse(hit.id(), new JsonObject(source.toString()));
-            ElasticsearchResponse.setTotalHits((int) resp.hits().total().value());
-            promise.complete(response);
+            JsonObject source = hit.source() != null ? new JsonObject(hit.source().toString()) : new JsonObject();
+            ElasticsearchResponse response = new ElasticsearchResponse(hit.id(), source);
+            List<ElasticsearchResponse> hits = new ArrayList<>();
+            hits.add(response);
+            promise.complete(
+                new SearchResult(hits, (int) resp.hits().total().value(), null, resp.took()));
           }
         });
     return promise.future();
@@ -411,6 +854,210 @@ public class ElasticsearchServiceImpl implements ElasticsearchService {
     return promise.future();
   }
 
+  private Future<JsonArray> executeBulkCreate(String index, List<QueryModel> models) {
+    Promise<JsonArray> promise = Promise.promise();
+    BulkRequest.Builder bulkBuilder = new BulkRequest.Builder().index(index);
+    models.forEach(queryModel -> {
+      JsonObject doc = queryModel.extractDocumentFromQueryModel();
+      JsonData jsonData = JsonData.fromJson(doc.encode());
+      bulkBuilder.operations(operation -> operation.create(c -> c.id(doc.getString("id"))
+              .document(jsonData)));
+    });
+    asyncClient.bulk(bulkBuilder.build()).whenComplete((bulkResponse, error) -> {
+      if (error != null) {
+        LOGGER.error("bulk create failed: {}", error.getMessage());
+        promise.fail(new DxInternalServerErrorException("Bulk create error", error));
+        return;
+      }
+      JsonArray results = new JsonArray();
+      for (BulkResponseItem item : bulkResponse.items()) {
+        JsonObject result = new JsonObject().put(ID, item.id()).put(BULK_ITEM_STATUS, item.status());
+        if (item.error() != null) {
+          result.put(ERROR, item.error().reason());
+        }
+        results.add(result);
+      }
+      LOGGER.debug("bulk create of {} documents took {}ms", models.size(), bulkResponse.took());
+      promise.complete(results);
+    });
+    return promise.future();
+  }
+
+  private Future<JsonArray> executePercolate(String index, String field, JsonArray documents) {
+    Promise<JsonArray> promise = Promise.promise();
+    List<JsonData> docs = new ArrayList<>(documents.size());
+    for (Object document : documents) {
+      docs.add(JsonData.fromJson(((JsonObject) document).encode()));
+    }
+    SearchRequest request = SearchRequest.of(s -> s
+        .index(index)
+        .query(q -> q.percolate(p -> p.field(field).documents(docs)))
+        .size(MAX_PERCOLATOR_MATCHES)
+        .source(src -> src.filter(f -> f.excludes(field))));
+    asyncClient.search(request, ObjectNode.class).whenComplete((response, err) -> {
+      if (err != null) {
+        LOGGER.error("Percolate failed: {}", err.getMessage());
+        promise.fail(new DxInternalServerErrorException("Failed to percolate documents", err));
+        return;
+      }
+      JsonArray matches = new JsonArray();
+      for (Hit<ObjectNode> hit : response.hits().hits()) {
+        JsonData slots = hit.fields().get(PERCOLATOR_SLOTS);
+        matches.add(new JsonObject()
+            .put(ID, hit.id())
+            .put(SOURCE, hit.source() != null
+                ? new JsonObject(hit.source().toString()) : new JsonObject())
+            .put(SLOTS, slots != null
+                ? new JsonArray(slots.toJson().toString()) : new JsonArray().add(0)));
+      }
+      LOGGER.debug("Percolated {} documents: {} matches", documents.size(), matches.size());
+      promise.complete(matches);
+    });
+    return promise.future();
+  }
+
+  /**
+   * Submits the request the search would send, so it finds the same hits. A search that completes
+   * within the wait is answered in full and not kept; cursor pages and hybrid searches, which are
+   * more than one request, cannot be submitted.
+   */
+  private Future<JsonObject> executeSubmitAsyncSearch(String index, QueryModel queryModel,
+      String options, String waitForCompletion, String keepAlive) {
+    if (queryModel.getPitId() != null || queryModel.getKnnFilter() != null) {
+      return Future.failedFuture(new DxBadRequestException(
+          "Cursor and hybrid searches cannot be run asynchronously"));
+    }
+    Promise<JsonObject> promise = Promise.promise();
+    SearchRequest search =
+        buildSearchRequest(index, queryModel, options, parseSize(options, queryModel));
+    SubmitRequest request = SubmitRequest.of(s -> {
+      s.index(index)
+          .size(search.size())
+          .waitForCompletionTimeout(t -> t.time(waitForCompletion))
+          .keepAlive(k -> k.time(keepAlive))
+          .keepOnCompletion(false);
+      if (search.query() != null) {
+        s.query(search.query());
+      }
+      if (!search.knn().isEmpty()) {
+        s.knn(search.knn());
+      }
+      if (!search.aggregations().isEmpty()) {
+        s.aggregations(search.aggregations());
+      }
+      if (search.postFilter() != null) {
+        s.postFilter(search.postFilter());
+      }
+      if (search.from() != null) {
+        s.from(search.from());
+      }
+      if (search.source() != null) {
+        s.source(search.source());
+      }
+      if (!search.sort().isEmpty()) {
+        s.sort(search.sort());
+      }
+      if (!search.searchAfter().isEmpty()) {
+        s.searchAfter(search.searchAfter());
+      }
+      return s;
+    });
+    asyncClient.asyncSearch().submit(request, ObjectNode.class).whenComplete((resp, err) -> {
+      if (err != null) {
+        LOGGER.error("Submit async search failed: {}", err.getMessage(), err);
+        promise.fail(new DxInternalServerErrorException(err.getMessage(), err));
+        return;
+      }
+      try {
+        promise.complete(toAsyncSearchJson(resp, options));
+      } catch (Exception e) {
+        LOGGER.error("Failed to parse async search response", e);
+        promise.fail(new DxInternalServerErrorException("Failed to parse search result", e));
+      }
+    });
+    return promise.future();
+  }
+
+  private JsonObject toAsyncSearchJson(
+      AsyncSearchDocumentResponseBase<ObjectNode> response, String options) throws IOException {
+    JsonObject json = toAsyncSearchState(response);
+    if (!response.isRunning()) {
+      AsyncSearch<ObjectNode> search = response.response();
+      SearchResponse<ObjectNode> searchResponse = SearchResponse.of(r -> r
+          .took(search.took())
+          .timedOut(search.timedOut())
+          .shards(search.shards())
+          .hits(search.hits())
+          .aggregations(search.aggregations()));
+      json.put(ASYNC_RESULT, toSearchResult(
+          searchResponse, options, 0, false).toJson());
+    }
+    return json;
+  }
+
+  private static JsonObject toAsyncSearchState(AsyncSearchResponseBase response) {
+    JsonObject json = new JsonObject()
+        .put(ID, response.id())
+        .put(ASYNC_RUNNING, response.isRunning())
+        .put(ASYNC_PARTIAL, response.isPartial())
+        .put(ASYNC_START_TIME, response.startTimeInMillis())
+        .put(ASYNC_EXPIRATION_TIME, response.expirationTimeInMillis());
+    if (response.completionTimeInMillis() != null) {
+      json.put(ASYNC_COMPLETION_TIME, response.completionTimeInMillis());
+    }
+    return json;
+  }
+
+  /**
+   * Elasticsearch answers a search on a point in time it no longer has with a 404, which for the
+   * caller means its cursor has expired.
+   */
+  private static RuntimeException searchFailure(Throwable error, boolean pointInTime) {
+    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+    if (pointInTime && cause instanceof ElasticsearchException e && e.status() == 404) {
+      LOGGER.debug("Search on an expired point in time: {}", cause.getMessage());
+      return new DxBadRequestException("Cursor expired, start again with cursor=*");
+    }
+    LOGGER.error("Search failed: {}", error.getMessage(), error);
+    return new DxInternalServerErrorException(error.getMessage(), error);
+  }
+
+  /** An id Elasticsearch does not know is an async search that has expired or was deleted. */
+  private static RuntimeException asyncSearchFailure(String operation, Throwable error) {
+    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+    if (cause instanceof ElasticsearchException e && e.status() == 404) {
+      return new DxNotFoundException("Async search not found");
+    }
+    LOGGER.error("{} failed: {}", operation, cause.getMessage());
+    return new DxInternalServerErrorException(cause.getMessage(), cause);
+  }
+
+  private Future<String> executeUpdateRefreshInterval(String index, String refreshInterval) {
+    Promise<String> promise = Promise.promise();
+    asyncClient.indices().getSettings(g -> g.index(index))
+        .thenCompose(settings -> {
+          IndexState state = settings.result().values().stream().findFirst().orElse(null);
+          Time previous = state == null || state.settings() == null ? null
+              : Optional.ofNullable(state.settings().refreshInterval())
+                  .orElse(state.settings().index() == null ? null
+                      : state.settings().index().refreshInterval());
+          return asyncClient.indices()
+              .putSettings(p -> p.index(index)
+                  .settings(s -> s.refreshInterval(t -> t.time(refreshInterval))))
+              .thenApply(resp -> previous == null || previous.time() == null
+                  ? DEFAULT_REFRESH_INTERVAL : previous.time());
+        })
+        .whenComplete((previous, err) -> {
+          if (err != null) {
+            LOGGER.error("Update refresh interval failed: {}", err.getMessage());
+            promise.fail(new DxInternalServerErrorException("Failed to update refresh interval", err));
+          } else {
+            promise.complete(previous);
+          }
+        });
+    return promise.future();
+  }
+
   private Future<Void> executeDeleteDocument(String index, String id) {
     LOGGER.debug("Deleting document with ID: {}", id);
     Promise<Void> promise = Promise.promise();
@@ -0,0 +1,195 @@
+package org.cdpg.dx.database.elastic.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.core.MsearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
+import co.elastic.clients.elasticsearch.core.msearch.RequestItem;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Collects small searches arriving within a short window into a single {@code _msearch} call and
+ * hands each caller its own response. A batch is sent when the window closes or when it is full,
+ * whichever comes first. A failed search only fails its own caller; a failed {@code _msearch}
+ * call fails every search in the batch.
+ *
+ * <p>Only self-contained searches can be batched: point-in-time and sliced searches must be sent
+ * on their own.
+ */
+public class MsearchDispatcher {
+  private static final Logger LOGGER = LogManager.getLogger(MsearchDispatcher.class);
+  private static final String METRIC_PREFIX = "elasticsearch.msearch";
+
+  private final ElasticsearchAsyncClient asyncClient;
+  private final long windowMicros;
+  private final int maxBatchSize;
+  private final ScheduledExecutorService scheduler;
+  private final DistributionSummary batchSizes;
+  private final Timer batchLatency;
+  private final Timer queueWait;
+
+  private List<Pending> pending = new ArrayList<>();
+  private ScheduledFuture<?> scheduledFlush;
+
+  public MsearchDispatcher(
+      ElasticsearchAsyncClient asyncClient,
+      long windowMicros,
+      int maxBatchSize,
+      MeterRegistry registry) {
+    this.asyncClient = asyncClient;
+    this.windowMicros = windowMicros;
+    this.maxBatchSize = Math.max(1, maxBatchSize);
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "msearch-dispatcher");
+              thread.setDaemon(true);
+              return thread;
+            });
+    MeterRegistry meterRegistry = registry == null ? Metrics.globalRegistry : registry;
+    this.batchSizes = DistributionSummary.builder(METRIC_PREFIX + ".batch.size")
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+    this.batchLatency = Timer.builder(METRIC_PREFIX + ".latency")
+        .description("Round trip of one _msearch call")
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+    this.queueWait = Timer.builder(METRIC_PREFIX + ".queue.wait")
+        .description("Time a search waits for its batch to be sent")
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  /** Queues the search for the next batch. */
+  public CompletableFuture<ResponseBody<ObjectNode>> search(SearchRequest request) {
+    Pending search = new Pending(toRequestItem(request));
+    List<Pending> full = null;
+    synchronized (this) {
+      pending.add(search);
+      if (pending.size() >= maxBatchSize) {
+        full = takeBatch();
+      } else if (scheduledFlush == null) {
+        scheduledFlush = scheduler.schedule(this::flush, windowMicros, TimeUnit.MICROSECONDS);
+      }
+    }
+    if (full != null) {
+      send(full);
+    }
+    return search.future;
+  }
+
+  public void close() {
+    flush();
+    scheduler.shutdown();
+  }
+
+  private void flush() {
+    List<Pending> batch;
+    synchronized (this) {
+      batch = takeBatch();
+    }
+    if (!batch.isEmpty()) {
+      send(batch);
+    }
+  }
+
+  private List<Pending> takeBatch() {
+    List<Pending> batch = pending;
+    pending = new ArrayList<>();
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    return batch;
+  }
+
+  private void send(List<Pending> batch) {
+    long sentAt = System.nanoTime();
+    batchSizes.record(batch.size());
+    List<RequestItem> searches = new ArrayList<>(batch.size());
+    for (Pending search : batch) {
+      queueWait.record(sentAt - search.queuedAt, TimeUnit.NANOSECONDS);
+      searches.add(search.item);
+    }
+
+    asyncClient
+        .msearch(MsearchRequest.of(m -> m.searches(searches)), ObjectNode.class)
+        .whenComplete(
+            (response, error) -> {
+              batchLatency.record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS);
+              if (error != null) {
+                LOGGER.error("_msearch of {} searches failed: {}", batch.size(), error.getMessage());
+                batch.forEach(search -> search.future.completeExceptionally(error));
+                return;
+              }
+              List<MultiSearchResponseItem<ObjectNode>> responses = response.responses();
+              for (int i = 0; i < batch.size(); i++) {
+                CompletableFuture<ResponseBody<ObjectNode>> future = batch.get(i).future;
+                if (i >= responses.size()) {
+                  future.completeExceptionally(
+                      new IllegalStateException("No _msearch response for search " + i));
+                } else if (responses.get(i).isFailure()) {
+                  future.completeExceptionally(
+                      new ElasticsearchException("msearch", responses.get(i).failure()));
+                } else {
+                  future.complete(responses.get(i).result());
+                }
+              }
+            });
+  }
+
+  private static RequestItem toRequestItem(SearchRequest request) {
+    return RequestItem.of(
+        r ->
+            r.header(h -> h.index(request.index()))
+                .body(
+                    b -> {
+                      b.query(request.query())
+                          .size(request.size())
+                          .from(request.from())
+                          .source(request.source())
+                          .trackTotalHits(request.trackTotalHits());
+                      if (!request.aggregations().isEmpty()) {
+                        b.aggregations(request.aggregations());
+                      }
+                      if (!request.sort().isEmpty()) {
+                        b.sort(request.sort());
+                      }
+                      if (!request.searchAfter().isEmpty()) {
+                        b.searchAfter(request.searchAfter());
+                      }
+                      if (!request.knn().isEmpty()) {
+                        b.knn(request.knn());
+                      }
+                      if (request.postFilter() != null) {
+                        b.postFilter(request.postFilter());
+                      }
+                      return b;
+                    }));
+  }
+
+  private static final class Pending {
+    private final RequestItem item;
+    private final long queuedAt = System.nanoTime();
+    private final CompletableFuture<ResponseBody<ObjectNode>> future = new CompletableFuture<>();
+
+    private Pending(RequestItem item) {
+      this.item = item;
+    }
+  }
+}
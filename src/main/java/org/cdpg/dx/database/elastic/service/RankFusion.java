@@ -0,0 +1,38 @@
+package org.cdpg.dx.database.elastic.service;
+
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reciprocal rank fusion of ranked hit lists: a hit scores {@code 1 / (rankConstant + rank)} in
+ * each list it is in, and the fused list is ordered by the sum of its scores. Only ranks are used,
+ * so lists scored on different scales (BM25 and vector similarity) can be merged.
+ */
+final class RankFusion {
+  static final int RANK_CONSTANT = 60;
+
+  private RankFusion() {}
+
+  /** The hits of all lists, each once, best fused score first; ties keep their first position. */
+  static <T> List<Hit<T>> fuse(List<List<Hit<T>>> rankings, int rankConstant) {
+    Map<String, Double> scores = new LinkedHashMap<>();
+    Map<String, Hit<T>> hits = new LinkedHashMap<>();
+    for (List<Hit<T>> ranking : rankings) {
+      for (int rank = 0; rank < ranking.size(); rank++) {
+        Hit<T> hit = ranking.get(rank);
+        scores.merge(hit.id(), 1.0 / (rankConstant + rank + 1), Double::sum);
+        hits.putIfAbsent(hit.id(), hit);
+      }
+    }
+    List<String> ids = new ArrayList<>(scores.keySet());
+    ids.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
+    List<Hit<T>> fused = new ArrayList<>(ids.size());
+    for (String id : ids) {
+      fused.add(hits.get(id));
+    }
+    return fused;
+  }
+}
@@ -0,0 +1,92 @@
+package org.cdpg.dx.database.elastic.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import org.cdpg.dx.database.elastic.model.QueryModel;
+
+/**
+ * Single-flight coalescing of identical concurrent requests. The first caller for a key (the
+ * leader) runs the request; callers arriving with the same key while it is in flight (followers)
+ * wait for the leader's result instead of sending a duplicate request to Elasticsearch.
+ *
+ * <p>A completed write to an index detaches the requests in flight for it, so callers arriving
+ * after a write never wait on a read that started before it.
+ */
+public class SearchCoalescer {
+  private static final String METRIC_PREFIX = "elasticsearch.search.coalescing";
+
+  private final Map<String, Map<String, Future<?>>> inFlight = new ConcurrentHashMap<>();
+  private final Counter leaders;
+  private final Counter followers;
+
+  public SearchCoalescer(MeterRegistry registry) {
+    MeterRegistry meterRegistry = registry == null ? Metrics.globalRegistry : registry;
+    this.leaders = Counter.builder(METRIC_PREFIX + ".requests").tag("role", "leader")
+        .register(meterRegistry);
+    this.followers = Counter.builder(METRIC_PREFIX + ".requests").tag("role", "follower")
+        .register(meterRegistry);
+    meterRegistry.gauge(METRIC_PREFIX + ".ratio", this, SearchCoalescer::coalescedRatio);
+  }
+
+  /**
+   * Runs the request, or joins the identical one already in flight.
+   *
+   * @param copy makes the copy handed to each follower, so results are never shared
+   */
+  public <T> Future<T> join(
+      String kind,
+      String index,
+      QueryModel queryModel,
+      String options,
+      Supplier<Future<T>> loader,
+      UnaryOperator<T> copy) {
+    String key = SearchResultCache.key(kind, index, options, queryModel);
+    Map<String, Future<?>> requests =
+        inFlight.computeIfAbsent(index, i -> new ConcurrentHashMap<>());
+    Promise<T> shared = Promise.promise();
+    @SuppressWarnings("unchecked")
+    Future<T> existing = (Future<T>) requests.putIfAbsent(key, shared.future());
+    if (existing != null) {
+      followers.increment();
+      return existing.map(copy::apply);
+    }
+
+    leaders.increment();
+    Future<T> result;
+    try {
+      result = loader.get();
+    } catch (RuntimeException e) {
+      result = Future.failedFuture(e);
+    }
+    // Followers take their copies before the leader is handed the original
+    Promise<T> leader = Promise.promise();
+    result.onComplete(
+        ar -> {
+          requests.remove(key, shared.future());
+          shared.handle(ar);
+          leader.handle(ar);
+        });
+    return leader.future();
+  }
+
+  /** Records a completed write to the index, so later callers start a fresh request. */
+  public void invalidate(String index) {
+    Map<String, Future<?>> requests = inFlight.get(index);
+    if (requests != null) {
+      requests.clear();
+    }
+  }
+
+  /** Share of all requests that were served by joining one already in flight. */
+  private double coalescedRatio() {
+    double total = leaders.count() + followers.count();
+    return total == 0 ? 0 : followers.count() / total;
+  }
+}
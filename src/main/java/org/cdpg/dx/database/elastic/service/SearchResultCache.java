@@ -0,0 +1,191 @@
+package org.cdpg.dx.database.elastic.service;
+
+import static org.cdpg.dx.database.elastic.util.Constants.AGGREGATION_UNCACHED;
+import static org.cdpg.dx.database.elastic.util.Constants.RAW_NDJSON_ONLY;
+import static org.cdpg.dx.database.elastic.util.Constants.RAW_SOURCE_UNCACHED;
+import static org.cdpg.dx.database.elastic.util.Constants.SOURCE_UNCACHED;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.vertx.core.Future;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cdpg.dx.database.elastic.model.QueryModel;
+
+/**
+ * Bounded cache of search and count results keyed on a canonical form of the index, the query
+ * model and the result options. Access policy and ownership filters are part of the query model,
+ * so results are never shared across access scopes.
+ *
+ * <p>Every index has a write generation that is bumped whenever a write to it completes; entries
+ * cached under an older generation are treated as misses. Results read within a refresh interval of
+ * a write may not include it yet, so they are not cached at all. One cache is shared by the
+ * verticle instances of a Vert.x instance, so a write through any of them invalidates it. Writes
+ * made by other Vert.x instances are only picked up once an entry expires, which bounds staleness
+ * to {@code maxStalenessSeconds}. Reads that cannot tolerate that ask for one of the uncached
+ * options instead.
+ */
+public class SearchResultCache {
+  private static final Logger LOGGER = LogManager.getLogger(SearchResultCache.class);
+  private static final String METRIC_PREFIX = "elasticsearch.result.cache";
+  private static final long REFRESH_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final Cache<String, Entry> cache;
+  private final Map<String, WriteGeneration> generations = new ConcurrentHashMap<>();
+  private final Counter hits;
+  private final Counter misses;
+  private final MeterRegistry registry;
+
+  public SearchResultCache(long maxEntries, long maxStalenessSeconds, MeterRegistry registry) {
+    this.registry = registry == null ? Metrics.globalRegistry : registry;
+    this.hits = Counter.builder(METRIC_PREFIX + ".requests").tag("result", "hit")
+        .register(this.registry);
+    this.misses = Counter.builder(METRIC_PREFIX + ".requests").tag("result", "miss")
+        .register(this.registry);
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maxEntries)
+        .expireAfterWrite(maxStalenessSeconds, TimeUnit.SECONDS)
+        .<String, Entry>removalListener(removal -> {
+          if (removal.wasEvicted()) {
+            evicted(removal.getCause() == RemovalCause.SIZE ? "size" : "expired");
+          }
+        })
+        .build();
+    this.registry.gauge(METRIC_PREFIX + ".size", cache, Cache::size);
+  }
+
+  /**
+   * Point-in-time pages and scans are single use and uncached sources and aggregations are asked
+   * for explicitly, everything else may be served from cache.
+   */
+  public static boolean isCacheable(QueryModel queryModel, String options) {
+    return queryModel.getPitId() == null
+        && queryModel.getSearchAfter() == null
+        && queryModel.getSliceMax() == null
+        && !RAW_NDJSON_ONLY.equals(options)
+        && !AGGREGATION_UNCACHED.equals(options)
+        && !SOURCE_UNCACHED.equals(options)
+        && !RAW_SOURCE_UNCACHED.equals(options);
+  }
+
+  /**
+   * Returns the cached result for the request or loads and caches it.
+   *
+   * @param copy makes the copy handed to each caller, so cached values are never shared
+   */
+  public <T> Future<T> getOrLoad(
+      String kind,
+      String index,
+      QueryModel queryModel,
+      String options,
+      Supplier<Future<T>> loader,
+      UnaryOperator<T> copy) {
+    String key = key(kind, index, options, queryModel);
+    WriteGeneration generation = generation(index);
+    long current = generation.value;
+
+    Entry entry = cache.getIfPresent(key);
+    if (entry != null && entry.generation == current) {
+      hits.increment();
+      @SuppressWarnings("unchecked")
+      T value = (T) entry.value;
+      return Future.succeededFuture(copy.apply(value));
+    }
+    if (entry != null) {
+      cache.invalidate(key);
+      evicted("write");
+    }
+    misses.increment();
+
+    long startedAt = System.nanoTime();
+    return loader.get().onSuccess(result -> {
+      if (generation.value == current
+          && startedAt - generation.writtenAt > REFRESH_WINDOW_NANOS) {
+        cache.put(key, new Entry(current, copy.apply(result)));
+      }
+    });
+  }
+
+  /** Records a completed write to the index, which invalidates all results cached for it. */
+  public void invalidate(String index) {
+    WriteGeneration generation = generation(index);
+    synchronized (generation) {
+      generation.writtenAt = System.nanoTime();
+      generation.value++;
+    }
+    LOGGER.debug("Write generation of {} is now {}", index, generation.value);
+  }
+
+  private WriteGeneration generation(String index) {
+    return generations.computeIfAbsent(index, i -> new WriteGeneration());
+  }
+
+  private void evicted(String cause) {
+    Counter.builder(METRIC_PREFIX + ".evictions").tag("cause", cause).register(registry)
+        .increment();
+  }
+
+  /** Canonical key of a request, also used to find identical requests in flight. */
+  static String key(String kind, String index, String options, QueryModel queryModel) {
+    StringBuilder key = new StringBuilder(kind).append('|').append(index).append('|')
+        .append(options).append('|');
+    appendCanonical(key, queryModel.toJson());
+    return key.toString();
+  }
+
+  /** JSON with object keys sorted, so equal query models always produce the same key. */
+  private static void appendCanonical(StringBuilder out, Object value) {
+    if (value instanceof JsonObject object) {
+      out.append('{');
+      boolean first = true;
+      for (String field : new TreeSet<>(object.fieldNames())) {
+        if (!first) {
+          out.append(',');
+        }
+        first = false;
+        out.append(Json.encode(field)).append(':');
+        appendCanonical(out, object.getValue(field));
+      }
+      out.append('}');
+    } else if (value instanceof JsonArray array) {
+      out.append('[');
+      for (int i = 0; i < array.size(); i++) {
+        if (i > 0) {
+          out.append(',');
+        }
+        appendCanonical(out, array.getValue(i));
+      }
+      out.append(']');
+    } else {
+      out.append(Json.encode(value));
+    }
+  }
+
+  private static final class Entry {
+    private final long generation;
+    private final Object value;
+
+    private Entry(long generation, Object value) {
+      this.generation = generation;
+      this.value = value;
+    }
+  }
+
+  private static final class WriteGeneration {
+    private volatile long value;
+    private volatile long writtenAt = System.nanoTime() - 2 * REFRESH_WINDOW_NANOS;
+  }
+}
@@ -0,0 +1,312 @@
+package org.cdpg.dx.database.elastic.service;
+
+import static org.cdpg.dx.database.elastic.util.Constants.*;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.SearchTemplateRequest;
+import co.elastic.clients.elasticsearch.core.SearchTemplateResponse;
+import co.elastic.clients.elasticsearch.core.search.SourceConfig;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpUtils;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.vertx.core.json.Json;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cdpg.dx.database.elastic.model.QueryModel;
+
+/**
+ * Stored mustache search templates for the fixed query shapes built by the query decoder, so a
+ * search of a known shape is sent as a template id and its parameter values instead of the full
+ * query.
+ *
+ * <p>A shape is a query tree with the values taken from the request (fields, match values, text
+ * and range bounds) left out. Each shape registered at startup is stored in Elasticsearch under an
+ * id derived from its template. The template source is rendered from the same query model
+ * conversion as inline searches, with the parameters swapped for placeholders, so both forms send
+ * the same query. Searches of any other shape, and any shape whose template could not be stored, go
+ * inline.
+ */
+public class SearchTemplates {
+  private static final Logger LOGGER = LogManager.getLogger(SearchTemplates.class);
+  private static final String METRIC_PREFIX = "elasticsearch.search.template";
+  private static final String ID_PREFIX = "dx-search-";
+  private static final Set<String> PARAMETER_KEYS =
+      Set.of(FIELD, VALUE, Q_VALUE, "query",
+          GREATER_THAN_EQUALS, LESS_THAN_EQUALS, GREATER_THAN, LESS_THAN);
+
+  private final ElasticsearchAsyncClient asyncClient;
+  private final Map<String, List<Template>> templates = new ConcurrentHashMap<>();
+  private final Counter templated;
+  private final Counter inline;
+
+  public SearchTemplates(ElasticsearchAsyncClient asyncClient, MeterRegistry registry) {
+    this.asyncClient = asyncClient;
+    MeterRegistry meterRegistry = registry == null ? Metrics.globalRegistry : registry;
+    this.templated = Counter.builder(METRIC_PREFIX + ".requests").tag("mode", "template")
+        .register(meterRegistry);
+    this.inline = Counter.builder(METRIC_PREFIX + ".requests").tag("mode", "inline")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Stores a template for each shape; shapes become usable as their templates are stored. Values
+   * containing {@link org.cdpg.dx.database.elastic.util.Constants#TEMPLATE_PARAMETER} are the
+   * parameters of a shape, all other values are fixed parts of its template.
+   */
+  public void register(List<QueryModel> shapes) {
+    for (QueryModel shape : shapes) {
+      List<Object> values = new ArrayList<>();
+      String fingerprint = shape(shape, values);
+      boolean[] variable = new boolean[values.size()];
+      String[] constants = new String[values.size()];
+      for (int i = 0; i < values.size(); i++) {
+        constants[i] = values.get(i).toString();
+        variable[i] = constants[i].contains(TEMPLATE_PARAMETER);
+      }
+      String source = templateSource(shape, variable);
+      if (source == null) {
+        LOGGER.warn("Query shape cannot be templated: {}", fingerprint);
+        continue;
+      }
+      String id = ID_PREFIX
+          + Hashing.sha256().hashString(source, StandardCharsets.UTF_8).toString()
+              .substring(0, 16);
+      asyncClient
+          .putScript(p -> p.id(id).script(s -> s.lang("mustache").source(source)))
+          .whenComplete(
+              (response, error) -> {
+                if (error != null) {
+                  LOGGER.warn("Failed to store search template {}: {}", id, error.getMessage());
+                } else {
+                  templates.computeIfAbsent(fingerprint, f -> new CopyOnWriteArrayList<>())
+                      .add(new Template(id, variable, constants));
+                  LOGGER.debug("Stored search template {} for {}", id, fingerprint);
+                }
+              });
+    }
+  }
+
+  /**
+   * The search as a template request, or null if its shape has no stored template or it uses
+   * options templates do not cover (aggregations, sorting, kNN, cursors and slices).
+   */
+  public SearchTemplateRequest toTemplateRequest(
+      String index, QueryModel queryModel, int size, SourceConfig sourceConfig) {
+    QueryModel queries = queryModel.getQueries();
+    if (queries == null
+        || (queryModel.getAggregations() != null && !queryModel.getAggregations().isEmpty())
+        || (queryModel.getSortFields() != null && !queryModel.getSortFields().isEmpty())
+        || queryModel.getPitId() != null
+        || queryModel.getKnnVector() != null
+        || queryModel.getPostFilter() != null
+        || queryModel.getSearchAfter() != null
+        || queryModel.getSliceMax() != null) {
+      inline.increment();
+      return null;
+    }
+    List<Object> values = new ArrayList<>();
+    Template template = find(templates.get(shape(queries, values)), values);
+    if (template == null) {
+      inline.increment();
+      return null;
+    }
+    templated.increment();
+
+    Map<String, JsonData> params = new HashMap<>();
+    for (int i = 0, param = 0; i < values.size(); i++) {
+      if (template.variable[i]) {
+        // Inline queries take the string form of every parameter value too
+        params.put("p" + param++, JsonData.of(values.get(i).toString()));
+      }
+    }
+    params.put("size", JsonData.of(size));
+    params.put("from", JsonData.of(
+        queryModel.getOffset() == null ? 0 : Integer.parseInt(queryModel.getOffset())));
+    params.put("source", sourceConfig == null ? JsonData.of(true) : JsonData.of(sourceConfig));
+    return SearchTemplateRequest.of(t -> t.index(index).id(template.id).params(params));
+  }
+
+  /** The template of the shape whose fixed values are the ones in the search. */
+  private static Template find(List<Template> candidates, List<Object> values) {
+    if (candidates == null) {
+      return null;
+    }
+    for (Template template : candidates) {
+      boolean matches = true;
+      for (int i = 0; i < values.size() && matches; i++) {
+        matches = template.variable[i] || template.constants[i].equals(values.get(i).toString());
+      }
+      if (matches) {
+        return template;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Runs the template search. If its template has gone missing from the cluster, the shape is
+   * dropped so later searches of it go inline.
+   */
+  public CompletableFuture<SearchResponse<ObjectNode>> search(SearchTemplateRequest request) {
+    return asyncClient
+        .searchTemplate(request, ObjectNode.class)
+        .whenComplete(
+            (response, error) -> {
+              if (error != null && isMissingTemplate(error)) {
+                LOGGER.warn("Search template {} is missing, searching inline", request.id());
+                templates.values().forEach(
+                    candidates -> candidates.removeIf(t -> t.id.equals(request.id())));
+              }
+            })
+        .thenApply(SearchTemplates::toSearchResponse);
+  }
+
+  public static boolean isMissingTemplate(Throwable error) {
+    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+    return cause instanceof ElasticsearchException e
+        && "resource_not_found_exception".equals(e.error().type());
+  }
+
+  private static SearchResponse<ObjectNode> toSearchResponse(
+      SearchTemplateResponse<ObjectNode> response) {
+    return SearchResponse.of(r -> r
+        .took(response.took())
+        .timedOut(response.timedOut())
+        .shards(response.shards())
+        .hits(response.hits())
+        .maxScore(response.maxScore()));
+  }
+
+  /** Mustache source of the search, or null if a parameter does not survive the conversion. */
+  private String templateSource(QueryModel shape, boolean[] variable) {
+    int[] positions = {0, 0};
+    QueryModel withPlaceholders = withPlaceholders(shape, variable, positions);
+    String query = JsonpUtils.toJsonString(
+        withPlaceholders.toElasticsearchQuery(), asyncClient._jsonpMapper());
+    for (int i = 0; i < positions[1]; i++) {
+      String placeholder = Json.encode(placeholder(i));
+      if (!query.contains(placeholder)) {
+        return null;
+      }
+      query = query.replace(placeholder, "{{#toJson}}p" + i + "{{/toJson}}");
+    }
+    return "{\"query\":" + query
+        + ",\"size\":{{size}},\"from\":{{from}},\"_source\":{{#toJson}}source{{/toJson}}}";
+  }
+
+  /**
+   * Shape of the query tree with its parameter values left out, which are collected in order.
+   * {@link #withPlaceholders} must visit the tree in the same order.
+   */
+  static String shape(QueryModel query, List<Object> values) {
+    StringBuilder shape = new StringBuilder();
+    appendShape(shape, query, values);
+    return shape.toString();
+  }
+
+  private static void appendShape(StringBuilder out, QueryModel query, List<Object> values) {
+    out.append(query.getQueryType()).append('(');
+    Map<String, Object> parameters = query.getQueryParameters();
+    if (parameters != null) {
+      for (String key : new TreeSet<>(parameters.keySet())) {
+        Object value = parameters.get(key);
+        out.append(key).append('=');
+        if (isParameter(key, value)) {
+          out.append('?');
+          values.add(value);
+        } else {
+          out.append(Json.encode(value));
+        }
+        out.append(',');
+      }
+    }
+    if (query.getMinimumShouldMatch() != null) {
+      out.append("msm=").append(query.getMinimumShouldMatch()).append(',');
+    }
+    appendClause(out, "must", query.getMustQueries(), values);
+    appendClause(out, "should", query.getShouldQueries(), values);
+    appendClause(out, "must_not", query.getMustNotQueries(), values);
+    appendClause(out, "filter", query.getFilterQueries(), values);
+    out.append(')');
+  }
+
+  private static void appendClause(
+      StringBuilder out, String clause, List<QueryModel> queries, List<Object> values) {
+    if (queries == null) {
+      return;
+    }
+    out.append(clause).append('[');
+    for (QueryModel query : queries) {
+      appendShape(out, query, values);
+    }
+    out.append(']');
+  }
+
+  /**
+   * Copy of the shape with its variable values replaced by numbered placeholders.
+   *
+   * @param positions the next value position and the next placeholder number
+   */
+  private static QueryModel withPlaceholders(
+      QueryModel query, boolean[] variable, int[] positions) {
+    QueryModel copy = new QueryModel(query.getQueryType());
+    Map<String, Object> parameters = query.getQueryParameters();
+    if (parameters != null) {
+      Map<String, Object> replaced = new HashMap<>();
+      for (String key : new TreeSet<>(parameters.keySet())) {
+        Object value = parameters.get(key);
+        if (isParameter(key, value) && variable[positions[0]++]) {
+          value = placeholder(positions[1]++);
+        }
+        replaced.put(key, value);
+      }
+      copy.setQueryParameters(replaced);
+    }
+    copy.setMinimumShouldMatch(query.getMinimumShouldMatch());
+    copy.setMustQueries(withPlaceholders(query.getMustQueries(), variable, positions));
+    copy.setShouldQueries(withPlaceholders(query.getShouldQueries(), variable, positions));
+    copy.setMustNotQueries(withPlaceholders(query.getMustNotQueries(), variable, positions));
+    copy.setFilterQueries(withPlaceholders(query.getFilterQueries(), variable, positions));
+    return copy;
+  }
+
+  private static List<QueryModel> withPlaceholders(
+      List<QueryModel> queries, boolean[] variable, int[] positions) {
+    if (queries == null) {
+      return null;
+    }
+    List<QueryModel> copies = new ArrayList<>(queries.size());
+    for (QueryModel query : queries) {
+      copies.add(withPlaceholders(query, variable, positions));
+    }
+    return copies;
+  }
+
+  private static String placeholder(int index) {
+    return "__dx_p" + index + "__";
+  }
+
+  private static boolean isParameter(String key, Object value) {
+    return PARAMETER_KEYS.contains(key)
+        && (value instanceof String || value instanceof Number || value instanceof Boolean);
+  }
+
+  private record Template(String id, boolean[] variable, String[] constants) {}
+}
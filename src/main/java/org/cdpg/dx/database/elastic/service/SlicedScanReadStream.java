@@ -0,0 +1,236 @@
+package org.cdpg.dx.database.elastic.service;
+
+import static org.cdpg.dx.database.elastic.util.Constants.RAW_NDJSON_ONLY;
+import static org.cdpg.dx.database.elastic.util.Constants.SHARD_DOC;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.streams.ReadStream;
+import java.util.ArrayDeque;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cdpg.dx.database.elastic.model.QueryModel;
+
+/**
+ * Back-pressured stream of NDJSON chunks over all documents matching a query. The documents are
+ * read with a sliced point-in-time scan: each slice pages with search_after on {@code _shard_doc}
+ * and at most one page per slice is fetched or buffered at any time, so memory stays bounded by
+ * {@code slices * pageSize} documents however large the result is. Pages are only requested while
+ * the consumer has demand.
+ */
+public class SlicedScanReadStream implements ReadStream<Buffer> {
+  private static final Logger LOGGER = LogManager.getLogger(SlicedScanReadStream.class);
+
+  private final ElasticsearchService elasticsearchService;
+  private final String index;
+  private final String keepAlive;
+  private final Slice[] slices;
+  private final ArrayDeque<Buffer> pending = new ArrayDeque<>();
+
+  private Handler<Buffer> handler;
+  private Handler<Throwable> exceptionHandler;
+  private Handler<Void> endHandler;
+  private long demand = Long.MAX_VALUE;
+  private String pitId;
+  private int inFlight;
+  private boolean started;
+  private boolean emitting;
+  private boolean closed;
+
+  public SlicedScanReadStream(
+      ElasticsearchService elasticsearchService,
+      String index,
+      QueryModel queryModel,
+      int sliceCount,
+      int pageSize,
+      String keepAlive) {
+    this.elasticsearchService = elasticsearchService;
+    this.index = index;
+    this.keepAlive = keepAlive;
+    this.slices = new Slice[Math.max(1, sliceCount)];
+    for (int i = 0; i < slices.length; i++) {
+      QueryModel sliceModel = new QueryModel(queryModel.toJson());
+      sliceModel.setLimit(String.valueOf(pageSize));
+      sliceModel.setOffset(null);
+      sliceModel.setSortFields(Map.of(SHARD_DOC, "asc"));
+      sliceModel.setPitKeepAlive(keepAlive);
+      sliceModel.setSliceId(i);
+      sliceModel.setSliceMax(slices.length);
+      slices[i] = new Slice(sliceModel);
+    }
+  }
+
+  @Override
+  public SlicedScanReadStream exceptionHandler(Handler<Throwable> handler) {
+    this.exceptionHandler = handler;
+    return this;
+  }
+
+  @Override
+  public SlicedScanReadStream handler(Handler<Buffer> handler) {
+    this.handler = handler;
+    if (handler != null && !started) {
+      start();
+    }
+    return this;
+  }
+
+  @Override
+  public SlicedScanReadStream pause() {
+    demand = 0L;
+    return this;
+  }
+
+  @Override
+  public SlicedScanReadStream resume() {
+    return fetch(Long.MAX_VALUE);
+  }
+
+  @Override
+  public SlicedScanReadStream fetch(long amount) {
+    demand += amount;
+    if (demand < 0L) {
+      demand = Long.MAX_VALUE;
+    }
+    drain();
+    return this;
+  }
+
+  @Override
+  public SlicedScanReadStream endHandler(Handler<Void> endHandler) {
+    this.endHandler = endHandler;
+    return this;
+  }
+
+  private void start() {
+    started = true;
+    elasticsearchService
+        .openPointInTime(index, keepAlive)
+        .onSuccess(
+            id -> {
+              pitId = id;
+              fill();
+            })
+        .onFailure(this::fail);
+  }
+
+  /** Requests the next page of every idle slice while the buffer bound allows it. */
+  private void fill() {
+    if (closed || pitId == null) {
+      return;
+    }
+    for (Slice slice : slices) {
+      if (pending.size() + inFlight >= slices.length) {
+        return;
+      }
+      if (!slice.done && !slice.inFlight) {
+        fetchPage(slice);
+      }
+    }
+  }
+
+  private void fetchPage(Slice slice) {
+    slice.inFlight = true;
+    inFlight++;
+    slice.model.setPitId(pitId);
+    slice.model.setSearchAfter(slice.searchAfter);
+    elasticsearchService
+        .search(index, slice.model, RAW_NDJSON_ONLY)
+        .onComplete(
+            ar -> {
+              slice.inFlight = false;
+              inFlight--;
+              if (closed) {
+                return;
+              }
+              if (ar.failed()) {
+                fail(ar.cause());
+                return;
+              }
+              if (ar.result().getPitId() != null) {
+                pitId = ar.result().getPitId();
+              }
+              slice.searchAfter = ar.result().getLastSortValues();
+              slice.done = slice.searchAfter == null;
+              String chunk = ar.result().getRawHits();
+              if (chunk != null && !chunk.isEmpty()) {
+                pending.add(Buffer.buffer(chunk));
+              }
+              drain();
+            });
+  }
+
+  private void drain() {
+    if (emitting || closed) {
+      return;
+    }
+    emitting = true;
+    try {
+      while (demand > 0L && !pending.isEmpty()) {
+        if (demand != Long.MAX_VALUE) {
+          demand--;
+        }
+        Handler<Buffer> h = handler;
+        Buffer chunk = pending.poll();
+        if (h != null) {
+          h.handle(chunk);
+        }
+      }
+    } finally {
+      emitting = false;
+    }
+
+    if (pending.isEmpty() && inFlight == 0 && allSlicesDone()) {
+      closed = true;
+      closePointInTime();
+      if (endHandler != null) {
+        endHandler.handle(null);
+      }
+    } else {
+      fill();
+    }
+  }
+
+  private boolean allSlicesDone() {
+    for (Slice slice : slices) {
+      if (!slice.done) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void fail(Throwable cause) {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    pending.clear();
+    LOGGER.error("Sliced scan failed: {}", cause.getMessage());
+    closePointInTime();
+    if (exceptionHandler != null) {
+      exceptionHandler.handle(cause);
+    }
+  }
+
+  private void closePointInTime() {
+    if (pitId != null) {
+      elasticsearchService
+          .closePointInTime(pitId)
+          .onFailure(err -> LOGGER.warn("Failed to close point in time: {}", err.getMessage()));
+    }
+  }
+
+  private static final class Slice {
+    private final QueryModel model;
+    private JsonArray searchAfter;
+    private boolean inFlight;
+    private boolean done;
+
+    private Slice(QueryModel model) {
+      this.model = model;
+    }
+  }
+}
@@ -10,5 +10,9 @@ public enum AggregationType {
   CARDINALITY,
   VALUE_COUNT,
   FILTER,
-  GLOBAL
+  GLOBAL,
+  COMPOSITE,
+  GEOTILE_GRID,
+  GEO_CENTROID,
+  TOP_HITS
 }
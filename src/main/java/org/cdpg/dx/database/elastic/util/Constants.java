@@ -65,6 +65,7 @@ public class Constants {
   public static final String TEXTSEARCH_REGEX = "(.*)textSearch(.*)";
   public static final String ATTRIBUTE_SEARCH_REGEX = "(.*)attributeSearch(.*)";
   public static final String SEARCH_CRITERIA_REGEX = "(.*)searchCriteria(.*)";
+  public static final String VECTOR_SEARCH_REGEX = "(.*)vectorSearch(.*)";
 
   public static final String GEOSEARCH_REGEX = "(.*)geoSearch(.*)";
   public static final String RESPONSE_FILTER_GEO = "responseFilter_geoSearch_";
@@ -93,15 +94,46 @@ public class Constants {
   public static final String DOC_IDS_ONLY = "DOCIDS";
 
   public static final String SOURCE_ONLY = "SOURCE";
+  public static final String RAW_SOURCE_ONLY = "RAW_SOURCE";
+  public static final String RAW_NDJSON_ONLY = "RAW_NDJSON";
+  /**
+   * Hit sources read straight from the index, bypassing the search result cache. For reads that
+   * must see writes made through any instance: lookups by id, existence checks and owner-scoped
+   * listings.
+   */
+  public static final String SOURCE_UNCACHED = "SOURCE_UNCACHED";
+  public static final String RAW_SOURCE_UNCACHED = "RAW_SOURCE_UNCACHED";
+  public static final String SHARD_DOC = "_shard_doc";
   public static final String DATASET = "DATASET";
   public static final String FORWARD_SLASH = "/";
   public static final String WILDCARD_KEY = "wildcard";
   public static final String AGGREGATION_ONLY = "AGGREGATION";
   public static final String AGGREGATION_LIST = "AGGREGATION_LIST";
+  /** Aggregations read straight from the index, bypassing the search result cache. */
+  public static final String AGGREGATION_UNCACHED = "AGGREGATION_UNCACHED";
   public static final String COUNT_AGGREGATION_ONLY = "COUNT_AGGREGATION";
   public static final String RATING_AGGREGATION_ONLY = "R_AGGREGATION";
   public static final String TYPE_KEYWORD = "type.keyword";
   public static final String WORD_VECTOR_KEY = "_word_vector";
+  public static final int WORD_VECTOR_DIMS = 100;
+  public static final String QUERY_VECTOR = "queryVector";
+  public static final String FACETS = "facets";
+  public static final String VALUE_PREFIX = "prefix";
+  public static final String AFTER_KEY = "after_key";
+  public static final String PRECISION = "precision";
+  public static final String INCLUDES = "includes";
+  public static final String ZOOM = "zoom";
+  public static final String MAP_CLUSTERS = "clusters";
+  public static final String MAP_CENTROID = "centroid";
+  public static final String MAP_ITEMS = "items";
+  public static final String PERCOLATOR_QUERY = "query";
+  public static final String SLOTS = "slots";
+  public static final String ASYNC_RUNNING = "running";
+  public static final String ASYNC_PARTIAL = "partial";
+  public static final String ASYNC_START_TIME = "startTime";
+  public static final String ASYNC_EXPIRATION_TIME = "expirationTime";
+  public static final String ASYNC_COMPLETION_TIME = "completionTime";
+  public static final String ASYNC_RESULT = "result";
   public static final String SOURCE_AND_ID = "SOURCE_ID";
   public static final String SOURCE_AND_ID_GEOQUERY = "SOURCE_ID_GEOQUERY";
   public static final String RESOURCE_AGGREGATION_ONLY = "RESOURCE_AGGREGATION";
@@ -314,6 +346,10 @@ public class Constants {
   public static final String RESULT = "results";
   public static final String SIZE_KEY = "size";
   public static final String PAGE_KEY = "page";
+  public static final String CURSOR_KEY = "cursor";
+  public static final String ASYNC_KEY = "async";
+  public static final String BULK_ITEM_STATUS = "status";
+  public static final String DEFAULT_REFRESH_INTERVAL = "1s";
 
   public static final int STATIC_DELAY_TIME = 3000;
   public static final String FILTER_PATH = "?filter_path=took,hits.total.value,hits.hits._source";
@@ -366,6 +402,14 @@ public class Constants {
   public static final String KEYSTORE_PASSWORD = "keystorePassword";
   public static final String DATABASE_IP = "databaseIP";
   public static final String DATABASE_PORT = "databasePort";
+  public static final String SEARCH_CACHE_SIZE = "searchCacheSize";
+  public static final String SEARCH_CACHE_MAX_STALENESS = "searchCacheMaxStalenessSeconds";
+  public static final String SEARCH_COALESCING = "searchCoalescing";
+  public static final String MSEARCH_WINDOW_MICROS = "msearchWindowMicros";
+  public static final String MSEARCH_MAX_BATCH_SIZE = "msearchMaxBatchSize";
+  public static final String SEARCH_TEMPLATES = "searchTemplates";
+  public static final String TEXT_SEARCH = "textSearch";
+  public static final String TEMPLATE_PARAMETER = "__dx_param__";
   public static final String DATABASE_UNAME = "databaseUser";
   public static final String DOC_INDEX = "docIndex";
   public static final String RATING_INDEX = "ratingIndex";
@@ -445,6 +489,8 @@ public class Constants {
   public static final String COORDINATES = "coordinates";
   public static final String Q_VALUE = "q";
   public static final String FUZZY = "fuzzy";
+  public static final String PREFIX_LENGTH = "prefix_length";
+  public static final String MAX_EXPANSIONS = "max_expansions";
   public static final String AUTO_COMPLETE = "autoComplete";
   public static final String LIMIT = "limit";
   public static final String OFFSET = "offset";
@@ -456,6 +502,7 @@ public class Constants {
   public static final String SEARCH_TYPE_TAGS = "tagsSearch_";
   public static final String RESPONSE_FILTER = "responseFilter_";
   public static final String SEARCH_TYPE_CRITERIA = "searchCriteria_";  // used in SEARCH_TYPE value
+  public static final String SEARCH_TYPE_VECTOR = "vectorSearch_";
   public static final String SEARCH_CRITERIA_KEY = "searchCriteria";
 
   public static final String MESSAGE = "detail";
@@ -15,5 +15,6 @@ public enum QueryType {
   SCRIPT_SCORE,
   MATCH_PHRASE,
   MULTI_MATCH,
-  QUERY_STRING
+  QUERY_STRING,
+  SIMPLE_QUERY_STRING
 }
@@ -12,6 +12,7 @@ import io.vertx.rabbitmq.RabbitMQOptions;
 import io.vertx.serviceproxy.ServiceBinder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.cdpg.dx.common.util.LocalServiceBinding;
 import org.cdpg.dx.databroker.client.RabbitClient;
 import org.cdpg.dx.databroker.service.DataBrokerService;
 import org.cdpg.dx.databroker.service.DataBrokerServiceImpl;
@@ -110,10 +111,12 @@ public class DataBrokerVerticle extends AbstractVerticle {
         binder
             .setAddress(DATA_BROKER_SERVICE_ADDRESS)
             .register(DataBrokerService.class, dataBrokerService);
+    LocalServiceBinding.register(vertx, DATA_BROKER_SERVICE_ADDRESS, dataBrokerService);
   }
 
   @Override
   public void stop() throws Exception {
+    LocalServiceBinding.unregister(vertx, DATA_BROKER_SERVICE_ADDRESS, dataBrokerService);
     binder.unregister(consumer);
   }
 }
\ No newline at end of file
@@ -73,9 +73,28 @@ try {
                         try {
                             LOGGER.debug("Adding platform handlers...");
                             int timeout = config().getInteger("timeout", 100000);
-                            routerBuilder.rootHandler(TimeoutHandler.create(timeout, 408));
+                            TimeoutHandler timeoutHandler = TimeoutHandler.create(timeout, 408);
+                            // Exports stream for as long as the scan runs, not the request timeout
+                            routerBuilder.rootHandler(
+                                    ctx -> {
+                                        if (ctx.request().path().endsWith(ROUTE_EXPORT)) {
+                                            ctx.next();
+                                        } else {
+                                            timeoutHandler.handle(ctx);
+                                        }
+                                    });
 
-                            routerBuilder.rootHandler(BodyHandler.create().setHandleFileUploads(false));
+                            BodyHandler bodyHandler = BodyHandler.create().setHandleFileUploads(false);
+                            // Bulk imports parse the body as it arrives, so it is held until read
+                            routerBuilder.rootHandler(
+                                    ctx -> {
+                                        if (ctx.request().path().endsWith(ROUTE_BULK_ITEM)) {
+                                            ctx.request().pause();
+                                            ctx.next();
+                                        } else {
+                                            bodyHandler.handle(ctx);
+                                        }
+                                    });
 
                             LOGGER.debug("Registering controllers...");
                             RouterBuilderOptions factoryOptions =
@@ -1,25 +1,43 @@
 package org.cdpg.dx.tgdex.apiserver;
 
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.cdpg.dx.auditing.handler.AuditingHandler;
+import org.cdpg.dx.common.util.EventBusCodecs;
+import org.cdpg.dx.common.util.LocalServiceBinding;
+import org.cdpg.dx.common.util.SharedInstances;
 import org.cdpg.dx.tgdex.item.controller.ItemController;
 import org.cdpg.dx.tgdex.item.factory.ItemControllerFactory;
 import org.cdpg.dx.tgdex.list.controller.ListController;
 import org.cdpg.dx.tgdex.list.factory.ListControllerFactory;
+import org.cdpg.dx.tgdex.savedsearch.controller.SavedSearchController;
+import org.cdpg.dx.tgdex.savedsearch.factory.SavedSearchControllerFactory;
+import org.cdpg.dx.tgdex.savedsearch.service.SavedSearchService;
+import org.cdpg.dx.tgdex.savedsearch.service.SavedSearchServiceImpl;
 import org.cdpg.dx.tgdex.search.controller.SearchController;
 import org.cdpg.dx.tgdex.search.factory.SearchControllerFactory;
+import org.cdpg.dx.tgdex.search.util.AsyncSearches;
+import org.cdpg.dx.tgdex.search.util.FacetStore;
+import org.cdpg.dx.tgdex.search.util.ItemCountStore;
+import org.cdpg.dx.tgdex.search.util.MapTileCache;
+import org.cdpg.dx.tgdex.search.util.SuggestionStore;
 import org.cdpg.dx.catalogue.service.CatalogueService;
+import org.cdpg.dx.database.elastic.model.TextSearchSettings;
 import org.cdpg.dx.database.elastic.service.ElasticsearchService;
 import org.cdpg.dx.databroker.service.DataBrokerService;
+import org.cdpg.dx.tgdex.util.ServiceOptions;
 import org.cdpg.dx.tgdex.validator.service.ValidatorService;
 import org.cdpg.dx.tgdex.validator.service.ValidatorServiceImpl;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.cdpg.dx.common.config.ServiceProxyAddressConstants.*;
+import static org.cdpg.dx.database.elastic.util.Constants.TEXT_SEARCH;
 import static org.cdpg.dx.tgdex.util.Constants.VALIDATOR_SERVICE_ADDRESS;
 
 public class ControllerFactory {
@@ -32,20 +50,127 @@ public class ControllerFactory {
     final String docIndex = config.getString("docIndex");
     final String vocContext = config.getString("vocContext");
 
-    // Service proxies
+    // Service proxies, called directly when the service is deployed in this Vert.x instance
+    final boolean direct = config.getBoolean("directServiceBinding", true);
+    // Replies come back in binary where the service supports it; requests only on listed addresses
+    final JsonArray binaryRequests = config.getJsonArray("binaryEventBusRequests", new JsonArray());
     final ElasticsearchService esService =
-        ElasticsearchService.createProxy(vertx, ELASTIC_SERVICE_ADDRESS);
+        service(vertx, direct, ELASTIC_SERVICE_ADDRESS, ElasticsearchService.class,
+            ElasticsearchService.createProxy(vertx, ELASTIC_SERVICE_ADDRESS,
+                EventBusCodecs.deliveryOptions(
+                    vertx, binaryRequests.contains(ELASTIC_SERVICE_ADDRESS))));
     final DataBrokerService brokerService =
-        DataBrokerService.createProxy(vertx, DATA_BROKER_SERVICE_ADDRESS);
+        service(vertx, direct, DATA_BROKER_SERVICE_ADDRESS, DataBrokerService.class,
+            DataBrokerService.createProxy(vertx, DATA_BROKER_SERVICE_ADDRESS));
     final CatalogueService catService =
-        CatalogueService.createProxy(vertx, CATALOGUE_SERVICE_ADDRESS);
+        service(vertx, direct, CATALOGUE_SERVICE_ADDRESS, CatalogueService.class,
+            CatalogueService.createProxy(vertx, CATALOGUE_SERVICE_ADDRESS));
     final AuditingHandler auditingHandler = new AuditingHandler(brokerService);
     ValidatorService validatorService= new ValidatorServiceImpl(esService,docIndex,vocContext);
 
+    // In-memory stores are shared by the verticle instances, so every write updates the one store
+    // Per-type counts for /count, disabled when the reconcile interval is not positive
+    ItemCountStore itemCountStore = null;
+    long countReconcileInterval = config.getLong("countReconcileIntervalSeconds", 300L);
+    if (countReconcileInterval > 0) {
+      itemCountStore =
+          SharedInstances.computeIfAbsent(vertx, "itemCountStore." + docIndex, () -> {
+            ItemCountStore store =
+                new ItemCountStore(esService, docIndex, BackendRegistries.getDefaultNow());
+            store.start(vertx, countReconcileInterval);
+            return store;
+          });
+    }
+
+    // Type-ahead suggestions for /suggest, disabled when the refresh interval is not positive
+    SuggestionStore suggestionStore = null;
+    long suggestRefreshInterval = config.getLong("suggestRefreshIntervalSeconds", 300L);
+    if (suggestRefreshInterval > 0) {
+      suggestionStore =
+          SharedInstances.computeIfAbsent(vertx, "suggestionStore." + docIndex, () -> {
+            SuggestionStore store =
+                new SuggestionStore(esService, docIndex, BackendRegistries.getDefaultNow());
+            store.start(vertx, suggestRefreshInterval);
+            return store;
+          });
+    }
+
+    // Filter values for /list, disabled when the refresh interval is not positive
+    FacetStore facetStore = null;
+    long facetRefreshInterval = config.getLong("facetRefreshIntervalSeconds", 300L);
+    if (facetRefreshInterval > 0) {
+      JsonArray configuredFields = config.getJsonArray("facetFields");
+      List<String> facetFields =
+          configuredFields == null
+              ? FacetStore.DEFAULT_FIELDS
+              : configuredFields.stream().map(String::valueOf).toList();
+      facetStore =
+          SharedInstances.computeIfAbsent(vertx, "facetStore." + docIndex, () -> {
+            FacetStore store =
+                new FacetStore(esService, docIndex, facetFields,
+                    BackendRegistries.getDefaultNow());
+            store.start(vertx, facetRefreshInterval);
+            return store;
+          });
+    }
+
+    // Map clusters of anonymous /search/map views, disabled when the size is not positive
+    MapTileCache mapTileCache = null;
+    long mapTileCacheSize = config.getLong("mapTileCacheSize", 10000L);
+    if (mapTileCacheSize > 0) {
+      mapTileCache =
+          new MapTileCache(mapTileCacheSize, config.getLong("mapTileCacheSeconds", 60L),
+              BackendRegistries.getDefaultNow());
+    }
+
+    // Searches run in the background on ?async=true, disabled when the keep-alive is not positive
+    AsyncSearches asyncSearches = null;
+    long asyncSearchKeepAlive = config.getLong("asyncSearchKeepAliveSeconds", 300L);
+    if (asyncSearchKeepAlive > 0) {
+      asyncSearches =
+          new AsyncSearches(vertx, esService, config.getLong("asyncSearchWaitSeconds", 1L),
+              asyncSearchKeepAlive);
+    }
+
+    final TextSearchSettings textSearchSettings =
+        TextSearchSettings.fromConfig(config.getJsonObject(TEXT_SEARCH));
+
+    // Saved searches notified of matching item writes, disabled when no index is configured
+    SavedSearchService savedSearchService = null;
+    String savedSearchIndex = config.getString("savedSearchIndex", "");
+    if (!savedSearchIndex.isBlank()) {
+      savedSearchService =
+          new SavedSearchServiceImpl(esService, savedSearchIndex, brokerService,
+              config.getString("savedSearchExchange"), textSearchSettings);
+    }
+
+    final ServiceOptions options =
+        new ServiceOptions()
+            .setItemCountStore(itemCountStore)
+            .setSuggestionStore(suggestionStore)
+            .setFacetStore(facetStore)
+            .setMapTileCache(mapTileCache)
+            .setAsyncSearches(asyncSearches)
+            .setSavedSearchService(savedSearchService)
+            .setTextSearchSettings(textSearchSettings);
     final ItemController crudController =
-        ItemControllerFactory.createCrudController(auditingHandler, esService, docIndex, vocContext);
-    final ListController listController = ListControllerFactory.createListController(esService, auditingHandler, docIndex,validatorService);
-    final SearchController searchController = SearchControllerFactory.createSearchController(esService, auditingHandler,docIndex, validatorService);
-    return List.of(crudController,listController,searchController);
+        ItemControllerFactory.createCrudController(
+            auditingHandler, esService, docIndex, vocContext, options);
+    final ListController listController = ListControllerFactory.createListController(esService, auditingHandler, docIndex,validatorService, options);
+    final SearchController searchController = SearchControllerFactory.createSearchController(esService, auditingHandler,docIndex, validatorService, options);
+    List<ApiController> controllers =
+        new ArrayList<>(List.of(crudController, listController, searchController));
+    if (savedSearchService != null) {
+      final SavedSearchController savedSearchController =
+          SavedSearchControllerFactory.createSavedSearchController(
+              savedSearchService, auditingHandler);
+      controllers.add(savedSearchController);
+    }
+    return controllers;
+  }
+
+  private static <T> T service(
+      Vertx vertx, boolean direct, String address, Class<T> type, T proxy) {
+    return direct ? LocalServiceBinding.lookup(vertx, address, type, proxy) : proxy;
   }
 }
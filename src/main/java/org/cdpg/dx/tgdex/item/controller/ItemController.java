@@ -2,6 +2,7 @@ package org.cdpg.dx.tgdex.item.controller;
 
 import static org.cdpg.dx.tgdex.util.Constants.*;
 import static org.cdpg.dx.tgdex.validator.Constants.*;
+import static org.cdpg.dx.util.Constants.BULK_CREATE_ITEM;
 import static org.cdpg.dx.util.Constants.CREATE_ITEM;
 import static org.cdpg.dx.util.Constants.DELETE_ITEM;
 import static org.cdpg.dx.util.Constants.GET_ITEM;
@@ -11,6 +12,7 @@ import io.vertx.core.Promise;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.User;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.openapi.RouterBuilder;
 import java.util.HashSet;
@@ -18,14 +20,18 @@ import java.util.Set;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.cdpg.dx.auditing.handler.AuditingHandler;
+import org.cdpg.dx.common.exception.DxForbiddenException;
+import org.cdpg.dx.common.exception.DxUnauthorizedException;
 import org.cdpg.dx.common.response.ResponseBuilder;
 import org.cdpg.dx.tgdex.apiserver.ApiController;
 import org.cdpg.dx.tgdex.item.model.Item;
 import org.cdpg.dx.tgdex.item.service.ItemService;
+import org.cdpg.dx.tgdex.item.util.BulkItemImporter;
 import org.cdpg.dx.tgdex.item.util.ItemExistenceValidator;
 import org.cdpg.dx.tgdex.item.util.ItemFactory;
 import org.cdpg.dx.tgdex.item.util.RespBuilder;
 import org.cdpg.dx.util.CheckIfTokenPresent;
+import org.cdpg.dx.util.ItemType;
 import org.cdpg.dx.util.VerifyItemTypeAndRole;
 
 import org.cdpg.dx.tgdex.item.util.GetItemRequest;
@@ -37,6 +43,7 @@ public class ItemController implements ApiController {
   private final String vocContext;
 
   private final ItemExistenceValidator itemExistenceValidator;
+  private final BulkItemImporter bulkItemImporter;
   private final CheckIfTokenPresent checkIfTokenPresent = new CheckIfTokenPresent();
   private final VerifyItemTypeAndRole verifyItemTypeAndRole = new VerifyItemTypeAndRole();
 
@@ -46,6 +53,7 @@ public class ItemController implements ApiController {
     this.itemService = itemService;
     this.vocContext = vocContext;
     this.itemExistenceValidator = new ItemExistenceValidator(itemService);
+    this.bulkItemImporter = new BulkItemImporter(itemService, vocContext);
   }
 
   @Override
@@ -56,6 +64,11 @@ public class ItemController implements ApiController {
         .handler(this::handleCreateOrUpdateItem)
         .handler(auditingHandler::handleApiAudit);
 
+    builder.operation(BULK_CREATE_ITEM)
+        .handler(checkIfTokenPresent)
+        .handler(this::handleBulkCreateItems)
+        .handler(auditingHandler::handleApiAudit);
+
     builder.operation(GET_ITEM)
         .handler(this::handleGetItem)
         .handler(auditingHandler::handleApiAudit);
@@ -103,6 +116,44 @@ public class ItemController implements ApiController {
     });
   }
 
+  private void handleBulkCreateItems(RoutingContext ctx) {
+    LOGGER.debug("Handling bulk create items");
+    User user = ctx.user();
+    if (user == null) {
+      ctx.fail(new DxUnauthorizedException("No User Found"));
+      return;
+    }
+    JsonObject realmAccess = user.principal().getJsonObject("realm_access");
+    Set<ItemType> allowedTypes = realmAccess == null || !realmAccess.containsKey("roles")
+        ? Set.of()
+        : verifyItemTypeAndRole.allowedItemTypes(realmAccess.getJsonArray("roles"));
+    if (allowedTypes.isEmpty()) {
+      ctx.fail(new DxForbiddenException("User does not have sufficient role to create items"));
+      return;
+    }
+
+    bulkItemImporter.importItems(ctx.request(), user.principal(), allowedTypes)
+        .onSuccess(report -> {
+          JsonArray items = (JsonArray) report.remove("items");
+          if (report.containsKey(DETAIL)) {
+            ctx.response().setStatusCode(400).end(
+                new RespBuilder().withType(TYPE_INVALID_SYNTAX).withTitle(TITLE_INVALID_SYNTAX)
+                    .withDetail(report.getString(DETAIL))
+                    .withResult(items)
+                    .getResponse());
+            return;
+          }
+          LOGGER.debug("Bulk import finished: {}", report);
+          ctx.response().setStatusCode(200).end(
+              new RespBuilder().withType(TYPE_SUCCESS).withTitle(TITLE_SUCCESS)
+                  .withDetail("Success: " + report.getInteger(BulkItemImporter.STATUS_CREATED)
+                      + " of " + report.getInteger("total") + " items created")
+                  .withResult(items)
+                  .getResponse());
+        })
+        .onFailure(ctx::fail);
+  }
+
   private String extractAndValidateItemType(RoutingContext ctx, JsonObject body,
                                             HttpServerResponse response) {
     try {
@@ -265,9 +316,9 @@ public class ItemController implements ApiController {
                   }
                     else {
                     LOGGER.debug("Item retrieved successfully for ID '{}'", itemId);
-                    ResponseBuilder.sendSuccess(
+                    ResponseBuilder.sendRawSuccess(
                             routingContext,
-                            responseModel.getElasticsearchResponses(),
+                            responseModel.getRawResults(),
                             null,
                             responseModel.getTotalHits()
                     );
@@ -5,14 +5,16 @@ import org.cdpg.dx.tgdex.item.controller.ItemController;
 import org.cdpg.dx.tgdex.item.service.ItemService;
 import org.cdpg.dx.tgdex.item.service.ItemServiceImpl;
 import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+import org.cdpg.dx.tgdex.util.ServiceOptions;
 
 public class ItemControllerFactory {
 
     public static ItemController createCrudController(AuditingHandler auditingHandler,
                                                       ElasticsearchService elasticsearchService,
-                                                      String docIndex, String vocContext) {
-        ItemService crudService = new ItemServiceImpl(elasticsearchService, docIndex);
+                                                      String docIndex, String vocContext,
+                                                      ServiceOptions options) {
+        ItemService crudService = new ItemServiceImpl(elasticsearchService, docIndex, options);
         return new ItemController(auditingHandler, crudService, vocContext);
 
     }
-}
\ No newline at end of file
+}
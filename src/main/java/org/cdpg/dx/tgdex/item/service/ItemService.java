@@ -1,6 +1,8 @@
 package org.cdpg.dx.tgdex.item.service;
 
 import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import java.util.List;
 import org.cdpg.dx.tgdex.item.model.Item;
 import org.cdpg.dx.tgdex.item.util.GetItemRequest;
 import org.cdpg.dx.tgdex.search.util.ResponseModel;
@@ -11,4 +13,7 @@ public interface ItemService {
     public Future<Void> deleteItem(String id);
     Future<Item> itemWithTheNameExists(String type, String name);
     Future<ResponseModel> getItem(GetItemRequest request);
+    Future<List<String>> existingItemNames(String type, List<String> names);
+    Future<JsonArray> createItems(List<Item> items);
+    Future<String> updateRefreshInterval(String refreshInterval);
 }
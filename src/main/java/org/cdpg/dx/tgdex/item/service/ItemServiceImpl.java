@@ -1,11 +1,15 @@
 package org.cdpg.dx.tgdex.item.service;
 
+import static org.cdpg.dx.database.elastic.util.Constants.BULK_ITEM_STATUS;
 import static org.cdpg.dx.database.elastic.util.Constants.DETAIL_ITEM_NOT_FOUND;
 import static org.cdpg.dx.database.elastic.util.Constants.ID_KEYWORD;
 import static org.cdpg.dx.database.elastic.util.Constants.KEYWORD_KEY;
+import static org.cdpg.dx.database.elastic.util.Constants.RAW_SOURCE_UNCACHED;
+import static org.cdpg.dx.database.elastic.util.Constants.SOURCE_UNCACHED;
 import static org.cdpg.dx.database.elastic.util.Constants.TYPE_KEYWORD;
 import static org.cdpg.dx.tgdex.util.Constants.COS;
 import static org.cdpg.dx.tgdex.util.Constants.FIELD;
+import static org.cdpg.dx.tgdex.util.Constants.NAME;
 import static org.cdpg.dx.tgdex.util.Constants.PROVIDER;
 import static org.cdpg.dx.tgdex.util.Constants.RESOURCE_GRP;
 import static org.cdpg.dx.tgdex.util.Constants.RESOURCE_SVR;
@@ -13,13 +17,14 @@ import static org.cdpg.dx.tgdex.util.Constants.VALUE;
 
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.cdpg.dx.database.elastic.model.ElasticsearchResponse;
 import org.cdpg.dx.database.elastic.model.QueryDecoder;
 import org.cdpg.dx.database.elastic.model.QueryModel;
 import org.cdpg.dx.database.elastic.service.ElasticsearchService;
@@ -27,17 +32,31 @@ import org.cdpg.dx.database.elastic.util.QueryType;
 import org.cdpg.dx.tgdex.item.model.Item;
 import org.cdpg.dx.tgdex.item.util.GetItemRequest;
 import org.cdpg.dx.tgdex.item.util.ItemFactory;
+import org.cdpg.dx.tgdex.savedsearch.service.SavedSearchService;
+import org.cdpg.dx.tgdex.search.util.FacetStore;
+import org.cdpg.dx.tgdex.search.util.ItemCountStore;
 import org.cdpg.dx.tgdex.search.util.ResponseModel;
+import org.cdpg.dx.tgdex.search.util.SuggestionStore;
+import org.cdpg.dx.tgdex.util.ServiceOptions;
 
 public class ItemServiceImpl implements ItemService {
   private static final Logger LOGGER = LogManager.getLogger(ItemServiceImpl.class);
   private final String docIndex;
+  private final ItemCountStore itemCountStore;
+  private final SuggestionStore suggestionStore;
+  private final FacetStore facetStore;
+  private final SavedSearchService savedSearchService;
   ElasticsearchService elasticsearchService;
   QueryDecoder queryDecoder = new QueryDecoder();
 
-  public ItemServiceImpl(ElasticsearchService elasticsearchService, String docIndex) {
+  public ItemServiceImpl(
+      ElasticsearchService elasticsearchService, String docIndex, ServiceOptions options) {
     this.elasticsearchService = elasticsearchService;
     this.docIndex = docIndex;
+    this.itemCountStore = options.getItemCountStore();
+    this.suggestionStore = options.getSuggestionStore();
+    this.facetStore = options.getFacetStore();
+    this.savedSearchService = options.getSavedSearchService();
   }
 
   @Override
@@ -54,14 +73,18 @@ public class ItemServiceImpl implements ItemService {
 
     elasticsearchService.getSingleDocument(docIndex, termQuery)
         .onSuccess(existingDoc -> {
-          if (existingDoc != null && ElasticsearchResponse.getTotalHits() > 0) {
+          if (existingDoc != null && existingDoc.getTotalHits() > 0) {
             LOGGER.warn("Item with ID {} already exists", id);
             promise.fail("Item with ID already exists");
           } else {
             QueryModel queryModel = new QueryModel();
             queryModel.createQueryModelFromDocument(item.toJson());
             elasticsearchService.createDocuments(docIndex, Collections.singletonList(queryModel))
-                .onSuccess(v -> promise.complete())
+                .onSuccess(v -> {
+                  countAdded(item.toJson());
+                  percolate(List.of(item.toJson()));
+                  promise.complete();
+                })
                 .onFailure(promise::fail);
           }
         })
@@ -76,24 +99,22 @@ public class ItemServiceImpl implements ItemService {
 
     QueryDecoder queryDecoder = new QueryDecoder();
     QueryModel queryModel = queryDecoder.getItemQueryModel(request.getItemId());
+    queryModel.setLimit("1");
 
     LOGGER.debug("Retrieving item with ID: {}", queryModel.toJson());
 
-    elasticsearchService.getSingleDocument(docIndex, queryModel.getQueries())
+    elasticsearchService.search(docIndex, queryModel, RAW_SOURCE_UNCACHED)
         .onSuccess(response -> {
-          int totalHits = ElasticsearchResponse.getTotalHits();
-          if (totalHits == 0) {
+          ResponseModel responseModel = new ResponseModel(response, 1, 1);
+          if (response.getTotalHits() == 0) {
             LOGGER.warn("Item with ID {} does not exist", request.getItemId());
-            ResponseModel responseModel = new ResponseModel(List.of(response));
-            responseModel.setTotalHits(totalHits);
             promise.complete(responseModel);
             return;
           }
 
-          if (ownershipCheck(response, request.getSubId())) {
+          JsonObject source = new JsonArray(response.getRawHits()).getJsonObject(0);
+          if (ownershipCheck(source, request.getSubId())) {
             LOGGER.debug("Ownership check passed for item with ID: {}", request.getItemId());
-            ResponseModel responseModel = new ResponseModel(List.of(response));
-            responseModel.setTotalHits(totalHits);
             promise.complete(responseModel);
           } else {
             LOGGER.warn("Ownership check failed for item with ID: {}", request.getItemId());
@@ -136,18 +157,27 @@ public class ItemServiceImpl implements ItemService {
     elasticsearchService.getSingleDocument(docIndex, boolQuery)
         .onSuccess(result -> {
           LOGGER.debug("Item with ID {} found for deletion", id);
-          if (ElasticsearchResponse.getTotalHits() > 1) {
+          if (result.getTotalHits() > 1) {
             LOGGER.debug("Item with ID {} has multiple associated entities", id);
             promise.fail("Item has associated entities and cannot be deleted");
-          } else if (ElasticsearchResponse.getTotalHits() < 1) {
+          } else if (result.getTotalHits() < 1) {
             LOGGER.debug("Item with ID {} not found for deletion", id);
             promise.fail("Item not found for deletion");
           } else {
             LOGGER.debug("Deleting item with ID: {}", id);
-            String docId = result.getDocId();
+            String docId = result.firstHit().getDocId();
             elasticsearchService.deleteDocument(docIndex, docId)
                 .onSuccess(v -> {
                   LOGGER.debug("Item with ID {} deleted successfully", id);
+                  if (itemCountStore != null) {
+                    itemCountStore.removed(result.firstHit().getSource());
+                  }
+                  if (suggestionStore != null) {
+                    suggestionStore.removed(result.firstHit().getSource());
+                  }
+                  if (facetStore != null) {
+                    facetStore.changed();
+                  }
                   promise.complete();
                 })
                 .onFailure(failure-> {
@@ -182,13 +212,25 @@ public class ItemServiceImpl implements ItemService {
 
     elasticsearchService.getSingleDocument(docIndex, boolQuery)
         .onSuccess(getRes -> {
-          if (getRes == null || ElasticsearchResponse.getTotalHits() == 0) {
+          if (getRes == null || getRes.getTotalHits() == 0) {
             promise.fail("Item not found for update");
           } else {
             QueryModel queryModel = new QueryModel();
             queryModel.createQueryModelFromDocument(item.toJson());
             elasticsearchService.updateDocument(docIndex, id, queryModel)
-                .onSuccess(v -> promise.complete())
+                .onSuccess(v -> {
+                  if (itemCountStore != null) {
+                    itemCountStore.replaced(getRes.firstHit().getSource(), item.toJson());
+                  }
+                  if (suggestionStore != null) {
+                    suggestionStore.replaced(getRes.firstHit().getSource(), item.toJson());
+                  }
+                  if (facetStore != null) {
+                    facetStore.changed();
+                  }
+                  percolate(List.of(item.toJson()));
+                  promise.complete();
+                })
                 .onFailure(promise::fail);
           }
         })
@@ -203,11 +245,11 @@ public class ItemServiceImpl implements ItemService {
     QueryModel queryModel = queryDecoder.buildGetItemWithNameExistsQuery(type, name);
     elasticsearchService.getSingleDocument(docIndex, queryModel)
         .onSuccess(result -> {
-          if (result == null || ElasticsearchResponse.getTotalHits() == 0) {
+          if (result == null || result.getTotalHits() == 0) {
             promise.fail(DETAIL_ITEM_NOT_FOUND);
           } else {
               LOGGER.debug("Item with name '{}' of type '{}' found", name, type);
-            promise.complete(ItemFactory.from(result.getSource()));
+            promise.complete(ItemFactory.from(result.firstHit().getSource()));
           }
         })
         .onFailure(err -> {
@@ -217,8 +259,66 @@ public class ItemServiceImpl implements ItemService {
     return promise.future();
   }
 
-  private boolean ownershipCheck(ElasticsearchResponse response, String subId) {
-    JsonObject source = response.getSource();
+  @Override
+  public Future<List<String>> existingItemNames(String type, List<String> names) {
+    QueryModel queryModel = queryDecoder.buildExistingItemNamesQuery(type, names);
+    return elasticsearchService.search(docIndex, queryModel, SOURCE_UNCACHED)
+        .map(result -> result.getHits().stream()
+            .map(hit -> hit.getSource().getString(NAME))
+            .toList());
+  }
+
+  @Override
+  public Future<JsonArray> createItems(List<Item> items) {
+    List<QueryModel> documents = items.stream()
+        .map(item -> {
+          QueryModel queryModel = new QueryModel();
+          queryModel.createQueryModelFromDocument(item.toJson());
+          return queryModel;
+        })
+        .toList();
+    return elasticsearchService.bulkCreateDocuments(docIndex, documents)
+        .onSuccess(results -> {
+          List<JsonObject> created = new ArrayList<>();
+          for (int i = 0; i < results.size() && i < items.size(); i++) {
+            if (results.getJsonObject(i).getInteger(BULK_ITEM_STATUS, 0) == 201) {
+              countAdded(items.get(i).toJson());
+              created.add(items.get(i).toJson());
+            }
+          }
+          percolate(created);
+        });
+  }
+
+  /**
+   * Tells the users whose saved searches match the items written. A failure is only logged: the
+   * items are written either way.
+   */
+  private void percolate(List<JsonObject> items) {
+    if (savedSearchService != null) {
+      savedSearchService.percolate(items)
+          .onFailure(err -> LOGGER.warn("Saved search notification failed: {}", err.getMessage()));
+    }
+  }
+
+  private void countAdded(JsonObject item) {
+    if (itemCountStore != null) {
+      itemCountStore.added(item);
+    }
+    if (suggestionStore != null) {
+      suggestionStore.added(item);
+    }
+    if (facetStore != null) {
+      facetStore.changed();
+    }
+  }
+
+  @Override
+  public Future<String> updateRefreshInterval(String refreshInterval) {
+    return elasticsearchService.updateRefreshInterval(docIndex, refreshInterval);
+  }
+
+  private boolean ownershipCheck(JsonObject source, String subId) {
     String accessPolicy = source.getString("accessPolicy");
     String ownerUserId = source.getString("ownerUserId");
 
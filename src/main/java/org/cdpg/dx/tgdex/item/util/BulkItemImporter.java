@@ -0,0 +1,465 @@
+package org.cdpg.dx.tgdex.item.util;
+
+import static org.cdpg.dx.database.elastic.util.Constants.BULK_ITEM_STATUS;
+import static org.cdpg.dx.database.elastic.util.Constants.DEFAULT_REFRESH_INTERVAL;
+import static org.cdpg.dx.database.elastic.util.Constants.ERROR;
+import static org.cdpg.dx.tgdex.util.Constants.DEPARTMENT;
+import static org.cdpg.dx.tgdex.util.Constants.DETAIL;
+import static org.cdpg.dx.tgdex.util.Constants.ID;
+import static org.cdpg.dx.tgdex.util.Constants.ITEM_TYPE_AI_MODEL;
+import static org.cdpg.dx.tgdex.util.Constants.ITEM_TYPE_APPS;
+import static org.cdpg.dx.tgdex.util.Constants.ITEM_TYPE_DATA_BANK;
+import static org.cdpg.dx.tgdex.util.Constants.NAME;
+import static org.cdpg.dx.tgdex.util.Constants.ORG_NAME;
+import static org.cdpg.dx.tgdex.util.Constants.PROVIDER_USER_ID;
+import static org.cdpg.dx.tgdex.util.Constants.SUB;
+import static org.cdpg.dx.tgdex.util.Constants.TYPE;
+import static org.cdpg.dx.tgdex.util.Constants.UPLOADED_BY;
+import static org.cdpg.dx.tgdex.util.Constants.UUID_PATTERN;
+import static org.cdpg.dx.tgdex.validator.Constants.ACTIVE;
+import static org.cdpg.dx.tgdex.validator.Constants.CONTEXT;
+import static org.cdpg.dx.tgdex.validator.Constants.ITEM_CREATED_AT;
+import static org.cdpg.dx.tgdex.validator.Constants.ITEM_STATUS;
+import static org.cdpg.dx.tgdex.validator.Constants.LAST_UPDATED;
+
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.JsonEventType;
+import io.vertx.core.parsetools.JsonParser;
+import io.vertx.core.streams.ReadStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cdpg.dx.common.exception.DxInternalServerErrorException;
+import org.cdpg.dx.tgdex.item.model.Item;
+import org.cdpg.dx.tgdex.item.service.ItemService;
+import org.cdpg.dx.tgdex.validator.Validator;
+import org.cdpg.dx.util.ItemType;
+
+/**
+ * Creates items from a request body holding either a JSON array of items or NDJSON, one item per
+ * line. Items are parsed as the body arrives and handled in batches: each batch is schema validated
+ * on worker threads, checked for name clashes with one query per item type and indexed with bulk
+ * requests bounded in size and bytes. Reading is paused while too many batches are in flight, and
+ * the index refresh is suspended for the duration of large imports.
+ */
+public class BulkItemImporter {
+  public static final String STATUS_CREATED = "created";
+  public static final String STATUS_FAILED = "failed";
+
+  private static final Logger LOGGER = LogManager.getLogger(BulkItemImporter.class);
+  private static final String INDEX = "index";
+  private static final int BATCH_SIZE = 500;
+  private static final int MAX_BATCHES_IN_FLIGHT = 2;
+  private static final int VALIDATION_TASKS = 4;
+  private static final long MAX_BULK_BYTES = 5L * 1024 * 1024;
+  private static final int REFRESH_SUSPEND_THRESHOLD = 2 * BATCH_SIZE;
+  private static final String SUSPENDED_REFRESH_INTERVAL = "-1";
+
+  // Shared by every importer so that concurrent imports suspend and restore the refresh only once
+  private static final AtomicInteger LARGE_IMPORTS = new AtomicInteger();
+  private static final AtomicReference<Future<String>> PREVIOUS_REFRESH_INTERVAL =
+      new AtomicReference<>();
+
+  private final ItemService itemService;
+  private final String vocContext;
+  private final Map<String, Validator> schemaValidators = new HashMap<>();
+
+  public BulkItemImporter(ItemService itemService, String vocContext) {
+    this.itemService = itemService;
+    this.vocContext = vocContext;
+    try {
+      schemaValidators.put(ITEM_TYPE_AI_MODEL, new Validator("/adexAiModelItemSchema.json"));
+      schemaValidators.put(ITEM_TYPE_DATA_BANK,
+          new Validator("/adexDataBankResourceItemSchema.json"));
+      schemaValidators.put(ITEM_TYPE_APPS, new Validator("/adexAppsItemSchema.json"));
+    } catch (IOException | ProcessingException e) {
+      throw new DxInternalServerErrorException("Failed to load item schemas", e);
+    }
+  }
+
+  /**
+   * Imports the items read from {@code body}, which must be paused and is resumed here. The
+   * returned report holds one entry per item in request order, and a {@code detail} when the body
+   * could not be parsed to the end.
+   *
+   * @param body the request body
+   * @param principal the token principal, used to fill in the provider fields of each item
+   * @param allowedTypes the item types the caller may create
+   */
+  public Future<JsonObject> importItems(
+      ReadStream<Buffer> body, JsonObject principal, Set<ItemType> allowedTypes) {
+    return new Import(body, principal, allowedTypes).start();
+  }
+
+  private final class Import {
+    private final JsonParser parser;
+    private final Context context;
+    private final String ownerUserId;
+    private final String orgName;
+    private final Set<ItemType> allowedTypes;
+    private final List<JsonObject> results = new ArrayList<>();
+    private final Set<String> seenNames = new HashSet<>();
+    private final Promise<JsonObject> promise = Promise.promise();
+
+    private List<Entry> batch = new ArrayList<>();
+    private int batchesInFlight;
+    private int created;
+    private boolean ended;
+    private boolean refreshSuspended;
+    private String parseError;
+
+    private Import(ReadStream<Buffer> body, JsonObject principal, Set<ItemType> allowedTypes) {
+      this.parser = JsonParser.newParser(body).objectValueMode();
+      this.context = Vertx.currentContext();
+      this.ownerUserId = principal.getString(SUB);
+      this.orgName = principal.getString(ORG_NAME);
+      this.allowedTypes = allowedTypes;
+    }
+
+    private Future<JsonObject> start() {
+      parser.exceptionHandler(this::onParseError);
+      parser.endHandler(v -> onEnd());
+      // Values of the JSON array form arrive between START_ARRAY and END_ARRAY, NDJSON values bare
+      parser.handler(event -> {
+        if (event.type() == JsonEventType.VALUE) {
+          accept(event.value());
+        }
+      });
+      // The body was paused until the handlers were in place; reading starts here
+      parser.resume();
+      return promise.future();
+    }
+
+    private void accept(Object value) {
+      Entry entry = new Entry(results.size());
+      results.add(null);
+      String error = prepare(entry, value);
+      if (error != null) {
+        fail(entry, error);
+      } else {
+        batch.add(entry);
+      }
+      if (results.size() == REFRESH_SUSPEND_THRESHOLD) {
+        suspendRefresh();
+      }
+      if (batch.size() >= BATCH_SIZE) {
+        dispatch();
+      }
+    }
+
+    /** Checks what can be checked without I/O and fills in the server-side fields. */
+    private String prepare(Entry entry, Object value) {
+      if (!(value instanceof JsonObject doc)) {
+        return "Item must be a JSON object";
+      }
+      try {
+        String type = itemType(doc);
+        if (type == null) {
+          return "Invalid type for item/type not present";
+        }
+        if (!allowedTypes.contains(ItemType.fromTypeValue(type))) {
+          return "User does not have sufficient role for item type: " + type;
+        }
+        String id = doc.getString(ID);
+        if (id != null && !UUID_PATTERN.matcher(id).matches()) {
+          return "validation failed. Incorrect id";
+        }
+        String name = doc.getString(NAME);
+        if (name == null || name.isBlank()) {
+          return "Missing 'name' field";
+        }
+        if (!seenNames.add(type + '\u0000' + name)) {
+          return "Fail: an item with this name appears earlier in the import";
+        }
+        if (id == null) {
+          doc.put(ID, UUID.randomUUID().toString());
+        }
+        doc.put(PROVIDER_USER_ID, ownerUserId)
+            .put(DEPARTMENT, orgName)
+            .put(UPLOADED_BY, orgName)
+            .put(CONTEXT, vocContext);
+        entry.doc = doc;
+        entry.type = type;
+        return null;
+      } catch (ClassCastException e) {
+        return "Invalid item: " + e.getMessage();
+      }
+    }
+
+    private void dispatch() {
+      List<Entry> entries = batch;
+      batch = new ArrayList<>();
+      batchesInFlight++;
+      if (batchesInFlight >= MAX_BATCHES_IN_FLIGHT) {
+        parser.pause();
+      }
+      processBatch(entries).onComplete(ar -> {
+        if (ar.failed()) {
+          LOGGER.error("Bulk import batch failed: {}", ar.cause().getMessage());
+          entries.stream()
+              .filter(entry -> results.get(entry.index) == null)
+              .forEach(entry -> fail(entry, ar.cause().getMessage()));
+        }
+        batchesInFlight--;
+        if (ended) {
+          finishIfDone();
+        } else {
+          parser.resume();
+        }
+      });
+    }
+
+    private Future<Void> processBatch(List<Entry> entries) {
+      String lastUpdated = ItemExistenceValidator.getPrettyLastUpdatedForUI();
+      String createdAt = ItemExistenceValidator.getUtcDatetimeAsString();
+      entries.forEach(entry -> entry.doc.put(ITEM_STATUS, ACTIVE)
+          .put(LAST_UPDATED, lastUpdated)
+          .put(ITEM_CREATED_AT, createdAt));
+      return validateSchemas(entries)
+          .compose(this::rejectExistingNames)
+          .compose(this::index);
+    }
+
+    /** Runs the JSON schema validators on worker threads, several slices of the batch at once. */
+    private Future<List<Entry>> validateSchemas(List<Entry> entries) {
+      int sliceSize = (entries.size() + VALIDATION_TASKS - 1) / VALIDATION_TASKS;
+      List<Future<Void>> tasks = new ArrayList<>();
+      for (int from = 0; from < entries.size(); from += sliceSize) {
+        List<Entry> slice = entries.subList(from, Math.min(entries.size(), from + sliceSize));
+        tasks.add(context.executeBlocking(() -> {
+          slice.forEach(this::validateSchema);
+          return null;
+        }, false));
+      }
+      return Future.all(tasks).map(v -> {
+        List<Entry> valid = new ArrayList<>();
+        for (Entry entry : entries) {
+          if (entry.error != null) {
+            fail(entry, entry.error);
+          } else {
+            valid.add(entry);
+          }
+        }
+        return valid;
+      });
+    }
+
+    private void validateSchema(Entry entry) {
+      String encoded = entry.doc.encode();
+      entry.bytes = encoded.length();
+      Future<String> validation = schemaValidators.get(entry.type).validate(encoded);
+      if (validation.failed()) {
+        String message = validation.cause().getMessage();
+        try {
+          entry.error = new JsonObject(message).getString(DETAIL, message);
+        } catch (RuntimeException e) {
+          entry.error = message;
+        }
+      }
+    }
+
+    private Future<List<Entry>> rejectExistingNames(List<Entry> entries) {
+      Map<String, List<String>> namesByType = new HashMap<>();
+      entries.forEach(entry -> namesByType.computeIfAbsent(entry.type, t -> new ArrayList<>())
+          .add(entry.doc.getString(NAME)));
+
+      Map<String, Future<List<String>>> lookups = new HashMap<>();
+      namesByType.forEach((type, names) -> lookups.put(type,
+          itemService.existingItemNames(type, names)));
+
+      return Future.all(new ArrayList<>(lookups.values())).map(v -> {
+        List<Entry> unique = new ArrayList<>();
+        for (Entry entry : entries) {
+          if (lookups.get(entry.type).result().contains(entry.doc.getString(NAME))) {
+            fail(entry, "Fail: " + entry.type + " item with this name already exists");
+          } else {
+            unique.add(entry);
+          }
+        }
+        return unique;
+      });
+    }
+
+    /** Sends the batch as bulk requests of at most {@link #MAX_BULK_BYTES}, one after the other. */
+    private Future<Void> index(List<Entry> entries) {
+      List<List<Entry>> chunks = new ArrayList<>();
+      List<Entry> chunk = new ArrayList<>();
+      long chunkBytes = 0;
+      for (Entry entry : entries) {
+        try {
+          entry.item = ItemFactory.parse(entry.doc);
+        } catch (RuntimeException e) {
+          fail(entry, e.getMessage());
+          continue;
+        }
+        if (!chunk.isEmpty() && chunkBytes + entry.bytes > MAX_BULK_BYTES) {
+          chunks.add(chunk);
+          chunk = new ArrayList<>();
+          chunkBytes = 0;
+        }
+        chunk.add(entry);
+        chunkBytes += entry.bytes;
+      }
+      if (!chunk.isEmpty()) {
+        chunks.add(chunk);
+      }
+
+      Future<Void> sent = Future.succeededFuture();
+      for (List<Entry> bulk : chunks) {
+        sent = sent.compose(v -> indexChunk(bulk));
+      }
+      return sent;
+    }
+
+    private Future<Void> indexChunk(List<Entry> chunk) {
+      List<Item> items = chunk.stream().map(entry -> entry.item).toList();
+      return itemService.createItems(items).map(bulkResults -> {
+        for (int i = 0; i < chunk.size(); i++) {
+          Entry entry = chunk.get(i);
+          JsonObject result = bulkResults.getJsonObject(i);
+          int status = result.getInteger(BULK_ITEM_STATUS);
+          if (status == 201 || status == 200) {
+            created++;
+            results.set(entry.index, new JsonObject()
+                .put(INDEX, entry.index)
+                .put(ID, entry.item.getId())
+                .put(BULK_ITEM_STATUS, STATUS_CREATED));
+          } else if (status == 409) {
+            fail(entry, "Item with ID already exists");
+          } else {
+            fail(entry, result.getString(ERROR, "Indexing failed"));
+          }
+        }
+        return null;
+      });
+    }
+
+    private void fail(Entry entry, String detail) {
+      JsonObject result = new JsonObject()
+          .put(INDEX, entry.index)
+          .put(BULK_ITEM_STATUS, STATUS_FAILED)
+          .put(DETAIL, detail);
+      if (entry.doc != null) {
+        result.put(ID, entry.doc.getString(ID));
+      }
+      results.set(entry.index, result);
+    }
+
+    private void onParseError(Throwable err) {
+      if (ended) {
+        return;
+      }
+      LOGGER.error("Bulk import body could not be parsed: {}", err.getMessage());
+      parseError = "Invalid JSON after item " + results.size() + ": " + err.getMessage();
+      onEnd();
+    }
+
+    private void onEnd() {
+      if (ended) {
+        return;
+      }
+      ended = true;
+      if (!batch.isEmpty()) {
+        dispatch();
+      }
+      finishIfDone();
+    }
+
+    private void finishIfDone() {
+      if (batchesInFlight > 0 || promise.future().isComplete()) {
+        return;
+      }
+      resumeRefresh().onComplete(v -> {
+        JsonObject report = new JsonObject()
+            .put("total", results.size())
+            .put(STATUS_CREATED, created)
+            .put(STATUS_FAILED, results.size() - created)
+            .put("items", new JsonArray(results));
+        if (parseError != null) {
+          report.put(DETAIL, parseError);
+        }
+        promise.complete(report);
+      });
+    }
+
+    private void suspendRefresh() {
+      refreshSuspended = true;
+      if (LARGE_IMPORTS.getAndIncrement() == 0) {
+        LOGGER.info("Suspending index refresh for bulk import");
+        PREVIOUS_REFRESH_INTERVAL.set(
+            itemService.updateRefreshInterval(SUSPENDED_REFRESH_INTERVAL));
+      }
+    }
+
+    private Future<Void> resumeRefresh() {
+      if (!refreshSuspended || LARGE_IMPORTS.decrementAndGet() > 0) {
+        return Future.succeededFuture();
+      }
+      Future<String> previous = PREVIOUS_REFRESH_INTERVAL.getAndSet(null);
+      if (previous == null) {
+        return Future.succeededFuture();
+      }
+      LOGGER.info("Restoring index refresh after bulk import");
+      return previous
+          .compose(interval -> itemService.updateRefreshInterval(
+              SUSPENDED_REFRESH_INTERVAL.equals(interval) ? DEFAULT_REFRESH_INTERVAL : interval))
+          .<Void>mapEmpty()
+          .recover(err -> {
+            LOGGER.error("Failed to restore index refresh: {}", err.getMessage());
+            return Future.succeededFuture();
+          });
+    }
+  }
+
+  /** Exactly one of the catalogue item types, or null. */
+  private static String itemType(JsonObject doc) {
+    JsonArray typeArray = doc.getJsonArray(TYPE);
+    if (typeArray == null) {
+      return null;
+    }
+    String itemType = null;
+    for (Object type : typeArray) {
+      if (isCatalogueItemType(type)) {
+        if (itemType != null && !itemType.equals(type)) {
+          return null;
+        }
+        itemType = (String) type;
+      }
+    }
+    return itemType;
+  }
+
+  private static boolean isCatalogueItemType(Object type) {
+    return ITEM_TYPE_AI_MODEL.equals(type) || ITEM_TYPE_DATA_BANK.equals(type)
+        || ITEM_TYPE_APPS.equals(type);
+  }
+
+  private static final class Entry {
+    private final int index;
+    private JsonObject doc;
+    private String type;
+    private Item item;
+    private int bytes;
+    private String error;
+
+    private Entry(int index) {
+      this.index = index;
+    }
+  }
+}
@@ -34,7 +34,6 @@ import java.util.TimeZone;
 import java.util.UUID;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.cdpg.dx.database.elastic.model.ElasticsearchResponse;
 import org.cdpg.dx.tgdex.item.service.ItemService;
 
 public class ItemExistenceValidator {
@@ -86,7 +85,7 @@ public class ItemExistenceValidator {
           }
         })
         .onSuccess(res -> {
-          if (REQUEST_POST.equalsIgnoreCase(method) && ElasticsearchResponse.getTotalHits() > 0) {
+          if (REQUEST_POST.equalsIgnoreCase(method)) {
             promise.fail("Fail: Apps item already exists");
           } else {
             promise.complete(request);
@@ -43,6 +43,11 @@ public class ListController implements ApiController {
         .getAvailableFilters(queryDecoder)
         .onSuccess(
             successHandler -> {
+              if (successHandler.getAsyncSearch() != null) {
+                ResponseBuilder.sendAccepted(
+                    routingContext, ASYNC_SEARCH_RUNNING, successHandler.getAsyncSearch());
+                return;
+              }
               ResponseBuilder.sendSuccess(
                   routingContext,
                   successHandler.getResponse().getJsonArray(RESULTS),
@@ -5,12 +5,13 @@ import org.cdpg.dx.tgdex.list.controller.ListController;
 import org.cdpg.dx.tgdex.list.service.ListService;
 import org.cdpg.dx.tgdex.list.service.ListServiceImpl;
 import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+import org.cdpg.dx.tgdex.util.ServiceOptions;
 import org.cdpg.dx.tgdex.validator.service.ValidatorService;
 
 public  class ListControllerFactory {
 
-    public static ListController createListController(ElasticsearchService elasticsearchService, AuditingHandler auditingHandler, String docIndex ,ValidatorService validatorService ){
-        ListService listService = new ListServiceImpl(elasticsearchService,docIndex,validatorService);
+    public static ListController createListController(ElasticsearchService elasticsearchService, AuditingHandler auditingHandler, String docIndex ,ValidatorService validatorService, ServiceOptions options){
+        ListService listService = new ListServiceImpl(elasticsearchService,docIndex,validatorService,options);
         return new ListController(auditingHandler,listService);
     }
 }
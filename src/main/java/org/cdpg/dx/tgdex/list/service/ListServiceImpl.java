@@ -3,28 +3,50 @@ package org.cdpg.dx.tgdex.list.service;
 import static org.cdpg.dx.database.elastic.util.Constants.*;
 
 import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.cdpg.dx.common.exception.DxBadRequestException;
+import org.cdpg.dx.common.util.PaginationInfo;
+import org.cdpg.dx.database.elastic.model.AccessPolicyRequestDTO;
 import org.cdpg.dx.database.elastic.model.QueryDecoder;
 import org.cdpg.dx.database.elastic.model.QueryDecoderRequestDTO;
 import org.cdpg.dx.database.elastic.model.QueryModel;
+import org.cdpg.dx.database.elastic.model.SearchCriteriaDTO;
+import org.cdpg.dx.database.elastic.model.SearchResult;
 import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+import org.cdpg.dx.tgdex.list.util.FilterValuesCursor;
+import org.cdpg.dx.tgdex.search.util.AsyncSearches;
+import org.cdpg.dx.tgdex.search.util.FacetStore;
 import org.cdpg.dx.tgdex.search.util.ResponseModel;
+import org.cdpg.dx.tgdex.util.ServiceOptions;
 import org.cdpg.dx.tgdex.validator.service.ValidatorService;
 
 public class ListServiceImpl implements ListService {
   private static final Logger LOGGER = LogManager.getLogger(ListServiceImpl.class);
+  private static final int DEFAULT_FILTER_PAGE_SIZE = 100;
+  private static final int MAX_FILTER_PAGE_SIZE = 1000;
   private final QueryDecoder queryDecoder;
+  private final FacetStore facetStore;
+  private final AsyncSearches asyncSearches;
   ElasticsearchService elasticsearchService;
   String docIndex;
 
   public ListServiceImpl(
       ElasticsearchService elasticsearchService,
       String docIndex,
-      ValidatorService validatorService) {
+      ValidatorService validatorService,
+      ServiceOptions options) {
     this.elasticsearchService = elasticsearchService;
     this.queryDecoder = new QueryDecoder();
     this.docIndex = docIndex;
+    this.facetStore = options.getFacetStore();
+    this.asyncSearches = options.getAsyncSearches();
   }
 
   @Override
@@ -34,11 +56,163 @@ public class ListServiceImpl implements ListService {
         || queryDecoderRequestDTO.getFilter().isEmpty()) {
       return Future.failedFuture("Missing or empty 'filter' array");
     }
-    QueryDecoder queryDecoder = new QueryDecoder();
+    if (queryDecoderRequestDTO.isAsync()) {
+      return asyncFilters(queryDecoderRequestDTO);
+    }
+    if (queryDecoderRequestDTO.getCursor() != null
+        || (queryDecoderRequestDTO.getPrefix() != null
+            && !queryDecoderRequestDTO.getPrefix().isEmpty())) {
+      return filterValuesPage(queryDecoderRequestDTO);
+    }
+    JsonObject materialized = materializedFilters(queryDecoderRequestDTO);
+    if (materialized != null) {
+      return Future.succeededFuture(
+          new ResponseModel(new SearchResult(List.of(), 0, materialized, 0L)));
+    }
     QueryModel queryModel = queryDecoder.listMultipleItemTypesQuery(queryDecoderRequestDTO);
     return elasticsearchService
         .search(docIndex, queryModel, AGGREGATION_LIST)
         .map(ResponseModel::new)
         .onFailure(err -> LOGGER.error("Search execution failed: {}", err.getMessage()));
   }
+
+  /**
+   * Counts all the filter values with a search run in the background, for the lists too slow to
+   * wait for. Values are not paged, and not read from the facet store.
+   */
+  private Future<ResponseModel> asyncFilters(QueryDecoderRequestDTO queryDecoderRequestDTO) {
+    if (asyncSearches == null) {
+      return Future.failedFuture(new DxBadRequestException("Async searches are not enabled"));
+    }
+    if (queryDecoderRequestDTO.getCursor() != null || queryDecoderRequestDTO.getPrefix() != null) {
+      return Future.failedFuture(
+          new DxBadRequestException("Paged filter values are not supported for async searches"));
+    }
+    QueryModel queryModel = queryDecoder.listMultipleItemTypesQuery(queryDecoderRequestDTO);
+    return asyncSearches.submit(
+        queryDecoderRequestDTO.getAccessPolicyRequest().getSub(),
+        docIndex,
+        queryModel,
+        AGGREGATION_LIST,
+        queryDecoderRequestDTO.getSize(),
+        queryDecoderRequestDTO.getPage());
+  }
+
+  /**
+   * Pages through the values of the filter fields in value order, a composite aggregation page per
+   * field, so high-cardinality fields are listed in pages of the same cost at any depth. A request
+   * with a prefix but no cursor gets the first page.
+   */
+  private Future<ResponseModel> filterValuesPage(QueryDecoderRequestDTO request) {
+    int size = request.getSize() != null ? request.getSize() : DEFAULT_FILTER_PAGE_SIZE;
+    if (size < 1 || size > MAX_FILTER_PAGE_SIZE) {
+      return Future.failedFuture(
+          new DxBadRequestException(
+              "Size must be between 1 and " + MAX_FILTER_PAGE_SIZE + " when paging filter values"));
+    }
+    FilterValuesCursor cursor;
+    try {
+      cursor =
+          request.getCursor() == null || FilterValuesCursor.START.equals(request.getCursor())
+              ? FilterValuesCursor.start(request.getFilter())
+              : FilterValuesCursor.decode(request.getCursor());
+    } catch (DxBadRequestException e) {
+      return Future.failedFuture(e);
+    }
+    Map<String, String> after = new LinkedHashMap<>();
+    cursor.getAfter().forEach(
+        (filter, value) -> {
+          if (request.getFilter().contains(filter)) {
+            after.put(filter, value);
+          }
+        });
+    if (after.isEmpty()) {
+      return Future.succeededFuture(filterValuesResponse(request, new JsonObject(), null, size));
+    }
+    QueryModel queryModel = queryDecoder.listFilterValuesPageQuery(request, after, size);
+    return elasticsearchService
+        .search(docIndex, queryModel, AGGREGATION_ONLY)
+        .map(result -> filterValuesResponse(request, result.getAggregations(), after, size))
+        .onFailure(err -> LOGGER.error("Filter values page failed: {}", err.getMessage()));
+  }
+
+  /**
+   * The values of each filter field on this page, with a cursor to the next page of the fields
+   * that have values left. With a prefix, values on the page not starting with it are dropped, so
+   * such a page may list fewer than {@code size} values before the last.
+   */
+  private static ResponseModel filterValuesResponse(
+      QueryDecoderRequestDTO request, JsonObject aggregations, Map<String, String> after, int size) {
+    String prefix =
+        request.getPrefix() == null ? null : request.getPrefix().toLowerCase(Locale.ROOT);
+    JsonObject values = new JsonObject();
+    Map<String, String> next = new LinkedHashMap<>();
+    for (String filter : request.getFilter()) {
+      JsonArray filterValues = new JsonArray();
+      JsonObject aggregation = aggregations.getJsonObject(filter);
+      if (aggregation != null && !aggregation.containsKey(BUCKETS)) {
+        aggregation = aggregation.getJsonObject(filter);
+      }
+      if (aggregation != null) {
+        JsonArray buckets = aggregation.getJsonArray(BUCKETS, new JsonArray());
+        for (Object bucket : buckets) {
+          Object value = ((JsonObject) bucket).getJsonObject(KEY).getValue(VALUE);
+          String text = String.valueOf(value);
+          if (prefix == null || text.toLowerCase(Locale.ROOT).startsWith(prefix)) {
+            filterValues.add(text);
+          }
+        }
+        JsonObject afterKey = aggregation.getJsonObject(AFTER_KEY);
+        if (buckets.size() == size && afterKey != null) {
+          next.put(filter, String.valueOf(afterKey.getValue(VALUE)));
+        }
+      }
+      values.put(filter, filterValues);
+    }
+    ResponseModel responseModel =
+        new ResponseModel(new SearchResult(List.of(), 0, values, 0L));
+    boolean hasPrevious =
+        request.getCursor() != null && !FilterValuesCursor.START.equals(request.getCursor());
+    responseModel.setPaginationInfo(new PaginationInfo(1, size, 0, 0, false, hasPrevious));
+    responseModel.setNextCursor(next.isEmpty() ? null : new FilterValuesCursor(next).encode());
+    return responseModel;
+  }
+
+  /**
+   * The filter values from the facet store, for requests narrowed by at most the access policy
+   * and a single item type; null when they have to be read from Elasticsearch.
+   */
+  private JsonObject materializedFilters(QueryDecoderRequestDTO request) {
+    AccessPolicyRequestDTO accessPolicy = request.getAccessPolicyRequest();
+    if (facetStore == null
+        || accessPolicy == null
+        || Boolean.TRUE.equals(accessPolicy.getMyAssetsReq())
+        || request.getGeoSearchRequest() != null
+        || (request.getInstanceFilterRequest() != null
+            && request.getInstanceFilterRequest().getInstance() != null
+            && !request.getInstanceFilterRequest().getInstance().isEmpty())) {
+      return null;
+    }
+    String type = null;
+    if (request.getSearchCriteriaRequest() != null
+        && request.getSearchCriteriaRequest().getSearchCriteria() != null) {
+      List<SearchCriteriaDTO> criteria = request.getSearchCriteriaRequest().getSearchCriteria();
+      if (criteria.size() != 1 || (type = singleType(criteria.getFirst())) == null) {
+        return null;
+      }
+    }
+    return facetStore.filters(
+        accessPolicy.getSub(), type, request.getFilter(), QueryDecoder.listFilterSize(request));
+  }
+
+  /** The item type a criterion matches, if it is a term criterion on the type of one value. */
+  private static String singleType(SearchCriteriaDTO criterion) {
+    boolean term = criterion.getSearchType() == null || TERM.equals(criterion.getSearchType());
+    boolean onType =
+        TYPE_KEY.equals(criterion.getField()) || TYPE_KEYWORD.equals(criterion.getField());
+    List<Object> values = criterion.getValues();
+    return term && onType && values != null && values.size() == 1 && values.getFirst() != null
+        ? values.getFirst().toString()
+        : null;
+  }
 }
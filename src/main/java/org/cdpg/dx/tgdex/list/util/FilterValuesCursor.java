@@ -0,0 +1,69 @@
+package org.cdpg.dx.tgdex.list.util;
+
+import io.vertx.core.json.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.cdpg.dx.common.exception.DxBadRequestException;
+
+/**
+ * Opaque cursor handed to clients paging through filter values. It carries, for each filter field
+ * with values left, the last value returned, encoded as URL-safe base64. Fields whose values are
+ * exhausted are left out.
+ */
+public class FilterValuesCursor {
+  /** Cursor value a client sends to start paging. */
+  public static final String START = "*";
+
+  private final Map<String, String> after;
+
+  public FilterValuesCursor(Map<String, String> after) {
+    this.after = after;
+  }
+
+  /** The cursor of the first page of every filter field. */
+  public static FilterValuesCursor start(List<String> filters) {
+    Map<String, String> after = new LinkedHashMap<>();
+    for (String filter : filters) {
+      after.put(filter, null);
+    }
+    return new FilterValuesCursor(after);
+  }
+
+  public static FilterValuesCursor decode(String cursor) {
+    try {
+      byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+      JsonObject json = new JsonObject(new String(bytes, StandardCharsets.UTF_8));
+      if (json.isEmpty()) {
+        throw new DxBadRequestException("Invalid cursor");
+      }
+      Map<String, String> after = new LinkedHashMap<>();
+      for (String filter : json.fieldNames()) {
+        Object value = json.getValue(filter);
+        if (value != null && !(value instanceof String)) {
+          throw new DxBadRequestException("Invalid cursor");
+        }
+        after.put(filter, (String) value);
+      }
+      return new FilterValuesCursor(after);
+    } catch (DxBadRequestException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new DxBadRequestException("Invalid cursor", e);
+    }
+  }
+
+  public String encode() {
+    JsonObject json = new JsonObject();
+    after.forEach(json::put);
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(json.encode().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** The filter fields with values left, each with the last value returned or null. */
+  public Map<String, String> getAfter() {
+    return after;
+  }
+}
@@ -0,0 +1,104 @@
+package org.cdpg.dx.tgdex.savedsearch.controller;
+
+import static org.cdpg.dx.tgdex.util.Constants.ID;
+import static org.cdpg.dx.tgdex.util.Constants.NAME;
+import static org.cdpg.dx.util.Constants.CREATE_SAVED_SEARCH;
+import static org.cdpg.dx.util.Constants.DELETE_SAVED_SEARCH;
+import static org.cdpg.dx.util.Constants.LIST_SAVED_SEARCHES;
+
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.openapi.RouterBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cdpg.dx.auditing.handler.AuditingHandler;
+import org.cdpg.dx.common.request.PostSearchRequestBuilder;
+import org.cdpg.dx.common.response.ResponseBuilder;
+import org.cdpg.dx.database.elastic.model.QueryDecoderRequestDTO;
+import org.cdpg.dx.tgdex.apiserver.ApiController;
+import org.cdpg.dx.tgdex.savedsearch.service.SavedSearchService;
+import org.cdpg.dx.util.CheckIfTokenPresent;
+
+/** Controller for the searches users save to be notified of new matching items. */
+public class SavedSearchController implements ApiController {
+  private static final Logger LOGGER = LogManager.getLogger(SavedSearchController.class);
+  private static final CheckIfTokenPresent TOKEN_CHECK = new CheckIfTokenPresent();
+
+  private final SavedSearchService savedSearchService;
+  private final AuditingHandler auditingHandler;
+
+  public SavedSearchController(
+      SavedSearchService savedSearchService, AuditingHandler auditingHandler) {
+    this.savedSearchService = savedSearchService;
+    this.auditingHandler = auditingHandler;
+  }
+
+  @Override
+  public void register(RouterBuilder builder) {
+    builder
+        .operation(CREATE_SAVED_SEARCH)
+        .handler(TOKEN_CHECK)
+        .handler(this::handleCreate)
+        .handler(auditingHandler::handleApiAudit);
+
+    builder
+        .operation(LIST_SAVED_SEARCHES)
+        .handler(TOKEN_CHECK)
+        .handler(this::handleList);
+
+    builder
+        .operation(DELETE_SAVED_SEARCH)
+        .handler(TOKEN_CHECK)
+        .handler(this::handleDelete)
+        .handler(auditingHandler::handleApiAudit);
+
+    LOGGER.debug(
+        "Registered SavedSearchController operations: {}, {}, {}",
+        CREATE_SAVED_SEARCH,
+        LIST_SAVED_SEARCHES,
+        DELETE_SAVED_SEARCH);
+  }
+
+  private void handleCreate(RoutingContext ctx) {
+    LOGGER.debug("Received POST request on '{}'", CREATE_SAVED_SEARCH);
+    try {
+      QueryDecoderRequestDTO queryDecoder =
+          PostSearchRequestBuilder.fromRoutingContext(ctx)
+              .setAssetSearch(false)
+              .setCountApi(false)
+              .build();
+      savedSearchService
+          .create(queryDecoder, ctx.queryParams().get(NAME), ctx.body().asJsonObject())
+          .onSuccess(saved -> ResponseBuilder.sendCreated(ctx, "Search saved", saved))
+          .onFailure(
+              err -> {
+                LOGGER.error("Save search request failed: {}", err.getMessage(), err);
+                ctx.fail(err);
+              });
+    } catch (Exception e) {
+      LOGGER.error("Error processing save search request: {}", e.getMessage(), e);
+      ctx.fail(e);
+    }
+  }
+
+  private void handleList(RoutingContext ctx) {
+    savedSearchService
+        .list(ctx.user().subject())
+        .onSuccess(savedSearches -> ResponseBuilder.sendSuccess(ctx, savedSearches))
+        .onFailure(
+            err -> {
+              LOGGER.error("List saved searches request failed: {}", err.getMessage(), err);
+              ctx.fail(err);
+            });
+  }
+
+  private void handleDelete(RoutingContext ctx) {
+    savedSearchService
+        .delete(ctx.user().subject(), ctx.queryParams().get(ID))
+        .onSuccess(v -> ResponseBuilder.sendSuccess(ctx, "Saved search deleted"))
+        .onFailure(
+            err -> {
+              LOGGER.error("Delete saved search request failed: {}", err.getMessage(), err);
+              ctx.fail(err);
+            });
+  }
+}
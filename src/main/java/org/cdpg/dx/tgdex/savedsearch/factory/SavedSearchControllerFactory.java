@@ -0,0 +1,12 @@
+package org.cdpg.dx.tgdex.savedsearch.factory;
+
+import org.cdpg.dx.auditing.handler.AuditingHandler;
+import org.cdpg.dx.tgdex.savedsearch.controller.SavedSearchController;
+import org.cdpg.dx.tgdex.savedsearch.service.SavedSearchService;
+
+public class SavedSearchControllerFactory {
+
+    public static SavedSearchController createSavedSearchController(SavedSearchService savedSearchService, AuditingHandler auditingHandler) {
+        return new SavedSearchController(savedSearchService, auditingHandler);
+    }
+}
@@ -0,0 +1,27 @@
+package org.cdpg.dx.tgdex.savedsearch.service;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.List;
+import org.cdpg.dx.database.elastic.model.QueryDecoderRequestDTO;
+
+/**
+ * Searches saved by users to be told of new matching items, instead of running them again and
+ * again.
+ */
+public interface SavedSearchService {
+  /**
+   * Saves the search for its user under a name.
+   *
+   * @param search the request body of the search, listed back as it was sent
+   */
+  Future<JsonObject> create(QueryDecoderRequestDTO queryDecoder, String name, JsonObject search);
+
+  Future<JsonArray> list(String sub);
+
+  Future<Void> delete(String sub, String id);
+
+  /** Tells the users whose saved searches match any of the items written about them. */
+  Future<Void> percolate(List<JsonObject> items);
+}
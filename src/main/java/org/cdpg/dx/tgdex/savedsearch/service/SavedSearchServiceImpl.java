@@ -0,0 +1,233 @@
+package org.cdpg.dx.tgdex.savedsearch.service;
+
+import static org.cdpg.dx.database.elastic.util.Constants.ID;
+import static org.cdpg.dx.database.elastic.util.Constants.ID_KEYWORD;
+import static org.cdpg.dx.database.elastic.util.Constants.LABEL;
+import static org.cdpg.dx.database.elastic.util.Constants.NAME;
+import static org.cdpg.dx.database.elastic.util.Constants.PERCOLATOR_QUERY;
+import static org.cdpg.dx.database.elastic.util.Constants.SLOTS;
+import static org.cdpg.dx.database.elastic.util.Constants.SOURCE;
+import static org.cdpg.dx.database.elastic.util.Constants.SOURCE_UNCACHED;
+import static org.cdpg.dx.database.elastic.util.Constants.TYPE;
+import static org.cdpg.dx.tgdex.util.Constants.FIELD;
+import static org.cdpg.dx.tgdex.util.Constants.SUB;
+import static org.cdpg.dx.tgdex.util.Constants.VALUE;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cdpg.dx.common.exception.DxBadRequestException;
+import org.cdpg.dx.common.exception.DxNotFoundException;
+import org.cdpg.dx.common.exception.DxUnauthorizedException;
+import org.cdpg.dx.database.elastic.model.QueryDecoder;
+import org.cdpg.dx.database.elastic.model.QueryDecoderRequestDTO;
+import org.cdpg.dx.database.elastic.model.QueryModel;
+import org.cdpg.dx.database.elastic.model.QueryNode;
+import org.cdpg.dx.database.elastic.model.QueryRewriter;
+import org.cdpg.dx.database.elastic.model.TextSearchSettings;
+import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+import org.cdpg.dx.database.elastic.util.QueryType;
+import org.cdpg.dx.databroker.service.DataBrokerService;
+
+/**
+ * Saved searches kept as percolator queries, in an index of their own. A search is turned into its
+ * Elasticsearch query once, when it is saved, by the same {@link QueryDecoder} as {@code /search},
+ * so it matches what the search would find, access policy included.
+ *
+ * <p>Each batch of items written is percolated once against every saved search, and each user
+ * with matches gets one message listing them, published on the exchange with the routing key
+ * {@code savedSearch.<sub>}. Partner portals bind a queue to their key rather than polling
+ * {@code /search} for new items.
+ */
+public class SavedSearchServiceImpl implements SavedSearchService {
+  /** The most searches a user may save. */
+  public static final int MAX_SAVED_SEARCHES = 100;
+
+  private static final Logger LOGGER = LogManager.getLogger(SavedSearchServiceImpl.class);
+  private static final String SAVED_SEARCH = "savedSearch";
+  private static final String SAVED_SEARCH_SUB = SAVED_SEARCH + "." + SUB;
+  private static final String SEARCH = "search";
+  private static final String CREATED_AT = "createdAt";
+  private static final String ITEMS = "items";
+  private static final String ROUTING_KEY_PREFIX = "savedSearch.";
+  private static final List<String> ITEM_FIELDS = List.of(ID, NAME, LABEL, TYPE);
+
+  private final ElasticsearchService elasticsearchService;
+  private final String index;
+  private final DataBrokerService dataBrokerService;
+  private final String exchange;
+  private final QueryDecoder queryDecoder;
+
+  public SavedSearchServiceImpl(
+      ElasticsearchService elasticsearchService,
+      String index,
+      DataBrokerService dataBrokerService,
+      String exchange,
+      TextSearchSettings textSearchSettings) {
+    this.elasticsearchService = elasticsearchService;
+    this.index = index;
+    this.dataBrokerService = dataBrokerService;
+    this.exchange = exchange;
+    this.queryDecoder = new QueryDecoder(textSearchSettings);
+  }
+
+  @Override
+  public Future<JsonObject> create(
+      QueryDecoderRequestDTO queryDecoderRequestDTO, String name, JsonObject search) {
+    JsonObject query;
+    String sub = queryDecoderRequestDTO.getAccessPolicyRequest().getSub();
+    try {
+      if (sub == null) {
+        throw new DxUnauthorizedException("A token is required to save searches");
+      }
+      if (queryDecoderRequestDTO.getQueryVector() != null) {
+        throw new DxBadRequestException("Vector searches cannot be saved");
+      }
+      queryDecoderRequestDTO.setFacets(null);
+      QueryModel queryModel = queryDecoder.getQueryModel(queryDecoderRequestDTO);
+      query =
+          QueryRewriter.explain(QueryNode.of(queryModel.getQueries())).getJsonObject("rewritten");
+    } catch (DxBadRequestException | DxUnauthorizedException e) {
+      return Future.failedFuture(e);
+    }
+
+    JsonObject savedSearch =
+        new JsonObject()
+            .put(SUB, sub)
+            .put(NAME, name)
+            .put(CREATED_AT, Instant.now().toString())
+            .put(SEARCH, search);
+    String id = UUID.randomUUID().toString();
+    // Counted uncached, so searches saved moments ago are not missed when enforcing the limit
+    QueryModel saved = new QueryModel(termQuery(SAVED_SEARCH_SUB, sub), null);
+    saved.setLimit("0");
+    return elasticsearchService
+        .search(index, saved, SOURCE_UNCACHED)
+        .compose(
+            result -> {
+              if (result.getTotalHits() >= MAX_SAVED_SEARCHES) {
+                return Future.failedFuture(
+                    new DxBadRequestException(
+                        "At most " + MAX_SAVED_SEARCHES + " searches may be saved"));
+              }
+              QueryModel document = new QueryModel();
+              document.createQueryModelFromDocument(
+                  new JsonObject()
+                      .put(ID, id)
+                      .put(PERCOLATOR_QUERY, query)
+                      .put(SAVED_SEARCH, savedSearch));
+              return elasticsearchService.createDocuments(index, List.of(document));
+            })
+        .map(ids -> summary(id, savedSearch));
+  }
+
+  @Override
+  public Future<JsonArray> list(String sub) {
+    QueryModel queryModel = new QueryModel(termQuery(SAVED_SEARCH_SUB, sub), null);
+    queryModel.setIncludeFields(List.of(ID, SAVED_SEARCH));
+    queryModel.setLimit(String.valueOf(MAX_SAVED_SEARCHES));
+    return elasticsearchService
+        .search(index, queryModel, SOURCE_UNCACHED)
+        .map(
+            result -> {
+              JsonArray savedSearches = new JsonArray();
+              result
+                  .getHits()
+                  .forEach(
+                      hit ->
+                          savedSearches.add(
+                              summary(
+                                  hit.getSource().getString(ID),
+                                  hit.getSource().getJsonObject(SAVED_SEARCH))));
+              return savedSearches;
+            });
+  }
+
+  @Override
+  public Future<Void> delete(String sub, String id) {
+    QueryModel boolQuery = new QueryModel(QueryType.BOOL);
+    boolQuery.setMustQueries(List.of(termQuery(ID_KEYWORD, id), termQuery(SAVED_SEARCH_SUB, sub)));
+    return elasticsearchService
+        .getSingleDocument(index, boolQuery)
+        .compose(
+            result -> {
+              if (result.getTotalHits() < 1) {
+                return Future.failedFuture(new DxNotFoundException("Saved search not found"));
+              }
+              return elasticsearchService.deleteDocument(index, result.firstHit().getDocId());
+            });
+  }
+
+  @Override
+  public Future<Void> percolate(List<JsonObject> items) {
+    if (items.isEmpty()) {
+      return Future.succeededFuture();
+    }
+    return elasticsearchService
+        .percolate(index, PERCOLATOR_QUERY, new JsonArray(new ArrayList<>(items)))
+        .compose(
+            matches -> {
+              Map<String, JsonArray> notifications = notifications(matches, items);
+              List<Future<String>> published = new ArrayList<>();
+              notifications.forEach(
+                  (sub, matched) ->
+                      published.add(
+                          dataBrokerService.publishMessageExternal(
+                              exchange, ROUTING_KEY_PREFIX + sub, matched)));
+              LOGGER.debug(
+                  "Percolated {} items: {} saved searches of {} users matched",
+                  items.size(),
+                  matches.size(),
+                  notifications.size());
+              return Future.all(published).<Void>mapEmpty();
+            });
+  }
+
+  /** The saved searches matched by each user, with the items each of them matched. */
+  private static Map<String, JsonArray> notifications(JsonArray matches, List<JsonObject> items) {
+    Map<String, JsonArray> notifications = new LinkedHashMap<>();
+    for (Object value : matches) {
+      JsonObject match = (JsonObject) value;
+      JsonObject savedSearch = match.getJsonObject(SOURCE).getJsonObject(SAVED_SEARCH);
+      JsonArray matched = new JsonArray();
+      for (Object slot : match.getJsonArray(SLOTS)) {
+        JsonObject item = items.get(((Number) slot).intValue());
+        JsonObject summary = new JsonObject();
+        ITEM_FIELDS.stream()
+            .filter(item::containsKey)
+            .forEach(field -> summary.put(field, item.getValue(field)));
+        matched.add(summary);
+      }
+      notifications
+          .computeIfAbsent(savedSearch.getString(SUB), sub -> new JsonArray())
+          .add(
+              new JsonObject()
+                  .put(ID, match.getString(ID))
+                  .put(NAME, savedSearch.getString(NAME))
+                  .put(ITEMS, matched));
+    }
+    return notifications;
+  }
+
+  private static JsonObject summary(String id, JsonObject savedSearch) {
+    return new JsonObject()
+        .put(ID, id)
+        .put(NAME, savedSearch.getString(NAME))
+        .put(CREATED_AT, savedSearch.getString(CREATED_AT))
+        .put(SEARCH, savedSearch.getJsonObject(SEARCH));
+  }
+
+  private static QueryModel termQuery(String field, String value) {
+    QueryModel termQuery = new QueryModel(QueryType.TERM);
+    termQuery.setQueryParameters(Map.of(FIELD, field, VALUE, value));
+    return termQuery;
+  }
+}
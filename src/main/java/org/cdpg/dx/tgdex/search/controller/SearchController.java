@@ -1,9 +1,19 @@
 package org.cdpg.dx.tgdex.search.controller;
 
+import static org.cdpg.dx.tgdex.util.Constants.LIMIT;
+import static org.cdpg.dx.tgdex.util.Constants.Q_VALUE;
 import static org.cdpg.dx.tgdex.util.Constants.RESULTS;
 import static org.cdpg.dx.util.Constants.ASSET_SEARCH;
+import static org.cdpg.dx.util.Constants.ASYNC_SEARCH_RESULT;
+import static org.cdpg.dx.util.Constants.ASYNC_SEARCH_RUNNING;
+import static org.cdpg.dx.util.Constants.ASYNC_SEARCH_STATUS;
+import static org.cdpg.dx.util.Constants.DELETE_ASYNC_SEARCH;
+import static org.cdpg.dx.util.Constants.EXPLAIN_SEARCH;
+import static org.cdpg.dx.util.Constants.EXPORT;
+import static org.cdpg.dx.util.Constants.MAP_SEARCH;
 import static org.cdpg.dx.util.Constants.POST_COUNT_SEARCH;
 import static org.cdpg.dx.util.Constants.POST_SEARCH;
+import static org.cdpg.dx.util.Constants.SUGGEST;
 
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.openapi.RouterBuilder;
@@ -15,12 +25,17 @@ import org.cdpg.dx.common.response.ResponseBuilder;
 import org.cdpg.dx.database.elastic.model.QueryDecoderRequestDTO;
 import org.cdpg.dx.tgdex.apiserver.ApiController;
 import org.cdpg.dx.tgdex.search.service.SearchService;
+import org.cdpg.dx.tgdex.search.util.NdjsonResponseWriter;
+import org.cdpg.dx.tgdex.search.util.ResponseModel;
 import org.cdpg.dx.util.CheckIfTokenPresent;
 
 /** Controller for handling search endpoints. */
 public class SearchController implements ApiController {
   private static final Logger LOGGER = LogManager.getLogger(SearchController.class);
   private static final CheckIfTokenPresent TOKEN_CHECK = new CheckIfTokenPresent();
+  private static final int DEFAULT_SUGGESTIONS = 10;
+  private static final String ZOOM = "zoom";
+  private static final String ID = "id";
 
   private final SearchService searchService;
   private final AuditingHandler auditingHandler;
@@ -48,11 +63,48 @@ public class SearchController implements ApiController {
         .handler(this::handleAsset)
         .handler(auditingHandler::handleApiAudit);
 
+    builder
+        .operation(EXPORT)
+        .handler(this::handleExport)
+        .handler(auditingHandler::handleApiAudit);
+
+    builder.operation(EXPLAIN_SEARCH).handler(this::handleExplain);
+
+    builder.operation(SUGGEST).handler(this::handleSuggest);
+
+    builder
+        .operation(MAP_SEARCH)
+        .handler(this::handleMap)
+        .handler(auditingHandler::handleApiAudit);
+
+    builder
+        .operation(ASYNC_SEARCH_STATUS)
+        .handler(TOKEN_CHECK)
+        .handler(this::handleAsyncStatus);
+
+    builder
+        .operation(ASYNC_SEARCH_RESULT)
+        .handler(TOKEN_CHECK)
+        .handler(this::handleAsyncResult)
+        .handler(auditingHandler::handleApiAudit);
+
+    builder
+        .operation(DELETE_ASYNC_SEARCH)
+        .handler(TOKEN_CHECK)
+        .handler(this::handleDeleteAsync);
+
     LOGGER.debug(
-        "Registered SearchController operations: {}, {}, {}",
+        "Registered SearchController operations: {}, {}, {}, {}, {}, {}, {}, {}, {}, {}",
         POST_SEARCH,
         POST_COUNT_SEARCH,
-        ASSET_SEARCH);
+        ASSET_SEARCH,
+        EXPORT,
+        EXPLAIN_SEARCH,
+        SUGGEST,
+        MAP_SEARCH,
+        ASYNC_SEARCH_STATUS,
+        ASYNC_SEARCH_RESULT,
+        DELETE_ASYNC_SEARCH);
   }
 
   private void handleSearch(RoutingContext ctx) {
@@ -66,13 +118,7 @@ public class SearchController implements ApiController {
       searchService
           .postSearch(queryDecoder)
           .onSuccess(
-              searchService -> {
-                ResponseBuilder.sendSuccess(
-                    ctx,
-                    searchService.getElasticsearchResponses(),
-                    searchService.getPaginationInfo(),
-                    searchService.getTotalHits());
-              })
+              searchService -> sendSearchResponse(ctx, searchService))
           .onFailure(
               err -> {
                 LOGGER.error("Search request failed: {}", err.getMessage(), err);
@@ -84,6 +130,26 @@ public class SearchController implements ApiController {
     }
   }
 
+  /**
+   * Sends a search result, raw when it was searched in raw mode, or the status of a search still
+   * running in the background.
+   */
+  private static void sendSearchResponse(RoutingContext ctx, ResponseModel response) {
+    if (response.getAsyncSearch() != null) {
+      ResponseBuilder.sendAccepted(ctx, ASYNC_SEARCH_RUNNING, response.getAsyncSearch());
+    } else if (response.getRawResults() != null) {
+      ResponseBuilder.sendRawSuccess(
+          ctx,
+          response.getRawResults(),
+          response.getPaginationInfo(),
+          response.getTotalHits(),
+          response.getFacets());
+    } else {
+      ResponseBuilder.sendSuccess(
+          ctx, response.getResponse().getJsonArray(RESULTS), response.getPaginationInfo());
+    }
+  }
+
   private void handleCount(RoutingContext ctx) {
     LOGGER.debug("Received POST Count request on '{}'", POST_COUNT_SEARCH);
     QueryDecoderRequestDTO queryDecoderRequestDTO =
@@ -116,13 +182,7 @@ public class SearchController implements ApiController {
       searchService
           .postSearch(queryDecoder)
           .onSuccess(
-              searchService -> {
-                ResponseBuilder.sendSuccess(
-                    ctx,
-                    searchService.getElasticsearchResponses(),
-                    searchService.getPaginationInfo(),
-                    searchService.getTotalHits());
-              })
+              searchService -> sendSearchResponse(ctx, searchService))
           .onFailure(
               err -> {
                 LOGGER.error("Search request failed: {}", err.getMessage(), err);
@@ -133,4 +193,111 @@ public class SearchController implements ApiController {
       LOGGER.error("Error processing search request: {}", e.getMessage(), e);
     }
   }
+
+  private void handleExport(RoutingContext ctx) {
+    LOGGER.debug("Received POST Export request on '{}'", EXPORT);
+    try {
+      QueryDecoderRequestDTO queryDecoder =
+          PostSearchRequestBuilder.fromRoutingContext(ctx)
+              .setAssetSearch(false)
+              .setCountApi(false)
+              .build();
+      NdjsonResponseWriter.write(
+          ctx, searchService.export(queryDecoder), NdjsonResponseWriter.acceptsGzip(ctx));
+    } catch (Exception e) {
+      LOGGER.error("Error processing export request: {}", e.getMessage(), e);
+      ctx.fail(e);
+    }
+  }
+
+  private void handleExplain(RoutingContext ctx) {
+    LOGGER.debug("Received POST Explain request on '{}'", EXPLAIN_SEARCH);
+    try {
+      QueryDecoderRequestDTO queryDecoder =
+          PostSearchRequestBuilder.fromRoutingContext(ctx)
+              .setAssetSearch(false)
+              .setCountApi(false)
+              .build();
+      searchService
+          .explain(queryDecoder)
+          .onSuccess(explained -> ResponseBuilder.sendSuccess(ctx, explained))
+          .onFailure(
+              err -> {
+                LOGGER.error("Explain request failed: {}", err.getMessage(), err);
+                ctx.fail(err);
+              });
+    } catch (Exception e) {
+      LOGGER.error("Error processing explain request: {}", e.getMessage(), e);
+      ctx.fail(e);
+    }
+  }
+
+  private void handleSuggest(RoutingContext ctx) {
+    String prefix = ctx.queryParams().get(Q_VALUE);
+    String limit = ctx.queryParams().get(LIMIT);
+    String sub = ctx.user() != null ? ctx.user().subject() : null;
+    searchService
+        .suggest(sub, prefix, limit == null ? DEFAULT_SUGGESTIONS : Integer.parseInt(limit))
+        .onSuccess(suggestions -> ResponseBuilder.sendSuccess(ctx, suggestions))
+        .onFailure(
+            err -> {
+              LOGGER.error("Suggest request failed: {}", err.getMessage(), err);
+              ctx.fail(err);
+            });
+  }
+
+  private void handleMap(RoutingContext ctx) {
+    LOGGER.debug("Received POST Map request on '{}'", MAP_SEARCH);
+    try {
+      QueryDecoderRequestDTO queryDecoder =
+          PostSearchRequestBuilder.fromRoutingContext(ctx)
+              .setAssetSearch(false)
+              .setCountApi(false)
+              .build();
+      searchService
+          .mapClusters(queryDecoder, Integer.parseInt(ctx.queryParams().get(ZOOM)))
+          .onSuccess(clusters -> ResponseBuilder.sendSuccess(ctx, clusters))
+          .onFailure(
+              err -> {
+                LOGGER.error("Map request failed: {}", err.getMessage(), err);
+                ctx.fail(err);
+              });
+    } catch (Exception e) {
+      LOGGER.error("Error processing map request: {}", e.getMessage(), e);
+      ctx.fail(e);
+    }
+  }
+
+  private void handleAsyncStatus(RoutingContext ctx) {
+    searchService
+        .asyncSearchStatus(ctx.user().subject(), ctx.queryParams().get(ID))
+        .onSuccess(status -> ResponseBuilder.sendSuccess(ctx, status))
+        .onFailure(
+            err -> {
+              LOGGER.error("Async search status request failed: {}", err.getMessage());
+              ctx.fail(err);
+            });
+  }
+
+  private void handleAsyncResult(RoutingContext ctx) {
+    searchService
+        .asyncSearchResult(ctx.user().subject(), ctx.queryParams().get(ID))
+        .onSuccess(response -> sendSearchResponse(ctx, response))
+        .onFailure(
+            err -> {
+              LOGGER.error("Async search result request failed: {}", err.getMessage());
+              ctx.fail(err);
+            });
+  }
+
+  private void handleDeleteAsync(RoutingContext ctx) {
+    searchService
+        .deleteAsyncSearch(ctx.user().subject(), ctx.queryParams().get(ID))
+        .onSuccess(v -> ResponseBuilder.sendSuccess(ctx, "Async search deleted"))
+        .onFailure(
+            err -> {
+              LOGGER.error("Delete async search request failed: {}", err.getMessage());
+              ctx.fail(err);
+            });
+  }
 }
@@ -5,13 +5,14 @@ import org.cdpg.dx.tgdex.search.controller.SearchController;
 import org.cdpg.dx.tgdex.search.service.SearchService;
 import org.cdpg.dx.tgdex.search.service.SearchServiceImpl;
 import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+import org.cdpg.dx.tgdex.util.ServiceOptions;
 import org.cdpg.dx.tgdex.validator.service.ValidatorService;
 import org.cdpg.dx.tgdex.validator.service.ValidatorServiceImpl;
 
 public class SearchControllerFactory {
 
-    public static SearchController createSearchController(ElasticsearchService elasticsearchService, AuditingHandler auditingHandler, String docIndex, ValidatorService validatorService) {
-        SearchService searchService = new SearchServiceImpl(elasticsearchService,docIndex);
+    public static SearchController createSearchController(ElasticsearchService elasticsearchService, AuditingHandler auditingHandler, String docIndex, ValidatorService validatorService, ServiceOptions options) {
+        SearchService searchService = new SearchServiceImpl(elasticsearchService, docIndex, options);
         return new SearchController(searchService, auditingHandler);
     }
 }
@@ -1,6 +1,10 @@
 package org.cdpg.dx.tgdex.search.service;
 
 import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
 import org.cdpg.dx.database.elastic.model.QueryDecoderRequestDTO;
 import org.cdpg.dx.tgdex.search.util.ResponseModel;
 
@@ -9,4 +13,26 @@ public interface SearchService {
   Future<ResponseModel> postSearch(QueryDecoderRequestDTO queryDecoder);
 
   Future<ResponseModel> postCount(QueryDecoderRequestDTO queryDecoder);
+
+  ReadStream<Buffer> export(QueryDecoderRequestDTO queryDecoder);
+
+  /** The query DSL a search would send, before and after it is rewritten. */
+  Future<JsonObject> explain(QueryDecoderRequestDTO queryDecoder);
+
+  /**
+   * The items of a search clustered for a map view at a zoom level, by map tile. The search must be
+   * a {@code bbox} geo search, the viewport.
+   */
+  Future<JsonObject> mapClusters(QueryDecoderRequestDTO queryDecoder, int zoom);
+
+  /** Status of a search of the user running in the background. */
+  Future<JsonObject> asyncSearchStatus(String sub, String id);
+
+  /** Result of a search of the user run in the background, or its status while it runs. */
+  Future<ResponseModel> asyncSearchResult(String sub, String id);
+
+  Future<Void> deleteAsyncSearch(String sub, String id);
+
+  /** Type-ahead suggestions for a prefix, answered without calling Elasticsearch. */
+  Future<JsonArray> suggest(String sub, String prefix, int limit);
 }
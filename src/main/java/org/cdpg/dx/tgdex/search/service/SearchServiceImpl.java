@@ -1,33 +1,93 @@
 package org.cdpg.dx.tgdex.search.service;
 
+import static org.cdpg.dx.database.elastic.util.Constants.AGGREGATION_ONLY;
+import static org.cdpg.dx.database.elastic.util.Constants.BBOX;
+import static org.cdpg.dx.database.elastic.util.Constants.BUCKETS;
 import static org.cdpg.dx.database.elastic.util.Constants.COUNT_AGGREGATION_ONLY;
-import static org.cdpg.dx.database.elastic.util.Constants.SOURCE_ONLY;
+import static org.cdpg.dx.database.elastic.util.Constants.DOC_COUNT;
+import static org.cdpg.dx.database.elastic.util.Constants.GEOREL_INTERSECTS;
+import static org.cdpg.dx.database.elastic.util.Constants.KEY;
+import static org.cdpg.dx.database.elastic.util.Constants.LOCATION;
+import static org.cdpg.dx.database.elastic.util.Constants.MAP_CENTROID;
+import static org.cdpg.dx.database.elastic.util.Constants.MAP_CLUSTERS;
+import static org.cdpg.dx.database.elastic.util.Constants.MAP_ITEMS;
+import static org.cdpg.dx.database.elastic.util.Constants.ZOOM;
+import static org.cdpg.dx.database.elastic.util.Constants.RAW_SOURCE_ONLY;
+import static org.cdpg.dx.database.elastic.util.Constants.RAW_SOURCE_UNCACHED;
+import static org.cdpg.dx.database.elastic.util.Constants.KEYWORD_KEY;
+import static org.cdpg.dx.database.elastic.util.Constants.SEARCH_TYPE_CRITERIA;
+import static org.cdpg.dx.database.elastic.util.Constants.TERM;
+import static org.cdpg.dx.database.elastic.util.Constants.TYPE;
 
 import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.cdpg.dx.common.exception.DxBadRequestException;
+import org.cdpg.dx.database.elastic.model.AccessPolicyRequestDTO;
+import org.cdpg.dx.database.elastic.model.GeoSearchRequestDTO;
 import org.cdpg.dx.database.elastic.model.OrderBy;
 import org.cdpg.dx.database.elastic.model.QueryDecoder;
 import org.cdpg.dx.database.elastic.model.QueryDecoderRequestDTO;
 import org.cdpg.dx.database.elastic.model.QueryModel;
+import org.cdpg.dx.database.elastic.model.QueryNode;
+import org.cdpg.dx.database.elastic.model.QueryRewriter;
+import org.cdpg.dx.database.elastic.model.SearchCriteriaDTO;
+import org.cdpg.dx.database.elastic.model.SearchResult;
 import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+import org.cdpg.dx.tgdex.search.util.AsyncSearches;
+import org.cdpg.dx.tgdex.search.util.ItemCountStore;
+import org.cdpg.dx.tgdex.search.util.MapTile;
+import org.cdpg.dx.tgdex.search.util.MapTileCache;
+import org.cdpg.dx.tgdex.search.util.PointInTimeRegistry;
 import org.cdpg.dx.tgdex.search.util.ResponseModel;
+import org.cdpg.dx.tgdex.search.util.SearchCursor;
+import org.cdpg.dx.tgdex.search.util.SuggestionStore;
+import org.cdpg.dx.tgdex.util.ServiceOptions;
 
 public class SearchServiceImpl implements SearchService {
   private static final Logger LOGGER = LogManager.getLogger(SearchServiceImpl.class);
+  private static final String CURSOR_KEEP_ALIVE = "1m";
+  private static final long CURSOR_KEEP_ALIVE_MILLIS = 60_000L;
+  private static final int MAX_OPEN_CURSORS = 1000;
+  private static final int EXPORT_SLICES = 4;
+  private static final int EXPORT_PAGE_SIZE = 500;
+  private static final int MAX_MAP_ZOOM = 22;
+  private static final int MAX_MAP_TILES = 64;
+  // Each map tile is clustered into a grid of 8 by 8 cells
+  private static final int MAP_CELL_ZOOM_LEVELS = 3;
+  private static final int MAP_ITEM_THRESHOLD = 10;
+  private static final JsonArray WORLD = new JsonArray("[[-180,90],[180,-90]]");
 
   private final ElasticsearchService elasticsearchService;
   private final QueryDecoder queryDecoder;
   private final String docIndex;
+  private final PointInTimeRegistry pointInTimeRegistry;
+  private final ItemCountStore itemCountStore;
+  private final SuggestionStore suggestionStore;
+  private final MapTileCache mapTileCache;
+  private final AsyncSearches asyncSearches;
 
-  public SearchServiceImpl(ElasticsearchService elasticsearchService, String docIndex) {
+  public SearchServiceImpl(
+      ElasticsearchService elasticsearchService, String docIndex, ServiceOptions options) {
     this.elasticsearchService = elasticsearchService;
-    this.queryDecoder = new QueryDecoder();
+    this.itemCountStore = options.getItemCountStore();
+    this.suggestionStore = options.getSuggestionStore();
+    this.mapTileCache = options.getMapTileCache();
+    this.asyncSearches = options.getAsyncSearches();
+    this.queryDecoder = new QueryDecoder(options.getTextSearchSettings());
     this.docIndex = docIndex;
+    this.pointInTimeRegistry =
+        new PointInTimeRegistry(elasticsearchService, CURSOR_KEEP_ALIVE_MILLIS, MAX_OPEN_CURSORS);
   }
 
   @Override
@@ -38,7 +98,6 @@ public class SearchServiceImpl implements SearchService {
       LOGGER.info("search type {}", searchType);
 
       // Use the new decoder to get the QueryModel
-      QueryDecoder queryDecoder = new QueryDecoder();
       QueryModel queryModel = queryDecoder.getQueryModel(queryDecoderRequestDTO);
       if (queryDecoderRequestDTO.getSort() != null && !queryDecoderRequestDTO.getSort().isEmpty()) {
         Map<String, String> sortFields =
@@ -48,20 +107,169 @@ public class SearchServiceImpl implements SearchService {
         queryModel.setSortFields(sortFields);
       }
 
-      // Perform search
+      if (queryModel.getKnnFilter() != null && queryModel.getAggregations() != null) {
+        throw new DxBadRequestException("Facets are not supported for hybrid searches");
+      }
+
+      if (queryDecoderRequestDTO.isAsync()) {
+        if (queryDecoderRequestDTO.getCursor() != null) {
+          throw new DxBadRequestException("Cursor paging is not supported for async searches");
+        }
+        return asyncSearches()
+            .submit(
+                queryDecoderRequestDTO.getAccessPolicyRequest().getSub(),
+                docIndex,
+                queryModel,
+                RAW_SOURCE_ONLY,
+                queryDecoderRequestDTO.getSize(),
+                queryDecoderRequestDTO.getPage());
+      }
+
+      if (queryDecoderRequestDTO.getCursor() != null) {
+        if (queryModel.getKnnVector() != null) {
+          throw new DxBadRequestException("Cursor paging is not supported for vector searches");
+        }
+        return cursorSearch(queryModel, queryDecoderRequestDTO);
+      }
+
+      // Perform search; a user's own assets must show their latest writes through any instance
+      AccessPolicyRequestDTO accessPolicy = queryDecoderRequestDTO.getAccessPolicyRequest();
+      boolean ownAssets =
+          accessPolicy != null && Boolean.TRUE.equals(accessPolicy.getMyAssetsReq());
       return elasticsearchService
-          .search(docIndex, queryModel, SOURCE_ONLY)
+          .search(docIndex, queryModel, ownAssets ? RAW_SOURCE_UNCACHED : RAW_SOURCE_ONLY)
           .map(
-              results ->
+              result ->
                   new ResponseModel(
-                      results, queryDecoderRequestDTO.getSize(), queryDecoderRequestDTO.getPage()))
+                      result, queryDecoderRequestDTO.getSize(), queryDecoderRequestDTO.getPage()))
           .onFailure(err -> LOGGER.error("Search execution failed: {}", err.getMessage()));
+    } catch (DxBadRequestException e) {
+      return Future.failedFuture(e);
     } catch (Exception e) {
       LOGGER.error("Error during postSearch: {}", e.getMessage(), e);
       return Future.failedFuture(new DxBadRequestException("Failed to process search1 request"));
     }
   }
 
+  @Override
+  public Future<JsonObject> asyncSearchStatus(String sub, String id) {
+    try {
+      return asyncSearches().status(sub, id);
+    } catch (DxBadRequestException e) {
+      return Future.failedFuture(e);
+    }
+  }
+
+  @Override
+  public Future<ResponseModel> asyncSearchResult(String sub, String id) {
+    try {
+      return asyncSearches().result(sub, id);
+    } catch (DxBadRequestException e) {
+      return Future.failedFuture(e);
+    }
+  }
+
+  @Override
+  public Future<Void> deleteAsyncSearch(String sub, String id) {
+    try {
+      return asyncSearches().delete(sub, id);
+    } catch (DxBadRequestException e) {
+      return Future.failedFuture(e);
+    }
+  }
+
+  private AsyncSearches asyncSearches() {
+    if (asyncSearches == null) {
+      throw new DxBadRequestException("Async searches are not enabled");
+    }
+    return asyncSearches;
+  }
+
+  @Override
+  public ReadStream<Buffer> export(QueryDecoderRequestDTO queryDecoderRequestDTO) {
+    LOGGER.info("export search type {}", queryDecoderRequestDTO.getSearchType());
+    QueryModel queryModel = queryDecoder.getQueryModel(queryDecoderRequestDTO);
+    // Facets would be counted again for every page; only the hits are exported
+    queryModel.setAggregations(null);
+    return elasticsearchService.scan(
+        docIndex, queryModel, EXPORT_SLICES, EXPORT_PAGE_SIZE, CURSOR_KEEP_ALIVE);
+  }
+
+  @Override
+  public Future<JsonObject> explain(QueryDecoderRequestDTO queryDecoderRequestDTO) {
+    try {
+      QueryModel queryModel = queryDecoder.getQueryModel(queryDecoderRequestDTO);
+      JsonObject explained = QueryRewriter.explain(QueryNode.of(queryModel.getQueries()));
+      if (queryModel.getPostFilter() != null) {
+        explained.put(
+            "postFilter",
+            QueryRewriter.explain(QueryNode.of(queryModel.getPostFilter())).getValue("rewritten"));
+      }
+      return Future.succeededFuture(explained);
+    } catch (DxBadRequestException e) {
+      return Future.failedFuture(e);
+    } catch (Exception e) {
+      LOGGER.error("Error during explain: {}", e.getMessage(), e);
+      return Future.failedFuture(new DxBadRequestException("Failed to process explain request"));
+    }
+  }
+
+  /**
+   * Pages through the results with a point in time and search_after instead of from/size, so every
+   * page costs the same and the whole catalogue can be crawled past the result window.
+   */
+  private Future<ResponseModel> cursorSearch(
+      QueryModel queryModel, QueryDecoderRequestDTO queryDecoderRequestDTO) {
+    String cursor = queryDecoderRequestDTO.getCursor();
+    queryModel.setOffset(null);
+    queryModel.setPitKeepAlive(CURSOR_KEEP_ALIVE);
+
+    boolean opened = SearchCursor.START.equals(cursor);
+    Future<String> pitIdFuture;
+    if (opened) {
+      pitIdFuture = elasticsearchService.openPointInTime(docIndex, CURSOR_KEEP_ALIVE);
+    } else {
+      SearchCursor previous = SearchCursor.decode(cursor);
+      queryModel.setSearchAfter(previous.getSearchAfter());
+      pitIdFuture = Future.succeededFuture(previous.getPitId());
+    }
+
+    return pitIdFuture
+        .compose(
+            pitId -> {
+              queryModel.setPitId(pitId);
+              return elasticsearchService
+                  .search(docIndex, queryModel, RAW_SOURCE_ONLY)
+                  .onFailure(
+                      err -> {
+                        // Nobody holds a cursor for a point in time whose first page failed
+                        if (opened) {
+                          pointInTimeRegistry.close(pitId);
+                        }
+                      })
+                  .map(
+                      result -> {
+                        String currentPitId =
+                            result.getPitId() != null ? result.getPitId() : pitId;
+                        pointInTimeRegistry.touch(pitId, currentPitId);
+                        ResponseModel responseModel =
+                            new ResponseModel(
+                                result,
+                                queryDecoderRequestDTO.getSize(),
+                                queryDecoderRequestDTO.getPage());
+                        if (result.getLastSortValues() == null) {
+                          pointInTimeRegistry.close(currentPitId);
+                          responseModel.setNextCursor(null);
+                        } else {
+                          responseModel.setNextCursor(
+                              new SearchCursor(currentPitId, result.getLastSortValues()).encode());
+                        }
+                        return responseModel;
+                      });
+            })
+        .onFailure(err -> LOGGER.error("Cursor search failed: {}", err.getMessage()));
+  }
+
   @Override
   public Future<ResponseModel> postCount(QueryDecoderRequestDTO queryDecoderRequestDTO) {
     try {
@@ -69,8 +277,13 @@ public class SearchServiceImpl implements SearchService {
       String searchType = queryDecoderRequestDTO.getSearchType();
       LOGGER.info("count search type {}", searchType);
 
+      JsonObject maintainedCounts = maintainedCounts(queryDecoderRequestDTO);
+      if (maintainedCounts != null) {
+        return Future.succeededFuture(
+            new ResponseModel(new SearchResult(List.of(), 0, maintainedCounts, 0L)));
+      }
+
       // Use QueryDecoderNew to build QueryModel
-      QueryDecoder queryDecoder = new QueryDecoder();
       QueryModel queryModel = queryDecoder.getQueryModel(queryDecoderRequestDTO);
 
       // Set aggregation specific to count
@@ -86,4 +299,198 @@ public class SearchServiceImpl implements SearchService {
       return Future.failedFuture(new DxBadRequestException("Failed to process count request"));
     }
   }
+
+  @Override
+  public Future<JsonArray> suggest(String sub, String prefix, int limit) {
+    if (suggestionStore == null) {
+      return Future.succeededFuture(new JsonArray());
+    }
+    return Future.succeededFuture(suggestionStore.suggest(sub, prefix, limit));
+  }
+
+  /**
+   * Clusters the viewport a tile of the zoom level at a time, so anonymous views are served from
+   * the tiles already cached and only search for the rest. The tiles left are clustered in a
+   * single search over their bounding box, into 8 by 8 cells per tile; a cell lists its items when
+   * it has at most {@link #MAP_ITEM_THRESHOLD} of them.
+   */
+  @Override
+  public Future<JsonObject> mapClusters(QueryDecoderRequestDTO queryDecoderRequestDTO, int zoom) {
+    try {
+      GeoSearchRequestDTO viewport = queryDecoderRequestDTO.getGeoSearchRequest();
+      if (viewport == null || !BBOX.equalsIgnoreCase(viewport.geometry())) {
+        throw new DxBadRequestException("The map viewport must be a bbox");
+      }
+      if (zoom < 0 || zoom > MAX_MAP_ZOOM) {
+        throw new DxBadRequestException("Zoom must be between 0 and " + MAX_MAP_ZOOM);
+      }
+      if (queryDecoderRequestDTO.getQueryVector() != null) {
+        throw new DxBadRequestException("Vector searches are not supported on maps");
+      }
+      List<MapTile> tiles = MapTile.covering(zoom, viewport.coordinates(), MAX_MAP_TILES);
+      queryDecoderRequestDTO.setFacets(null);
+
+      AccessPolicyRequestDTO accessPolicy = queryDecoderRequestDTO.getAccessPolicyRequest();
+      boolean cached =
+          mapTileCache != null
+              && accessPolicy.getSub() == null
+              && !Boolean.TRUE.equals(accessPolicy.getMyAssetsReq());
+      String search = cached ? mapSearch(queryDecoderRequestDTO) : null;
+      Map<MapTile, JsonArray> clusters = new LinkedHashMap<>();
+      List<MapTile> missing = new ArrayList<>();
+      for (MapTile tile : tiles) {
+        JsonArray tileClusters = cached ? mapTileCache.get(search, tile) : null;
+        if (tileClusters == null) {
+          missing.add(tile);
+        }
+        clusters.put(tile, tileClusters);
+      }
+      if (missing.isEmpty()) {
+        return Future.succeededFuture(mapResponse(zoom, clusters));
+      }
+
+      // Tiles come a column at a time from the west, so the first and last span the rest
+      JsonArray bbox =
+          new JsonArray()
+              .add(new JsonArray().add(missing.getFirst().west()).add(northmost(missing).north()))
+              .add(new JsonArray().add(missing.getLast().east()).add(southmost(missing).south()));
+      queryDecoderRequestDTO.setGeoSearchRequest(
+          new GeoSearchRequestDTO(LOCATION, GEOREL_INTERSECTS, BBOX, bbox, null));
+      int precision = zoom + MAP_CELL_ZOOM_LEVELS;
+      QueryModel queryModel =
+          queryDecoder.mapClustersQuery(
+              queryDecoderRequestDTO,
+              precision,
+              missing.size() << (2 * MAP_CELL_ZOOM_LEVELS),
+              MAP_ITEM_THRESHOLD);
+      return elasticsearchService
+          .search(docIndex, queryModel, AGGREGATION_ONLY)
+          .map(
+              result -> {
+                Map<MapTile, JsonArray> found = tileClusters(result.getAggregations(), missing);
+                found.forEach(
+                    (tile, tileClusters) -> {
+                      clusters.put(tile, tileClusters);
+                      if (cached) {
+                        mapTileCache.put(search, tile, tileClusters);
+                      }
+                    });
+                return mapResponse(zoom, clusters);
+              })
+          .onFailure(err -> LOGGER.error("Map search failed: {}", err.getMessage()));
+    } catch (DxBadRequestException e) {
+      return Future.failedFuture(e);
+    }
+  }
+
+  /** The search a map view is for, whatever its viewport: its query over the whole world. */
+  private String mapSearch(QueryDecoderRequestDTO queryDecoderRequestDTO) {
+    GeoSearchRequestDTO viewport = queryDecoderRequestDTO.getGeoSearchRequest();
+    queryDecoderRequestDTO.setGeoSearchRequest(
+        new GeoSearchRequestDTO(LOCATION, GEOREL_INTERSECTS, BBOX, WORLD, null));
+    try {
+      return queryDecoder.getQueryModel(queryDecoderRequestDTO).getQueries().toJson().encode();
+    } finally {
+      queryDecoderRequestDTO.setGeoSearchRequest(viewport);
+    }
+  }
+
+  private static MapTile northmost(List<MapTile> tiles) {
+    MapTile northmost = tiles.getFirst();
+    for (MapTile tile : tiles) {
+      northmost = tile.y() < northmost.y() ? tile : northmost;
+    }
+    return northmost;
+  }
+
+  private static MapTile southmost(List<MapTile> tiles) {
+    MapTile southmost = tiles.getFirst();
+    for (MapTile tile : tiles) {
+      southmost = tile.y() > southmost.y() ? tile : southmost;
+    }
+    return southmost;
+  }
+
+  /**
+   * The clusters of each tile searched for, from the cells of the grid. Cells of tiles next to
+   * those searched for, which touch their bounding box, are left out.
+   */
+  private static Map<MapTile, JsonArray> tileClusters(
+      JsonObject aggregations, List<MapTile> tiles) {
+    Map<MapTile, JsonArray> clusters = new LinkedHashMap<>();
+    tiles.forEach(tile -> clusters.put(tile, new JsonArray()));
+    JsonObject grid = aggregations == null ? null : aggregations.getJsonObject(MAP_CLUSTERS);
+    if (grid == null) {
+      return clusters;
+    }
+    int zoom = tiles.getFirst().zoom();
+    for (Object value : grid.getJsonArray(BUCKETS)) {
+      JsonObject bucket = (JsonObject) value;
+      JsonArray tileClusters =
+          clusters.get(MapTile.parse(bucket.getString(KEY)).ancestor(zoom));
+      if (tileClusters == null) {
+        continue;
+      }
+      long count = bucket.getLong(DOC_COUNT);
+      JsonObject cluster =
+          new JsonObject()
+              .put(KEY, bucket.getString(KEY))
+              .put("count", count)
+              .put(LOCATION, bucket.getJsonObject(MAP_CENTROID).getJsonObject(LOCATION));
+      if (count <= MAP_ITEM_THRESHOLD) {
+        JsonArray items = new JsonArray();
+        for (Object hit : bucket.getJsonObject(MAP_ITEMS).getJsonObject("hits").getJsonArray("hits")) {
+          items.add(((JsonObject) hit).getJsonObject("_source"));
+        }
+        cluster.put(MAP_ITEMS, items);
+      }
+      tileClusters.add(cluster);
+    }
+    return clusters;
+  }
+
+  private static JsonObject mapResponse(int zoom, Map<MapTile, JsonArray> clusters) {
+    JsonArray all = new JsonArray();
+    clusters.values().forEach(tileClusters -> tileClusters.forEach(all::add));
+    return new JsonObject()
+        .put(ZOOM, zoom)
+        .put("tiles", new JsonArray(clusters.keySet().stream().map(MapTile::key).toList()))
+        .put(MAP_CLUSTERS, all);
+  }
+
+  /**
+   * Counts kept in memory, for requests whose criteria only pick item types. Items carry a single
+   * type, so those counts depend on nothing but the access scope of the caller. Returns null when
+   * the request has to go to ES.
+   */
+  private JsonObject maintainedCounts(QueryDecoderRequestDTO queryDecoderRequestDTO) {
+    if (itemCountStore == null
+        || !SEARCH_TYPE_CRITERIA.equals(queryDecoderRequestDTO.getSearchType())) {
+      return null;
+    }
+    Set<String> types = null;
+    for (SearchCriteriaDTO criterion :
+        queryDecoderRequestDTO.getSearchCriteriaRequest().getSearchCriteria()) {
+      boolean typeTerm =
+          (criterion.getSearchType() == null || TERM.equals(criterion.getSearchType()))
+              && (TYPE.equals(criterion.getField())
+                  || (TYPE + KEYWORD_KEY).equals(criterion.getField()));
+      if (!typeTerm || criterion.getValues() == null) {
+        return null;
+      }
+      Set<String> values =
+          criterion.getValues().stream().map(String::valueOf).collect(Collectors.toSet());
+      if (types == null) {
+        types = values;
+      } else {
+        types.retainAll(values);
+      }
+    }
+    if (types == null) {
+      return null;
+    }
+    AccessPolicyRequestDTO accessPolicy = queryDecoderRequestDTO.getAccessPolicyRequest();
+    return itemCountStore.counts(
+        accessPolicy.getSub(), Boolean.TRUE.equals(accessPolicy.getMyAssetsReq()), types);
+  }
 }
@@ -0,0 +1,147 @@
+package org.cdpg.dx.tgdex.search.util;
+
+import static org.cdpg.dx.database.elastic.util.Constants.AGGREGATION_LIST;
+import static org.cdpg.dx.database.elastic.util.Constants.ASYNC_RESULT;
+import static org.cdpg.dx.database.elastic.util.Constants.ASYNC_RUNNING;
+import static org.cdpg.dx.database.elastic.util.Constants.ID;
+import static org.cdpg.dx.tgdex.util.Constants.SUB;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.AsyncMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cdpg.dx.common.exception.DxNotFoundException;
+import org.cdpg.dx.common.exception.DxUnauthorizedException;
+import org.cdpg.dx.database.elastic.model.QueryModel;
+import org.cdpg.dx.database.elastic.model.SearchResult;
+import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+
+/**
+ * Searches run in the background with Elasticsearch {@code _async_search}, for the expensive ones
+ * that would otherwise hold a request open up to the server timeout. A search is answered in full
+ * when it completes within the wait; otherwise its id is returned, and its status and result are
+ * fetched with the id until the keep-alive expires.
+ *
+ * <p>Only the user who submitted a search may see or delete it. Its owner, and how to render its
+ * result, are kept in a cluster-wide map for as long as Elasticsearch keeps the search; to anyone
+ * else the search does not exist.
+ */
+public class AsyncSearches {
+  private static final Logger LOGGER = LogManager.getLogger(AsyncSearches.class);
+  private static final String MAP_NAME = "asyncSearches";
+  private static final String OPTIONS = "options";
+  private static final String SIZE = "size";
+  private static final String PAGE = "page";
+
+  private final Vertx vertx;
+  private final ElasticsearchService elasticsearchService;
+  private final String waitForCompletion;
+  private final String keepAlive;
+  private final long keepAliveMillis;
+
+  public AsyncSearches(
+      Vertx vertx,
+      ElasticsearchService elasticsearchService,
+      long waitForCompletionSeconds,
+      long keepAliveSeconds) {
+    this.vertx = vertx;
+    this.elasticsearchService = elasticsearchService;
+    this.waitForCompletion = waitForCompletionSeconds + "s";
+    this.keepAlive = keepAliveSeconds + "s";
+    this.keepAliveMillis = keepAliveSeconds * 1000;
+  }
+
+  /**
+   * Submits the search for the user. The response is the result read as the options say, paged by
+   * size and page, or, while the search is still running, {@link ResponseModel#running} its status.
+   * A running search is only answered once its owner is recorded; if that fails, the search is
+   * cancelled and the submission fails.
+   */
+  public Future<ResponseModel> submit(
+      String sub, String index, QueryModel queryModel, String options, int size, int page) {
+    if (sub == null) {
+      return Future.failedFuture(
+          new DxUnauthorizedException("A token is required for asynchronous searches"));
+    }
+    JsonObject search =
+        new JsonObject().put(SUB, sub).put(OPTIONS, options).put(SIZE, size).put(PAGE, page);
+    return elasticsearchService
+        .submitAsyncSearch(index, queryModel, options, waitForCompletion, keepAlive)
+        .compose(
+            status -> {
+              if (!status.getBoolean(ASYNC_RUNNING)) {
+                return Future.succeededFuture(toResponseModel(search, status));
+              }
+              String id = status.getString(ID);
+              LOGGER.debug("Search {} of {} runs in the background", id, sub);
+              // The owner is recorded before the id is handed out, so it may be polled at once
+              return searches()
+                  .compose(map -> map.put(id, search, keepAliveMillis))
+                  .recover(
+                      err -> {
+                        // Nobody could fetch the search, so it is not left running
+                        LOGGER.error("Failed to record async search {}: {}", id, err.getMessage());
+                        return elasticsearchService
+                            .deleteAsyncSearch(id)
+                            .transform(v -> Future.<Void>failedFuture(err));
+                      })
+                  .map(v -> ResponseModel.running(status));
+            });
+  }
+
+  /** The status of one of the user's searches, without its result. */
+  public Future<JsonObject> status(String sub, String id) {
+    return owned(sub, id).compose(search -> elasticsearchService.getAsyncSearchStatus(id));
+  }
+
+  /** The result of one of the user's searches, or its status while it is still running. */
+  public Future<ResponseModel> result(String sub, String id) {
+    return owned(sub, id)
+        .compose(
+            search ->
+                elasticsearchService
+                    .getAsyncSearch(id, search.getString(OPTIONS))
+                    .map(
+                        status ->
+                            status.getBoolean(ASYNC_RUNNING)
+                                ? ResponseModel.running(status)
+                                : toResponseModel(search, status)));
+  }
+
+  /** Cancels one of the user's searches, or deletes its result if it has completed. */
+  public Future<Void> delete(String sub, String id) {
+    return owned(sub, id)
+        .compose(search -> elasticsearchService.deleteAsyncSearch(id))
+        .compose(v -> searches())
+        .compose(map -> map.remove(id))
+        .mapEmpty();
+  }
+
+  private Future<JsonObject> owned(String sub, String id) {
+    if (sub == null) {
+      return Future.failedFuture(
+          new DxUnauthorizedException("A token is required for asynchronous searches"));
+    }
+    return searches()
+        .compose(map -> map.get(id))
+        .compose(
+            search ->
+                search != null && sub.equals(search.getString(SUB))
+                    ? Future.succeededFuture(search)
+                    : Future.failedFuture(new DxNotFoundException("Async search not found")));
+  }
+
+  private Future<AsyncMap<String, JsonObject>> searches() {
+    return vertx.sharedData().getAsyncMap(MAP_NAME);
+  }
+
+  private static ResponseModel toResponseModel(JsonObject search, JsonObject status) {
+    SearchResult result = new SearchResult(status.getJsonObject(ASYNC_RESULT));
+    if (AGGREGATION_LIST.equals(search.getString(OPTIONS))) {
+      return new ResponseModel(result);
+    }
+    return new ResponseModel(result, search.getInteger(SIZE), search.getInteger(PAGE));
+  }
+}
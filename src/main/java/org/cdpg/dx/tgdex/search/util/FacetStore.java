@@ -0,0 +1,426 @@
+package org.cdpg.dx.tgdex.search.util;
+
+import static org.cdpg.dx.database.elastic.util.Constants.AGGREGATION_UNCACHED;
+import static org.cdpg.dx.database.elastic.util.Constants.BUCKETS;
+import static org.cdpg.dx.database.elastic.util.Constants.DOC_COUNT;
+import static org.cdpg.dx.database.elastic.util.Constants.FILTER_PAGINATION_SIZE;
+import static org.cdpg.dx.database.elastic.util.Constants.KEY;
+import static org.cdpg.dx.database.elastic.util.Constants.KEYWORD_KEY;
+import static org.cdpg.dx.database.elastic.util.Constants.PROVIDER_USER_ID;
+import static org.cdpg.dx.database.elastic.util.Constants.SIZE_KEY;
+import static org.cdpg.dx.database.elastic.util.Constants.TYPE_KEYWORD;
+import static org.cdpg.dx.tgdex.util.Constants.FIELD;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cdpg.dx.database.elastic.model.QueryFragments;
+import org.cdpg.dx.database.elastic.model.QueryModel;
+import org.cdpg.dx.database.elastic.model.QueryNode;
+import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+import org.cdpg.dx.database.elastic.util.AggregationType;
+
+/**
+ * Values of the filter fields listed by the list API, materialized for the access scopes it is
+ * called with: anonymous users (everything but private items) and authenticated users (open and
+ * restricted items plus their own private items), over all items or the items of one type. Items
+ * excluded from search because their data upload is incomplete are left out.
+ *
+ * <p>The values are read with the same terms aggregations the list API runs, so they come in the
+ * same order. They are read when the store starts, every refresh interval, which also picks up
+ * writes made by other instances, and shortly after writes made through this Vert.x instance,
+ * whose verticles share one store. A write shows once a read starting more than a refresh interval
+ * of the index after it completes; until then the values may be stale, for at most the time
+ * exposed as the staleness metric. For requests no materialized scope answers, {@link #filters}
+ * returns null and the caller should ask Elasticsearch instead.
+ */
+public class FacetStore {
+  private static final Logger LOGGER = LogManager.getLogger(FacetStore.class);
+  private static final String METRIC_PREFIX = "item.facets";
+  private static final long REFRESH_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final long WRITE_REFRESH_DELAY_MILLIS = 2000L;
+  private static final int FIELD_BUCKETS = FILTER_PAGINATION_SIZE - 1;
+  private static final int TYPE_BUCKETS = 100;
+  private static final int OWNER_BUCKETS = 10000;
+  private static final String TYPES = "_types";
+  private static final String OWNERS = "_owners";
+  private static final String SUM_OTHER_DOC_COUNT = "sum_other_doc_count";
+
+  /** The filter fields materialized when none are configured. */
+  public static final List<String> DEFAULT_FIELDS =
+      List.of(
+          "tags",
+          "industry",
+          "department",
+          "organizationType",
+          "modelType",
+          "fileFormat",
+          "dataReadiness");
+
+  private final ElasticsearchService elasticsearchService;
+  private final String docIndex;
+  private final List<String> fields;
+  private final MeterRegistry registry;
+  private volatile Facets facets;
+  private volatile long staleSince = -1L;
+  private long lastWriteAt = System.nanoTime() - 2 * REFRESH_WINDOW_NANOS;
+  private boolean refreshing;
+  private boolean refreshScheduled;
+  private Vertx vertx;
+
+  public FacetStore(
+      ElasticsearchService elasticsearchService,
+      String docIndex,
+      List<String> fields,
+      MeterRegistry registry) {
+    this.elasticsearchService = elasticsearchService;
+    this.docIndex = docIndex;
+    this.fields = List.copyOf(fields);
+    this.registry = registry == null ? Metrics.globalRegistry : registry;
+    this.registry.gauge(METRIC_PREFIX + ".staleness", this, FacetStore::stalenessSeconds);
+  }
+
+  /** Reads the values of every scope and reads them again every {@code intervalSeconds}. */
+  public void start(Vertx vertx, long intervalSeconds) {
+    synchronized (this) {
+      this.vertx = vertx;
+    }
+    refresh();
+    vertx.setPeriodic(TimeUnit.SECONDS.toMillis(intervalSeconds), id -> refresh());
+  }
+
+  /**
+   * The values of each filter field visible to the given user, most used first and at most
+   * {@code size} per field, or null when they are not materialized and have to be read from
+   * Elasticsearch.
+   *
+   * @param sub the subject of the user, null or empty for anonymous requests
+   * @param type the only item type whose values are listed, null for every type
+   * @param filters the fields whose values are listed
+   * @param size the most values listed per field
+   */
+  public JsonObject filters(String sub, String type, List<String> filters, int size) {
+    Facets current = facets;
+    JsonObject result = null;
+    if (current != null && size > 0 && fields.containsAll(filters)) {
+      if (sub == null || sub.isEmpty()) {
+        result = toJson(filters, size, ScopeBuckets.of(current.nonPrivate, type), Map.of());
+      } else if (current.ownerPrivate != null) {
+        ScopeBuckets owned = current.ownerPrivate.get(sub);
+        result =
+            toJson(
+                filters,
+                size,
+                ScopeBuckets.of(current.openOrRestricted, type),
+                owned == null ? Map.of() : ScopeBuckets.of(owned, type));
+      }
+    }
+    request(result == null ? "elasticsearch" : "memory");
+    return result;
+  }
+
+  /** Reads the values again once the write is searchable, with the writes of the next moments. */
+  public synchronized void changed() {
+    lastWriteAt = System.nanoTime();
+    if (staleSince < 0) {
+      staleSince = lastWriteAt;
+    }
+    scheduleRefresh();
+  }
+
+  private void scheduleRefresh() {
+    if (vertx == null || refreshScheduled) {
+      return;
+    }
+    refreshScheduled = true;
+    vertx.setTimer(
+        WRITE_REFRESH_DELAY_MILLIS,
+        id -> {
+          synchronized (this) {
+            refreshScheduled = false;
+          }
+          refresh();
+        });
+  }
+
+  /**
+   * Reads the values of every scope from Elasticsearch and replaces the materialized ones with
+   * them. A scope that could not be read, or not in full, is left out and asked of Elasticsearch.
+   */
+  public void refresh() {
+    long startedAt;
+    synchronized (this) {
+      if (refreshing) {
+        return;
+      }
+      refreshing = true;
+      startedAt = System.nanoTime();
+    }
+    Future.all(
+            scopeBuckets(nonPrivateFilter()),
+            scopeBuckets(openOrRestrictedFilter()),
+            ownerBuckets(QueryFragments.PRIVATE_ACCESS))
+        .onComplete(
+            ar -> {
+              synchronized (this) {
+                refreshing = false;
+                long took = System.nanoTime() - startedAt;
+                if (ar.failed()) {
+                  LOGGER.warn("Failed to read filter values: {}", ar.cause().getMessage());
+                  refreshed("failed", took);
+                  return;
+                }
+                Facets fresh =
+                    new Facets(
+                        ar.result().resultAt(0),
+                        ar.result().resultAt(1),
+                        ar.result().resultAt(2));
+                boolean seeded = facets == null;
+                facets = fresh;
+                if (lastWriteAt < startedAt - REFRESH_WINDOW_NANOS) {
+                  staleSince = -1L;
+                } else {
+                  // Writes made since shortly before the read started may be missing from it
+                  staleSince = Math.max(staleSince, startedAt - REFRESH_WINDOW_NANOS);
+                  scheduleRefresh();
+                }
+                if (seeded) {
+                  LOGGER.info("Filter values seeded from {}", docIndex);
+                }
+                boolean complete =
+                    fresh.nonPrivate != null
+                        && fresh.openOrRestricted != null
+                        && fresh.ownerPrivate != null;
+                refreshed(seeded ? "seeded" : complete ? "refreshed" : "partial", took);
+              }
+            });
+  }
+
+  /** The buckets of every field over the items matching the filter, overall and per type. */
+  private Future<ScopeBuckets> scopeBuckets(QueryNode filter) {
+    QueryModel queryModel = new QueryModel();
+    queryModel.setQueries(withUploadStatusExclusion(filter));
+    List<QueryModel> aggregations = new ArrayList<>(fieldAggregations().values());
+    aggregations.add(typesAggregation());
+    queryModel.setAggregations(aggregations);
+    return elasticsearchService
+        .search(docIndex, queryModel, AGGREGATION_UNCACHED)
+        .map(result -> scope(result.getAggregations()))
+        .recover(err -> unavailable("scope", err));
+  }
+
+  /** The buckets of every owner, or null if any owners were cut off. */
+  private Future<Map<String, ScopeBuckets>> ownerBuckets(QueryNode filter) {
+    Map<String, QueryModel> ownerAggregations = fieldAggregations();
+    ownerAggregations.put(TYPES, typesAggregation());
+    QueryModel owners =
+        terms(OWNERS, PROVIDER_USER_ID + KEYWORD_KEY, OWNER_BUCKETS, ownerAggregations);
+
+    QueryModel queryModel = new QueryModel();
+    queryModel.setQueries(withUploadStatusExclusion(filter));
+    queryModel.setAggregations(List.of(owners));
+    return elasticsearchService
+        .search(docIndex, queryModel, AGGREGATION_UNCACHED)
+        .map(
+            result -> {
+              JsonObject aggregation = result.getAggregations().getJsonObject(OWNERS);
+              if (aggregation.getLong(SUM_OTHER_DOC_COUNT, 0L) != 0L) {
+                return null;
+              }
+              Map<String, ScopeBuckets> byOwner = new HashMap<>();
+              for (Object bucket : aggregation.getJsonArray(BUCKETS, new JsonArray())) {
+                JsonObject ownerBucket = (JsonObject) bucket;
+                byOwner.put(String.valueOf(ownerBucket.getValue(KEY)), scope(ownerBucket));
+              }
+              return byOwner;
+            })
+        .recover(err -> unavailable("owner", err));
+  }
+
+  private <T> Future<T> unavailable(String scope, Throwable err) {
+    LOGGER.warn("Failed to read {} filter values: {}", scope, err.getMessage());
+    return Future.succeededFuture(null);
+  }
+
+  private ScopeBuckets scope(JsonObject aggregations) {
+    JsonObject types = aggregations.getJsonObject(TYPES, new JsonObject());
+    Map<String, Map<String, FieldBuckets>> byType = new HashMap<>();
+    for (Object bucket : types.getJsonArray(BUCKETS, new JsonArray())) {
+      JsonObject typeBucket = (JsonObject) bucket;
+      byType.put(String.valueOf(typeBucket.getValue(KEY)), fieldBuckets(typeBucket));
+    }
+    return new ScopeBuckets(
+        fieldBuckets(aggregations), byType, types.getLong(SUM_OTHER_DOC_COUNT, 0L) == 0L);
+  }
+
+  private Map<String, FieldBuckets> fieldBuckets(JsonObject aggregations) {
+    Map<String, FieldBuckets> result = new HashMap<>();
+    for (String field : fields) {
+      JsonObject aggregation = aggregations.getJsonObject(field, new JsonObject());
+      Map<String, Long> counts = new LinkedHashMap<>();
+      for (Object bucket : aggregation.getJsonArray(BUCKETS, new JsonArray())) {
+        JsonObject valueBucket = (JsonObject) bucket;
+        counts.put(String.valueOf(valueBucket.getValue(KEY)), valueBucket.getLong(DOC_COUNT));
+      }
+      result.put(
+          field,
+          new FieldBuckets(counts, aggregation.getLong(SUM_OTHER_DOC_COUNT, 0L) == 0L));
+    }
+    return result;
+  }
+
+  /** The terms aggregations of the list API, one per field and named after it. */
+  private Map<String, QueryModel> fieldAggregations() {
+    Map<String, QueryModel> aggregations = new LinkedHashMap<>();
+    for (String field : fields) {
+      aggregations.put(field, terms(field, field + KEYWORD_KEY, FIELD_BUCKETS, null));
+    }
+    return aggregations;
+  }
+
+  private QueryModel typesAggregation() {
+    return terms(TYPES, TYPE_KEYWORD, TYPE_BUCKETS, fieldAggregations());
+  }
+
+  private static QueryModel terms(
+      String name, String field, int size, Map<String, QueryModel> subAggregations) {
+    QueryModel aggregation = new QueryModel();
+    aggregation.setAggregationType(AggregationType.TERMS);
+    aggregation.setAggregationName(name);
+    aggregation.setAggregationParameters(Map.of(FIELD, field, SIZE_KEY, size));
+    aggregation.setAggregationsMap(subAggregations);
+    return aggregation;
+  }
+
+  /** The same access filters {@code AccessPolicyQueryDecorator} applies for each scope. */
+  private static QueryNode nonPrivateFilter() {
+    return new QueryNode.Bool(null, null, List.of(QueryFragments.PRIVATE_ACCESS), null, null);
+  }
+
+  private static QueryNode openOrRestrictedFilter() {
+    return new QueryNode.Bool(
+        null,
+        List.of(QueryFragments.OPEN_ACCESS, QueryFragments.RESTRICTED_ACCESS),
+        null,
+        null,
+        "1");
+  }
+
+  /** Mirrors the upload status exclusion {@code QueryDecoder} adds to every search. */
+  private static QueryModel withUploadStatusExclusion(QueryNode filter) {
+    return new QueryNode.Bool(
+            List.of(filter),
+            null,
+            List.of(
+                QueryFragments.DATA_BANK_UPLOAD_PENDING, QueryFragments.AI_MODEL_UPLOAD_PENDING),
+            null,
+            null)
+        .toModel();
+  }
+
+  /** The values of each filter as the list API returns them, or null if any are not known. */
+  private static JsonObject toJson(
+      List<String> filters,
+      int size,
+      Map<String, FieldBuckets> shared,
+      Map<String, FieldBuckets> owned) {
+    if (shared == null || owned == null) {
+      return null;
+    }
+    JsonObject result = new JsonObject();
+    for (String filter : filters) {
+      FieldBuckets buckets = shared.getOrDefault(filter, FieldBuckets.NONE);
+      FieldBuckets own = owned.getOrDefault(filter, FieldBuckets.NONE);
+      if (!own.counts().isEmpty()) {
+        buckets = buckets.merge(own);
+      }
+      if (buckets == null || (!buckets.complete() && buckets.counts().size() < size)) {
+        return null;
+      }
+      JsonArray values = new JsonArray();
+      for (String value : buckets.counts().keySet()) {
+        if (values.size() == size) {
+          break;
+        }
+        values.add(value);
+      }
+      result.put(filter, values);
+    }
+    return result;
+  }
+
+  private double stalenessSeconds() {
+    long since = staleSince;
+    return since < 0 ? 0.0 : (System.nanoTime() - since) / 1e9;
+  }
+
+  private void request(String source) {
+    Counter.builder(METRIC_PREFIX + ".requests").tag("source", source).register(registry)
+        .increment();
+  }
+
+  private void refreshed(String result, long nanos) {
+    Timer.builder(METRIC_PREFIX + ".refresh").tag("result", result).register(registry)
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** The materialized scopes, each null when it could not be read. */
+  private record Facets(
+      ScopeBuckets nonPrivate,
+      ScopeBuckets openOrRestricted,
+      Map<String, ScopeBuckets> ownerPrivate) {}
+
+  /** The buckets of each field over the items of one scope, overall and per item type. */
+  private record ScopeBuckets(
+      Map<String, FieldBuckets> all,
+      Map<String, Map<String, FieldBuckets>> byType,
+      boolean typesComplete) {
+
+    /** The buckets over the items of the type, or all items; null when they are not known. */
+    private static Map<String, FieldBuckets> of(ScopeBuckets scope, String type) {
+      if (scope == null || type == null) {
+        return scope == null ? null : scope.all;
+      }
+      Map<String, FieldBuckets> buckets = scope.byType.get(type);
+      return buckets != null || !scope.typesComplete ? buckets : Map.of();
+    }
+  }
+
+  /**
+   * Document count by value of one field, in the order of the terms aggregation: most used first,
+   * then by value. Not complete when values were cut off.
+   */
+  private record FieldBuckets(Map<String, Long> counts, boolean complete) {
+    private static final FieldBuckets NONE = new FieldBuckets(Map.of(), true);
+
+    /** The counts of both together, or null when either is not complete. */
+    private FieldBuckets merge(FieldBuckets other) {
+      if (!complete || !other.complete) {
+        return null;
+      }
+      Map<String, Long> sums = new HashMap<>(counts);
+      other.counts.forEach((value, count) -> sums.merge(value, count, Long::sum));
+      Map<String, Long> ordered = new LinkedHashMap<>();
+      sums.entrySet().stream()
+          .sorted(
+              Map.Entry.<String, Long>comparingByValue()
+                  .reversed()
+                  .thenComparing(Map.Entry.comparingByKey()))
+          .forEach(entry -> ordered.put(entry.getKey(), entry.getValue()));
+      return new FieldBuckets(ordered, true);
+    }
+  }
+}
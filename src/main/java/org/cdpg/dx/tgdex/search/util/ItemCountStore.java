@@ -0,0 +1,414 @@
+package org.cdpg.dx.tgdex.search.util;
+
+import static org.cdpg.dx.database.elastic.util.Constants.ACCESS_POLICY;
+import static org.cdpg.dx.database.elastic.util.Constants.AGGREGATION_UNCACHED;
+import static org.cdpg.dx.database.elastic.util.Constants.BUCKETS;
+import static org.cdpg.dx.database.elastic.util.Constants.DATA_UPLOAD_STATUS;
+import static org.cdpg.dx.database.elastic.util.Constants.DOC_COUNT;
+import static org.cdpg.dx.database.elastic.util.Constants.KEY;
+import static org.cdpg.dx.database.elastic.util.Constants.KEYWORD_KEY;
+import static org.cdpg.dx.database.elastic.util.Constants.OPEN;
+import static org.cdpg.dx.database.elastic.util.Constants.PRIVATE;
+import static org.cdpg.dx.database.elastic.util.Constants.PROVIDER_USER_ID;
+import static org.cdpg.dx.database.elastic.util.Constants.RESTRICTED;
+import static org.cdpg.dx.database.elastic.util.Constants.SIZE_KEY;
+import static org.cdpg.dx.database.elastic.util.Constants.TYPE_KEYWORD;
+import static org.cdpg.dx.database.elastic.util.Constants.VALUE;
+import static org.cdpg.dx.tgdex.util.Constants.FIELD;
+import static org.cdpg.dx.tgdex.util.Constants.ITEM_TYPE_AI_MODEL;
+import static org.cdpg.dx.tgdex.util.Constants.ITEM_TYPE_DATA_BANK;
+import static org.cdpg.dx.tgdex.util.Constants.TYPE;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cdpg.dx.database.elastic.model.QueryFragments;
+import org.cdpg.dx.database.elastic.model.QueryModel;
+import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+import org.cdpg.dx.database.elastic.util.AggregationType;
+import org.cdpg.dx.database.elastic.util.QueryType;
+
+/**
+ * Per-type item counts for the access scopes the count API is called with most: anonymous users
+ * (everything but private items), authenticated users (open and restricted items plus their own
+ * private items) and owners listing their own items. Items excluded from search because their data
+ * upload is incomplete are not counted.
+ *
+ * <p>The counts are seeded from Elasticsearch, kept up to date with the writes made through this
+ * Vert.x instance, whose verticles share one store, and periodically reconciled against
+ * Elasticsearch, which also picks up writes made by other instances. The difference found on every
+ * reconciliation is exposed as drift metrics. Until the first seed completes, or when an owner
+ * scope could not be read in full, {@link #counts} returns null and the caller should ask
+ * Elasticsearch instead.
+ */
+public class ItemCountStore {
+  private static final Logger LOGGER = LogManager.getLogger(ItemCountStore.class);
+  private static final String METRIC_PREFIX = "item.count";
+  private static final int TYPE_BUCKETS = 100;
+  private static final int OWNER_BUCKETS = 10000;
+  private static final String OWNERS = "owners";
+  private static final String TYPES = "types";
+  private static final String SUM_OTHER_DOC_COUNT = "sum_other_doc_count";
+
+  private final ElasticsearchService elasticsearchService;
+  private final String docIndex;
+  private final MeterRegistry registry;
+  private final AtomicLong drift = new AtomicLong();
+  private final List<Write> writesDuringRead = new ArrayList<>();
+  private volatile Counts counts;
+  private boolean reconciling;
+
+  public ItemCountStore(
+      ElasticsearchService elasticsearchService, String docIndex, MeterRegistry registry) {
+    this.elasticsearchService = elasticsearchService;
+    this.docIndex = docIndex;
+    this.registry = registry == null ? Metrics.globalRegistry : registry;
+    this.registry.gauge(METRIC_PREFIX + ".drift", drift);
+  }
+
+  /** Seeds the counts and reconciles them every {@code intervalSeconds} from then on. */
+  public void start(Vertx vertx, long intervalSeconds) {
+    reconcile();
+    vertx.setPeriodic(TimeUnit.SECONDS.toMillis(intervalSeconds), id -> reconcile());
+  }
+
+  /**
+   * Per-type counts visible to the given user, or null when they are not known and have to be read
+   * from Elasticsearch.
+   *
+   * @param sub the subject of the user, null or empty for anonymous requests
+   * @param myAssets whether only the items owned by the user are counted
+   * @param types the types to count
+   */
+  public JsonObject counts(String sub, boolean myAssets, Set<String> types) {
+    Counts current = counts;
+    JsonObject result = null;
+    if (current != null) {
+      if (sub == null || sub.isEmpty()) {
+        result = toJson(types, current.nonPrivate, null);
+      } else if (current.ownersComplete && myAssets) {
+        result = toJson(types, current.ownerAll.get(sub), null);
+      } else if (current.ownersComplete) {
+        result = toJson(types, current.openOrRestricted, current.ownerPrivate.get(sub));
+      }
+    }
+    request(result == null ? "elasticsearch" : "memory");
+    return result;
+  }
+
+  public synchronized void added(JsonObject item) {
+    apply(item, 1);
+  }
+
+  public synchronized void removed(JsonObject item) {
+    apply(item, -1);
+  }
+
+  public synchronized void replaced(JsonObject previous, JsonObject current) {
+    apply(previous, -1);
+    apply(current, 1);
+  }
+
+  private void apply(JsonObject item, long delta) {
+    if (reconciling) {
+      writesDuringRead.add(new Write(item, delta));
+    }
+    if (counts != null) {
+      apply(counts, item, delta);
+    }
+  }
+
+  private static void apply(Counts counts, JsonObject item, long delta) {
+    if (item == null || !isSearchable(item)) {
+      return;
+    }
+    List<String> types = types(item);
+    String accessPolicy = item.getString(ACCESS_POLICY);
+    String owner = item.getString(PROVIDER_USER_ID);
+    boolean isPrivate = PRIVATE.equalsIgnoreCase(accessPolicy);
+    for (String type : types) {
+      if (isPrivate) {
+        if (owner != null) {
+          add(counts.ownerPrivate.computeIfAbsent(owner, o -> new ConcurrentHashMap<>()), type,
+              delta);
+        }
+      } else {
+        add(counts.nonPrivate, type, delta);
+        if (OPEN.equalsIgnoreCase(accessPolicy) || RESTRICTED.equalsIgnoreCase(accessPolicy)) {
+          add(counts.openOrRestricted, type, delta);
+        }
+      }
+      if (owner != null) {
+        add(counts.ownerAll.computeIfAbsent(owner, o -> new ConcurrentHashMap<>()), type, delta);
+      }
+    }
+  }
+
+  /**
+   * Reads all counts from Elasticsearch and replaces the maintained ones with them. The writes made
+   * while the read runs are applied on top of it, so a steady write rate does not hold the counts
+   * back. A write the read already saw is then counted twice, and one made within a refresh
+   * interval before it may be missing from it; the next reconciliation corrects either.
+   */
+  public void reconcile() {
+    synchronized (this) {
+      if (reconciling) {
+        return;
+      }
+      reconciling = true;
+      writesDuringRead.clear();
+    }
+    Future.all(
+            typeCounts(nonPrivateFilter()),
+            typeCounts(openOrRestrictedFilter()),
+            ownerTypeCounts(privateFilter()),
+            ownerTypeCounts(null))
+        .onComplete(
+            ar -> {
+              synchronized (this) {
+                reconciling = false;
+                if (ar.failed()) {
+                  writesDuringRead.clear();
+                  LOGGER.warn("Failed to read item counts: {}", ar.cause().getMessage());
+                  reconciled("failed");
+                  return;
+                }
+                Counts fresh =
+                    new Counts(
+                        ar.result().resultAt(0),
+                        ar.result().resultAt(1),
+                        ar.result().resultAt(2),
+                        ar.result().resultAt(3));
+                for (Write write : writesDuringRead) {
+                  apply(fresh, write.item(), write.delta());
+                }
+                writesDuringRead.clear();
+                if (counts == null) {
+                  LOGGER.info("Item counts seeded from {}", docIndex);
+                  reconciled("seeded");
+                } else {
+                  long difference = counts.difference(fresh);
+                  drift.set(difference);
+                  if (difference > 0) {
+                    LOGGER.warn("Item counts drifted by {}, corrected from {}", difference,
+                        docIndex);
+                    Counter.builder(METRIC_PREFIX + ".drift.total").register(registry)
+                        .increment(difference);
+                  }
+                  reconciled(difference > 0 ? "corrected" : "consistent");
+                }
+                counts = fresh;
+              }
+            });
+  }
+
+  private Future<Map<String, Long>> typeCounts(QueryModel filter) {
+    QueryModel queryModel = new QueryModel();
+    queryModel.setQueries(withUploadStatusExclusion(filter));
+    queryModel.setAggregations(List.of(typesAggregation(TYPES)));
+    return elasticsearchService
+        .search(docIndex, queryModel, AGGREGATION_UNCACHED)
+        .map(result -> bucketCounts(result.getAggregations().getJsonObject(TYPES)));
+  }
+
+  /** Per-type counts of every owner, with {@code ownersComplete} false if any were cut off. */
+  private Future<OwnerCounts> ownerTypeCounts(QueryModel filter) {
+    QueryModel owners = new QueryModel();
+    owners.setAggregationType(AggregationType.TERMS);
+    owners.setAggregationName(OWNERS);
+    owners.setAggregationParameters(
+        Map.of(FIELD, PROVIDER_USER_ID + KEYWORD_KEY, SIZE_KEY, OWNER_BUCKETS));
+    owners.setAggregationsMap(Map.of(TYPES, typesAggregation(TYPES)));
+
+    QueryModel queryModel = new QueryModel();
+    queryModel.setQueries(withUploadStatusExclusion(filter));
+    queryModel.setAggregations(List.of(owners));
+    return elasticsearchService
+        .search(docIndex, queryModel, AGGREGATION_UNCACHED)
+        .map(
+            result -> {
+              JsonObject aggregation = result.getAggregations().getJsonObject(OWNERS);
+              Map<String, Map<String, Long>> byOwner = new ConcurrentHashMap<>();
+              for (Object bucket : aggregation.getJsonArray(BUCKETS, new JsonArray())) {
+                JsonObject ownerBucket = (JsonObject) bucket;
+                byOwner.put(
+                    String.valueOf(ownerBucket.getValue(KEY)),
+                    bucketCounts(ownerBucket.getJsonObject(TYPES)));
+              }
+              return new OwnerCounts(byOwner, aggregation.getLong(SUM_OTHER_DOC_COUNT, 0L) == 0L);
+            });
+  }
+
+  private static QueryModel typesAggregation(String name) {
+    QueryModel aggregation = new QueryModel();
+    aggregation.setAggregationType(AggregationType.TERMS);
+    aggregation.setAggregationName(name);
+    aggregation.setAggregationParameters(Map.of(FIELD, TYPE_KEYWORD, SIZE_KEY, TYPE_BUCKETS));
+    return aggregation;
+  }
+
+  private static Map<String, Long> bucketCounts(JsonObject aggregation) {
+    Map<String, Long> result = new ConcurrentHashMap<>();
+    if (aggregation != null) {
+      for (Object bucket : aggregation.getJsonArray(BUCKETS, new JsonArray())) {
+        JsonObject typeBucket = (JsonObject) bucket;
+        result.put(String.valueOf(typeBucket.getValue(KEY)), typeBucket.getLong(DOC_COUNT));
+      }
+    }
+    return result;
+  }
+
+  /** The same access filters {@code AccessPolicyQueryDecorator} applies for each scope. */
+  private static QueryModel nonPrivateFilter() {
+    QueryModel filter = new QueryModel(QueryType.BOOL);
+    filter.setMustNotQueries(List.of(accessPolicy(PRIVATE)));
+    return filter;
+  }
+
+  private static QueryModel openOrRestrictedFilter() {
+    QueryModel filter = new QueryModel(QueryType.BOOL);
+    filter.setShouldQueries(List.of(accessPolicy(OPEN), accessPolicy(RESTRICTED)));
+    filter.setMinimumShouldMatch("1");
+    return filter;
+  }
+
+  private static QueryModel privateFilter() {
+    return new QueryModel(QueryType.BOOL).setMustQueries(List.of(accessPolicy(PRIVATE)));
+  }
+
+  private static QueryModel accessPolicy(String value) {
+    return new QueryModel(QueryType.MATCH)
+        .setQueryParameters(Map.of(FIELD, ACCESS_POLICY, VALUE, value));
+  }
+
+  /** Mirrors the upload status exclusion {@code QueryDecoder} adds to every search. */
+  private static QueryModel withUploadStatusExclusion(QueryModel filter) {
+    QueryModel query = new QueryModel(QueryType.BOOL);
+    query.setMustNotQueries(
+        List.of(QueryFragments.DATA_BANK_UPLOAD_PENDING.toModel(),
+            QueryFragments.AI_MODEL_UPLOAD_PENDING.toModel()));
+    if (filter != null) {
+      query.setMustQueries(List.of(filter));
+    }
+    return query;
+  }
+
+  private static boolean isSearchable(JsonObject item) {
+    List<String> types = types(item);
+    boolean uploadPending = Boolean.FALSE.equals(item.getValue(DATA_UPLOAD_STATUS));
+    return !(uploadPending
+        && (types.contains(ITEM_TYPE_DATA_BANK) || types.contains(ITEM_TYPE_AI_MODEL)));
+  }
+
+  private static List<String> types(JsonObject item) {
+    Object type = item.getValue(TYPE);
+    if (type instanceof JsonArray array) {
+      return array.stream().filter(String.class::isInstance).map(String.class::cast).distinct()
+          .toList();
+    }
+    return type instanceof String value ? List.of(value) : List.of();
+  }
+
+  private static void add(Map<String, Long> counts, String type, long delta) {
+    counts.merge(type, delta, Long::sum);
+  }
+
+  /** Type counts as the count API returns them; types without items are left out like in ES. */
+  private static JsonObject toJson(
+      Set<String> types, Map<String, Long> counts, Map<String, Long> extra) {
+    Map<String, Long> merged = new HashMap<>();
+    if (counts != null) {
+      merged.putAll(counts);
+    }
+    if (extra != null) {
+      extra.forEach((type, count) -> merged.merge(type, count, Long::sum));
+    }
+    JsonObject result = new JsonObject();
+    merged.entrySet().stream()
+        .filter(entry -> entry.getValue() > 0 && types.contains(entry.getKey()))
+        .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+        .forEach(entry -> result.put(entry.getKey(), entry.getValue().intValue()));
+    return result;
+  }
+
+  private void request(String source) {
+    Counter.builder(METRIC_PREFIX + ".requests").tag("source", source).register(registry)
+        .increment();
+  }
+
+  private void reconciled(String result) {
+    Counter.builder(METRIC_PREFIX + ".reconciliations").tag("result", result).register(registry)
+        .increment();
+  }
+
+  private record Write(JsonObject item, long delta) {}
+
+  private record OwnerCounts(Map<String, Map<String, Long>> byOwner, boolean complete) {}
+
+  private static final class Counts {
+    private final Map<String, Long> nonPrivate;
+    private final Map<String, Long> openOrRestricted;
+    private final Map<String, Map<String, Long>> ownerPrivate;
+    private final Map<String, Map<String, Long>> ownerAll;
+    private final boolean ownersComplete;
+
+    private Counts(
+        Map<String, Long> nonPrivate,
+        Map<String, Long> openOrRestricted,
+        OwnerCounts ownerPrivate,
+        OwnerCounts ownerAll) {
+      this.nonPrivate = nonPrivate;
+      this.openOrRestricted = openOrRestricted;
+      this.ownerPrivate = ownerPrivate.byOwner();
+      this.ownerAll = ownerAll.byOwner();
+      this.ownersComplete = ownerPrivate.complete() && ownerAll.complete();
+    }
+
+    /** Sum of the absolute differences over all scopes and types. */
+    private long difference(Counts other) {
+      long total = difference(nonPrivate, other.nonPrivate)
+          + difference(openOrRestricted, other.openOrRestricted);
+      if (ownersComplete && other.ownersComplete) {
+        total += nestedDifference(ownerPrivate, other.ownerPrivate)
+            + nestedDifference(ownerAll, other.ownerAll);
+      }
+      return total;
+    }
+
+    private static long nestedDifference(
+        Map<String, Map<String, Long>> a, Map<String, Map<String, Long>> b) {
+      Set<String> owners = new HashSet<>(a.keySet());
+      owners.addAll(b.keySet());
+      long total = 0;
+      for (String owner : owners) {
+        total += difference(a.getOrDefault(owner, Map.of()), b.getOrDefault(owner, Map.of()));
+      }
+      return total;
+    }
+
+    private static long difference(Map<String, Long> a, Map<String, Long> b) {
+      Set<String> types = new HashSet<>(a.keySet());
+      types.addAll(b.keySet());
+      long total = 0;
+      for (String type : types) {
+        total += Math.abs(a.getOrDefault(type, 0L) - b.getOrDefault(type, 0L));
+      }
+      return total;
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package org.cdpg.dx.tgdex.search.util;
+
+import io.vertx.core.json.JsonArray;
+import java.util.ArrayList;
+import java.util.List;
+import org.cdpg.dx.common.exception.DxBadRequestException;
+
+/**
+ * A web map tile, numbered as in the {@code z/x/y} keys of Elasticsearch {@code geotile_grid}
+ * buckets: {@code x} grows eastwards from the antimeridian and {@code y} southwards from the
+ * northern edge of the Web Mercator projection.
+ */
+public record MapTile(int zoom, int x, int y) {
+  /** Latitude of the northern edge of the top row of tiles; the southern edge mirrors it. */
+  public static final double MAX_LATITUDE = 85.0511287798066;
+
+  /**
+   * The tiles of a zoom level covering a bounding box given as its top-left and bottom-right
+   * {@code [longitude, latitude]} corners, a column at a time from the western edge. A box whose
+   * western edge is east of its eastern edge crosses the antimeridian.
+   *
+   * @param maxTiles the most tiles the box may cover
+   */
+  public static List<MapTile> covering(int zoom, JsonArray bbox, int maxTiles) {
+    double[] topLeft = position(bbox, 0);
+    double[] bottomRight = position(bbox, 1);
+    if (bbox.size() != 2 || topLeft[1] < bottomRight[1]) {
+      throw new DxBadRequestException("Invalid viewport: " + bbox);
+    }
+    int tiles = 1 << zoom;
+    int west = column(zoom, topLeft[0]);
+    int east = column(zoom, bottomRight[0]);
+    int north = row(zoom, topLeft[1]);
+    int south = row(zoom, bottomRight[1]);
+    int columns =
+        Math.min(tiles, topLeft[0] <= bottomRight[0] ? east - west + 1 : tiles - west + east + 1);
+    long count = (long) columns * (south - north + 1);
+    if (count > maxTiles) {
+      throw new DxBadRequestException(
+          "Viewport covers " + count + " tiles at zoom " + zoom + ", more than " + maxTiles);
+    }
+    List<MapTile> covering = new ArrayList<>((int) count);
+    for (int i = 0; i < columns; i++) {
+      for (int y = north; y <= south; y++) {
+        covering.add(new MapTile(zoom, (west + i) % tiles, y));
+      }
+    }
+    return covering;
+  }
+
+  /** The tile of a {@code z/x/y} key. */
+  public static MapTile parse(String key) {
+    String[] parts = key.split("/");
+    return new MapTile(
+        Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+  }
+
+  /** The tile of a lower zoom level that this tile is part of. */
+  public MapTile ancestor(int zoom) {
+    int levels = this.zoom - zoom;
+    return new MapTile(zoom, x >> levels, y >> levels);
+  }
+
+  public String key() {
+    return zoom + "/" + x + "/" + y;
+  }
+
+  public double west() {
+    return x * 360.0 / (1 << zoom) - 180;
+  }
+
+  public double east() {
+    return (x + 1) * 360.0 / (1 << zoom) - 180;
+  }
+
+  public double north() {
+    return latitude(y);
+  }
+
+  public double south() {
+    return latitude(y + 1);
+  }
+
+  private double latitude(int row) {
+    return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2.0 * row / (1 << zoom)))));
+  }
+
+  private static int column(int zoom, double longitude) {
+    int tiles = 1 << zoom;
+    return Math.min(tiles - 1, (int) Math.floor((longitude + 180) / 360 * tiles));
+  }
+
+  private static int row(int zoom, double latitude) {
+    int tiles = 1 << zoom;
+    double lat = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude)));
+    double mercator = Math.log(Math.tan(lat) + 1 / Math.cos(lat));
+    return Math.max(0, Math.min(tiles - 1, (int) Math.floor((1 - mercator / Math.PI) / 2 * tiles)));
+  }
+
+  private static double[] position(JsonArray bbox, int index) {
+    if (bbox.size() > index
+        && bbox.getValue(index) instanceof JsonArray position
+        && position.size() == 2
+        && position.getValue(0) instanceof Number lon
+        && position.getValue(1) instanceof Number lat
+        && Math.abs(lon.doubleValue()) <= 180
+        && Math.abs(lat.doubleValue()) <= 90) {
+      return new double[] {lon.doubleValue(), lat.doubleValue()};
+    }
+    throw new DxBadRequestException("Invalid viewport: " + bbox);
+  }
+}
@@ -0,0 +1,52 @@
+package org.cdpg.dx.tgdex.search.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.vertx.core.json.JsonArray;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Map clusters of anonymous map views, a tile at a time. Panning and zooming mostly shows tiles
+ * already shown to someone, so a view only searches for the tiles not cached yet, whatever its
+ * exact bounds. Entries are keyed on the search the tiles were clustered for and expire after a
+ * fixed time, which bounds how stale a tile may be after items are added, moved or removed.
+ */
+public class MapTileCache {
+  private static final String METRIC_PREFIX = "map.tiles";
+
+  private final Cache<String, JsonArray> cache;
+  private final Counter hits;
+  private final Counter misses;
+
+  public MapTileCache(long maxTiles, long maxStalenessSeconds, MeterRegistry registry) {
+    MeterRegistry meterRegistry = registry == null ? Metrics.globalRegistry : registry;
+    this.hits =
+        Counter.builder(METRIC_PREFIX + ".requests").tag("result", "hit").register(meterRegistry);
+    this.misses =
+        Counter.builder(METRIC_PREFIX + ".requests").tag("result", "miss").register(meterRegistry);
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxTiles)
+            .expireAfterWrite(maxStalenessSeconds, TimeUnit.SECONDS)
+            .build();
+    meterRegistry.gauge(METRIC_PREFIX + ".size", cache, Cache::size);
+  }
+
+  /** The clusters of the tile for the search, or null if they are not cached. */
+  public JsonArray get(String search, MapTile tile) {
+    JsonArray clusters = cache.getIfPresent(key(search, tile));
+    (clusters == null ? misses : hits).increment();
+    return clusters;
+  }
+
+  public void put(String search, MapTile tile, JsonArray clusters) {
+    cache.put(key(search, tile), clusters);
+  }
+
+  private static String key(String search, MapTile tile) {
+    return tile.key() + ' ' + search;
+  }
+}
@@ -0,0 +1,113 @@
+package org.cdpg.dx.tgdex.search.util;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.web.RoutingContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Writes a stream of NDJSON chunks to a chunked HTTP response, optionally gzip encoded. The source
+ * stream is paused whenever the response write queue is full, so a slow client never makes the
+ * server buffer more than the source itself holds.
+ */
+public class NdjsonResponseWriter {
+  public static final String APPLICATION_NDJSON = "application/x-ndjson";
+  private static final Logger LOGGER = LogManager.getLogger(NdjsonResponseWriter.class);
+
+  private NdjsonResponseWriter() {}
+
+  public static void write(RoutingContext ctx, ReadStream<Buffer> stream, boolean gzip) {
+    HttpServerResponse response = ctx.response();
+    GzipEncoder encoder = gzip ? new GzipEncoder() : null;
+
+    response.closeHandler(v -> stream.pause());
+    stream.exceptionHandler(
+        err -> {
+          if (!response.headWritten()) {
+            ctx.fail(err);
+          } else {
+            LOGGER.error("Export aborted after the response was started: {}", err.getMessage());
+            response.reset();
+          }
+        });
+    stream.endHandler(
+        v -> {
+          begin(response, gzip);
+          response.end(encoder == null ? Buffer.buffer() : encoder.finish());
+        });
+    stream.handler(
+        chunk -> {
+          begin(response, gzip);
+          response.write(encoder == null ? chunk : encoder.encode(chunk));
+          if (response.writeQueueFull()) {
+            stream.pause();
+            response.drainHandler(d -> stream.resume());
+          }
+        });
+  }
+
+  /** Headers are only committed with the first chunk so that early failures get a JSON error. */
+  private static void begin(HttpServerResponse response, boolean gzip) {
+    if (response.headWritten()) {
+      return;
+    }
+    response
+        .setStatusCode(200)
+        .setChunked(true)
+        .putHeader(HttpHeaders.CONTENT_TYPE, APPLICATION_NDJSON);
+    if (gzip) {
+      response.putHeader(HttpHeaders.CONTENT_ENCODING, HttpHeaders.DEFLATE_GZIP);
+    }
+  }
+
+  public static boolean acceptsGzip(RoutingContext ctx) {
+    String acceptEncoding = ctx.request().getHeader(HttpHeaders.ACCEPT_ENCODING);
+    return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+  }
+
+  /** Gzip encoder flushed after every chunk so each one can be sent as soon as it is ready. */
+  private static final class GzipEncoder {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final GZIPOutputStream gzip;
+
+    private GzipEncoder() {
+      try {
+        gzip = new GZIPOutputStream(out, true);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private Buffer encode(Buffer chunk) {
+      try {
+        gzip.write(chunk.getBytes());
+        gzip.flush();
+        return drain();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private Buffer finish() {
+      try {
+        gzip.finish();
+        return drain();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private Buffer drain() {
+      Buffer buffer = Buffer.buffer(out.toByteArray());
+      out.reset();
+      return buffer;
+    }
+  }
+}
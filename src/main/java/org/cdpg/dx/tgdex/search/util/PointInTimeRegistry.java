@@ -0,0 +1,67 @@
+package org.cdpg.dx.tgdex.search.util;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+
+/**
+ * Keeps track of the point-in-time contexts opened for cursor searches. Contexts are closed as soon
+ * as a cursor is exhausted, entries idle beyond the keep-alive are forgotten (Elasticsearch has
+ * already released them), and the least recently used context is closed when too many are open.
+ */
+public class PointInTimeRegistry {
+  private static final Logger LOGGER = LogManager.getLogger(PointInTimeRegistry.class);
+
+  private final ElasticsearchService elasticsearchService;
+  private final long keepAliveMillis;
+  private final int maxOpen;
+  private final Map<String, Long> lastAccess = new ConcurrentHashMap<>();
+
+  public PointInTimeRegistry(
+      ElasticsearchService elasticsearchService, long keepAliveMillis, int maxOpen) {
+    this.elasticsearchService = elasticsearchService;
+    this.keepAliveMillis = keepAliveMillis;
+    this.maxOpen = maxOpen;
+  }
+
+  /** Records use of a point in time. Elasticsearch may hand back a new id for the same context. */
+  public void touch(String previousId, String currentId) {
+    if (previousId != null && !previousId.equals(currentId)) {
+      lastAccess.remove(previousId);
+    }
+    lastAccess.put(currentId, System.currentTimeMillis());
+    evict();
+  }
+
+  public void close(String pitId) {
+    if (pitId == null) {
+      return;
+    }
+    lastAccess.remove(pitId);
+    elasticsearchService
+        .closePointInTime(pitId)
+        .onFailure(err -> LOGGER.warn("Failed to close point in time: {}", err.getMessage()));
+  }
+
+  public int openCount() {
+    return lastAccess.size();
+  }
+
+  private void evict() {
+    long expiredBefore = System.currentTimeMillis() - keepAliveMillis;
+    lastAccess.values().removeIf(accessedAt -> accessedAt < expiredBefore);
+    while (lastAccess.size() > maxOpen) {
+      lastAccess.entrySet().stream()
+          .min(Map.Entry.comparingByValue(Comparator.naturalOrder()))
+          .map(Map.Entry::getKey)
+          .ifPresent(
+              oldest -> {
+                LOGGER.debug("Closing least recently used point in time");
+                close(oldest);
+              });
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package org.cdpg.dx.tgdex.search.util;
 
+import static org.cdpg.dx.tgdex.util.Constants.BUCKETS;
 import static org.cdpg.dx.tgdex.util.Constants.RESULTS;
 
 import io.vertx.core.json.JsonArray;
@@ -9,44 +10,82 @@ import java.util.List;
 import java.util.Objects;
 import org.cdpg.dx.common.util.PaginationInfo;
 import org.cdpg.dx.database.elastic.model.ElasticsearchResponse;
+import org.cdpg.dx.database.elastic.model.SearchResult;
 
 public class ResponseModel {
   JsonObject response;
   private List<JsonObject> elasticsearchResponses;
   private int totalHits;
+  private long took;
+  private String rawResults;
   private PaginationInfo paginationInfo;
+  private JsonObject facets;
+  private JsonObject asyncSearch;
 
-  public ResponseModel(List<ElasticsearchResponse> elasticsearchResponses, int size, int page) {
-    this.response = new JsonObject();
-    this.response.put(RESULTS, elasticsearchResponses);
-    setTotalHits(ElasticsearchResponse.getTotalHits());
+  public ResponseModel(SearchResult searchResult, int size, int page) {
+    setTotalHits(searchResult.getTotalHits());
+    this.took = searchResult.getTook();
+    this.rawResults = searchResult.getRawHits();
     this.elasticsearchResponses =
-        getJsonObjectList(Objects.requireNonNullElse(elasticsearchResponses, List.of()));
+        getJsonObjectList(Objects.requireNonNullElse(searchResult.getHits(), List.of()));
     setPaginationInfo(page, size);
     setResponseJson();
+    this.facets = facets(searchResult.getAggregations());
   }
 
-  public ResponseModel(List<ElasticsearchResponse> elasticsearchResponses) {
+  public ResponseModel(SearchResult searchResult) {
+    setTotalHits(searchResult.getTotalHits());
+    this.took = searchResult.getTook();
     this.elasticsearchResponses =
-        getJsonObjectList(Objects.requireNonNullElse(elasticsearchResponses, List.of()));
+        getJsonObjectList(Objects.requireNonNullElse(searchResult.getHits(), List.of()));
     this.response = new JsonObject();
-    this.response.put(RESULTS, setAggregationsList());
+    this.response.put(RESULTS, setAggregationsList(searchResult.getAggregations()));
   }
 
-  public ResponseModel (ElasticsearchResponse elasticsearchResponse){
-    this.response= new JsonObject();
-    this.response.put(RESULTS, elasticsearchResponse.getSource());
-    setTotalHits(ElasticsearchResponse.getTotalHits());
+  private ResponseModel() {}
+
+  /** A search still running in the background, with its status, to be fetched later by its id. */
+  public static ResponseModel running(JsonObject asyncSearch) {
+    ResponseModel responseModel = new ResponseModel();
+    responseModel.asyncSearch = asyncSearch;
+    return responseModel;
+  }
 
+  /** Status of the search running in the background, or null if this is its result. */
+  public JsonObject getAsyncSearch() {
+    return asyncSearch;
   }
-  private JsonArray setAggregationsList() {
+
+  private JsonArray setAggregationsList(JsonObject aggregations) {
     JsonArray results = new JsonArray();
-    // Fetch all aggregations from the response JSON
-    JsonObject aggregations = ElasticsearchResponse.getAggregations();
-    results.add(aggregations);
+    results.add(Objects.requireNonNullElse(aggregations, new JsonObject()));
     return results;
   }
 
+  /**
+   * Buckets of each facet by facet name. A facet counted under the selections on other facets is
+   * a filter aggregation around the terms aggregation of the same name, which is unwrapped.
+   */
+  private static JsonObject facets(JsonObject aggregations) {
+    if (aggregations == null || aggregations.isEmpty()) {
+      return null;
+    }
+    JsonObject facets = new JsonObject();
+    for (String name : aggregations.fieldNames()) {
+      JsonObject aggregation = aggregations.getJsonObject(name);
+      if (aggregation != null && !aggregation.containsKey(BUCKETS)) {
+        aggregation = aggregation.getJsonObject(name);
+      }
+      facets.put(name, aggregation == null ? new JsonArray() : aggregation.getJsonArray(BUCKETS));
+    }
+    return facets;
+  }
+
+  /** Value counts of the facets asked for, or null if the search had none. */
+  public JsonObject getFacets() {
+    return facets;
+  }
+
   public List<JsonObject> getElasticsearchResponses() {
     return elasticsearchResponses;
   }
@@ -67,6 +106,16 @@ public class ResponseModel {
     return jsonObjectList;
   }
 
+  public void setPaginationInfo(PaginationInfo paginationInfo) {
+    this.paginationInfo = paginationInfo;
+  }
+
+  /** Marks this page as part of a cursor search, pointing at the next page if there is one. */
+  public void setNextCursor(String nextCursor) {
+    paginationInfo.setNext(nextCursor);
+    paginationInfo.setHasNext(nextCursor != null);
+  }
+
   public JsonObject getResponse() {
     return response;
   }
@@ -83,6 +132,15 @@ public class ResponseModel {
     this.totalHits = totalHits;
   }
 
+  public long getTook() {
+    return took;
+  }
+
+  /** Results as an encoded JSON array, present when the search was run in raw mode. */
+  public String getRawResults() {
+    return rawResults;
+  }
+
   @Override
   public String toString() {
     return "ResponseModel{" +
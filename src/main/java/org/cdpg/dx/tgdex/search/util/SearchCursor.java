@@ -0,0 +1,58 @@
+package org.cdpg.dx.tgdex.search.util;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.cdpg.dx.common.exception.DxBadRequestException;
+
+/**
+ * Opaque cursor handed to clients paging through search results. It carries the point-in-time id
+ * and the sort values of the last hit returned, encoded as URL-safe base64.
+ */
+public class SearchCursor {
+  /** Cursor value a client sends to start a new cursor crawl. */
+  public static final String START = "*";
+
+  private static final String PIT = "pit";
+  private static final String AFTER = "after";
+
+  private final String pitId;
+  private final JsonArray searchAfter;
+
+  public SearchCursor(String pitId, JsonArray searchAfter) {
+    this.pitId = pitId;
+    this.searchAfter = searchAfter;
+  }
+
+  public static SearchCursor decode(String cursor) {
+    try {
+      byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+      JsonObject json = new JsonObject(new String(bytes, StandardCharsets.UTF_8));
+      String pitId = json.getString(PIT);
+      JsonArray searchAfter = json.getJsonArray(AFTER);
+      if (pitId == null || searchAfter == null || searchAfter.isEmpty()) {
+        throw new DxBadRequestException("Invalid cursor");
+      }
+      return new SearchCursor(pitId, searchAfter);
+    } catch (DxBadRequestException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new DxBadRequestException("Invalid cursor", e);
+    }
+  }
+
+  public String encode() {
+    String json = new JsonObject().put(PIT, pitId).put(AFTER, searchAfter).encode();
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public String getPitId() {
+    return pitId;
+  }
+
+  public JsonArray getSearchAfter() {
+    return searchAfter;
+  }
+}
@@ -0,0 +1,210 @@
+package org.cdpg.dx.tgdex.search.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable prefix index over suggestion texts, weighted by how many items carry each text.
+ *
+ * <p>Every text is entered under the start of each of its first {@link #MAX_WORD_STARTS} words,
+ * so {@code sta} suggests "Weather Station". The entry keys are held in one sorted array and a
+ * prefix is looked up with two binary searches, which yield the range of entries starting with it.
+ * A segment tree over the entry weights gives the heaviest entry of any range, so the best
+ * {@code limit} texts are read off with {@code O(limit log n)} steps however many entries the
+ * prefix matches.
+ */
+final class SuggestionIndex {
+  static final SuggestionIndex EMPTY = build(Map.of());
+
+  /** Longest text, in characters, entered into the index. */
+  static final int MAX_TEXT_LENGTH = 100;
+
+  private static final int MAX_WORD_STARTS = 8;
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  /** Normalized texts in sorted order, with their display form and weight at the same index. */
+  private final String[] texts;
+  private final String[] displays;
+  private final int[] weights;
+
+  /** Entry keys in sorted order, each with the index of the text it was entered for. */
+  private final String[] keys;
+  private final int[] targets;
+
+  /** Segment tree holding the position of the heaviest entry under each node. */
+  private final int[] tree;
+  private final int leaves;
+
+  private SuggestionIndex(
+      String[] texts, String[] displays, int[] weights, String[] keys, int[] targets) {
+    this.texts = texts;
+    this.displays = displays;
+    this.weights = weights;
+    this.keys = keys;
+    this.targets = targets;
+    this.leaves = Integer.highestOneBit(Math.max(1, keys.length - 1)) << 1;
+    this.tree = new int[2 * leaves];
+    Arrays.fill(tree, -1);
+    for (int i = 0; i < keys.length; i++) {
+      tree[leaves + i] = i;
+    }
+    for (int node = leaves - 1; node > 0; node--) {
+      tree[node] = heavier(tree[2 * node], tree[2 * node + 1]);
+    }
+  }
+
+  /**
+   * Builds the index from normalized texts and their suggestions; texts without any weight are
+   * left out.
+   */
+  static SuggestionIndex build(Map<String, Suggestion> suggestions) {
+    String[] texts =
+        suggestions.entrySet().stream()
+            .filter(entry -> entry.getValue().weight() > 0)
+            .map(Map.Entry::getKey)
+            .sorted()
+            .toArray(String[]::new);
+    String[] displays = new String[texts.length];
+    int[] weights = new int[texts.length];
+    List<Entry> entries = new ArrayList<>(texts.length * 2);
+    for (int i = 0; i < texts.length; i++) {
+      Suggestion suggestion = suggestions.get(texts[i]);
+      displays[i] = suggestion.display();
+      weights[i] = suggestion.weight();
+      String text = texts[i];
+      int start = 0;
+      for (int word = 0; word < MAX_WORD_STARTS && start >= 0; word++) {
+        entries.add(new Entry(text.substring(start), i));
+        int space = text.indexOf(' ', start);
+        start = space < 0 ? -1 : space + 1;
+      }
+    }
+    entries.sort((a, b) -> a.key().compareTo(b.key()));
+    String[] keys = new String[entries.size()];
+    int[] targets = new int[entries.size()];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = entries.get(i).key();
+      targets[i] = entries.get(i).target();
+    }
+    return new SuggestionIndex(texts, displays, weights, keys, targets);
+  }
+
+  /**
+   * The text as it is looked up: trimmed, lower cased and with runs of whitespace as one space.
+   * Null when nothing is left or the text is longer than {@link #MAX_TEXT_LENGTH}.
+   */
+  static String normalize(String text) {
+    if (text == null) {
+      return null;
+    }
+    String normalized = WHITESPACE.matcher(text.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    return normalized.isEmpty() || normalized.length() > MAX_TEXT_LENGTH ? null : normalized;
+  }
+
+  int size() {
+    return texts.length;
+  }
+
+  /** Weight of a normalized text, 0 if it is not in the index. */
+  int weight(String text) {
+    int index = Arrays.binarySearch(texts, text);
+    return index < 0 ? 0 : weights[index];
+  }
+
+  /**
+   * Up to {@code limit} texts with a word starting with the normalized prefix, heaviest first and
+   * each at most once.
+   */
+  List<Suggestion> top(String prefix, int limit) {
+    List<Suggestion> result = new ArrayList<>(Math.min(limit, texts.length));
+    int from = lowerBound(prefix);
+    int to = lowerBound(prefix + Character.MAX_VALUE);
+    if (from >= to || limit <= 0) {
+      return result;
+    }
+    BitSet seen = new BitSet(texts.length);
+    PriorityQueue<int[]> ranges =
+        new PriorityQueue<>((a, b) -> heavier(a[2], b[2]) == a[2] ? -1 : 1);
+    ranges.add(new int[] {from, to - 1, heaviest(from, to - 1)});
+    while (!ranges.isEmpty() && result.size() < limit) {
+      int[] range = ranges.poll();
+      int position = range[2];
+      int target = targets[position];
+      if (!seen.get(target)) {
+        seen.set(target);
+        result.add(new Suggestion(displays[target], weights[target]));
+      }
+      if (range[0] < position) {
+        ranges.add(new int[] {range[0], position - 1, heaviest(range[0], position - 1)});
+      }
+      if (position < range[1]) {
+        ranges.add(new int[] {position + 1, range[1], heaviest(position + 1, range[1])});
+      }
+    }
+    return result;
+  }
+
+  /** Every text with a word starting with the normalized prefix, by normalized text. */
+  Map<String, Suggestion> all(String prefix) {
+    Map<String, Suggestion> result = new HashMap<>();
+    int to = lowerBound(prefix + Character.MAX_VALUE);
+    for (int i = lowerBound(prefix); i < to; i++) {
+      int target = targets[i];
+      result.putIfAbsent(texts[target], new Suggestion(displays[target], weights[target]));
+    }
+    return result;
+  }
+
+  private int lowerBound(String key) {
+    int low = 0;
+    int high = keys.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (keys[middle].compareTo(key) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /** Position of the heaviest entry between {@code from} and {@code to}, both inclusive. */
+  private int heaviest(int from, int to) {
+    int best = -1;
+    for (int low = from + leaves, high = to + leaves + 1; low < high; low >>= 1, high >>= 1) {
+      if ((low & 1) == 1) {
+        best = heavier(best, tree[low++]);
+      }
+      if ((high & 1) == 1) {
+        best = heavier(best, tree[--high]);
+      }
+    }
+    return best;
+  }
+
+  /** The heavier of two entry positions; on equal weight the one sorting first. */
+  private int heavier(int a, int b) {
+    if (a < 0 || b < 0) {
+      return a < 0 ? b : a;
+    }
+    int byWeight = compare(a, b);
+    return byWeight > 0 || (byWeight == 0 && a < b) ? a : b;
+  }
+
+  private int compare(int a, int b) {
+    return Integer.compare(weights[targets[a]], weights[targets[b]]);
+  }
+
+  /** A suggested text as shown and the number of items it stands for. */
+  record Suggestion(String display, int weight) {}
+
+  private record Entry(String key, int target) {}
+}
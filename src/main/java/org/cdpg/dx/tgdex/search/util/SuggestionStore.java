@@ -0,0 +1,377 @@
+package org.cdpg.dx.tgdex.search.util;
+
+import static org.cdpg.dx.database.elastic.util.Constants.ACCESS_POLICY;
+import static org.cdpg.dx.database.elastic.util.Constants.DATA_UPLOAD_STATUS;
+import static org.cdpg.dx.database.elastic.util.Constants.LABEL;
+import static org.cdpg.dx.database.elastic.util.Constants.NAME;
+import static org.cdpg.dx.database.elastic.util.Constants.OPEN;
+import static org.cdpg.dx.database.elastic.util.Constants.PRIVATE;
+import static org.cdpg.dx.database.elastic.util.Constants.PROVIDER_USER_ID;
+import static org.cdpg.dx.database.elastic.util.Constants.RESTRICTED;
+import static org.cdpg.dx.database.elastic.util.Constants.TAGS;
+import static org.cdpg.dx.tgdex.util.Constants.ID;
+import static org.cdpg.dx.tgdex.util.Constants.ITEM_TYPE_AI_MODEL;
+import static org.cdpg.dx.tgdex.util.Constants.ITEM_TYPE_DATA_BANK;
+import static org.cdpg.dx.tgdex.util.Constants.TYPE;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.cdpg.dx.database.elastic.model.QueryFragments;
+import org.cdpg.dx.database.elastic.model.QueryModel;
+import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+import org.cdpg.dx.database.elastic.util.QueryType;
+import org.cdpg.dx.tgdex.search.util.SuggestionIndex.Suggestion;
+
+/**
+ * Type-ahead suggestions over the names, labels and tags of the items, answered from memory.
+ *
+ * <p>Each text is weighted by the number of items carrying it that the caller may see, so tags
+ * shared by many items and names reused across items come first. The access scopes are those of
+ * a search: anonymous users are suggested the texts of every item but private ones, authenticated
+ * users those of open and restricted items plus their own private items. Items excluded from
+ * search because their data upload is incomplete are left out.
+ *
+ * <p>The texts of every item are read from Elasticsearch with a point-in-time scan when the store
+ * starts and again every refresh interval, which also picks up writes made by other instances.
+ * Writes made through this Vert.x instance, whose verticles share one store, are applied as they
+ * succeed and show in the suggestions after a short delay, about when Elasticsearch makes them
+ * searchable. Writes made within a refresh interval of a scan starting may be missing from it, so
+ * they are applied again on top of it.
+ */
+public class SuggestionStore {
+  private static final Logger LOGGER = LogManager.getLogger(SuggestionStore.class);
+  private static final String METRIC_PREFIX = "item.suggest";
+  private static final long REFRESH_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final long REBUILD_DELAY_MILLIS = 200L;
+  private static final int SCAN_SLICES = 2;
+  private static final int SCAN_PAGE_SIZE = 1000;
+  private static final String SCAN_KEEP_ALIVE = "1m";
+  private static final List<String> SOURCE_FIELDS =
+      List.of(ID, NAME, LABEL, TAGS, TYPE, ACCESS_POLICY, PROVIDER_USER_ID, DATA_UPLOAD_STATUS);
+
+  private final ElasticsearchService elasticsearchService;
+  private final String docIndex;
+  private final MeterRegistry registry;
+  private final AtomicInteger size = new AtomicInteger();
+  private final ArrayDeque<Write> recentWrites = new ArrayDeque<>();
+  private Map<String, ItemTexts> items = new HashMap<>();
+  private volatile Indexes indexes;
+  private Vertx vertx;
+  private boolean rebuildPending;
+  private long scanStartedAt = -1L;
+
+  public SuggestionStore(
+      ElasticsearchService elasticsearchService, String docIndex, MeterRegistry registry) {
+    this.elasticsearchService = elasticsearchService;
+    this.docIndex = docIndex;
+    this.registry = registry == null ? Metrics.globalRegistry : registry;
+    this.registry.gauge(METRIC_PREFIX + ".texts", size);
+  }
+
+  /** Reads the texts of every item and reads them again every {@code intervalSeconds}. */
+  public void start(Vertx vertx, long intervalSeconds) {
+    this.vertx = vertx;
+    refresh();
+    vertx.setPeriodic(TimeUnit.SECONDS.toMillis(intervalSeconds), id -> refresh());
+  }
+
+  /**
+   * Up to {@code limit} suggestions for the prefix, as {@code text} and {@code weight} objects
+   * with the heaviest first. Empty until the first scan completes.
+   *
+   * @param sub the subject of the user, null or empty for anonymous requests
+   * @param prefix what has been typed so far; any word of a suggestion may start with it
+   * @param limit the most suggestions returned
+   */
+  public JsonArray suggest(String sub, String prefix, int limit) {
+    Indexes current = indexes;
+    String normalized = SuggestionIndex.normalize(prefix);
+    JsonArray result = new JsonArray();
+    if (current == null || normalized == null) {
+      request(current == null ? "unavailable" : "empty");
+      return result;
+    }
+    List<Suggestion> suggestions;
+    SuggestionIndex ownerPrivate =
+        sub == null || sub.isEmpty() ? null : current.ownerPrivate.get(sub);
+    if (sub == null || sub.isEmpty()) {
+      suggestions = current.nonPrivate.top(normalized, limit);
+    } else if (ownerPrivate == null) {
+      suggestions = current.openOrRestricted.top(normalized, limit);
+    } else {
+      suggestions = merge(current.openOrRestricted, ownerPrivate, normalized, limit);
+    }
+    for (Suggestion suggestion : suggestions) {
+      result.add(
+          new JsonObject().put("text", suggestion.display()).put("weight", suggestion.weight()));
+    }
+    request("memory");
+    return result;
+  }
+
+  /**
+   * The heaviest texts of the open and restricted items and the private items of the owner
+   * together. A text outside the best {@code limit} of the shared index and not among the owner's
+   * matches cannot outweigh those, so only they are weighed.
+   */
+  private static List<Suggestion> merge(
+      SuggestionIndex shared, SuggestionIndex owned, String prefix, int limit) {
+    Map<String, Suggestion> candidates = owned.all(prefix);
+    for (Map.Entry<String, Suggestion> entry : candidates.entrySet()) {
+      Suggestion own = entry.getValue();
+      entry.setValue(new Suggestion(own.display(), own.weight() + shared.weight(entry.getKey())));
+    }
+    for (Suggestion suggestion : shared.top(prefix, limit)) {
+      candidates.putIfAbsent(SuggestionIndex.normalize(suggestion.display()), suggestion);
+    }
+    return candidates.values().stream()
+        .sorted(
+            Comparator.comparingInt(Suggestion::weight)
+                .reversed()
+                .thenComparing(Suggestion::display))
+        .limit(limit)
+        .toList();
+  }
+
+  public synchronized void added(JsonObject item) {
+    apply(item == null ? null : item.getString(ID), item);
+  }
+
+  public synchronized void removed(JsonObject item) {
+    if (item != null) {
+      apply(item.getString(ID), null);
+    }
+  }
+
+  public synchronized void replaced(JsonObject previous, JsonObject current) {
+    if (previous != null && current != null
+        && !String.valueOf(previous.getString(ID)).equals(current.getString(ID))) {
+      apply(previous.getString(ID), null);
+    }
+    apply(current == null ? null : current.getString(ID), current);
+  }
+
+  private void apply(String id, JsonObject item) {
+    if (id == null) {
+      return;
+    }
+    long now = System.nanoTime();
+    recentWrites.add(new Write(id, item, now));
+    if (scanStartedAt < 0) {
+      while (!recentWrites.isEmpty() && now - recentWrites.peek().at() > REFRESH_WINDOW_NANOS) {
+        recentWrites.poll();
+      }
+    }
+    put(items, id, item);
+    scheduleRebuild();
+  }
+
+  private static void put(Map<String, ItemTexts> items, String id, JsonObject item) {
+    ItemTexts texts = item == null ? null : ItemTexts.of(item);
+    if (texts == null) {
+      items.remove(id);
+    } else {
+      items.put(id, texts);
+    }
+  }
+
+  /** Rebuilds the indexes once the writes of the next moments are in, like an index refresh. */
+  private void scheduleRebuild() {
+    if (indexes == null || rebuildPending) {
+      return;
+    }
+    if (vertx == null) {
+      rebuild();
+      return;
+    }
+    rebuildPending = true;
+    vertx.setTimer(
+        REBUILD_DELAY_MILLIS,
+        id -> {
+          synchronized (this) {
+            rebuildPending = false;
+            rebuild();
+          }
+        });
+  }
+
+  private void rebuild() {
+    Indexes rebuilt = Indexes.of(items.values());
+    size.set(rebuilt.nonPrivate.size());
+    indexes = rebuilt;
+  }
+
+  /**
+   * Scans the texts of every item from Elasticsearch and replaces the indexed ones with them,
+   * applying the writes made since shortly before the scan started on top.
+   */
+  public void refresh() {
+    long startedAt;
+    synchronized (this) {
+      if (scanStartedAt >= 0) {
+        return;
+      }
+      startedAt = System.nanoTime();
+      scanStartedAt = startedAt;
+    }
+    QueryModel queryModel = new QueryModel();
+    queryModel.setQueries(withUploadStatusExclusion());
+    queryModel.setIncludeFields(SOURCE_FIELDS);
+    Map<String, ItemTexts> scanned = new HashMap<>();
+    elasticsearchService
+        .scan(docIndex, queryModel, SCAN_SLICES, SCAN_PAGE_SIZE, SCAN_KEEP_ALIVE)
+        .exceptionHandler(
+            err -> {
+              synchronized (this) {
+                scanStartedAt = -1L;
+              }
+              LOGGER.warn("Failed to read item texts for suggestions: {}", err.getMessage());
+              refreshed("failed");
+            })
+        .endHandler(
+            v -> {
+              synchronized (this) {
+                scanStartedAt = -1L;
+                for (Write write : recentWrites) {
+                  if (startedAt - write.at() < REFRESH_WINDOW_NANOS) {
+                    put(scanned, write.id(), write.item());
+                  }
+                }
+                recentWrites.clear();
+                boolean seeded = indexes == null;
+                items = scanned;
+                rebuild();
+                if (seeded) {
+                  LOGGER.info("Suggestions seeded from {} with {} texts", docIndex, size.get());
+                }
+                refreshed(seeded ? "seeded" : "refreshed");
+              }
+            })
+        .handler(
+            chunk -> {
+              for (String line : chunk.toString().split("\n")) {
+                if (!line.isBlank()) {
+                  JsonObject item = new JsonObject(line);
+                  if (item.getString(ID) != null) {
+                    put(scanned, item.getString(ID), item);
+                  }
+                }
+              }
+            });
+  }
+
+  /** Mirrors the upload status exclusion {@code QueryDecoder} adds to every search. */
+  private static QueryModel withUploadStatusExclusion() {
+    QueryModel query = new QueryModel(QueryType.BOOL);
+    query.setMustNotQueries(
+        List.of(QueryFragments.DATA_BANK_UPLOAD_PENDING.toModel(),
+            QueryFragments.AI_MODEL_UPLOAD_PENDING.toModel()));
+    return query;
+  }
+
+  private void request(String source) {
+    Counter.builder(METRIC_PREFIX + ".requests").tag("source", source).register(registry)
+        .increment();
+  }
+
+  private void refreshed(String result) {
+    Counter.builder(METRIC_PREFIX + ".refreshes").tag("result", result).register(registry)
+        .increment();
+  }
+
+  private record Write(String id, JsonObject item, long at) {}
+
+  /** The suggestion texts of one item and the scope it is visible in. */
+  private record ItemTexts(Set<String> texts, String accessPolicy, String owner) {
+
+    /** The texts of a searchable item, or null for items searches leave out. */
+    private static ItemTexts of(JsonObject item) {
+      List<String> types = strings(item.getValue(TYPE));
+      boolean uploadPending = Boolean.FALSE.equals(item.getValue(DATA_UPLOAD_STATUS));
+      if (uploadPending
+          && (types.contains(ITEM_TYPE_DATA_BANK) || types.contains(ITEM_TYPE_AI_MODEL))) {
+        return null;
+      }
+      Set<String> texts = new LinkedHashSet<>();
+      addText(texts, item.getValue(NAME));
+      addText(texts, item.getValue(LABEL));
+      for (String tag : strings(item.getValue(TAGS))) {
+        addText(texts, tag);
+      }
+      return texts.isEmpty()
+          ? null
+          : new ItemTexts(texts, item.getString(ACCESS_POLICY), item.getString(PROVIDER_USER_ID));
+    }
+
+    private static void addText(Set<String> texts, Object value) {
+      if (value instanceof String text && SuggestionIndex.normalize(text) != null) {
+        texts.add(text.trim());
+      }
+    }
+
+    private static List<String> strings(Object value) {
+      if (value instanceof JsonArray array) {
+        return array.stream().filter(String.class::isInstance).map(String.class::cast).toList();
+      }
+      return value instanceof String text ? List.of(text) : List.of();
+    }
+  }
+
+  /** The indexes of each access scope, rebuilt together and swapped in at once. */
+  private record Indexes(
+      SuggestionIndex nonPrivate,
+      SuggestionIndex openOrRestricted,
+      Map<String, SuggestionIndex> ownerPrivate) {
+
+    private static Indexes of(Iterable<ItemTexts> items) {
+      Map<String, Suggestion> nonPrivate = new HashMap<>();
+      Map<String, Suggestion> openOrRestricted = new HashMap<>();
+      Map<String, Map<String, Suggestion>> ownerPrivate = new HashMap<>();
+      for (ItemTexts item : items) {
+        boolean isPrivate = PRIVATE.equalsIgnoreCase(item.accessPolicy());
+        boolean openOrRestrictedItem =
+            OPEN.equalsIgnoreCase(item.accessPolicy())
+                || RESTRICTED.equalsIgnoreCase(item.accessPolicy());
+        for (String text : item.texts()) {
+          if (isPrivate) {
+            if (item.owner() != null) {
+              count(ownerPrivate.computeIfAbsent(item.owner(), o -> new HashMap<>()), text);
+            }
+          } else {
+            count(nonPrivate, text);
+            if (openOrRestrictedItem) {
+              count(openOrRestricted, text);
+            }
+          }
+        }
+      }
+      Map<String, SuggestionIndex> ownerIndexes = new HashMap<>();
+      ownerPrivate.forEach((owner, texts) -> ownerIndexes.put(owner, SuggestionIndex.build(texts)));
+      return new Indexes(
+          SuggestionIndex.build(nonPrivate), SuggestionIndex.build(openOrRestricted), ownerIndexes);
+    }
+
+    /** Counts an item for the text; differently cased texts count together, shown as first met. */
+    private static void count(Map<String, Suggestion> suggestions, String text) {
+      suggestions.merge(
+          SuggestionIndex.normalize(text),
+          new Suggestion(text, 1),
+          (a, b) -> new Suggestion(a.display(), a.weight() + 1));
+    }
+  }
+}
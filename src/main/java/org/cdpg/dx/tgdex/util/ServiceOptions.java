@@ -0,0 +1,95 @@
+package org.cdpg.dx.tgdex.util;
+
+import org.cdpg.dx.database.elastic.model.TextSearchSettings;
+import org.cdpg.dx.tgdex.savedsearch.service.SavedSearchService;
+import org.cdpg.dx.tgdex.search.util.AsyncSearches;
+import org.cdpg.dx.tgdex.search.util.FacetStore;
+import org.cdpg.dx.tgdex.search.util.ItemCountStore;
+import org.cdpg.dx.tgdex.search.util.MapTileCache;
+import org.cdpg.dx.tgdex.search.util.SuggestionStore;
+
+/**
+ * The optional parts of the item, list and search services, enabled by config. Each is null when
+ * disabled, and the services then answer from Elasticsearch alone; a service only uses the parts
+ * that apply to it.
+ */
+public class ServiceOptions {
+  private ItemCountStore itemCountStore;
+  private SuggestionStore suggestionStore;
+  private FacetStore facetStore;
+  private MapTileCache mapTileCache;
+  private AsyncSearches asyncSearches;
+  private SavedSearchService savedSearchService;
+  private TextSearchSettings textSearchSettings = TextSearchSettings.DEFAULT;
+
+  /** Per-type counts answering {@code /count}, updated by item writes. */
+  public ItemCountStore getItemCountStore() {
+    return itemCountStore;
+  }
+
+  public ServiceOptions setItemCountStore(ItemCountStore itemCountStore) {
+    this.itemCountStore = itemCountStore;
+    return this;
+  }
+
+  /** Type-ahead suggestions answering {@code /suggest}, updated by item writes. */
+  public SuggestionStore getSuggestionStore() {
+    return suggestionStore;
+  }
+
+  public ServiceOptions setSuggestionStore(SuggestionStore suggestionStore) {
+    this.suggestionStore = suggestionStore;
+    return this;
+  }
+
+  /** Filter values answering {@code /list}, refreshed after item writes. */
+  public FacetStore getFacetStore() {
+    return facetStore;
+  }
+
+  public ServiceOptions setFacetStore(FacetStore facetStore) {
+    this.facetStore = facetStore;
+    return this;
+  }
+
+  /** Map clusters of anonymous {@code /search/map} views. */
+  public MapTileCache getMapTileCache() {
+    return mapTileCache;
+  }
+
+  public ServiceOptions setMapTileCache(MapTileCache mapTileCache) {
+    this.mapTileCache = mapTileCache;
+    return this;
+  }
+
+  /** Searches run in the background on {@code ?async=true}. */
+  public AsyncSearches getAsyncSearches() {
+    return asyncSearches;
+  }
+
+  public ServiceOptions setAsyncSearches(AsyncSearches asyncSearches) {
+    this.asyncSearches = asyncSearches;
+    return this;
+  }
+
+  /** Saved searches notified of the items written that match them. */
+  public SavedSearchService getSavedSearchService() {
+    return savedSearchService;
+  }
+
+  public ServiceOptions setSavedSearchService(SavedSearchService savedSearchService) {
+    this.savedSearchService = savedSearchService;
+    return this;
+  }
+
+  /** How {@code q} searches are turned into text queries, never null. */
+  public TextSearchSettings getTextSearchSettings() {
+    return textSearchSettings;
+  }
+
+  public ServiceOptions setTextSearchSettings(TextSearchSettings textSearchSettings) {
+    this.textSearchSettings =
+        textSearchSettings == null ? TextSearchSettings.DEFAULT : textSearchSettings;
+    return this;
+  }
+}
@@ -24,7 +24,6 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.cdpg.dx.database.elastic.model.ElasticsearchResponse;
 import org.cdpg.dx.database.elastic.model.QueryDecoder;
 import org.cdpg.dx.database.elastic.model.QueryModel;
 import org.cdpg.dx.database.elastic.service.ElasticsearchService;
@@ -218,7 +217,7 @@ public class ValidatorServiceImpl implements ValidatorService {
           promise.fail(VALIDATION_FAILURE_MSG);
         })
         .onSuccess(res -> {
-          if (method.equalsIgnoreCase(REQUEST_POST) && ElasticsearchResponse.getTotalHits() > 0) {
+          if (method.equalsIgnoreCase(REQUEST_POST) && res.getTotalHits() > 0) {
             LOGGER.debug("potential apps item already exists with the given name");
             promise.fail("Fail: Apps item already exists");
           } else {
@@ -247,7 +246,7 @@ public class ValidatorServiceImpl implements ValidatorService {
           promise.fail(VALIDATION_FAILURE_MSG);
         })
         .onSuccess(res -> {
-          String returnType = getReturnTypeForValidation(res.getSource());
+          String returnType = getReturnTypeForValidation(res.firstHit().getSource());
           LOGGER.debug(returnType);
           if (method.equalsIgnoreCase(REQUEST_POST) && returnType.contains(ITEM_TYPE_AI_MODEL)) {
             LOGGER.debug("AI Model already exists with the name {} in organization {}",
@@ -265,8 +264,8 @@ public class ValidatorServiceImpl implements ValidatorService {
             request.put(PUBLISH_STATUS, PENDING);
           } else if (method.equalsIgnoreCase(REQUEST_PUT)) {
             // On PUT: Preserve previous true if already set
-            boolean wasPreviouslyUploaded = extractDataUploadStatusFromES(res.getSource());
-            boolean previousMediaUrlPresent = extractMediaUrlFromES(res.getSource());
+            boolean wasPreviouslyUploaded = extractDataUploadStatusFromES(res.firstHit().getSource());
+            boolean previousMediaUrlPresent = extractMediaUrlFromES(res.firstHit().getSource());
 
             if (mediaUrlPresent) {
               request.put(DATA_UPLOAD_STATUS, true);
@@ -277,7 +276,7 @@ public class ValidatorServiceImpl implements ValidatorService {
               request.put(DATA_UPLOAD_STATUS, false);
             }
 
-            String publishStatus = extractPublishStatusFromES(res.getSource());
+            String publishStatus = extractPublishStatusFromES(res.firstHit().getSource());
             request.put(PUBLISH_STATUS, publishStatus);
           }
 
@@ -341,7 +340,7 @@ public class ValidatorServiceImpl implements ValidatorService {
           promise.fail(VALIDATION_FAILURE_MSG);
         })
         .onSuccess(res -> {
-          String returnType = getReturnTypeForValidation(res.getSource());
+          String returnType = getReturnTypeForValidation(res.firstHit().getSource());
           LOGGER.debug(returnType);
           if (method.equalsIgnoreCase(REQUEST_POST)
               && returnType.contains(ITEM_TYPE_DATA_BANK)) {
@@ -360,8 +359,8 @@ public class ValidatorServiceImpl implements ValidatorService {
             request.put(PUBLISH_STATUS, PENDING);
           } else if (method.equalsIgnoreCase(REQUEST_PUT)) {
             // On PUT: Preserve previous true if already set
-            boolean wasPreviouslyUploaded = extractDataUploadStatusFromES(res.getSource());
-            boolean previousMediaUrlPresent = extractMediaUrlFromES(res.getSource());
+            boolean wasPreviouslyUploaded = extractDataUploadStatusFromES(res.firstHit().getSource());
+            boolean previousMediaUrlPresent = extractMediaUrlFromES(res.firstHit().getSource());
 
             if (mediaUrlPresent) {
               request.put(DATA_UPLOAD_STATUS, true);
@@ -372,7 +371,7 @@ public class ValidatorServiceImpl implements ValidatorService {
               request.put(DATA_UPLOAD_STATUS, false);
             }
 
-            String publishStatus = extractPublishStatusFromES(res.getSource());
+            String publishStatus = extractPublishStatusFromES(res.firstHit().getSource());
             request.put(PUBLISH_STATUS, publishStatus);
           }
 
@@ -14,6 +14,12 @@ public class Constants {
 
   public static final String ROUTE_DOC = "/apis";
 
+  /** Streaming export endpoint, served without the request timeout */
+  public static final String ROUTE_EXPORT = "/export";
+
+  /** Bulk item import, which reads its own body as a stream instead of through the body handler */
+  public static final String ROUTE_BULK_ITEM = "/item/bulk";
+
   // request/response params
   public static final String CONTENT_TYPE = "content-type";
   public static final String APPLICATION_JSON = "application/json";
@@ -23,10 +29,22 @@ public class Constants {
   public static final String GET_ITEM="get item";
   public static final String UPDATE_ITEM="update item";
   public static final String DELETE_ITEM="delete item";
+  public static final String BULK_CREATE_ITEM="bulk create items";
   public static final String LIST_AVAILABLE_FILTER="listAvailableFilters";
   public static final String GET_LIST="listTypes";
   public static final String POST_SEARCH="search";
   public static final String POST_COUNT_SEARCH= "count";
   public static final String ID = "id";
   public static final String ASSET_SEARCH="myAssetsSearch";
+  public static final String EXPORT="export";
+  public static final String EXPLAIN_SEARCH="explainSearch";
+  public static final String SUGGEST="suggest";
+  public static final String MAP_SEARCH="mapSearch";
+  public static final String CREATE_SAVED_SEARCH="createSavedSearch";
+  public static final String LIST_SAVED_SEARCHES="listSavedSearches";
+  public static final String DELETE_SAVED_SEARCH="deleteSavedSearch";
+  public static final String ASYNC_SEARCH_STATUS="asyncSearchStatus";
+  public static final String ASYNC_SEARCH_RESULT="asyncSearchResult";
+  public static final String DELETE_ASYNC_SEARCH="deleteAsyncSearch";
+  public static final String ASYNC_SEARCH_RUNNING="Search is running; fetch its result by its id";
 }
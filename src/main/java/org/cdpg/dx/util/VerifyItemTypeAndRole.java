@@ -32,7 +32,6 @@ public class VerifyItemTypeAndRole implements Handler<RoutingContext> {
             routingContext.fail(new DxForbiddenException("User don't have any assigned role")); // 403
             return;
         }
-        createMap();
         String itemType = routingContext.body().asJsonObject().getJsonArray("type").getString(0);
 
         JsonArray userRoles = realmAccess.getJsonArray("roles");
@@ -44,20 +43,7 @@ public class VerifyItemTypeAndRole implements Handler<RoutingContext> {
             return;
         }
 
-        boolean allowed = userRoles.stream()
-                .map(Object::toString)
-                .map(String::toLowerCase)
-                .map(roleName -> {
-                    return Arrays.stream(DxRole.values())
-                            .filter(r -> r.getRole().equalsIgnoreCase(roleName))
-                            .findFirst()
-                            .orElse(null);
-                })
-                .filter(Objects::nonNull)        // drop any unknown roles
-                .anyMatch(dxRole -> {
-                    List<ItemType> allowedTypes = roleItemTypeMap.get(dxRole);
-                    return allowedTypes != null && allowedTypes.contains(requestedType);
-                });
+        boolean allowed = allowedItemTypes(userRoles).contains(requestedType);
 
         if (allowed) {
             routingContext.next();
@@ -67,6 +53,23 @@ public class VerifyItemTypeAndRole implements Handler<RoutingContext> {
         }
     }
 
+    /** Item types that the given realm roles may create or update. */
+    public Set<ItemType> allowedItemTypes(JsonArray userRoles) {
+        createMap();
+        Set<ItemType> allowedTypes = EnumSet.noneOf(ItemType.class);
+        userRoles.stream()
+                .map(Object::toString)
+                .map(roleName -> Arrays.stream(DxRole.values())
+                        .filter(r -> r.getRole().equalsIgnoreCase(roleName))
+                        .findFirst()
+                        .orElse(null))
+                .filter(Objects::nonNull)        // drop any unknown roles
+                .map(roleItemTypeMap::get)
+                .filter(Objects::nonNull)
+                .forEach(allowedTypes::addAll);
+        return allowedTypes;
+    }
+
     private void createMap(){
         List<ItemType> providerItemTypes = new ArrayList<>();
         List<ItemType> cosAdminItemTypes = new ArrayList<>();
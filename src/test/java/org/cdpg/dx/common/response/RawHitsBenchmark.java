@@ -0,0 +1,146 @@
+package org.cdpg.dx.common.response;
+
+import static org.cdpg.dx.database.elastic.util.Constants.RAW_SOURCE_ONLY;
+import static org.cdpg.dx.database.elastic.util.Constants.SOURCE_ONLY;
+import static org.cdpg.dx.tgdex.util.Constants.RESULTS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.cdpg.dx.common.HttpStatusCode;
+import org.cdpg.dx.database.elastic.ElasticClient;
+import org.cdpg.dx.database.elastic.model.QueryModel;
+import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+import org.cdpg.dx.database.elastic.service.ElasticsearchServiceImpl;
+import org.cdpg.dx.database.elastic.util.QueryType;
+import org.cdpg.dx.tgdex.search.util.ResponseModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of turning a page of search hits into a response body, from the Elasticsearch client's
+ * response to the encoded envelope. {@code mapped} is the path /search used to take: every hit
+ * source parsed into a JsonObject, collected in a ResponseModel and encoded again through a
+ * DxResponse. {@code raw} is the RAW_SOURCE path: the sources written once into a JSON array and
+ * appended to the pre-encoded envelope.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RawHitsBenchmark {
+  private static final String INDEX = "items";
+
+  @Param({"100", "1000"})
+  int hits;
+
+  private ElasticsearchService elasticsearchService;
+  private QueryModel queryModel;
+
+  @Setup
+  public void setUp() {
+    SearchResponse<ObjectNode> response = response(hits);
+    ElasticsearchAsyncClient asyncClient =
+        mock(ElasticsearchAsyncClient.class, withSettings().stubOnly());
+    when(asyncClient._jsonpMapper()).thenReturn(new JacksonJsonpMapper());
+    when(asyncClient.search(any(SearchRequest.class), eq(ObjectNode.class)))
+        .thenAnswer(invocation -> CompletableFuture.completedFuture(response));
+    ElasticClient client = mock(ElasticClient.class);
+    when(client.getClient()).thenReturn(asyncClient);
+    elasticsearchService = new ElasticsearchServiceImpl(client);
+
+    QueryModel termQuery = new QueryModel(QueryType.TERM);
+    termQuery.setQueryParameters(Map.of("field", "type.keyword", "value", "iudx:Resource"));
+    queryModel = new QueryModel(termQuery, null);
+    queryModel.setLimit(String.valueOf(hits));
+  }
+
+  @Benchmark
+  public String mapped() {
+    ResponseModel model =
+        new ResponseModel(
+            elasticsearchService.search(INDEX, queryModel, SOURCE_ONLY).result(), hits, 1);
+    HttpStatusCode code = HttpStatusCode.SUCCESS;
+    DxResponse<Object> response =
+        new DxResponse<>(
+            code.getUrn(),
+            code.getDescription(),
+            null,
+            model.getResponse().getJsonArray(RESULTS),
+            model.getPaginationInfo());
+    return JsonObject.mapFrom(response).encode();
+  }
+
+  @Benchmark
+  public Buffer raw() {
+    ResponseModel model =
+        new ResponseModel(
+            elasticsearchService.search(INDEX, queryModel, RAW_SOURCE_ONLY).result(), hits, 1);
+    return ResponseBuilder.rawSuccessBody(
+        model.getRawResults(), model.getPaginationInfo(), model.getTotalHits(), null);
+  }
+
+  /** A page of catalogue items of about 700 bytes each. */
+  private static SearchResponse<ObjectNode> response(int size) {
+    JsonNodeFactory nodes = JsonNodeFactory.instance;
+    List<Hit<ObjectNode>> page = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      String id = "b58da193-23d9-43eb-b98a-a103d4b6" + String.format("%04d", i);
+      ObjectNode source = nodes.objectNode();
+      source.put("id", id);
+      source.putArray("type").add("iudx:Resource").add("iudx:DataModel");
+      source.put("name", "sensor-" + i);
+      source.put("label", "Air quality sensor " + i + " at a traffic junction");
+      source.put(
+          "description",
+          "Readings of PM2.5, PM10, NO2, SO2, CO and ozone, published every fifteen minutes by"
+              + " the city's network of roadside air quality monitoring stations.");
+      source.putArray("tags").add("aqi").add("pollution").add("environment").add("air quality");
+      source.put("resourceGroup", "8b95ab80-2aaf-4636-a65e-7f2563d0d371");
+      source.put("provider", "5bd8b3c0-8b4b-4fbe-a7b5-2e8d5d3d2b16");
+      source.put("accessPolicy", i % 2 == 0 ? "OPEN" : "SECURE");
+      source.put("itemCreatedAt", "2024-03-01T10:15:30+0530");
+      source.put("itemStatus", "ACTIVE");
+      ObjectNode location = source.putObject("location");
+      location.put("type", "Place");
+      location.put("address", "Ring Road, Sector " + i);
+      location.putObject("geometry").put("type", "Point").putArray("coordinates")
+          .add(77.5946 + i / 1000.0).add(12.9716);
+      page.add(Hit.of(h -> h.index(INDEX).id(id).source(source)));
+    }
+    return SearchResponse.of(
+        r ->
+            r.took(1)
+                .timedOut(false)
+                .shards(s -> s.total(1).successful(1).failed(0))
+                .hits(h -> h.total(t -> t.value(size).relation(TotalHitsRelation.Eq)).hits(page)));
+  }
+}
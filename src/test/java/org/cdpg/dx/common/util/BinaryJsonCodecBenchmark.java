@@ -0,0 +1,68 @@
+package org.cdpg.dx.common.util;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding and decoding of a search result as it crosses the event bus, as JSON text the way the
+ * default codec sends it and with {@link BinaryJsonCodec}. The size of both encodings is printed
+ * at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryJsonCodecBenchmark {
+  @Param({"10", "1000"})
+  int hits;
+
+  private JsonObject result;
+  private Buffer json;
+  private Buffer binary;
+
+  @Setup
+  public void setUp() {
+    result = ServiceBindingBenchmark.searchResult(hits).toJson();
+    json = result.toBuffer();
+    binary = BinaryJsonCodec.encode(result);
+    if (!result.equals(BinaryJsonCodec.decode(binary))) {
+      throw new IllegalStateException("Binary round trip differs from the result");
+    }
+    System.out.printf(
+        "%n%d hits: JSON %d bytes, binary %d bytes%n", hits, json.length(), binary.length());
+  }
+
+  @Benchmark
+  public Buffer encodeJson() {
+    return result.toBuffer();
+  }
+
+  @Benchmark
+  public JsonObject decodeJson() {
+    return new JsonObject(json);
+  }
+
+  @Benchmark
+  public Buffer encodeBinary() {
+    return BinaryJsonCodec.encode(result);
+  }
+
+  @Benchmark
+  public Object decodeBinary() {
+    return BinaryJsonCodec.decode(binary);
+  }
+}
@@ -0,0 +1,144 @@
+package org.cdpg.dx.common.util;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceBinder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.cdpg.dx.database.elastic.model.ElasticsearchResponse;
+import org.cdpg.dx.database.elastic.model.QueryModel;
+import org.cdpg.dx.database.elastic.model.SearchResult;
+import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+import org.cdpg.dx.database.elastic.util.QueryType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round trip of a search call to a service deployed in the same Vert.x instance. {@code eventBus}
+ * goes through the generated service proxy, with the query and the result encoded to JSON and
+ * back; {@code direct} goes through the {@link LocalServiceBinding} reference. The service
+ * answers at once with a prepared page of hits, so what is measured is the dispatch alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBindingBenchmark {
+  private static final String ADDRESS = "benchmark.elastic.service";
+
+  @Param({"10", "100"})
+  int hits;
+
+  private Vertx vertx;
+  private ElasticsearchService eventBus;
+  private ElasticsearchService direct;
+  private QueryModel queryModel;
+
+  @Setup
+  public void setUp() throws Exception {
+    SearchResult result = searchResult(hits);
+    ElasticsearchService service = mock(ElasticsearchService.class, withSettings().stubOnly());
+    when(service.search(any(), any(), any()))
+        .thenAnswer(invocation -> Future.succeededFuture(result));
+
+    vertx = Vertx.vertx();
+    vertx
+        .deployVerticle(
+            new AbstractVerticle() {
+              @Override
+              public void start() {
+                new ServiceBinder(vertx)
+                    .setAddress(ADDRESS)
+                    .register(ElasticsearchService.class, service);
+                LocalServiceBinding.register(vertx, ADDRESS, service);
+              }
+            })
+        .toCompletionStage()
+        .toCompletableFuture()
+        .get();
+    eventBus = ElasticsearchService.createProxy(vertx, ADDRESS);
+    direct = LocalServiceBinding.lookup(vertx, ADDRESS, ElasticsearchService.class, eventBus);
+
+    QueryModel termQuery = new QueryModel(QueryType.TERM);
+    termQuery.setQueryParameters(Map.of("field", "type.keyword", "value", "iudx:Resource"));
+    queryModel = new QueryModel(termQuery, null);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    vertx.close().toCompletionStage().toCompletableFuture().get();
+  }
+
+  @Benchmark
+  public SearchResult eventBus() throws Exception {
+    return eventBus.search("items", queryModel, "SOURCE").toCompletionStage().toCompletableFuture()
+        .get();
+  }
+
+  @Benchmark
+  public SearchResult direct() throws Exception {
+    return direct.search("items", queryModel, "SOURCE").toCompletionStage().toCompletableFuture()
+        .get();
+  }
+
+  static SearchResult searchResult(int size) {
+    List<ElasticsearchResponse> page = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      page.add(new ElasticsearchResponse("item-" + i, item(i)));
+    }
+    return new SearchResult(page, size, new JsonObject(), 1);
+  }
+
+  /** A catalogue item of about 700 bytes. */
+  static JsonObject item(int i) {
+    return new JsonObject()
+        .put("id", "b58da193-23d9-43eb-b98a-a103d4b6" + String.format("%04d", i))
+        .put("type", new JsonArray().add("iudx:Resource").add("iudx:DataModel"))
+        .put("name", "sensor-" + i)
+        .put("label", "Air quality sensor " + i + " at a traffic junction")
+        .put(
+            "description",
+            "Readings of PM2.5, PM10, NO2, SO2, CO and ozone, published every fifteen minutes by"
+                + " the city's network of roadside air quality monitoring stations.")
+        .put("tags", new JsonArray().add("aqi").add("pollution").add("environment"))
+        .put("resourceGroup", "8b95ab80-2aaf-4636-a65e-7f2563d0d371")
+        .put("provider", "5bd8b3c0-8b4b-4fbe-a7b5-2e8d5d3d2b16")
+        .put("accessPolicy", i % 2 == 0 ? "OPEN" : "SECURE")
+        .put("itemCreatedAt", "2024-03-01T10:15:30+0530")
+        .put("itemStatus", "ACTIVE")
+        .put(
+            "location",
+            new JsonObject()
+                .put("type", "Place")
+                .put("address", "Ring Road, Sector " + i)
+                .put(
+                    "geometry",
+                    new JsonObject()
+                        .put("type", "Point")
+                        .put(
+                            "coordinates",
+                            new JsonArray().add(77.5946 + i / 1000.0).add(12.9716))));
+  }
+}
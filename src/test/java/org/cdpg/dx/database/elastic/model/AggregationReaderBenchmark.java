@@ -0,0 +1,136 @@
+package org.cdpg.dx.database.elastic.model;
+
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.JsonpMapperFeatures;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import jakarta.json.stream.JsonGenerator;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of reading the terms aggregations of a search response. The {@code reparsed} benchmarks
+ * are the way parseAggregations used to read them: the whole response, hits included, serialized
+ * to a string and parsed again to walk "aggregations" by key. The {@code read} benchmarks go
+ * through {@link AggregationReader}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AggregationReaderBenchmark {
+  private static final int HITS = 20;
+
+  @Param({"5", "20"})
+  int aggregations;
+
+  @Param({"100", "1000"})
+  int buckets;
+
+  private SearchResponse<ObjectNode> response;
+  private JsonpMapper mapper;
+  private AggregationReader aggregationReader;
+
+  @Setup
+  public void setUp() {
+    response = response(aggregations, buckets);
+    mapper = new JacksonJsonpMapper();
+    aggregationReader = new AggregationReader(mapper);
+  }
+
+  @Benchmark
+  public JsonObject reparsedBucketKeys() {
+    JsonObject rawAggs = reparse();
+    JsonObject aggResult = new JsonObject();
+    for (String aggKey : rawAggs.fieldNames()) {
+      JsonArray keys = new JsonArray();
+      JsonArray aggBuckets = rawAggs.getJsonObject(aggKey).getJsonArray("buckets");
+      for (int i = 0; i < aggBuckets.size(); i++) {
+        keys.add(aggBuckets.getJsonObject(i).getString("key"));
+      }
+      aggResult.put(aggKey, keys);
+    }
+    return aggResult;
+  }
+
+  @Benchmark
+  public JsonObject readBucketKeys() {
+    return aggregationReader.bucketKeys(response.aggregations());
+  }
+
+  @Benchmark
+  public JsonObject reparsedJson() {
+    return new JsonObject().mergeIn(reparse());
+  }
+
+  @Benchmark
+  public JsonObject readJson() {
+    return aggregationReader.toJson(response.aggregations());
+  }
+
+  private JsonObject reparse() {
+    JsonpMapper untyped = mapper.withAttribute(JsonpMapperFeatures.SERIALIZE_TYPED_KEYS, false);
+    StringWriter writer = new StringWriter();
+    try (JsonGenerator generator = untyped.jsonProvider().createGenerator(writer)) {
+      untyped.serialize(response, generator);
+    }
+    return new JsonObject(writer.toString()).getJsonObject("aggregations");
+  }
+
+  /** A page of hits with terms aggregations over string fields. */
+  private static SearchResponse<ObjectNode> response(int aggregations, int buckets) {
+    List<Hit<ObjectNode>> page = new ArrayList<>(HITS);
+    for (int i = 0; i < HITS; i++) {
+      String id = "item-" + i;
+      ObjectNode source =
+          JsonNodeFactory.instance
+              .objectNode()
+              .put("id", id)
+              .put("name", "sensor-" + i)
+              .put("description", "Roadside air quality readings published every fifteen minutes");
+      page.add(Hit.of(h -> h.index("items").id(id).source(source)));
+    }
+    return SearchResponse.of(
+        r -> {
+          r.took(1)
+              .timedOut(false)
+              .shards(s -> s.total(1).successful(1).failed(0))
+              .hits(h -> h.total(t -> t.value(HITS).relation(TotalHitsRelation.Eq)).hits(page));
+          for (int a = 0; a < aggregations; a++) {
+            String field = "field" + a;
+            List<StringTermsBucket> terms = new ArrayList<>(buckets);
+            for (int b = 0; b < buckets; b++) {
+              String key = field + "-value-" + b;
+              long docCount = buckets - b;
+              terms.add(StringTermsBucket.of(sb -> sb.key(key).docCount(docCount)));
+            }
+            r.aggregations(
+                field, Aggregate.of(ag -> ag.sterms(st -> st.buckets(bu -> bu.array(terms)))));
+          }
+          return r;
+        });
+  }
+}
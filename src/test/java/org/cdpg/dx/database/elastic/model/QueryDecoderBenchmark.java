@@ -0,0 +1,87 @@
+package org.cdpg.dx.database.elastic.model;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import io.vertx.core.json.JsonObject;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of building the query of a search request: decoding the request into a {@link QueryModel},
+ * converting the model to an Elasticsearch {@link Query}, and both, for a model used where it was
+ * built and for one read back from its event bus JSON.
+ *
+ * <p>The benchmark only uses the decoder and model API that predates the query node tree, so the
+ * numbers before it are had by running the same class on the parent of the commit that added
+ * {@link QueryNode}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryDecoderBenchmark {
+  @Param({"searchCriteria_textSearch", "searchCriteria", "textSearch"})
+  String searchType;
+
+  private QueryDecoder queryDecoder;
+  private QueryDecoderRequestDTO request;
+  private QueryModel queryModel;
+  private JsonObject wire;
+
+  @Setup
+  public void setUp() {
+    queryDecoder = new QueryDecoder();
+    TextSearchRequestDTO text = new TextSearchRequestDTO("water quality", false, false);
+    List<SearchCriteriaDTO> criteria =
+        List.of(
+            new SearchCriteriaDTO("type", "term", List.of("adex:DataBank")),
+            new SearchCriteriaDTO("tags", "term", List.of("water", "rain")));
+    request =
+        new QueryDecoderRequestDTO(
+            searchType,
+            null,
+            null,
+            null,
+            null,
+            text,
+            new SearchCriteriaRequestDTO(criteria, null),
+            new AccessPolicyRequestDTO("user-1", false),
+            null,
+            null,
+            null);
+    queryModel = queryDecoder.getQueryModel(request);
+    wire = queryModel.toJson();
+  }
+
+  @Benchmark
+  public QueryModel decode() {
+    return queryDecoder.getQueryModel(request);
+  }
+
+  @Benchmark
+  public Query convert() {
+    return queryModel.getQueries().toElasticsearchQuery();
+  }
+
+  @Benchmark
+  public Query decodeAndConvert() {
+    return queryDecoder.getQueryModel(request).getQueries().toElasticsearchQuery();
+  }
+
+  @Benchmark
+  public Query fromJsonAndConvert() {
+    return new QueryModel(wire).getQueries().toElasticsearchQuery();
+  }
+}
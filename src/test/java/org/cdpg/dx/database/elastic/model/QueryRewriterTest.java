@@ -0,0 +1,145 @@
+package org.cdpg.dx.database.elastic.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+import org.cdpg.dx.database.elastic.model.QueryNode.Bool;
+import org.cdpg.dx.database.elastic.model.QueryNode.Match;
+import org.cdpg.dx.database.elastic.model.QueryNode.Term;
+import org.cdpg.dx.database.elastic.model.QueryNode.Terms;
+import org.junit.jupiter.api.Test;
+
+class QueryRewriterTest {
+  private static final Match TEXT = new Match("description", "water quality", null, null);
+  private static final Match OTHER_TEXT = new Match("label", "rainfall", null, null);
+  private static final Term TAG = new Term("tags.keyword", "water");
+  private static final Term OTHER_TAG = new Term("tags.keyword", "rain");
+  private static final Term TYPE = new Term("type.keyword", "adex:DataBank");
+
+  @Test
+  void clausesThatDoNotScoreMoveFromMustToFilter() {
+    assertRewritten(
+        new Bool(List.of(TEXT, TAG), null, null, null, null),
+        new Bool(List.of(TEXT), null, null, List.of(TAG), null));
+    // Nothing scores under filter, so a nested must moves whole
+    Bool required = new Bool(List.of(TEXT), null, List.of(TYPE), null, null);
+    assertRewritten(
+        new Bool(null, null, null, List.of(required), null),
+        new Bool(null, null, List.of(TYPE), List.of(TEXT), null));
+  }
+
+  @Test
+  void matchOnKeywordOrExactValueFieldBecomesTerm() {
+    assertRewritten(new Match("tags.keyword", "water", null, null), TAG);
+    assertRewritten(
+        new Match("accessPolicy", "OPEN", null, null), new Term("accessPolicy.keyword", "OPEN"));
+    assertRewritten(new Match("type", "adex:DataBank", null, null), TYPE);
+    // Fuzzy matches and text fields are left to the analyzer
+    Match fuzzy = new Match("accessPolicy", "OPN", "AUTO", null);
+    assertRewritten(fuzzy, fuzzy);
+    assertRewritten(TEXT, TEXT);
+  }
+
+  @Test
+  void nestedBoolsThatOnlyAddALevelAreMerged() {
+    // A bool with a single clause
+    assertRewritten(Bool.must(Bool.must(TEXT)), TEXT);
+    // Required clauses inside required clauses
+    assertRewritten(
+        new Bool(List.of(TEXT, Bool.must(OTHER_TEXT, TAG)), null, null, null, null),
+        new Bool(List.of(TEXT, OTHER_TEXT), null, null, List.of(TAG), null));
+    // Alternatives inside alternatives
+    assertRewritten(
+        Bool.should(TEXT, Bool.should(OTHER_TEXT, new Match("name", "sensor", null, null))),
+        Bool.should(TEXT, OTHER_TEXT, new Match("name", "sensor", null, null)));
+  }
+
+  @Test
+  void repeatedClausesAreDropped() {
+    assertRewritten(
+        new Bool(null, null, List.of(TYPE, TYPE), List.of(TAG, OTHER_TAG, TAG), null),
+        new Bool(null, null, List.of(TYPE), List.of(TAG, OTHER_TAG), null));
+    // Repeats count towards a minimum_should_match above one
+    Bool counted = new Bool(null, List.of(TEXT, TEXT, OTHER_TEXT), null, null, "2");
+    assertRewritten(counted, counted);
+  }
+
+  @Test
+  void alternativeTermsOnTheSameFieldAreFolded() {
+    assertRewritten(
+        Bool.should(TAG, TYPE, OTHER_TAG),
+        Bool.should(new Terms("tags.keyword", List.of("water", "rain")), TYPE));
+    assertRewritten(
+        new Bool(
+            List.of(TEXT),
+            null,
+            List.of(TAG, new Terms("tags.keyword", List.of("rain", "water"))),
+            null,
+            null),
+        new Bool(
+            List.of(TEXT),
+            null,
+            List.of(new Terms("tags.keyword", List.of("water", "rain"))),
+            null,
+            null));
+    // Under a minimum_should_match above one each term is counted on its own
+    Bool counted = new Bool(null, List.of(TAG, OTHER_TAG, TYPE), null, null, "2");
+    assertRewritten(counted, counted);
+  }
+
+  @Test
+  void searchesAreDecodedInRewrittenForm() {
+    QueryDecoder decoder = new QueryDecoder();
+    List<SearchCriteriaDTO> criteria =
+        List.of(
+            new SearchCriteriaDTO("type", "term", List.of("adex:DataBank")),
+            new SearchCriteriaDTO("tags", "term", List.of("water", "rain")),
+            new SearchCriteriaDTO("provider", "term", List.of("p1", "p2")));
+    for (AccessPolicyRequestDTO accessPolicy :
+        List.of(
+            new AccessPolicyRequestDTO(null, false),
+            new AccessPolicyRequestDTO("user-1", false),
+            new AccessPolicyRequestDTO("user-1", true))) {
+      for (boolean fuzzy : List.of(false, true)) {
+        QueryDecoderRequestDTO request =
+            new QueryDecoderRequestDTO(
+                "searchCriteria_textSearch",
+                null,
+                null,
+                null,
+                null,
+                new TextSearchRequestDTO("water quality", fuzzy, false),
+                new SearchCriteriaRequestDTO(criteria, null),
+                accessPolicy,
+                null,
+                null,
+                null);
+        QueryNode query = QueryNode.of(decoder.getQueryModel(request).getQueries());
+        assertSame(query, QueryRewriter.rewrite(query));
+      }
+    }
+    QueryNode lookup = QueryNode.of(decoder.buildGetItemWithNameExistsQuery("adex:AiModel", "m"));
+    assertSame(lookup, QueryRewriter.rewrite(lookup));
+  }
+
+  @Test
+  void rewrittenQueriesAreLeftAsTheyAre() {
+    List<QueryNode> queries =
+        List.of(
+            new Bool(List.of(TEXT, TAG), null, null, null, null),
+            new Bool(List.of(TEXT, Bool.must(OTHER_TEXT, TAG)), null, null, null, null),
+            Bool.should(TEXT, Bool.should(OTHER_TEXT, new Match("name", "sensor", null, null))),
+            new Bool(null, null, List.of(TYPE, TYPE), List.of(TAG, OTHER_TAG, TAG), null),
+            Bool.should(TAG, TYPE, OTHER_TAG),
+            new Bool(null, List.of(TAG, OTHER_TAG, TYPE), null, null, "2"));
+    for (QueryNode query : queries) {
+      QueryNode rewritten = QueryRewriter.rewrite(query);
+      assertSame(rewritten, QueryRewriter.rewrite(rewritten));
+    }
+  }
+
+  private static void assertRewritten(QueryNode query, QueryNode expected) {
+    assertEquals(expected, QueryRewriter.rewrite(query));
+  }
+}
@@ -0,0 +1,220 @@
+package org.cdpg.dx.database.elastic.service;
+
+import static org.cdpg.dx.database.elastic.util.Constants.AGGREGATION_LIST;
+import static org.cdpg.dx.database.elastic.util.Constants.SOURCE_ONLY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.ErrorResponse;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import co.elastic.clients.elasticsearch.core.CountRequest;
+import co.elastic.clients.elasticsearch.core.CountResponse;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import org.cdpg.dx.common.exception.DxBadRequestException;
+import org.cdpg.dx.database.elastic.ElasticClient;
+import org.cdpg.dx.database.elastic.model.QueryModel;
+import org.cdpg.dx.database.elastic.model.SearchResult;
+import org.cdpg.dx.database.elastic.util.QueryType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+class ElasticsearchServiceImplTest {
+  /** Calls of each kind in flight at once: searches, counts and lists. */
+  private static final int CALLS = 1000;
+  private static final String INDEX = "docs";
+
+  private final Map<String, CompletableFuture<SearchResponse<ObjectNode>>> pending =
+      new ConcurrentHashMap<>();
+  private final Map<String, CompletableFuture<CountResponse>> pendingCounts =
+      new ConcurrentHashMap<>();
+  private ElasticsearchService elasticsearchService;
+
+  @BeforeEach
+  void setUp() {
+    ElasticsearchAsyncClient asyncClient = mock(ElasticsearchAsyncClient.class);
+    when(asyncClient._jsonpMapper()).thenReturn(new JacksonJsonpMapper());
+    when(asyncClient.search(any(SearchRequest.class), eq(ObjectNode.class)))
+        .thenAnswer(
+            invocation -> {
+              CompletableFuture<SearchResponse<ObjectNode>> response = new CompletableFuture<>();
+              pending.put(searchedValue(invocation.getArgument(0)), response);
+              return response;
+            });
+    when(asyncClient.count(any(CountRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              CompletableFuture<CountResponse> response = new CompletableFuture<>();
+              CountRequest request = invocation.getArgument(0);
+              pendingCounts.put(termValue(request.query().toString()), response);
+              return response;
+            });
+    ElasticClient client = mock(ElasticClient.class);
+    when(client.getClient()).thenReturn(asyncClient);
+    elasticsearchService = new ElasticsearchServiceImpl(client);
+  }
+
+  @Test
+  void overlappingCallsEachGetTheirOwnResult(Vertx vertx, VertxTestContext testContext) {
+    List<Future<SearchResult>> searches = new ArrayList<>();
+    List<Future<Integer>> counts = new ArrayList<>();
+    List<Future<SearchResult>> lists = new ArrayList<>();
+    for (int i = 0; i < CALLS; i++) {
+      searches.add(elasticsearchService.search(INDEX, search("s" + i), SOURCE_ONLY));
+      counts.add(elasticsearchService.count(INDEX, search("c" + i)));
+      lists.add(elasticsearchService.search(INDEX, search("l" + i), AGGREGATION_LIST));
+    }
+    assertEquals(2 * CALLS, pending.size());
+    assertEquals(CALLS, pendingCounts.size());
+
+    // Answer every call while all of them are in flight, out of order and from other threads
+    List<String> values = new ArrayList<>(pending.keySet());
+    values.addAll(pendingCounts.keySet());
+    Collections.shuffle(values);
+    for (String value : values) {
+      vertx.executeBlocking(
+          () ->
+              value.startsWith("c")
+                  ? pendingCounts.get(value).complete(countResponse(value))
+                  : pending.get(value).complete(response(value)),
+          false);
+    }
+
+    List<Future<?>> all = new ArrayList<>(searches);
+    all.addAll(counts);
+    all.addAll(lists);
+    Future.all(all)
+        .onComplete(
+            testContext.succeeding(
+                done ->
+                    testContext.verify(
+                        () -> {
+                          for (int i = 0; i < CALLS; i++) {
+                            SearchResult result = searches.get(i).result();
+                            String value = "s" + i;
+                            assertEquals(i + 1, result.getTotalHits());
+                            assertEquals(1, result.getHits().size());
+                            assertEquals("doc-" + value, result.getHits().get(0).getDocId());
+                            assertEquals(
+                                value, result.getHits().get(0).getSource().getString("name"));
+                            JsonObject buckets =
+                                result.getAggregations().getJsonObject("names");
+                            assertEquals(
+                                "bucket-" + value,
+                                buckets.getJsonArray("buckets").getJsonObject(0).getString("key"));
+
+                            assertEquals(i + 1, counts.get(i).result());
+
+                            SearchResult list = lists.get(i).result();
+                            assertEquals(0, list.getHits().size());
+                            assertEquals(
+                                "bucket-l" + i,
+                                list.getAggregations().getJsonArray("names").getString(0));
+                          }
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  void searchOnAnExpiredPointInTimeFailsAsABadCursor(VertxTestContext testContext) {
+    QueryModel queryModel = search("q0");
+    queryModel.setPitId("expired-pit");
+    queryModel.setPitKeepAlive("1m");
+    Future<SearchResult> search = elasticsearchService.search(INDEX, queryModel, SOURCE_ONLY);
+    pending
+        .get("q0")
+        .completeExceptionally(
+            new ElasticsearchException(
+                "search",
+                ErrorResponse.of(
+                    e ->
+                        e.status(404)
+                            .error(
+                                c ->
+                                    c.type("search_context_missing_exception")
+                                        .reason("No search context found")))));
+
+    search.onComplete(
+        testContext.failing(
+            err ->
+                testContext.verify(
+                    () -> {
+                      assertInstanceOf(DxBadRequestException.class, err);
+                      testContext.completeNow();
+                    })));
+  }
+
+  private static QueryModel search(String value) {
+    QueryModel termQuery = new QueryModel(QueryType.TERM);
+    termQuery.setQueryParameters(Map.of("field", "name.keyword", "value", value));
+    return new QueryModel(termQuery, null);
+  }
+
+  /** The term searched for, which tells the searches apart. */
+  private static String searchedValue(SearchRequest request) {
+    return termValue(request.query().toString());
+  }
+
+  private static String termValue(String query) {
+    int end = query.lastIndexOf('"');
+    return query.substring(query.lastIndexOf('"', end - 1) + 1, end);
+  }
+
+  private static CountResponse countResponse(String value) {
+    long count = Integer.parseInt(value.substring(1)) + 1;
+    return CountResponse.of(
+        c -> c.count(count).shards(s -> s.total(1).successful(1).failed(0)));
+  }
+
+  private static SearchResponse<ObjectNode> response(String value) {
+    int total = Integer.parseInt(value.substring(1)) + 1;
+    ObjectNode source = JsonNodeFactory.instance.objectNode().put("name", value);
+    return SearchResponse.of(
+        r ->
+            r.took(1)
+                .timedOut(false)
+                .shards(s -> s.total(1).successful(1).failed(0))
+                .hits(
+                    h ->
+                        h.total(t -> t.value(total).relation(TotalHitsRelation.Eq))
+                            .hits(hit -> hit.index(INDEX).id("doc-" + value).source(source)))
+                .aggregations(
+                    "names",
+                    Aggregate.of(
+                        a ->
+                            a.sterms(
+                                st ->
+                                    st.buckets(
+                                        b ->
+                                            b.array(
+                                                List.of(
+                                                    StringTermsBucket.of(
+                                                        sb ->
+                                                            sb.key("bucket-" + value)
+                                                                .docCount(total)))))))));
+  }
+}
@@ -0,0 +1,156 @@
+package org.cdpg.dx.database.elastic.service;
+
+import static org.cdpg.dx.database.elastic.util.Constants.SOURCE_ONLY;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.cdpg.dx.database.elastic.ElasticClient;
+import org.cdpg.dx.database.elastic.model.AccessPolicyRequestDTO;
+import org.cdpg.dx.database.elastic.model.QueryDecoder;
+import org.cdpg.dx.database.elastic.model.QueryDecoderRequestDTO;
+import org.cdpg.dx.database.elastic.model.QueryModel;
+import org.cdpg.dx.database.elastic.model.SearchResult;
+import org.cdpg.dx.database.elastic.model.TextSearchRequestDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of a hybrid search against the text search it extends, for a page of results, from the
+ * decoded query model to the search result. Each request to the cluster is answered after {@code
+ * latencyMillis}; at 0 the numbers are the service's own cost, building two requests and fusing
+ * their rankings, and above it they show the kNN half running alongside the text half rather
+ * than after it. Half of the kNN hits are also text hits, so the fused ranking has to merge them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HybridSearchBenchmark {
+  private static final String INDEX = "items";
+  private static final int DIMENSIONS = 100;
+
+  @Param({"10", "100"})
+  int page;
+
+  @Param({"0", "5"})
+  int latencyMillis;
+
+  private ElasticsearchService elasticsearchService;
+  private QueryModel text;
+  private QueryModel hybrid;
+
+  @Setup
+  public void setUp() {
+    SearchResponse<ObjectNode> textResponse = response(0);
+    SearchResponse<ObjectNode> knnResponse = response(page / 2);
+    Executor cluster = CompletableFuture.delayedExecutor(latencyMillis, TimeUnit.MILLISECONDS);
+    ElasticsearchAsyncClient asyncClient =
+        mock(ElasticsearchAsyncClient.class, withSettings().stubOnly());
+    when(asyncClient._jsonpMapper()).thenReturn(new JacksonJsonpMapper());
+    when(asyncClient.search(any(SearchRequest.class), eq(ObjectNode.class)))
+        .thenAnswer(
+            invocation -> {
+              SearchRequest request = invocation.getArgument(0);
+              SearchResponse<ObjectNode> response =
+                  request.knn().isEmpty() ? textResponse : knnResponse;
+              return latencyMillis == 0
+                  ? CompletableFuture.completedFuture(response)
+                  : CompletableFuture.supplyAsync(() -> response, cluster);
+            });
+    ElasticClient client = mock(ElasticClient.class);
+    when(client.getClient()).thenReturn(asyncClient);
+    elasticsearchService = new ElasticsearchServiceImpl(client);
+
+    QueryDecoder queryDecoder = new QueryDecoder();
+    text = queryDecoder.getQueryModel(request("textSearch", null));
+    List<Double> queryVector = new ArrayList<>(DIMENSIONS);
+    for (int i = 0; i < DIMENSIONS; i++) {
+      queryVector.add(Math.sin(i));
+    }
+    hybrid = queryDecoder.getQueryModel(request("textSearch_vectorSearch", queryVector));
+  }
+
+  @Benchmark
+  public SearchResult text() {
+    return search(text);
+  }
+
+  @Benchmark
+  public SearchResult hybrid() {
+    return search(hybrid);
+  }
+
+  private SearchResult search(QueryModel queryModel) {
+    return elasticsearchService
+        .search(INDEX, queryModel, SOURCE_ONLY)
+        .toCompletionStage()
+        .toCompletableFuture()
+        .join();
+  }
+
+  private QueryDecoderRequestDTO request(String searchType, List<Double> queryVector) {
+    QueryDecoderRequestDTO request =
+        new QueryDecoderRequestDTO(
+            searchType,
+            page,
+            1,
+            null,
+            null,
+            new TextSearchRequestDTO("air quality", false, false),
+            null,
+            new AccessPolicyRequestDTO("user-1", false),
+            null,
+            null,
+            null);
+    request.setQueryVector(queryVector);
+    return request;
+  }
+
+  /** A page of small items, numbered from {@code first}. */
+  private SearchResponse<ObjectNode> response(int first) {
+    JsonNodeFactory nodes = JsonNodeFactory.instance;
+    List<Hit<ObjectNode>> hits = new ArrayList<>(page);
+    for (int i = first; i < first + page; i++) {
+      String id = "item-" + i;
+      ObjectNode source = nodes.objectNode();
+      source.put("id", id);
+      source.put("name", "sensor-" + i);
+      source.put("label", "Air quality sensor " + i);
+      hits.add(Hit.of(h -> h.index(INDEX).id(id).source(source)));
+    }
+    return SearchResponse.of(
+        r ->
+            r.took(1)
+                .timedOut(false)
+                .shards(s -> s.total(1).successful(1).failed(0))
+                .hits(
+                    h -> h.total(t -> t.value(page).relation(TotalHitsRelation.Eq)).hits(hits)));
+  }
+}
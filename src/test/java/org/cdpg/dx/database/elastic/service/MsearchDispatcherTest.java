@@ -0,0 +1,159 @@
+package org.cdpg.dx.database.elastic.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.core.MsearchRequest;
+import co.elastic.clients.elasticsearch.core.MsearchResponse;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchItem;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import co.elastic.clients.elasticsearch.core.search.TotalHitsRelation;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MsearchDispatcherTest {
+  private static final String INDEX = "items";
+  private static final int BATCH_SIZE = 3;
+
+  private final List<MsearchRequest> sent = new ArrayList<>();
+  private final List<CompletableFuture<MsearchResponse<ObjectNode>>> calls = new ArrayList<>();
+  private ElasticsearchAsyncClient asyncClient;
+  private MsearchDispatcher msearchDispatcher;
+
+  @BeforeEach
+  void setUp() {
+    asyncClient = mock(ElasticsearchAsyncClient.class);
+    when(asyncClient.msearch(any(MsearchRequest.class), eq(ObjectNode.class)))
+        .thenAnswer(
+            invocation -> {
+              CompletableFuture<MsearchResponse<ObjectNode>> call = new CompletableFuture<>();
+              synchronized (calls) {
+                sent.add(invocation.getArgument(0));
+                calls.add(call);
+              }
+              return call;
+            });
+    // A window long enough that only a full batch is sent during a test
+    msearchDispatcher =
+        new MsearchDispatcher(asyncClient, 60_000_000, BATCH_SIZE, new SimpleMeterRegistry());
+  }
+
+  @AfterEach
+  void tearDown() {
+    msearchDispatcher.close();
+  }
+
+  @Test
+  void aFailedSearchFailsOnlyItsOwnCaller() {
+    List<CompletableFuture<ResponseBody<ObjectNode>>> searches = searchBatch();
+    assertEquals(1, calls.size());
+    assertEquals(List.of(1, 2, 3), sent.get(0).searches().stream()
+        .map(search -> search.body().size())
+        .toList());
+
+    calls.get(0).complete(response(
+        MultiSearchResponseItem.of(r -> r.result(i -> result(i, 1))),
+        MultiSearchResponseItem.of(r -> r.failure(
+            e -> e.status(400).error(c -> c.type("search_phase_execution_exception")
+                .reason("No mapping found for [name] in order to sort on")))),
+        MultiSearchResponseItem.of(r -> r.result(i -> result(i, 3)))));
+
+    assertEquals(1, searches.get(0).join().hits().total().value());
+    ElasticsearchException failure =
+        assertInstanceOf(ElasticsearchException.class, cause(searches.get(1)));
+    assertEquals("search_phase_execution_exception", failure.error().type());
+    assertEquals(3, searches.get(2).join().hits().total().value());
+  }
+
+  @Test
+  void aFailedMsearchFailsEverySearchInTheBatch() {
+    List<CompletableFuture<ResponseBody<ObjectNode>>> searches = searchBatch();
+    RuntimeException failure = new RuntimeException("Connection refused");
+    calls.get(0).completeExceptionally(failure);
+
+    for (CompletableFuture<ResponseBody<ObjectNode>> search : searches) {
+      assertSame(failure, cause(search));
+    }
+  }
+
+  @Test
+  void aSearchWithoutAResponseIsFailed() {
+    List<CompletableFuture<ResponseBody<ObjectNode>>> searches = searchBatch();
+    calls.get(0).complete(response(
+        MultiSearchResponseItem.of(r -> r.result(i -> result(i, 1))),
+        MultiSearchResponseItem.of(r -> r.result(i -> result(i, 2)))));
+
+    assertEquals(1, searches.get(0).join().hits().total().value());
+    assertEquals(2, searches.get(1).join().hits().total().value());
+    assertInstanceOf(IllegalStateException.class, cause(searches.get(2)));
+  }
+
+  @Test
+  void aPartialBatchIsSentWhenTheWindowCloses() throws Exception {
+    MsearchDispatcher windowed =
+        new MsearchDispatcher(asyncClient, 1_000, BATCH_SIZE, new SimpleMeterRegistry());
+    try {
+      CompletableFuture<ResponseBody<ObjectNode>> search = windowed.search(request(1));
+      verify(asyncClient, timeout(5_000)).msearch(any(MsearchRequest.class), eq(ObjectNode.class));
+      assertEquals(1, sent.get(0).searches().size());
+
+      calls.get(0).complete(
+          response(MultiSearchResponseItem.of(r -> r.result(i -> result(i, 1)))));
+      assertEquals(1, search.get(1, TimeUnit.SECONDS).hits().total().value());
+    } finally {
+      windowed.close();
+    }
+  }
+
+  /** Fills one batch with searches of size 1, 2 and 3. */
+  private List<CompletableFuture<ResponseBody<ObjectNode>>> searchBatch() {
+    List<CompletableFuture<ResponseBody<ObjectNode>>> searches = new ArrayList<>();
+    for (int size = 1; size <= BATCH_SIZE; size++) {
+      searches.add(msearchDispatcher.search(request(size)));
+    }
+    return searches;
+  }
+
+  private static SearchRequest request(int size) {
+    return SearchRequest.of(s -> s.index(INDEX).size(size).query(q -> q.matchAll(m -> m)));
+  }
+
+  @SafeVarargs
+  private static MsearchResponse<ObjectNode> response(
+      MultiSearchResponseItem<ObjectNode>... items) {
+    return MsearchResponse.of(r -> r.took(1).responses(List.of(items)));
+  }
+
+  private static MultiSearchItem.Builder<ObjectNode> result(
+      MultiSearchItem.Builder<ObjectNode> item, long total) {
+    return item.status(200)
+        .took(1)
+        .timedOut(false)
+        .shards(s -> s.total(1).successful(1).failed(0))
+        .hits(h -> h.total(t -> t.value(total).relation(TotalHitsRelation.Eq)).hits(List.of()));
+  }
+
+  private static Throwable cause(CompletableFuture<?> search) {
+    return assertThrows(CompletionException.class, search::join).getCause();
+  }
+}
@@ -0,0 +1,66 @@
+package org.cdpg.dx.database.elastic.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class RankFusionTest {
+
+  @Test
+  void hitsInBothListsOutrankHitsInOne() {
+    List<Hit<String>> fused =
+        RankFusion.fuse(List.of(hits("a", "b", "c"), hits("c", "d")), RankFusion.RANK_CONSTANT);
+
+    assertEquals(List.of("c", "a", "b", "d"), ids(fused));
+  }
+
+  @Test
+  void tiesKeepTheirFirstPosition() {
+    List<Hit<String>> fused =
+        RankFusion.fuse(List.of(hits("a", "b"), hits("c", "d")), RankFusion.RANK_CONSTANT);
+    assertEquals(List.of("a", "c", "b", "d"), ids(fused));
+
+    // Swapping the lists swaps the tied hits, and nothing else decides between them
+    List<Hit<String>> swapped =
+        RankFusion.fuse(List.of(hits("c", "d"), hits("a", "b")), RankFusion.RANK_CONSTANT);
+    assertEquals(List.of("c", "a", "d", "b"), ids(swapped));
+  }
+
+  @Test
+  void aSmallerRankConstantFavoursTopRanksOverAgreement() {
+    // b is third in both lists, a and c are first in one only
+    List<List<Hit<String>>> rankings = List.of(hits("a", "d", "b"), hits("c", "e", "b"));
+
+    assertEquals(
+        List.of("b", "a", "c", "d", "e"),
+        ids(RankFusion.fuse(rankings, RankFusion.RANK_CONSTANT)));
+    assertEquals(List.of("a", "c", "b", "d", "e"), ids(RankFusion.fuse(rankings, 0)));
+  }
+
+  @Test
+  void eachHitIsReturnedOnceAsFirstSeen() {
+    List<Hit<String>> text = hits("a", "b");
+    List<Hit<String>> fused =
+        RankFusion.fuse(List.of(text, hits("b", "a")), RankFusion.RANK_CONSTANT);
+
+    assertEquals(2, fused.size());
+    assertSame(text.get(0), fused.get(0));
+    assertSame(text.get(1), fused.get(1));
+  }
+
+  private static List<Hit<String>> hits(String... ids) {
+    List<Hit<String>> hits = new ArrayList<>(ids.length);
+    for (String id : ids) {
+      hits.add(Hit.of(h -> h.index("items").id(id).source(id)));
+    }
+    return hits;
+  }
+
+  private static List<String> ids(List<Hit<String>> hits) {
+    return hits.stream().map(Hit::id).toList();
+  }
+}
@@ -0,0 +1,111 @@
+package org.cdpg.dx.database.elastic.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import java.util.ArrayList;
+import java.util.List;
+import org.cdpg.dx.database.elastic.model.QueryModel;
+import org.cdpg.dx.database.elastic.model.QueryNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SearchCoalescerTest {
+  private static final String INDEX = "items";
+  private static final QueryModel QUERY =
+      new QueryNode.Term("type.keyword", "adex:DataBank").toModel();
+
+  private final List<Promise<List<String>>> requests = new ArrayList<>();
+  private SearchCoalescer searchCoalescer;
+
+  @BeforeEach
+  void setUp() {
+    searchCoalescer = new SearchCoalescer(new SimpleMeterRegistry());
+  }
+
+  @Test
+  void aFailedLeaderFailsEveryFollower() {
+    Future<List<String>> leader = join();
+    Future<List<String>> follower = join();
+    Future<List<String>> another = join();
+    assertEquals(1, requests.size());
+
+    RuntimeException failure = new RuntimeException("search failed");
+    requests.get(0).fail(failure);
+    for (Future<List<String>> caller : List.of(leader, follower, another)) {
+      assertTrue(caller.failed());
+      assertSame(failure, caller.cause());
+    }
+
+    // The failure is not remembered: the next caller sends a fresh request
+    Future<List<String>> retry = join();
+    assertEquals(2, requests.size());
+    requests.get(1).complete(List.of("item-1"));
+    assertEquals(List.of("item-1"), retry.result());
+  }
+
+  @Test
+  void aLoaderThatThrowsFailsOnlyItsCaller() {
+    RuntimeException failure = new IllegalStateException("no client");
+    Future<List<String>> leader =
+        searchCoalescer.join(
+            "search",
+            INDEX,
+            QUERY,
+            "SOURCE_ONLY",
+            () -> {
+              throw failure;
+            },
+            ArrayList::new);
+    assertSame(failure, leader.cause());
+
+    Future<List<String>> next = join();
+    assertEquals(1, requests.size());
+    requests.get(0).complete(List.of("item-1"));
+    assertEquals(List.of("item-1"), next.result());
+  }
+
+  @Test
+  void followersGetTheirOwnCopyOfTheResult() {
+    Future<List<String>> leader = join();
+    Future<List<String>> follower = join();
+    List<String> result = List.of("item-1", "item-2");
+    requests.get(0).complete(result);
+
+    assertSame(result, leader.result());
+    assertEquals(result, follower.result());
+    assertNotSame(result, follower.result());
+  }
+
+  @Test
+  void callersAfterAWriteDoNotJoinAnEarlierRead() {
+    Future<List<String>> beforeWrite = join();
+    searchCoalescer.invalidate(INDEX);
+    Future<List<String>> afterWrite = join();
+    assertEquals(2, requests.size());
+
+    requests.get(1).complete(List.of("item-1", "item-2"));
+    requests.get(0).complete(List.of("item-1"));
+    assertEquals(List.of("item-1"), beforeWrite.result());
+    assertEquals(List.of("item-1", "item-2"), afterWrite.result());
+  }
+
+  private Future<List<String>> join() {
+    return searchCoalescer.join(
+        "search",
+        INDEX,
+        QUERY,
+        "SOURCE_ONLY",
+        () -> {
+          Promise<List<String>> request = Promise.promise();
+          requests.add(request);
+          return request.future();
+        },
+        ArrayList::new);
+  }
+}
@@ -0,0 +1,60 @@
+package org.cdpg.dx.tgdex.list.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.cdpg.dx.common.exception.DxBadRequestException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class FilterValuesCursorTest {
+
+  @Test
+  void theStartCursorSurvivesARoundTrip() {
+    FilterValuesCursor start = FilterValuesCursor.start(List.of("tags", "domain", "provider"));
+    Map<String, String> after = FilterValuesCursor.decode(start.encode()).getAfter();
+
+    assertEquals(List.of("tags", "domain", "provider"), new ArrayList<>(after.keySet()));
+    after.values().forEach(Assertions::assertNull);
+  }
+
+  @Test
+  void lastValuesSurviveARoundTripInOrder() {
+    Map<String, String> after = new LinkedHashMap<>();
+    after.put("tags", "air quality/pm2.5 + humidity?");
+    after.put("domain", null);
+    after.put("provider", "Bengaluru Traffic Police ಬೆಂಗಳೂರು");
+
+    String cursor = new FilterValuesCursor(after).encode();
+    assertTrue(cursor.matches("[A-Za-z0-9_-]+"), cursor);
+    Map<String, String> decoded = FilterValuesCursor.decode(cursor).getAfter();
+    assertEquals(after, decoded);
+    assertEquals(new ArrayList<>(after.keySet()), new ArrayList<>(decoded.keySet()));
+  }
+
+  @Test
+  void aTamperedCursorIsABadRequest() {
+    for (String cursor :
+        List.of(
+            "not a cursor!",
+            encoded("not json"),
+            encoded("{}"),
+            encoded("[\"tags\"]"),
+            encoded("{\"tags\":{\"after\":\"x\"}}"))) {
+      assertThrows(
+          DxBadRequestException.class, () -> FilterValuesCursor.decode(cursor), cursor);
+    }
+  }
+
+  private static String encoded(String json) {
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(json.getBytes(StandardCharsets.UTF_8));
+  }
+}
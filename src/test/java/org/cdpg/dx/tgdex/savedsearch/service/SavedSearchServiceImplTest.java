@@ -0,0 +1,183 @@
+package org.cdpg.dx.tgdex.savedsearch.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.List;
+import java.util.Map;
+import org.cdpg.dx.common.exception.DxBadRequestException;
+import org.cdpg.dx.database.elastic.model.AccessPolicyRequestDTO;
+import org.cdpg.dx.database.elastic.model.QueryDecoderRequestDTO;
+import org.cdpg.dx.database.elastic.model.QueryModel;
+import org.cdpg.dx.database.elastic.model.SearchResult;
+import org.cdpg.dx.database.elastic.model.TextSearchRequestDTO;
+import org.cdpg.dx.database.elastic.model.TextSearchSettings;
+import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+import org.cdpg.dx.databroker.service.DataBrokerService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class SavedSearchServiceImplTest {
+  private static final String INDEX = "saved-searches";
+  private static final String EXCHANGE = "catalogue";
+  private static final List<JsonObject> ITEMS =
+      List.of(item("item-0"), item("item-1"), item("item-2"));
+
+  private ElasticsearchService elasticsearchService;
+  private DataBrokerService dataBrokerService;
+  private SavedSearchService savedSearchService;
+
+  @BeforeEach
+  void setUp() {
+    elasticsearchService = mock(ElasticsearchService.class);
+    dataBrokerService = mock(DataBrokerService.class);
+    when(dataBrokerService.publishMessageExternal(anyString(), anyString(), any()))
+        .thenReturn(Future.succeededFuture("published"));
+    when(elasticsearchService.createDocuments(eq(INDEX), anyList()))
+        .thenReturn(Future.succeededFuture(List.of("doc-1")));
+    savedSearchService =
+        new SavedSearchServiceImpl(
+            elasticsearchService, INDEX, dataBrokerService, EXCHANGE, TextSearchSettings.DEFAULT);
+  }
+
+  @Test
+  void eachUserGetsOneMessageListingTheirMatches() {
+    JsonArray matches =
+        new JsonArray()
+            .add(match("search-1", "user-a", "Air sensors", 0, 2))
+            .add(match("search-2", "user-b", "Everything", 0, 1, 2))
+            .add(match("search-3", "user-a", "Second batch", 1));
+    when(elasticsearchService.percolate(eq(INDEX), eq("query"), any()))
+        .thenReturn(Future.succeededFuture(matches));
+
+    assertTrue(savedSearchService.percolate(ITEMS).succeeded());
+
+    verify(dataBrokerService)
+        .publishMessageExternal(
+            EXCHANGE,
+            "savedSearch.user-a",
+            new JsonArray()
+                .add(notification("search-1", "Air sensors", 0, 2))
+                .add(notification("search-3", "Second batch", 1)));
+    verify(dataBrokerService)
+        .publishMessageExternal(
+            EXCHANGE,
+            "savedSearch.user-b",
+            new JsonArray().add(notification("search-2", "Everything", 0, 1, 2)));
+  }
+
+  @Test
+  void nothingIsPublishedWithoutMatches() {
+    when(elasticsearchService.percolate(eq(INDEX), eq("query"), any()))
+        .thenReturn(Future.succeededFuture(new JsonArray()));
+
+    assertTrue(savedSearchService.percolate(ITEMS).succeeded());
+    assertTrue(savedSearchService.percolate(List.of()).succeeded());
+
+    verify(elasticsearchService).percolate(eq(INDEX), eq("query"), any());
+    verifyNoInteractions(dataBrokerService);
+  }
+
+  @Test
+  void aSearchIsSavedAsItsDecodedQuery() {
+    savedSearchCount(3);
+
+    Future<JsonObject> saved = savedSearchService.create(request("user-a"), "Air", search());
+    assertTrue(saved.succeeded());
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<QueryModel>> documents = ArgumentCaptor.forClass(List.class);
+    verify(elasticsearchService).createDocuments(eq(INDEX), documents.capture());
+    Map<String, Object> document =
+        documents.getValue().get(0).getQueries().getQueryParameters();
+    assertEquals(saved.result().getString("id"), document.get("id"));
+    assertNotNull(((JsonObject) document.get("query")).getJsonObject("bool"));
+    JsonObject savedSearch = (JsonObject) document.get("savedSearch");
+    assertEquals("user-a", savedSearch.getString("sub"));
+    assertEquals(search(), savedSearch.getJsonObject("search"));
+  }
+
+  @Test
+  void noMoreSearchesAreSavedOnceAtTheLimit() {
+    savedSearchCount(SavedSearchServiceImpl.MAX_SAVED_SEARCHES);
+
+    Future<JsonObject> saved = savedSearchService.create(request("user-a"), "Air", search());
+    assertInstanceOf(DxBadRequestException.class, saved.cause());
+    verify(elasticsearchService).search(eq(INDEX), any(), eq("SOURCE_UNCACHED"));
+    verify(elasticsearchService, never()).createDocuments(anyString(), anyList());
+  }
+
+  private void savedSearchCount(int count) {
+    when(elasticsearchService.search(eq(INDEX), any(), anyString()))
+        .thenReturn(Future.succeededFuture(new SearchResult(List.of(), count, null, 1)));
+  }
+
+  private static QueryDecoderRequestDTO request(String sub) {
+    return new QueryDecoderRequestDTO(
+        "textSearch",
+        10,
+        1,
+        null,
+        null,
+        new TextSearchRequestDTO("air quality", false, false),
+        null,
+        new AccessPolicyRequestDTO(sub, false),
+        null,
+        null,
+        null);
+  }
+
+  private static JsonObject search() {
+    return new JsonObject().put("q", "air quality");
+  }
+
+  private static JsonObject item(String id) {
+    return new JsonObject()
+        .put("id", id)
+        .put("name", "name-" + id)
+        .put("type", new JsonArray().add("adex:Resource"))
+        .put("description", "Not part of the notification");
+  }
+
+  private static JsonObject match(String id, String sub, String name, int... slots) {
+    JsonArray matched = new JsonArray();
+    for (int slot : slots) {
+      matched.add(slot);
+    }
+    return new JsonObject()
+        .put("id", id)
+        .put(
+            "_source",
+            new JsonObject()
+                .put("savedSearch", new JsonObject().put("sub", sub).put("name", name)))
+        .put("slots", matched);
+  }
+
+  private static JsonObject notification(String id, String name, int... slots) {
+    JsonArray items = new JsonArray();
+    for (int slot : slots) {
+      JsonObject item = ITEMS.get(slot);
+      items.add(
+          new JsonObject()
+              .put("id", item.getString("id"))
+              .put("name", item.getString("name"))
+              .put("type", item.getJsonArray("type")));
+    }
+    return new JsonObject().put("id", id).put("name", name).put("items", items);
+  }
+}
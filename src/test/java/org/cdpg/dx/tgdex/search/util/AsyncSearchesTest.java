@@ -0,0 +1,108 @@
+package org.cdpg.dx.tgdex.search.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.cdpg.dx.common.exception.DxNotFoundException;
+import org.cdpg.dx.database.elastic.model.QueryModel;
+import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+class AsyncSearchesTest {
+  private static final String ID = "search-1";
+  private static final String OWNER = "owner-1";
+  private static final JsonObject RUNNING = new JsonObject().put("id", ID).put("running", true);
+
+  private ElasticsearchService elasticsearchService;
+  private AsyncSearches asyncSearches;
+
+  @BeforeEach
+  void setUp(Vertx vertx) {
+    elasticsearchService = mock(ElasticsearchService.class);
+    when(elasticsearchService.submitAsyncSearch(
+            anyString(), any(), anyString(), anyString(), anyString()))
+        .thenReturn(Future.succeededFuture(RUNNING));
+    when(elasticsearchService.getAsyncSearchStatus(ID))
+        .thenReturn(Future.succeededFuture(RUNNING));
+    when(elasticsearchService.getAsyncSearch(eq(ID), any()))
+        .thenReturn(Future.succeededFuture(RUNNING));
+    asyncSearches = new AsyncSearches(vertx, elasticsearchService, 1, 60);
+  }
+
+  @Test
+  void theOwnerCanPollAsSoonAsTheIdIsReturned(VertxTestContext testContext) {
+    submit()
+        .compose(
+            running -> {
+              assertNotNull(running.getAsyncSearch());
+              return asyncSearches.status(OWNER, running.getAsyncSearch().getString("id"));
+            })
+        .compose(status -> asyncSearches.result(OWNER, ID))
+        .onComplete(
+            testContext.succeeding(
+                result ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(RUNNING, result.getAsyncSearch());
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  void anotherUserIsToldTheSearchDoesNotExist(VertxTestContext testContext) {
+    submit()
+        .compose(
+            running ->
+                Future.all(
+                        expectNotFound(asyncSearches.status("other", ID)),
+                        expectNotFound(asyncSearches.result("other", ID)),
+                        expectNotFound(asyncSearches.delete("other", ID)))
+                    .mapEmpty())
+        .onComplete(
+            testContext.succeeding(
+                v ->
+                    testContext.verify(
+                        () -> {
+                          verify(elasticsearchService, never()).getAsyncSearchStatus(ID);
+                          verify(elasticsearchService, never()).deleteAsyncSearch(ID);
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  void anUnknownIdDoesNotExist(VertxTestContext testContext) {
+    expectNotFound(asyncSearches.status(OWNER, ID))
+        .onComplete(testContext.succeedingThenComplete());
+  }
+
+  private Future<ResponseModel> submit() {
+    return asyncSearches.submit(OWNER, "items", new QueryModel(), "SOURCE_ONLY", 10, 1);
+  }
+
+  private static Future<Void> expectNotFound(Future<?> request) {
+    return request.transform(
+        ar -> {
+          if (ar.succeeded()) {
+            return Future.failedFuture("Expected the search not to be found");
+          }
+          assertInstanceOf(DxNotFoundException.class, ar.cause());
+          return Future.succeededFuture();
+        });
+  }
+}
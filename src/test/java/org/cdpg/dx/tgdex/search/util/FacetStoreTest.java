@@ -0,0 +1,134 @@
+package org.cdpg.dx.tgdex.search.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.List;
+import org.cdpg.dx.database.elastic.model.SearchResult;
+import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FacetStoreTest {
+  private static final String TYPE = "adex:Resource";
+  private static final String OWNER = "owner-1";
+  private static final List<String> TAGS = List.of("tags");
+
+  private final List<Promise<SearchResult>> reads = new ArrayList<>();
+  private FacetStore facetStore;
+
+  @BeforeEach
+  void setUp() {
+    ElasticsearchService elasticsearchService = mock(ElasticsearchService.class);
+    when(elasticsearchService.search(any(), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              Promise<SearchResult> read = Promise.promise();
+              reads.add(read);
+              return read.future();
+            });
+    facetStore = new FacetStore(elasticsearchService, "items", TAGS, new SimpleMeterRegistry());
+  }
+
+  @Test
+  void eachUserIsListedTheValuesOfTheItemsTheyMaySee() {
+    facetStore.refresh();
+    answerReads(
+        scope(tags(0, "air", 3, "water", 1)),
+        scope(tags(0, "air", 2, "water", 1)),
+        owners(0, scope(tags(0, "water", 2, "soil", 1))));
+
+    assertEquals(values("air", "water"), facetStore.filters(null, null, TAGS, 10));
+    assertEquals(values("air", "water"), facetStore.filters("owner-2", null, TAGS, 10));
+    // The owner's private values are counted together with the shared ones
+    assertEquals(values("water", "air", "soil"), facetStore.filters(OWNER, null, TAGS, 10));
+    assertEquals(values("water"), facetStore.filters(OWNER, null, TAGS, 1));
+
+    assertEquals(values("air", "water"), facetStore.filters(null, TYPE, TAGS, 10));
+    assertEquals(values(), facetStore.filters(null, "adex:AiModel", TAGS, 10));
+  }
+
+  @Test
+  void whatIsNotMaterializedIsLeftToElasticsearch() {
+    assertNull(facetStore.filters(null, null, TAGS, 10));
+
+    facetStore.refresh();
+    answerReads(
+        scope(tags(5, "air", 3, "water", 1)),
+        scope(tags(0, "air", 2)),
+        owners(1, scope(tags(0, "soil", 1))));
+
+    // Values were cut off, so only pages they fill can be answered
+    assertEquals(values("air", "water"), facetStore.filters(null, null, TAGS, 2));
+    assertNull(facetStore.filters(null, null, TAGS, 3));
+    assertNull(facetStore.filters(null, null, List.of("industry"), 10));
+    // Owners were cut off, so no owner's private values are known
+    assertNull(facetStore.filters(OWNER, null, TAGS, 10));
+  }
+
+  @Test
+  void aFailedReadOnlyLeavesItsOwnScopeOut() {
+    facetStore.refresh();
+    reads.get(2).fail("Connection refused");
+    reads.get(0).complete(result(scope(tags(0, "air", 3))));
+    reads.get(1).complete(result(scope(tags(0, "air", 2))));
+
+    assertEquals(values("air"), facetStore.filters(null, null, TAGS, 10));
+    assertNull(facetStore.filters(OWNER, null, TAGS, 10));
+  }
+
+  /** Answers the reads of the non-private scope, the open and restricted scope and the owners. */
+  private void answerReads(JsonObject nonPrivate, JsonObject openOrRestricted, JsonObject owners) {
+    assertEquals(3, reads.size());
+    reads.get(0).complete(result(nonPrivate));
+    reads.get(1).complete(result(openOrRestricted));
+    reads.get(2).complete(result(owners));
+  }
+
+  private static SearchResult result(JsonObject aggregations) {
+    return new SearchResult(List.of(), 0, aggregations, 1);
+  }
+
+  /** The aggregations of a scope: the tags of its items, overall and of the one item type. */
+  private static JsonObject scope(JsonObject tags) {
+    JsonObject typeBucket = new JsonObject().put("key", TYPE).put("tags", tags);
+    return new JsonObject()
+        .put("tags", tags)
+        .put(
+            "_types",
+            new JsonObject()
+                .put("sum_other_doc_count", 0L)
+                .put("buckets", new JsonArray().add(typeBucket)));
+  }
+
+  private static JsonObject owners(long cutOff, JsonObject ownerScope) {
+    return new JsonObject()
+        .put(
+            "_owners",
+            new JsonObject()
+                .put("sum_other_doc_count", cutOff)
+                .put("buckets", new JsonArray().add(ownerScope.copy().put("key", OWNER))));
+  }
+
+  /** A terms aggregation over the values and counts given in turn. */
+  private static JsonObject tags(long cutOff, Object... valuesAndCounts) {
+    JsonArray buckets = new JsonArray();
+    for (int i = 0; i < valuesAndCounts.length; i += 2) {
+      buckets.add(
+          new JsonObject().put("key", valuesAndCounts[i]).put("doc_count", valuesAndCounts[i + 1]));
+    }
+    return new JsonObject().put("sum_other_doc_count", cutOff).put("buckets", buckets);
+  }
+
+  private static JsonObject values(String... values) {
+    return new JsonObject().put("tags", new JsonArray(List.of((Object[]) values)));
+  }
+}
@@ -0,0 +1,96 @@
+package org.cdpg.dx.tgdex.search.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.cdpg.dx.database.elastic.model.SearchResult;
+import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ItemCountStoreTest {
+  private static final String TYPE = "adex:DataBank";
+  private static final String OWNER = "owner-1";
+  private static final Set<String> TYPES = Set.of(TYPE);
+
+  private final List<Promise<SearchResult>> reads = new ArrayList<>();
+  private ItemCountStore itemCountStore;
+
+  @BeforeEach
+  void setUp() {
+    ElasticsearchService elasticsearchService = mock(ElasticsearchService.class);
+    when(elasticsearchService.search(any(), any(), any()))
+        .thenAnswer(
+            invocation -> {
+              Promise<SearchResult> read = Promise.promise();
+              reads.add(read);
+              return read.future();
+            });
+    itemCountStore = new ItemCountStore(elasticsearchService, "items", new SimpleMeterRegistry());
+  }
+
+  @Test
+  void writesMadeDuringTheSeedAreAppliedOnTopOfIt() {
+    itemCountStore.reconcile();
+    itemCountStore.added(item());
+    assertNull(itemCountStore.counts(null, false, TYPES));
+
+    answerReads(2);
+    assertEquals(3, itemCountStore.counts(null, false, TYPES).getInteger(TYPE));
+    assertEquals(3, itemCountStore.counts(OWNER, true, TYPES).getInteger(TYPE));
+  }
+
+  @Test
+  void reconciliationsOverlappingWritesStillCorrectTheCounts() {
+    itemCountStore.reconcile();
+    answerReads(2);
+
+    // Every reconciliation overlaps a write, and the counts follow Elasticsearch regardless
+    for (int indexed = 5; indexed < 8; indexed++) {
+      itemCountStore.reconcile();
+      itemCountStore.removed(item());
+      answerReads(indexed);
+      assertEquals(indexed - 1, itemCountStore.counts(null, false, TYPES).getInteger(TYPE));
+    }
+  }
+
+  private void answerReads(long count) {
+    List<Promise<SearchResult>> inFlight = new ArrayList<>(reads);
+    reads.clear();
+    inFlight.forEach(read -> read.complete(result(count)));
+  }
+
+  private static JsonObject item() {
+    return new JsonObject()
+        .put("type", new JsonArray().add(TYPE))
+        .put("accessPolicy", "OPEN")
+        .put("ownerUserId", OWNER);
+  }
+
+  /** The type counts and the per-owner type counts, which each read picks its own from. */
+  private static SearchResult result(long count) {
+    JsonObject types =
+        new JsonObject()
+            .put(
+                "buckets",
+                new JsonArray().add(new JsonObject().put("key", TYPE).put("doc_count", count)));
+    JsonObject owners =
+        new JsonObject()
+            .put("sum_other_doc_count", 0L)
+            .put(
+                "buckets",
+                new JsonArray().add(new JsonObject().put("key", OWNER).put("types", types)));
+    return new SearchResult(
+        List.of(), (int) count, new JsonObject().put("types", types).put("owners", owners), 1);
+  }
+}
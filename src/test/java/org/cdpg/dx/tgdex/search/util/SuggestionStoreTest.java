@@ -0,0 +1,170 @@
+package org.cdpg.dx.tgdex.search.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.cdpg.dx.database.elastic.service.ElasticsearchService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SuggestionStoreTest {
+  private static final String OWNER = "owner-1";
+  private static final JsonObject OPEN_ITEM =
+      item("item-1", "Air Quality Monitor", "OPEN", "owner-2", "air");
+  private static final JsonObject RESTRICTED_ITEM =
+      item("item-2", "Air Pollution Survey", "RESTRICTED", "owner-2", "air");
+  private static final JsonObject PRIVATE_ITEM =
+      item("item-3", "Airport Footfall", "PRIVATE", OWNER, "air");
+  private static final JsonObject UPLOAD_PENDING_ITEM =
+      item("item-4", "Air Upload Pending", "OPEN", OWNER, "air")
+          .put("type", new JsonArray().add("adex:DataBank"))
+          .put("dataUploadStatus", false);
+
+  private final List<Scan> scans = new ArrayList<>();
+  private SuggestionStore suggestionStore;
+
+  @BeforeEach
+  void setUp() {
+    ElasticsearchService elasticsearchService = mock(ElasticsearchService.class);
+    when(elasticsearchService.scan(anyString(), any(), anyInt(), anyInt(), anyString()))
+        .thenAnswer(
+            invocation -> {
+              Scan scan = new Scan();
+              scans.add(scan);
+              return scan;
+            });
+    suggestionStore = new SuggestionStore(elasticsearchService, "items", new SimpleMeterRegistry());
+  }
+
+  @Test
+  void eachUserIsSuggestedTheTextsOfTheItemsTheyMaySee() {
+    assertTrue(suggestionStore.suggest(null, "air", 10).isEmpty());
+    seed(OPEN_ITEM, RESTRICTED_ITEM, PRIVATE_ITEM, UPLOAD_PENDING_ITEM);
+
+    JsonArray anonymous = suggestionStore.suggest(null, "air", 10);
+    assertEquals(new JsonObject().put("text", "air").put("weight", 2), anonymous.getValue(0));
+    assertEquals(
+        List.of("air", "Air Pollution Survey", "Air Quality Monitor"), sortedTexts(anonymous));
+    assertEquals(
+        sortedTexts(anonymous), sortedTexts(suggestionStore.suggest("owner-2", "air", 10)));
+
+    JsonArray owner = suggestionStore.suggest(OWNER, "air", 10);
+    assertEquals(new JsonObject().put("text", "air").put("weight", 3), owner.getValue(0));
+    assertEquals(
+        List.of("air", "Air Pollution Survey", "Air Quality Monitor", "Airport Footfall"),
+        sortedTexts(owner));
+  }
+
+  @Test
+  void writesAfterTheSeedShowInTheSuggestions() {
+    seed(OPEN_ITEM);
+    suggestionStore.added(item("item-5", "Air Drone Survey", "OPEN", OWNER, "drone"));
+    suggestionStore.removed(OPEN_ITEM);
+
+    assertEquals(
+        List.of("Air Drone Survey"), sortedTexts(suggestionStore.suggest(null, "ai", 10)));
+    assertEquals(
+        List.of("Air Drone Survey", "drone"),
+        sortedTexts(suggestionStore.suggest(null, "dro", 10)));
+  }
+
+  @Test
+  void writesMadeDuringAScanAreAppliedOnTopOfIt() {
+    seed(OPEN_ITEM, RESTRICTED_ITEM);
+    suggestionStore.refresh();
+    suggestionStore.added(item("item-5", "Air Drone Survey", "OPEN", OWNER, "drone"));
+    suggestionStore.removed(OPEN_ITEM);
+    // The scan read the index before the writes
+    scans.get(1).end(OPEN_ITEM, RESTRICTED_ITEM);
+
+    List<String> texts = sortedTexts(suggestionStore.suggest(null, "air", 10));
+    assertEquals(List.of("air", "Air Drone Survey", "Air Pollution Survey"), texts);
+    assertFalse(texts.contains("Air Quality Monitor"));
+  }
+
+  private void seed(JsonObject... items) {
+    suggestionStore.refresh();
+    scans.get(scans.size() - 1).end(items);
+  }
+
+  private static List<String> sortedTexts(JsonArray suggestions) {
+    List<String> texts = new ArrayList<>();
+    for (Object suggestion : suggestions) {
+      texts.add(((JsonObject) suggestion).getString("text"));
+    }
+    texts.sort(String.CASE_INSENSITIVE_ORDER);
+    return texts;
+  }
+
+  private static JsonObject item(
+      String id, String name, String accessPolicy, String owner, String tag) {
+    return new JsonObject()
+        .put("id", id)
+        .put("name", name)
+        .put("type", new JsonArray().add("adex:Resource"))
+        .put("accessPolicy", accessPolicy)
+        .put("ownerUserId", owner)
+        .put("tags", new JsonArray().add(tag));
+  }
+
+  /** A scan the test feeds by hand, as newline separated items. */
+  private static final class Scan implements ReadStream<Buffer> {
+    private Handler<Buffer> handler;
+    private Handler<Void> endHandler;
+
+    void end(JsonObject... items) {
+      StringBuilder chunk = new StringBuilder();
+      for (JsonObject item : items) {
+        chunk.append(item.encode()).append('\n');
+      }
+      handler.handle(Buffer.buffer(chunk.toString()));
+      endHandler.handle(null);
+    }
+
+    @Override
+    public ReadStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+      this.handler = handler;
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> pause() {
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> resume() {
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> fetch(long amount) {
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+      this.endHandler = endHandler;
+      return this;
+    }
+  }
+}